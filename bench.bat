@@ -0,0 +1,24 @@
+@echo off
+REM Builds and runs a measurement utility from bench\java against the compiled
+REM application. Run build.bat first. Usage: bench.bat ClassName [args...]
+
+if "%~1"=="" (
+    echo Usage: bench.bat ClassName [args...]
+    echo Available:
+    dir /b bench\java
+    exit /b 1
+)
+
+if not exist build\classes (
+    echo ERROR: build\classes not found, run build.bat first
+    exit /b 1
+)
+
+if not exist build\bench-classes mkdir build\bench-classes
+javac --release 17 -cp "build\classes" -d build\bench-classes bench\java\*.java
+if %errorlevel% neq 0 (
+    echo ERROR: Benchmark compilation failed
+    exit /b %errorlevel%
+)
+
+java -cp "build\bench-classes;build\classes" %*
@@ -0,0 +1,25 @@
+#!/bin/bash
+
+# Builds and runs a measurement utility from bench/java against the compiled
+# application. Run build.sh first. Usage: ./bench.sh <ClassName> [args...]
+
+if [ -z "$1" ]; then
+    echo "Usage: ./bench.sh <ClassName> [args...]"
+    echo "Available:"
+    ls bench/java | sed 's/\.java$//; s/^/  /'
+    exit 1
+fi
+
+if [ ! -d "build/classes" ]; then
+    echo "ERROR: build/classes not found, run build.sh first"
+    exit 1
+fi
+
+mkdir -p build/bench-classes
+javac -cp "build/classes" -d build/bench-classes bench/java/*.java
+if [ $? -ne 0 ]; then
+    echo "ERROR: Benchmark compilation failed"
+    exit 1
+fi
+
+java -cp "build/bench-classes:build/classes" "$@"
@@ -0,0 +1,59 @@
+/* Utility to measure the due and next-reminder queries of a scheduler tick over generated reminders and print a report */
+public class ReminderQueryBenchmark {
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        int spanMinutes = args.length > 2 ? Integer.parseInt(args[2]) : 30 * 1440;
+        java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("reminders");
+        String file = dir.resolve("reminders.properties").toString();
+        // The checklist names file where the application keeps it, so that any code path reading it finds it
+        java.nio.file.Path names = java.nio.file.Paths.get(ApplicationConfiguration.CHECKLIST_NAMES_FILE_PATH);
+        java.nio.file.Files.createDirectories(names.getParent());
+        java.util.Properties checklistNames = new java.util.Properties();
+        for (int i = 0; i < 20; i++) checklistNames.setProperty("checklist-" + i, "Checklist " + i);
+        try (java.io.Writer w = java.nio.file.Files.newBufferedWriter(names)) {
+            checklistNames.store(w, null);
+        }
+        ReminderManager manager = new ReminderManager(file, dir.resolve("tasks.xml").toString());
+        // Spread over the next spanMinutes (30 days); task-level reminders on the daily lists, every fourth on a custom checklist
+        java.util.Random random = new java.util.Random(1);
+        java.time.LocalDateTime now = java.time.LocalDateTime.now();
+        java.util.List<Reminder> generated = new java.util.ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            java.time.LocalDateTime t = now.plusMinutes(1 + random.nextInt(spanMinutes));
+            generated.add(new Reminder(i % 4 == 3 ? "Checklist " + (i % 20) : i % 2 == 0 ? "MORNING" : "EVENING", t.getYear(), t.getMonthValue(), t.getDayOfMonth(),
+                    t.getHour(), t.getMinute(), java.util.UUID.randomUUID().toString()));
+        }
+        java.util.Properties props = new java.util.Properties();
+        for (int i = 0; i < n; i++) {
+            Reminder r = generated.get(i);
+            props.setProperty("reminder." + i, r.getChecklistName() + "|" + r.getYear() + "|" + r.getMonth() + "|" + r.getDay() + "|"
+                    + r.getHour() + "|" + r.getMinute() + "|" + r.getTaskId());
+        }
+        try (java.io.Writer w = java.nio.file.Files.newBufferedWriter(java.nio.file.Paths.get(file))) {
+            props.store(w, null);
+        }
+        System.out.println("Reminder queries, " + n + " reminders over " + spanMinutes + " minutes (" + System.getProperty("java.vm.name") + " " + System.getProperty("java.version") + ")");
+        java.util.Set<String> opened = new java.util.HashSet<>();
+        long sink = manager.getDueReminders(5, opened).size();
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ticks; i++) {
+                sink += manager.getDueReminders(5, opened).size();
+                if (manager.getNextReminderTime(opened) != null) sink++;
+            }
+            System.out.println(String.format("round %d: %.1f us per tick", round + 1, (System.nanoTime() - start) / 1e3 / ticks));
+        }
+        // What a list renderer asks per painted row
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int rep = 0; rep < 20; rep++) {
+                for (Reminder r : generated) {
+                    if (manager.getReminderForTask(r.getTaskId()) != null) sink++;
+                }
+            }
+            System.out.println(String.format("round %d: %.0f ns per task reminder lookup", round + 1, (System.nanoTime() - start) / (20.0 * n)));
+        }
+        System.out.println("(" + sink + ")");
+    }
+}
@@ -0,0 +1,104 @@
+/* Utility to compare heap use and GC pauses of tasks held as objects and in a TaskArena and print a report */
+public class TaskArenaBenchmark {
+    private static final String[] WEEKDAYS = {"Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday", "Sunday"};
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "arena";
+        int n = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        long maxPause[] = {0};
+        long pauses[] = {0};
+        for (java.lang.management.GarbageCollectorMXBean gc : java.lang.management.ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((javax.management.NotificationEmitter) gc).addNotificationListener((notification, handback) -> {
+                com.sun.management.GarbageCollectionNotificationInfo info = com.sun.management.GarbageCollectionNotificationInfo
+                        .from((javax.management.openmbean.CompositeData) notification.getUserData());
+                synchronized (maxPause) {
+                    maxPause[0] = Math.max(maxPause[0], info.getGcInfo().getDuration());
+                    pauses[0]++;
+                }
+            }, null, null);
+        }
+        System.out.println("Task storage " + mode + ", " + n + " tasks (" + System.getProperty("java.vm.name") + " "
+                + System.getProperty("java.version") + ", max heap " + (Runtime.getRuntime().maxMemory() >> 20) + " MB)");
+
+        long before = usedAfterGc();
+        long start = System.nanoTime();
+        java.util.List<Task> tasks;
+        TaskArena arena = null;
+        if (mode.equals("heap")) {
+            tasks = new java.util.ArrayList<>(n);
+            generate(n, tasks::add);
+        } else {
+            arena = TaskArena.create(mode.equals("mapped") ? TaskArena.Kind.MAPPED : TaskArena.Kind.DIRECT);
+            generate(n, arena::add);
+            tasks = arena.asList();
+        }
+        long loadMs = (System.nanoTime() - start) / 1_000_000;
+        long retained = usedAfterGc() - before;
+        System.out.println(String.format("load: %,d ms, retained heap %,d bytes (%.1f bytes/task)%s", loadMs, retained, retained / (double) n,
+                arena == null ? "" : String.format(", off-heap %,d bytes", arena.usedBytes())));
+
+        // A session: scroll through windows of rows, tick some of them and write them back
+        synchronized (maxPause) {
+            maxPause[0] = 0;
+            pauses[0] = 0;
+        }
+        java.util.Random random = new java.util.Random(1);
+        start = System.nanoTime();
+        long done = 0;
+        for (int window = 0; window < 20_000; window++) {
+            int from = random.nextInt(n - 50);
+            for (int i = from; i < from + 50; i++) {
+                Task t = tasks.get(i);
+                if (t.isDone()) done++;
+            }
+            Task edited = tasks.get(from);
+            edited.setDone(!edited.isDone());
+            tasks.set(from, edited);
+        }
+        long sessionMs = (System.nanoTime() - start) / 1_000_000;
+        // And one full pass, as a full write makes
+        start = System.nanoTime();
+        long names = 0;
+        for (Task t : tasks) names += t.getName().length();
+        long passMs = (System.nanoTime() - start) / 1_000_000;
+        synchronized (maxPause) {
+            System.out.println(String.format("session: %,d ms; full pass: %,d ms; %d collections, longest pause %d ms (%d, %d)",
+                    sessionMs, passMs, pauses[0], maxPause[0], done, names));
+        }
+        // A full collection has to trace every live object; its pause grows with the task objects on the heap
+        start = System.nanoTime();
+        System.gc();
+        System.out.println(String.format("full collection: %,d ms", (System.nanoTime() - start) / 1_000_000));
+        if (arena != null) arena.close();
+    }
+
+    private static void generate(int n, java.util.function.Consumer<Task> sink) {
+        String[] checklists = new String[8];
+        for (int i = 0; i < checklists.length; i++) checklists[i] = java.util.UUID.randomUUID().toString();
+        String parentId = null;
+        for (int i = 0; i < n; i++) {
+            boolean subtask = i % 4 != 0;
+            TaskType type = i % 3 == 0 ? TaskType.CUSTOM : (i % 3 == 1 ? TaskType.MORNING : TaskType.EVENING);
+            String id = java.util.UUID.randomUUID().toString();
+            sink.accept(new Task(id, "Task " + i, type, i % 5 == 0 ? WEEKDAYS[i % 7] : null, i % 2 == 0,
+                    i % 2 == 0 ? "2025-06-" + (10 + i % 18) : null, type == TaskType.CUSTOM ? checklists[i % checklists.length] : null,
+                    subtask && parentId != null ? parentId : null));
+            if (!subtask) parentId = id;
+        }
+    }
+
+    private static long usedAfterGc() {
+        Runtime rt = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            used = Math.min(used, rt.totalMemory() - rt.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,66 @@
+/* Utility to estimate the retained heap per Task for generated task lists and print a report */
+public class TaskHeapFootprint {
+    private static final String[] WEEKDAYS = {"Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday", "Sunday"};
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = {10_000, 100_000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+        }
+        System.out.println("Task heap footprint (" + System.getProperty("java.vm.name") + " " + System.getProperty("java.version") + ")");
+        // Warm up the code paths and the string pool before measuring
+        measure(1_000);
+        for (int n : sizes) {
+            long bytes = measure(n);
+            System.out.println(String.format("%,9d tasks: %,13d bytes retained, %6.1f bytes/task", n, bytes, bytes / (double) n));
+        }
+    }
+
+    /**
+     * Heap retained by n tasks shaped like a parsed tasks.xml: fresh strings
+     * for every field value, as a parser produces them.
+     */
+    private static long measure(int n) {
+        long before = usedAfterGc();
+        java.util.List<Task> tasks = generate(n);
+        long after = usedAfterGc();
+        if (tasks.size() != n) throw new IllegalStateException();
+        return after - before;
+    }
+
+    private static java.util.List<Task> generate(int n) {
+        java.util.List<Task> tasks = new java.util.ArrayList<>(n);
+        String[] checklists = new String[8];
+        for (int i = 0; i < checklists.length; i++) checklists[i] = java.util.UUID.randomUUID().toString();
+        String parentId = null;
+        for (int i = 0; i < n; i++) {
+            boolean subtask = i % 4 != 0;
+            TaskType type = i % 3 == 0 ? TaskType.CUSTOM : (i % 3 == 1 ? TaskType.MORNING : TaskType.EVENING);
+            String checklistId = type == TaskType.CUSTOM ? new String(checklists[i % checklists.length]) : null;
+            String weekday = i % 5 == 0 ? new String(WEEKDAYS[i % 7]) : null;
+            boolean done = i % 2 == 0;
+            String doneDate = done ? new String("2025-06-" + (10 + i % 18)) : null;
+            String id = java.util.UUID.randomUUID().toString();
+            tasks.add(new Task(id, new String("Task " + i), type, weekday, done, doneDate, checklistId,
+                    subtask && parentId != null ? new String(parentId) : null));
+            if (!subtask) parentId = id;
+        }
+        return tasks;
+    }
+
+    private static long usedAfterGc() {
+        Runtime rt = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            used = Math.min(used, rt.totalMemory() - rt.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,30 @@
+/* Utility to measure task-by-id lookup throughput on a snapshot of generated tasks and print a report */
+public class TaskLookupBenchmark {
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        java.util.List<Task> tasks = new java.util.ArrayList<>(n);
+        for (int i = 0; i < n; i++) tasks.add(new Task("Task " + i, TaskType.MORNING, null, null, null));
+        TaskSnapshot snapshot = TaskSnapshot.of(tasks, 1);
+        // Lookups come with ids read from elsewhere (dialogs, reminders, the clipboard), not the task's own instance
+        String[] ids = new String[n];
+        for (int i = 0; i < n; i++) ids[(int) ((i * 7919L) % n)] = new String(tasks.get(i).getId());
+
+        System.out.println("Task lookup by id, " + n + " tasks (" + System.getProperty("java.vm.name") + " " + System.getProperty("java.version") + ")");
+        long sink = 0;
+        for (int r = 0; r < rounds; r++) {
+            long start = System.nanoTime();
+            for (int rep = 0; rep < 10; rep++) {
+                for (String id : ids) {
+                    if (snapshot.getTask(id) != null) sink++;
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format("round %d: %,.0f lookups/s", r + 1, 10.0 * n / seconds));
+        }
+        long startBuild = System.nanoTime();
+        TaskSnapshot rebuilt = TaskSnapshot.of(tasks, 2);
+        System.out.println(String.format("snapshot build: %.1f ms", (System.nanoTime() - startBuild) / 1e6));
+        if (sink != (long) rounds * 10 * n || rebuilt.size() != n) throw new IllegalStateException();
+    }
+}
@@ -34,6 +34,83 @@ public final class ApplicationConfiguration {
     public static final String REMINDERS_FILE_NAME = "reminders.properties";
     public static final String CHECKLIST_NAMES_FILE_NAME = "checklist-names.properties";
 
+    // Task journal (append-only sidecar to tasks.xml)
+    public static final String JOURNAL_FILE_SUFFIX = ".journal";
+    public static final long JOURNAL_COMPACT_THRESHOLD_BYTES = 256 * 1024;
+    public static final long JOURNAL_COMPACT_MAX_AGE_MS = 10 * 60 * 1000; // 10 minutes
+    public static final long JOURNAL_COMPACT_CHECK_INTERVAL_MS = 60 * 1000; // 1 minute
+
+    // Done flags live in a fixed-width side file updated in place (disable with -Ddailychecklist.doneStateFile=false)
+    public static final boolean DONE_STATE_FILE_ENABLED = !"false".equalsIgnoreCase(System.getProperty("dailychecklist.doneStateFile"));
+    public static final String DONE_STATE_FILE_SUFFIX = ".done";
+
+    // Note texts live in an append-only side file and are read when shown; tasks.xml only
+    // records their length (disable with -Ddailychecklist.noteStore=false to keep new notes inline)
+    public static final boolean NOTE_STORE_ENABLED = !"false".equalsIgnoreCase(System.getProperty("dailychecklist.noteStore"));
+    public static final String NOTE_STORE_FILE_SUFFIX = ".notes";
+    public static final int NOTE_CACHE_MAX_ENTRIES = 64;
+    // The note file is rewritten once superseded records outweigh live ones and exceed this
+    public static final long NOTE_STORE_COMPACT_MIN_BYTES = 64 * 1024;
+
+    // Task storage layout: "single" (tasks.xml) or "sharded" (one file per checklist plus
+    // one for the daily lists, tied together by a manifest); the data is migrated to the
+    // configured layout on start (-Ddailychecklist.storageLayout=sharded)
+    public static final String STORAGE_LAYOUT = System.getProperty("dailychecklist.storageLayout", "single");
+    public static final String SHARD_DIRECTORY_NAME = "tasks.d";
+    // Combined tasks.xml written for backups while the sharded layout is in use
+    public static final String EXPORT_DIRECTORY_NAME = "export";
+    // Files of the layout migrated away from are kept under this suffix
+    public static final String MIGRATED_FILE_SUFFIX = ".migrated";
+
+    // Before the first full load the daily lists are read on their own when the layout
+    // allows; the custom checklists are hydrated on first access or after this delay
+    public static final long HYDRATION_PREFETCH_DELAY_MS = 1000;
+
+    // Binary snapshot of tasks.xml for fast startup (disable with -Ddailychecklist.binarySnapshot=false)
+    public static final String SNAPSHOT_FILE_SUFFIX = ".snapshot";
+    public static final boolean BINARY_SNAPSHOT_ENABLED = Boolean.parseBoolean(System.getProperty("dailychecklist.binarySnapshot", "true"));
+
+    // tasks.xml reader: "fast" (memory-mapped byte scanner, StAX fallback), "parallel" or "stax"
+    public static final String XML_PARSER = System.getProperty("dailychecklist.xmlParser", "fast");
+    // Files above this size are split at <task> boundaries and parsed on the fork-join pool
+    public static final long PARALLEL_PARSE_THRESHOLD_BYTES = 4L * 1024 * 1024; // 4MB
+    public static final long PARALLEL_PARSE_MIN_CHUNK_BYTES = 1024 * 1024; // 1MB
+
+    // Tasks past MemorySafetyManager.MAX_TASKS are not loaded as objects but kept in an
+    // off-heap arena and written back unchanged: "direct" memory or a "mapped" scratch
+    // file (-Ddailychecklist.taskArena=mapped), in segments of this size
+    public static final String TASK_ARENA_KIND = System.getProperty("dailychecklist.taskArena", "direct");
+    public static final int TASK_ARENA_SEGMENT_BYTES = 16 * 1024 * 1024;
+    public static final int TASK_ARENA_VIEW_CACHE_ENTRIES = 256;
+
+    // Repeated field values (checklist and parent ids, weekdays, done dates) are shared
+    // through one table, cleared when it outgrows this; a parse looks values up by their
+    // raw bytes for up to the second count of distinct values
+    public static final int STRING_POOL_MAX_ENTRIES = 64 * 1024;
+    public static final int STRING_POOL_MAX_PARSE_ENTRIES = 64 * 1024;
+
+    // Debug: verify incremental task indexes against a full rebuild after every mutation
+    public static final boolean INDEX_SELF_CHECK = Boolean.getBoolean("dailychecklist.indexSelfCheck");
+
+    // Single-writer mutation pipeline: an isolated change is persisted at once; while
+    // changes keep arriving the batch window starts here and doubles per busy batch,
+    // up to the max latency (override with -Ddailychecklist.writeMaxLatencyMs=...).
+    // A batch is also handed off once this many distinct tasks are pending
+    public static final long MUTATION_BATCH_WINDOW_MS = 300;
+    public static final long MUTATION_BATCH_MAX_LATENCY_MS = Long.getLong("dailychecklist.writeMaxLatencyMs", 2000L);
+    public static final int MUTATION_BATCH_MAX_CHANGES = 500;
+    // Upper bound on queued mutations applied to the in-memory state in one step
+    public static final int MUTATION_DRAIN_MAX = 256;
+    // How long a caller (usually the EDT) waits for its change to become visible to reads;
+    // normally microseconds, longer only while the writer is busy reloading or compacting
+    public static final long MUTATION_APPLY_WAIT_MS = 100;
+
+    // Durability of task writes: relaxed (no fsync), standard (one fsync per batch)
+    // or strict (fsync per mutation); see DurabilityMode
+    public static final String DURABILITY_MODE = System.getProperty("dailychecklist.durability", "standard");
+    // How often commit latency percentiles are written to the metrics log
+    public static final long COMMIT_LATENCY_REPORT_INTERVAL_MS = 60 * 1000; // 1 minute
+
     // Backup configuration
     public static final int MAX_BACKUP_FILES = 30;
     public static final long BACKUP_INTERVAL_MINUTES = 30;
@@ -53,6 +130,24 @@ public final class ApplicationConfiguration {
     // Reminder configuration
     public static final long REMINDER_CHECK_INTERVAL_MS = 60000; // 1 minute
     public static final int REMINDER_DIALOG_TIMEOUT_SECONDS = 30;
+    // Reminders of unopened checklists pop up this many minutes ahead of their time
+    public static final int REMINDER_LEAD_MINUTES = 5;
+    // The reminder timer is re-armed when the wall clock has drifted from the timer's
+    // (clock set, machine suspended); this is how often that is compared, without
+    // looking at any reminder
+    public static final long REMINDER_CLOCK_CHECK_SECONDS = 10;
+    // The reminder check also runs this often regardless, for changes the armed timer
+    // was not armed for
+    public static final long REMINDER_WATCHDOG_MINUTES = 15;
+    // Reminder changes are written this long after the first one, together with any
+    // made in between
+    public static final long REMINDER_WRITE_DELAY_MS = 250;
+    // A failed reminder write is retried with a doubling delay, up to this
+    public static final long REMINDER_WRITE_RETRY_MAX_MS = 60000;
+
+    // Done flags of past days are reset when the date changes; the midnight timer also
+    // re-checks the date this often, as it does not run while the machine sleeps
+    public static final long DAY_ROLLOVER_RECHECK_MINUTES = 30;
 
     // Task management
     public static final int MAX_TASK_TITLE_LENGTH = 200;
@@ -109,6 +204,13 @@ public final class ApplicationConfiguration {
         return APPLICATION_DATA_DIR + File.separator + DATA_FILE_NAME;
     }
 
+    /**
+     * Gets the directory holding the task shards of the sharded storage layout.
+     */
+    public static String getShardDirectoryPath() {
+        return APPLICATION_DATA_DIR + File.separator + SHARD_DIRECTORY_NAME;
+    }
+
     /**
      * Gets the path to a backup file with the given timestamp.
      */
@@ -44,6 +44,7 @@ public class BackupManager {
 
     private java.util.concurrent.ScheduledExecutorService scheduler;
     private volatile boolean backupRunning = false;
+    private volatile Runnable beforeBackup; // Optional hook run before data files are copied
 
     /**
      * Creates a new BackupManager.
@@ -62,6 +63,13 @@ public class BackupManager {
         this.parentComponent = parentComponent;
     }
 
+    /**
+     * Sets a hook that runs before each backup, e.g. to bring data files up to date.
+     */
+    public void setBeforeBackup(Runnable beforeBackup) {
+        this.beforeBackup = beforeBackup;
+    }
+
     /**
      * Initializes the backup system without starting background threads.
      * Call start() to begin automatic backups.
@@ -111,6 +119,11 @@ public class BackupManager {
      */
     public void createBackup(String reason) {
         try {
+            Runnable hook = beforeBackup;
+            if (hook != null) {
+                hook.run();
+            }
+
             // Create backup directory if needed
             File backupDirFile = new File(backupDir);
             if (!backupDirFile.exists()) {
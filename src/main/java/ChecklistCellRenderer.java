@@ -17,7 +17,6 @@
  */
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.util.List;
 import javax.swing.Icon;
 
 /**
@@ -113,20 +112,7 @@ public class ChecklistCellRenderer extends IconListCellRenderer<Checklist> {
 
     private Reminder nearestReminderForChecklist(String checklistName) {
         if (taskManager == null) return null;
-        List<Reminder> reminders = taskManager.getReminders();
-        java.time.LocalDateTime now = java.time.LocalDateTime.now();
-        Reminder best = null;
-        long bestDiff = Long.MAX_VALUE;
-        for (Reminder r : reminders) {
-            if (!java.util.Objects.equals(r.getChecklistName(), checklistName)) continue;
-            java.time.LocalDateTime dt = java.time.LocalDateTime.of(r.getYear(), r.getMonth(), r.getDay(), r.getHour(), r.getMinute());
-            long diff = Math.abs(java.time.Duration.between(now, dt).toMinutes());
-            if (diff < bestDiff) {
-                bestDiff = diff;
-                best = r;
-            }
-        }
-        return best;
+        return taskManager.getNearestReminderForChecklist(checklistName);
     }
 
     private ReminderClockIcon.State computeState(Reminder r) {
@@ -29,12 +29,17 @@ import java.util.Set;
 
 /**
  * Manages custom checklist persistence.
+ *
+ * The cached checklists double as the registry others check names against
+ * ({@link #exists(String)}), kept in memory and replaced on every change.
  */
 public class ChecklistNameManager {
     private final String checklistNamesFileName;
     private Map<String, Checklist> cachedChecklists;
     private boolean checklistsDirty = true;
-    private long lastModifiedTime = 0;
+    private volatile long lastModifiedTime = 0;
+    // Ids and names of the cached checklists; replaced as a whole, read without locking
+    private volatile Set<String> knownIdsAndNames;
 
     public ChecklistNameManager(String checklistNamesFileName) {
         this.checklistNamesFileName = checklistNamesFileName;
@@ -43,7 +48,7 @@ public class ChecklistNameManager {
     /**
      * Gets all checklists, using cache if available.
      */
-    public Set<Checklist> getChecklists() {
+    public synchronized Set<Checklist> getChecklists() {
         // Check if file has been modified externally
         java.io.File propsFile = new java.io.File(checklistNamesFileName);
         long currentModified = propsFile.lastModified();
@@ -71,12 +76,48 @@ public class ChecklistNameManager {
             // File doesn't exist or can't be read, return empty set
         }
 
-        cachedChecklists = new HashMap<>(checklists);
-        checklistsDirty = false;
+        cache(checklists);
         lastModifiedTime = currentModified;
         return new HashSet<>(checklists.values());
     }
 
+    /**
+     * Whether a checklist with the given id or name exists. Answered from memory;
+     * the file is only read if the checklists were never loaded or were marked
+     * dirty. A change on disk is picked up by {@link #refreshIfChanged()}, which
+     * callers asking about many names run once beforehand.
+     */
+    public boolean exists(String idOrName) {
+        if (idOrName == null) return false;
+        Set<String> known = knownIdsAndNames;
+        if (known == null) {
+            getChecklists();
+            known = knownIdsAndNames;
+        }
+        return known.contains(idOrName);
+    }
+
+    /**
+     * Reloads the checklists if the file changed on disk since they were read.
+     * One file check, so {@link #exists(String)} can stay in memory.
+     */
+    public void refreshIfChanged() {
+        if (new java.io.File(checklistNamesFileName).lastModified() > lastModifiedTime) {
+            getChecklists();
+        }
+    }
+
+    private void cache(Map<String, Checklist> checklists) {
+        cachedChecklists = new HashMap<>(checklists);
+        checklistsDirty = false;
+        Set<String> known = new HashSet<>();
+        for (Checklist c : checklists.values()) {
+            known.add(c.getId());
+            known.add(c.getName());
+        }
+        knownIdsAndNames = known;
+    }
+
     /**
      * Gets a checklist by ID.
      */
@@ -112,38 +153,35 @@ public class ChecklistNameManager {
     /**
      * Adds a checklist.
      */
-    public void addChecklist(Checklist checklist) {
+    public synchronized void addChecklist(Checklist checklist) {
         if (checklist == null) return;
         Map<String, Checklist> checklists = getChecklistsMap();
         checklists.put(checklist.getId(), checklist);
         saveChecklistsToProperties(checklists);
-        cachedChecklists = checklists;
-        checklistsDirty = false;
+        cache(checklists);
     }
 
     /**
      * Removes a checklist.
      */
-    public void removeChecklist(Checklist checklist) {
+    public synchronized void removeChecklist(Checklist checklist) {
         if (checklist == null) return;
         Map<String, Checklist> checklists = getChecklistsMap();
         checklists.remove(checklist.getId());
         saveChecklistsToProperties(checklists);
-        cachedChecklists = checklists;
-        checklistsDirty = false;
+        cache(checklists);
     }
 
     /**
      * Updates a checklist name.
      */
-    public void updateChecklistName(Checklist checklist, String newName) {
+    public synchronized void updateChecklistName(Checklist checklist, String newName) {
         if (checklist == null || newName == null) return;
         checklist.setName(newName.trim());
         Map<String, Checklist> checklists = getChecklistsMap();
         checklists.put(checklist.getId(), checklist);
         saveChecklistsToProperties(checklists);
-        cachedChecklists = checklists;
-        checklistsDirty = false;
+        cache(checklists);
     }
 
     /**
@@ -186,7 +224,8 @@ public class ChecklistNameManager {
     /**
      * Marks the checklists cache as dirty.
      */
-    public void markDirty() {
+    public synchronized void markDirty() {
         checklistsDirty = true;
+        knownIdsAndNames = null;
     }
 }
\ No newline at end of file
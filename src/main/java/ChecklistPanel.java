@@ -375,7 +375,7 @@ public class ChecklistPanel extends JPanel {
                                 int parentIndex = -1;
                                 for (int i = 0; i < targetModel.getSize(); i++) {
                                     Task cand = targetModel.get(i);
-                                    if (cand != null && cand.getId().equals(p.getId())) {
+                                    if (cand != null && cand.equals(p)) {
                                         parentIndex = i;
                                         break;
                                     }
@@ -387,7 +387,7 @@ public class ChecklistPanel extends JPanel {
                                     int insertIndex = parentIndex + 1;
                                     while (insertIndex < targetModel.getSize()) {
                                         Task candidate = targetModel.get(insertIndex);
-                                        if (candidate.getParentId() == null || !candidate.getParentId().equals(p.getId())) {
+                                        if (candidate.getParentId() == null || !p.hasId(candidate.getParentId())) {
                                             break;
                                         }
                                         insertIndex++;
@@ -684,7 +684,7 @@ public class ChecklistPanel extends JPanel {
         // Load tasks in background to avoid blocking EDT
         java.util.concurrent.CompletableFuture.supplyAsync(() -> {
             try {
-                return taskManager.getAllTasks();
+                return taskManager.getDailyWorkingSet();
             } catch (Exception e) {
                 java.util.logging.Logger.getLogger(ChecklistPanel.class.getName()).log(java.util.logging.Level.SEVERE, "Error loading tasks in background", e);
                 return null;
@@ -789,7 +789,7 @@ public class ChecklistPanel extends JPanel {
             }
         }
         for (int i = 0; i < model.getSize(); i++) {
-                if (model.getElementAt(i).getId().equals(task.getId())) {
+                if (model.getElementAt(i).equals(task)) {
                     list.setSelectedIndex(i);
                     list.ensureIndexIsVisible(i);
                     highlightTask(list);
@@ -275,7 +275,7 @@ public class CustomChecklistPanel extends JPanel {
             if (lastAddedTaskId != null) {
                 for (int i = 0; i < customListModel.getSize(); i++) {
                     Task t = customListModel.getElementAt(i);
-                    if (t != null && lastAddedTaskId.equals(t.getId())) {
+                    if (t != null && t.hasId(lastAddedTaskId)) {
                         customTaskList.setSelectedIndex(i);
                         customTaskList.ensureIndexIsVisible(i);
                         break;
@@ -686,7 +686,7 @@ public class CustomChecklistPanel extends JPanel {
                         if (lastAddedTaskId != null) {
                             for (int i = 0; i < customListModel.getSize(); i++) {
                                 Task t = customListModel.getElementAt(i);
-                                if (t != null && lastAddedTaskId.equals(t.getId())) {
+                                if (t != null && t.hasId(lastAddedTaskId)) {
                                     customTaskList.setSelectedIndex(i);
                                     customTaskList.ensureIndexIsVisible(i);
                                     break;
@@ -732,7 +732,7 @@ public class CustomChecklistPanel extends JPanel {
 
     public void scrollToTask(Task task) {
         for (int i = 0; i < customListModel.getSize(); i++) {
-            if (customListModel.getElementAt(i).getId().equals(task.getId())) {
+            if (customListModel.getElementAt(i).equals(task)) {
                 customTaskList.setSelectedIndex(i);
                 customTaskList.ensureIndexIsVisible(i);
                 break;
@@ -82,18 +82,7 @@ public class CustomChecklistsOverviewPanel extends JPanel {
                 Checklist c = getModel().getElementAt(idx);
                 if (c != null) {
                     // Find nearest reminder for this checklist
-                    Reminder nearest = null;
-                    if (taskManager != null) {
-                        java.util.List<Reminder> reminders = taskManager.getReminders();
-                        java.time.LocalDateTime now = java.time.LocalDateTime.now();
-                        long bestDiff = Long.MAX_VALUE;
-                        for (Reminder r : reminders) {
-                            if (!java.util.Objects.equals(r.getChecklistName(), c.getName())) continue;
-                            java.time.LocalDateTime dt = java.time.LocalDateTime.of(r.getYear(), r.getMonth(), r.getDay(), r.getHour(), r.getMinute());
-                            long diff = Math.abs(java.time.Duration.between(now, dt).toMinutes());
-                            if (diff < bestDiff) { bestDiff = diff; nearest = r; }
-                        }
-                    }
+                    Reminder nearest = taskManager != null ? taskManager.getNearestReminderForChecklist(c.getName()) : null;
                     if (nearest != null) {
                         // Compute actual icon bounds so tooltip triggers where the icon is painted
                         javax.swing.Icon icon = IconCache.getReminderClockIcon(nearest.getHour(), nearest.getMinute(), ReminderClockIcon.State.FUTURE, true);
@@ -414,7 +403,7 @@ public class CustomChecklistsOverviewPanel extends JPanel {
                     }
                     int res = JOptionPane.showConfirmDialog(this, "Remove reminder(s) for '" + single.getName() + "'?", "Confirm", JOptionPane.YES_NO_OPTION);
                     if (res == JOptionPane.YES_OPTION) {
-                        toRemove.forEach(taskManager::removeReminder);
+                        taskManager.removeReminders(toRemove);
                         if (rightPanel != null && rightPanel.getComponentCount() > 0) {
                             java.awt.Component c = rightPanel.getComponent(0);
                             if (c instanceof CustomChecklistPanel panel) {
@@ -528,9 +517,9 @@ public class CustomChecklistsOverviewPanel extends JPanel {
 
         // Remove all reminders for this checklist
         List<Reminder> allReminders = taskManager.getReminders();
-        allReminders.stream()
+        taskManager.removeReminders(allReminders.stream()
             .filter(reminder -> Objects.equals(reminder.getChecklistName(), name))
-            .forEach(taskManager::removeReminder);
+            .toList());
 
         allChecklists.remove(selectedChecklist);  // Remove from tracked checklists
         taskManager.removeChecklist(selectedChecklist);  // Remove from persistent storage
@@ -620,11 +609,9 @@ public class CustomChecklistsOverviewPanel extends JPanel {
         private void removeRemindersForChecklists(java.util.Set<String> checklistNames) {
             if (checklistNames == null || checklistNames.isEmpty()) return;
             List<Reminder> allReminders = taskManager.getReminders();
-            for (Reminder r : new java.util.ArrayList<>(allReminders)) {
-                if (checklistNames.contains(r.getChecklistName())) {
-                    taskManager.removeReminder(r);
-                }
-            }
+            taskManager.removeReminders(allReminders.stream()
+                .filter(r -> checklistNames.contains(r.getChecklistName()))
+                .toList());
         }
 
     private void moveTasksToType(String checklistId, TaskType type) {
@@ -680,7 +667,7 @@ public class CustomChecklistsOverviewPanel extends JPanel {
                         // Try to restore selected task by id
                         for (int i = 0; i < list.getModel().getSize(); i++) {
                             Task t = list.getModel().getElementAt(i);
-                            if (t != null && t.getId() != null && t.getId().equals(selectedTaskId)) {
+                            if (t != null && t.hasId(selectedTaskId)) {
                                 list.setSelectedIndex(i);
                                 list.ensureIndexIsVisible(i);
                                 break;
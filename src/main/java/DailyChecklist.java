@@ -23,8 +23,6 @@ import java.awt.FlowLayout;
 import java.awt.Font;
 import java.awt.GraphicsEnvironment;
 import java.awt.Image;
-import java.awt.event.WindowAdapter;
-import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
 import java.text.SimpleDateFormat;
 import java.time.LocalDateTime;
@@ -57,7 +55,8 @@ public class DailyChecklist {
     private final java.util.Set<String> openedChecklists = new java.util.HashSet<>();
     private final java.util.Set<Reminder> shownReminders = new java.util.HashSet<>();
     private TaskRepository repository;
-    private transient java.util.concurrent.ScheduledExecutorService reminderScheduler;
+    private transient ReminderScheduler reminderScheduler;
+    private transient DayRollover dayRollover;
 
     public DailyChecklist() {
         initializeComponents(null);
@@ -130,36 +129,30 @@ public class DailyChecklist {
                 checklistPanel.updateTasks();
                 customChecklistsOverviewPanel.updateTasks();
             }, this);
-            frame.addWindowListener(new WindowAdapter() {
-                @Override
-                public void windowActivated(WindowEvent e) {
-                    settingsManager.checkDateAndUpdate(checklistManager, () -> {
-                        checklistPanel.updateTasks();
-                        customChecklistsOverviewPanel.updateTasks();
-                    }, checklistPanel.isShowWeekdayTasks());
-                }
-            });
         }
 
+        // Untick the tasks of past days now and whenever the date changes
+        dayRollover = new DayRollover(checklistManager, settingsManager.getLastDate(), () -> {
+            settingsManager.save(checklistPanel.isShowWeekdayTasks());
+            if (!GraphicsEnvironment.isHeadless()) setTitleWithDate();
+            checklistPanel.updateTasks();
+            customChecklistsOverviewPanel.updateTasks();
+        });
+        dayRollover.start();
+
         // Initialize reminder queue
         reminderQueue = new ReminderQueue(reminder -> showReminderDialog(reminder));
 
-        // Start reminder check task using a scheduled executor
-        reminderScheduler = java.util.concurrent.Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread t = new Thread(r, "ReminderChecker");
-            t.setDaemon(true);
-            return t;
-        });
-        reminderScheduler.scheduleAtFixedRate(() -> {
-            try {
-                checkReminders();
-            } catch (Exception e) {
-                java.util.logging.Logger.getLogger(DailyChecklist.class.getName()).log(java.util.logging.Level.SEVERE, "Error in reminder task", e);
-            }
-        }, 10, 10, java.util.concurrent.TimeUnit.SECONDS);
+        // Check for due reminders now, then whenever the next one comes due
+        reminderScheduler = new ReminderScheduler(checklistManager, openedChecklists, this::checkReminders);
+        reminderScheduler.start();
+        if (!GraphicsEnvironment.isHeadless()) {
+            // Catches a date change or due reminder the timers missed, e.g. while asleep
+            frame.addWindowListener(new DailyChecklistWindowListener(dayRollover, reminderScheduler));
+        }
 
-        // Initial check for due reminders at startup
-        checkReminders();
+        // The daily lists may have been read ahead of the custom checklists; load the rest once the UI settles
+        SwingUtilities.invokeLater(checklistManager::prefetchAllTasks);
     }
 
     /**
@@ -167,7 +160,7 @@ public class DailyChecklist {
      */
     private void checkReminders() {
         // Use optimized method to get only due reminders
-        List<Reminder> dueReminders = checklistManager.getDueReminders(5, openedChecklists);
+        List<Reminder> dueReminders = checklistManager.getDueReminders(ApplicationConfiguration.REMINDER_LEAD_MINUTES, openedChecklists);
         LocalDateTime now = LocalDateTime.now();
         
         for (Reminder r : dueReminders) {
@@ -241,7 +234,7 @@ public class DailyChecklist {
             openedChecklists.add(name);
             customChecklistsOverviewPanel.selectChecklistByName(name);
             if (reminder.getTaskId() != null) {
-                Task task = checklistManager.getAllTasks().stream().filter(t -> reminder.getTaskId().equals(t.getId())).findFirst().orElse(null);
+                Task task = checklistManager.getAllTasks().stream().filter(t -> t.hasId(reminder.getTaskId())).findFirst().orElse(null);
                 if (task != null) jumpToTask(task);
             }
             frame.setVisible(true);
@@ -255,8 +248,7 @@ public class DailyChecklist {
             if (reminder.getTaskId() != null) {
                 checklistManager.removeReminder(reminder);
             } else {
-                List<Reminder> allReminders = checklistManager.getReminders();
-                allReminders.stream().filter(r -> Objects.equals(r.getChecklistName(), reminder.getChecklistName())).forEach(checklistManager::removeReminder);
+                removeRemindersForChecklist(reminder.getChecklistName());
             }
         };
     }
@@ -317,7 +309,7 @@ public class DailyChecklist {
     private void removeRemindersForChecklist(String checklistName) {
         if (checklistName == null) return;
         List<Reminder> allReminders = checklistManager.getReminders();
-        allReminders.stream().filter(r -> Objects.equals(r.getChecklistName(), checklistName)).forEach(checklistManager::removeReminder);
+        checklistManager.removeReminders(allReminders.stream().filter(r -> Objects.equals(r.getChecklistName(), checklistName)).toList());
     }
 
     private Checklist findChecklistByName(String name) {
@@ -658,9 +650,12 @@ public class DailyChecklist {
         }
         if (reminderScheduler != null) {
             try {
-                reminderScheduler.shutdownNow();
+                reminderScheduler.close();
             } catch (Exception ignore) {}
         }
+        if (dayRollover != null) {
+            dayRollover.close();
+        }
     }
 }
 
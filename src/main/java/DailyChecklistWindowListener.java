@@ -17,23 +17,22 @@
  */
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.util.function.Supplier;
 
+/**
+ * Checks for a date change and due reminders whenever the main window is activated.
+ */
 public class DailyChecklistWindowListener extends WindowAdapter {
-    private final SettingsManager settingsManager;
-    private final TaskManager checklistManager;
-    private final Runnable updateTasks;
-    private final Supplier<Boolean> isShowWeekdayTasks;
+    private final DayRollover dayRollover;
+    private final ReminderScheduler reminderScheduler;
 
-    public DailyChecklistWindowListener(SettingsManager settingsManager, TaskManager checklistManager, Runnable updateTasks, Supplier<Boolean> isShowWeekdayTasks) {
-        this.settingsManager = settingsManager;
-        this.checklistManager = checklistManager;
-        this.updateTasks = updateTasks;
-        this.isShowWeekdayTasks = isShowWeekdayTasks;
+    DailyChecklistWindowListener(DayRollover dayRollover, ReminderScheduler reminderScheduler) {
+        this.dayRollover = dayRollover;
+        this.reminderScheduler = reminderScheduler;
     }
 
     @Override
     public void windowActivated(WindowEvent e) {
-        settingsManager.checkDateAndUpdate(checklistManager, updateTasks, isShowWeekdayTasks.get());
+        dayRollover.check();
+        reminderScheduler.reschedule();
     }
-}
\ No newline at end of file
+}
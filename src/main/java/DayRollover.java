@@ -0,0 +1,151 @@
+/*
+ * Daily Checklist
+ * Copyright (C) 2025 Johan Andersson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.swing.SwingUtilities;
+
+/**
+ * Unticks the tasks done on past days, once per day change instead of on
+ * every read.
+ *
+ * A timer fires just after local midnight. {@link #check()} catches what a
+ * timer misses: the machine slept through midnight (the scheduler's clock
+ * stops while suspended) or the clock or time zone changed. It only compares
+ * two numbers unless the date moved, so it can run on every window activation;
+ * the timer also re-runs it every {@link ApplicationConfiguration#DAY_ROLLOVER_RECHECK_MINUTES}
+ * minutes for a window that stays in the background across a wake-up.
+ *
+ * A rollover loads the full task list off the EDT, then on the EDT unticks
+ * every stale task and hands them to the repository as one update, which is
+ * persisted in one write. A start on the same day as the previous session has
+ * nothing to roll over (that session already did), so it leaves the task list
+ * unread and the daily lists can show from their working set.
+ */
+final class DayRollover implements AutoCloseable {
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
+    private final TaskManager taskManager;
+    private final Runnable onRollover;
+    private final Clock clock;
+    private final long lastRunDay; // epoch day of the previous session, or UNKNOWN
+    private final AtomicLong day = new AtomicLong(UNKNOWN); // epoch day last rolled over to
+    private final ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> timer;
+
+    /**
+     * @param lastRunDay the day the application last ran (see {@link SettingsManager#getLastDate()}), or null
+     * @param onRollover run on the EDT after each rollover, e.g. to save the date and refresh the lists
+     */
+    DayRollover(TaskManager taskManager, LocalDate lastRunDay, Runnable onRollover) {
+        this(taskManager, lastRunDay, onRollover, Clock.systemDefaultZone());
+    }
+
+    DayRollover(TaskManager taskManager, LocalDate lastRunDay, Runnable onRollover, Clock clock) {
+        this.taskManager = taskManager;
+        this.onRollover = onRollover;
+        this.clock = clock;
+        this.lastRunDay = lastRunDay == null ? UNKNOWN : lastRunDay.toEpochDay();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "day-rollover");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Rolls over to today (tasks ticked on earlier days are unticked) and arms the timer.
+     */
+    void start() {
+        check();
+        schedule();
+    }
+
+    /**
+     * Rolls over if the local date differs from the last rollover. Cheap when
+     * it does not; the rollover itself runs in the background. Any thread.
+     */
+    void check() {
+        long today = clock.instant().atZone(clock.getZone()).toLocalDate().toEpochDay();
+        long previous = day.get();
+        if (previous == today || scheduler.isShutdown() || !day.compareAndSet(previous, today)) return;
+        long since = previous == UNKNOWN ? lastRunDay : previous;
+        if (since == today) return;
+        scheduler.execute(() -> {
+            try {
+                taskManager.getAllTasks(); // Loads the custom checklists too, if still pending
+                SwingUtilities.invokeLater(() -> rollOver(since, today));
+            } catch (Exception e) {
+                java.util.logging.Logger.getLogger(DayRollover.class.getName()).log(java.util.logging.Level.SEVERE, "Day rollover failed", e);
+            }
+        });
+    }
+
+    /**
+     * Unticks the tasks that are stale on the given day and persists them as
+     * one batch; returns how many there were. Call on the EDT.
+     *
+     * @param since the day rolled over from, for tasks ticked without a done date; UNKNOWN keeps those
+     */
+    int rollOver(long since, long today) {
+        long start = System.nanoTime();
+        List<Task> stale = new ArrayList<>();
+        for (Task task : taskManager.getAllTasks()) {
+            if (task.isDone() && isStale(task.getDoneEpochDay(), since, today)) {
+                task.setDone(false);
+                task.setDoneDate(null);
+                stale.add(task);
+            }
+        }
+        if (!stale.isEmpty()) taskManager.updateTasks(stale);
+        MetricsCollector.record("Day rollover to " + LocalDate.ofEpochDay(today) + " unticked " + stale.size() + " tasks in "
+                + ((System.nanoTime() - start) / 1_000_000.0) + " ms");
+        if (onRollover != null) onRollover.run();
+        return stale.size();
+    }
+
+    static boolean isStale(int doneDay, long since, long today) {
+        // A tick without a date is taken to be from the day rolled over from
+        if (doneDay == Task.NO_DATE) return since != UNKNOWN && since < today;
+        return doneDay < today;
+    }
+
+    private synchronized void schedule() {
+        if (scheduler.isShutdown()) return;
+        java.time.ZonedDateTime now = clock.instant().atZone(clock.getZone());
+        long untilMidnight = java.time.Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay(clock.getZone())).toMillis();
+        // A second past midnight, so the date has surely changed
+        long delay = Math.min(untilMidnight + 1000, TimeUnit.MINUTES.toMillis(ApplicationConfiguration.DAY_ROLLOVER_RECHECK_MINUTES));
+        timer = scheduler.schedule(() -> {
+            check();
+            schedule();
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (timer != null) timer.cancel(false);
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Daily Checklist
+ * Copyright (C) 2025 Johan Andersson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/**
+ * How hard task writes try to survive a crash or power loss.
+ */
+public enum DurabilityMode {
+    /** Never fsync; the OS writes data back when it likes. Lowest latency. */
+    RELAXED,
+    /** One fsync per batch of mutations handed to persistence (group commit). */
+    STANDARD,
+    /** Every mutation is persisted and fsynced on its own before it counts as durable. */
+    STRICT;
+
+    public boolean forcesWrites() {
+        return this != RELAXED;
+    }
+
+    /**
+     * Parses a mode name case-insensitively, falling back to STANDARD.
+     */
+    public static DurabilityMode parse(String name) {
+        if (name != null) {
+            try {
+                return valueOf(name.trim().toUpperCase(java.util.Locale.ROOT));
+            } catch (IllegalArgumentException ignore) {}
+        }
+        return STANDARD;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Daily Checklist
+ * Copyright (C) 2025 Johan Andersson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with microsecond resolution. Each power of two is
+ * split into 8 buckets, so reported percentiles are within about 12% of the
+ * true value.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(64 << SUB_BITS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucket(micros));
+        total.incrementAndGet();
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    public long count() {
+        return total.get();
+    }
+
+    /**
+     * The latency in microseconds below which the given fraction (0..1) of
+     * samples fall, or 0 without samples.
+     */
+    public long percentileMicros(double fraction) {
+        long n = total.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), maxMicros.get());
+        }
+        return maxMicros.get();
+    }
+
+    /**
+     * One-line summary: sample count and p50/p95/p99/max in milliseconds.
+     */
+    public String summary() {
+        return "n=" + count() + " p50=" + ms(percentileMicros(0.50)) + " p95=" + ms(percentileMicros(0.95))
+                + " p99=" + ms(percentileMicros(0.99)) + " max=" + ms(maxMicros.get()) + " ms";
+    }
+
+    private static int bucket(long micros) {
+        if (micros < SUB) return (int) micros;
+        int e = 63 - Long.numberOfLeadingZeros(micros);
+        return ((e - SUB_BITS + 1) << SUB_BITS) + (int) ((micros >>> (e - SUB_BITS)) & (SUB - 1));
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB) return index;
+        int shift = (index >> SUB_BITS) - 1;
+        long sub = index & (SUB - 1);
+        return ((SUB + sub) << shift) + (1L << shift) - 1;
+    }
+
+    private static String ms(long micros) {
+        return String.valueOf(micros / 1000.0);
+    }
+}
@@ -60,6 +60,7 @@ public class MemorySafetyManager {
             JOptionPane.showMessageDialog(null,
                 "Warning: Your task file contains " + count + " tasks, which exceeds the safe limit of " + MAX_TASKS + ".\n" +
                 "For performance and memory safety, only the first " + MAX_TASKS + " tasks will be loaded.\n" +
+                "The remaining tasks are kept outside memory and saved back unchanged.\n" +
                 "Consider archiving old completed tasks or splitting into multiple checklists.",
                 "Large Dataset Warning", JOptionPane.WARNING_MESSAGE);
         }
@@ -0,0 +1,219 @@
+/*
+ * Daily Checklist
+ * Copyright (C) 2025 Johan Andersson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs persistence operations on a single writer executor and retries failed
+ * ones with exponential backoff without blocking the writer: a failed attempt
+ * is rescheduled on a timer, and writes queued behind it proceed meanwhile.
+ *
+ * Writes to the same target can supply a "latest state" operation. While such
+ * a target has a retry pending, newer writes to it are merged into that retry
+ * instead of running on their own, and the retry writes the newest state when
+ * it fires, so a stale write never lands after a newer one.
+ */
+public final class PersistRetryEngine {
+    private static final Logger LOG = Logger.getLogger(PersistRetryEngine.class.getName());
+
+    @FunctionalInterface
+    public interface Operation {
+        void run() throws Exception;
+    }
+
+    /**
+     * Called on the writer thread when a write has failed its last attempt.
+     */
+    @FunctionalInterface
+    public interface GiveUpHandler {
+        void gaveUp(String desc, boolean reportErrors, Exception cause);
+    }
+
+    private final ExecutorService writer;
+    private final ScheduledExecutorService timer;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final GiveUpHandler giveUpHandler;
+    // Writes waiting for their retry timer, by target; guarded by this
+    private final Map<String, Write> retrying = new HashMap<>();
+
+    public PersistRetryEngine(ExecutorService writer, ScheduledExecutorService timer, int maxAttempts, long initialBackoffMs,
+            GiveUpHandler giveUpHandler) {
+        this.writer = writer;
+        this.timer = timer;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.giveUpHandler = giveUpHandler;
+    }
+
+    private static final class Write {
+        final String target;
+        final String desc;
+        final Operation op;
+        final Supplier<Operation> latest;
+        final long submitted = System.nanoTime();
+        final List<CompletableFuture<Void>> waiters = new ArrayList<>();
+        boolean reportErrors;
+        int attempts;
+        int merged;
+        volatile ScheduledFuture<?> timer;
+
+        Write(String target, String desc, boolean reportErrors, Operation op, Supplier<Operation> latest) {
+            this.target = target;
+            this.desc = desc;
+            this.reportErrors = reportErrors;
+            this.op = op;
+            this.latest = latest;
+        }
+    }
+
+    /**
+     * Queues a write. When {@code latest} is given, retries run the operation it
+     * supplies at that moment, and later writes to the same target are merged
+     * into a pending retry. The future completes when the data is on disk, or
+     * fails after the last attempt.
+     */
+    public CompletableFuture<Void> submit(String target, String desc, boolean reportErrors, Operation op, Supplier<Operation> latest) {
+        Write w = new Write(target, desc, reportErrors, op, latest);
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        w.waiters.add(result);
+        try {
+            writer.execute(() -> attempt(w, false));
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Runs every pending retry now instead of waiting for its timer, e.g. before
+     * the writer is shut down.
+     */
+    public void retryPendingNow() {
+        List<Write> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(retrying.values());
+        }
+        for (Write w : pending) {
+            if (w.timer != null && w.timer.cancel(false)) {
+                try {
+                    writer.execute(() -> attempt(w, true));
+                } catch (RejectedExecutionException e) {
+                    abandon(w, e);
+                }
+            }
+        }
+    }
+
+    private void attempt(Write w, boolean retry) {
+        if (!retry && w.latest != null) {
+            synchronized (this) {
+                Write pending = retrying.get(w.target);
+                if (pending != null) {
+                    // The pending retry writes the newest state, which includes this change
+                    pending.waiters.addAll(w.waiters);
+                    pending.reportErrors |= w.reportErrors;
+                    pending.merged++;
+                    MetricsCollector.record("Persist " + w.desc + " merged into pending retry of " + pending.desc);
+                    return;
+                }
+            }
+        }
+
+        w.attempts++;
+        long start = System.nanoTime();
+        try {
+            (retry && w.latest != null ? w.latest.get() : w.op).run();
+        } catch (Exception e) {
+            failed(w, e);
+            return;
+        }
+        List<CompletableFuture<Void>> done = finish(w);
+        MetricsCollector.record("Persist succeeded (" + w.desc + ") attempt " + w.attempts + " in " + ms(System.nanoTime() - start)
+                + " ms, " + ms(System.nanoTime() - w.submitted) + " ms since submit"
+                + (w.merged > 0 ? ", " + w.merged + " merged writes" : ""));
+        for (CompletableFuture<Void> f : done) f.complete(null);
+    }
+
+    private void failed(Write w, Exception e) {
+        MetricsCollector.record("Persist failed (" + w.desc + ") attempt " + w.attempts + ": " + e.getMessage());
+        if (w.attempts >= maxAttempts) {
+            List<CompletableFuture<Void>> done = finish(w);
+            LOG.log(Level.SEVERE, "Giving up persist (" + w.desc + ") after " + w.attempts + " attempts", e);
+            MetricsCollector.record("Persist gave up (" + w.desc + ") after " + w.attempts + " attempts, "
+                    + ms(System.nanoTime() - w.submitted) + " ms since submit");
+            try {
+                giveUpHandler.gaveUp(w.desc, w.reportErrors, e);
+            } finally {
+                for (CompletableFuture<Void> f : done) f.completeExceptionally(e);
+            }
+            return;
+        }
+        LOG.log(Level.WARNING, "Persist failed (" + w.desc + ") attempt " + w.attempts + ", retrying", e);
+        if (w.latest != null) {
+            synchronized (this) {
+                retrying.putIfAbsent(w.target, w);
+            }
+        }
+        schedule(w, initialBackoffMs << (w.attempts - 1));
+    }
+
+    private void schedule(Write w, long delayMs) {
+        try {
+            w.timer = timer.schedule(() -> {
+                try {
+                    writer.execute(() -> attempt(w, true));
+                } catch (RejectedExecutionException e) {
+                    abandon(w, e);
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            abandon(w, e);
+        }
+    }
+
+    private void abandon(Write w, Exception e) {
+        for (CompletableFuture<Void> f : finish(w)) f.completeExceptionally(e);
+    }
+
+    /**
+     * Detaches the write from the retry table and returns the futures to complete;
+     * nothing can merge into it afterwards.
+     */
+    private List<CompletableFuture<Void>> finish(Write w) {
+        synchronized (this) {
+            if (retrying.get(w.target) == w) retrying.remove(w.target);
+            return new ArrayList<>(w.waiters);
+        }
+    }
+
+    private static double ms(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
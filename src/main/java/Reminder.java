@@ -28,6 +28,7 @@ public class Reminder {
     private final int hour;
     private final int minute;
     private final String taskId; // optional, may be null
+    private final long epochMinute; // local date-time as minutes since 1970-01-01T00:00, see getEpochMinute
 
     public Reminder(String checklistName, int year, int month, int day, int hour, int minute) {
         this(checklistName, year, month, day, hour, minute, null);
@@ -41,6 +42,26 @@ public class Reminder {
         this.hour = hour;
         this.minute = minute;
         this.taskId = (taskId == null || taskId.trim().isEmpty()) ? null : taskId;
+        long key;
+        try {
+            key = epochMinute(java.time.LocalDateTime.of(year, month, day, hour, minute));
+        } catch (java.time.DateTimeException e) {
+            key = Long.MIN_VALUE; // Not a date; never due
+        }
+        this.epochMinute = key;
+    }
+
+    /**
+     * The reminder's local date and time as minutes since 1970-01-01T00:00,
+     * so that times order as numbers; Long.MIN_VALUE for an invalid date.
+     */
+    long getEpochMinute() { return epochMinute; }
+
+    /**
+     * A local date-time as minutes since 1970-01-01T00:00 (seconds dropped).
+     */
+    static long epochMinute(java.time.LocalDateTime time) {
+        return time.toLocalDate().toEpochDay() * 1440 + time.getHour() * 60 + time.getMinute();
     }
 
     // Getters
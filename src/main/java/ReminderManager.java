@@ -17,17 +17,26 @@
  */
 import java.awt.Component;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import javax.swing.SwingUtilities;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -38,17 +47,52 @@ import org.w3c.dom.NodeList;
 
 /**
  * Manages reminder data persistence and operations.
+ *
+ * Cached reminders are also indexed by their time in minutes (see
+ * {@link Reminder#getEpochMinute()}), kept current on add and remove, so the
+ * due and next-reminder queries of every scheduler tick are range lookups
+ * that touch only the reminders in range. Two more indexes, by task id and by
+ * checklist name (in time order), serve the per-row lookups of the list
+ * renderers without copying or scanning the reminder list.
+ *
+ * Changes are written off the caller's thread: a change marks the file
+ * stale and schedules one write {@link ApplicationConfiguration#REMINDER_WRITE_DELAY_MS}
+ * later, which takes in every change made until then. The file is replaced
+ * through a temp file and an atomic move. Each reminder keeps the key it was
+ * read with (new ones get the next free number), so a change does not
+ * renumber the others.
  */
 public class ReminderManager {
+    private static final String KEY_PREFIX = "reminder.";
+
     private final String reminderFileName;
     private final String taskFileName;
     private List<Reminder> cachedReminders;
+    private final NavigableMap<Long, List<Reminder>> byMinute = new TreeMap<>();
+    private final Map<String, List<Reminder>> byTask = new HashMap<>(); // in the order added
+    private final Map<String, List<Reminder>> byChecklist = new HashMap<>(); // in time order
+    private final ChecklistNameManager checklists;
+    private final Map<Reminder, String> keys = new IdentityHashMap<>(); // property key of each cached reminder
+    private int nextKey;
+    private boolean writePending;
+    private boolean writing; // a write taken off writePending is still in progress
+    private int failedWrites; // in a row; sets the retry backoff
+    private final Object writeLock = new Object(); // one file write at a time, newest content last
+    private ScheduledExecutorService writer;
     private boolean remindersDirty = true;
     private Component parentComponent;
 
     public ReminderManager(String reminderFileName, String taskFileName) {
+        this(reminderFileName, taskFileName, new ChecklistNameManager(ApplicationConfiguration.CHECKLIST_NAMES_FILE_PATH));
+    }
+
+    /**
+     * @param checklists the checklist registry reminders are checked against, shared with the repository
+     */
+    public ReminderManager(String reminderFileName, String taskFileName, ChecklistNameManager checklists) {
         this.reminderFileName = reminderFileName;
         this.taskFileName = taskFileName;
+        this.checklists = checklists;
     }
 
     /**
@@ -61,11 +105,16 @@ public class ReminderManager {
     /**
      * Gets all reminders, using cache if available.
      */
-    public List<Reminder> getReminders() {
-        if (cachedReminders != null && !remindersDirty) {
-            return new ArrayList<>(cachedReminders);
-        }
+    public synchronized List<Reminder> getReminders() {
+        ensureLoaded();
+        return new ArrayList<>(cachedReminders);
+    }
 
+    private void ensureLoaded() {
+        if (cachedReminders != null && !remindersDirty) return;
+
+        keys.clear();
+        nextKey = 0;
         List<Reminder> reminders = loadRemindersFromProperties();
         if (reminders.isEmpty()) {
             reminders = loadRemindersFromXml();
@@ -83,8 +132,108 @@ public class ReminderManager {
         }
 
         cachedReminders = new ArrayList<>(reminders);
+        byMinute.clear();
+        byTask.clear();
+        byChecklist.clear();
+        for (Reminder r : cachedReminders) index(r);
         remindersDirty = false;
-        return reminders;
+    }
+
+    private void index(Reminder reminder) {
+        byMinute.computeIfAbsent(reminder.getEpochMinute(), k -> new ArrayList<>(1)).add(reminder);
+        if (reminder.getTaskId() != null) {
+            byTask.computeIfAbsent(reminder.getTaskId(), k -> new ArrayList<>(1)).add(reminder);
+        }
+        if (reminder.getChecklistName() != null) {
+            List<Reminder> ofChecklist = byChecklist.computeIfAbsent(reminder.getChecklistName(), k -> new ArrayList<>(1));
+            // After those of the same minute, so the order added is kept within a minute
+            ofChecklist.add(firstAfter(ofChecklist, reminder.getEpochMinute()), reminder);
+        }
+    }
+
+    private void unindex(Reminder reminder) {
+        removeFrom(byMinute, reminder.getEpochMinute(), reminder);
+        removeFrom(byTask, reminder.getTaskId(), reminder);
+        removeFrom(byChecklist, reminder.getChecklistName(), reminder);
+    }
+
+    private static <K> void removeFrom(Map<K, List<Reminder>> index, K key, Reminder reminder) {
+        if (key == null) return;
+        List<Reminder> list = index.get(key);
+        if (list == null) return;
+        list.removeIf(reminder::equals);
+        if (list.isEmpty()) index.remove(key);
+    }
+
+    /**
+     * The index of the first reminder in the time-ordered list later than the given minute.
+     */
+    private static int firstAfter(List<Reminder> sorted, long minute) {
+        int lo = 0;
+        int hi = sorted.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted.get(mid).getEpochMinute() <= minute) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Gets the reminder targeting the given task (the first one added if
+     * there are several), or null.
+     */
+    public synchronized Reminder getReminderForTask(String taskId) {
+        if (taskId == null) return null;
+        ensureLoaded();
+        List<Reminder> ofTask = byTask.get(taskId);
+        return ofTask == null ? null : ofTask.get(0);
+    }
+
+    /**
+     * Gets the reminders of a checklist (by exact name) in time order.
+     */
+    public synchronized List<Reminder> getRemindersForChecklist(String checklistName) {
+        if (checklistName == null) return new ArrayList<>();
+        ensureLoaded();
+        List<Reminder> ofChecklist = byChecklist.get(checklistName);
+        return ofChecklist == null ? new ArrayList<>() : new ArrayList<>(ofChecklist);
+    }
+
+    /**
+     * Gets the reminders of a checklist whose name matches ignoring case, in
+     * time order. Looks only at the names that have reminders.
+     */
+    public synchronized List<Reminder> getRemindersForChecklistIgnoreCase(String checklistName) {
+        List<Reminder> found = new ArrayList<>();
+        if (checklistName == null) return found;
+        ensureLoaded();
+        for (Map.Entry<String, List<Reminder>> e : byChecklist.entrySet()) {
+            if (e.getKey().equalsIgnoreCase(checklistName)) found.addAll(e.getValue());
+        }
+        // Stable, so each name's own order is kept within a minute
+        found.sort(java.util.Comparator.comparingLong(Reminder::getEpochMinute));
+        return found;
+    }
+
+    /**
+     * Gets the reminder of a checklist (by exact name) closest in time to the
+     * given time, before or after it; the later one on a tie. Null if none.
+     */
+    public synchronized Reminder getNearestReminderForChecklist(String checklistName, LocalDateTime time) {
+        if (checklistName == null) return null;
+        ensureLoaded();
+        List<Reminder> ofChecklist = byChecklist.get(checklistName);
+        if (ofChecklist == null) return null;
+        long minute = Reminder.epochMinute(time);
+        int after = firstAfter(ofChecklist, minute - 1); // first at or after the minute
+        Reminder later = after < ofChecklist.size() ? ofChecklist.get(after) : null;
+        Reminder earlier = after > 0 ? ofChecklist.get(after - 1) : null;
+        // Reminders with an invalid date sort first and are never the nearest
+        if (earlier != null && earlier.getEpochMinute() == Long.MIN_VALUE) earlier = null;
+        if (later == null) return earlier;
+        if (earlier == null) return later;
+        return minute - earlier.getEpochMinute() < later.getEpochMinute() - minute ? earlier : later;
     }
 
     /**
@@ -129,6 +278,14 @@ public class ReminderManager {
                         String taskId = (parts.length >= 7) ? parts[6].trim() : null;
                         Reminder reminder = new Reminder(checklistName, year, month, day, hour, minute, taskId);
                         reminders.add(reminder);
+                        keys.put(reminder, key);
+                        if (key.startsWith(KEY_PREFIX)) {
+                            try {
+                                nextKey = Math.max(nextKey, Integer.parseInt(key.substring(KEY_PREFIX.length())) + 1);
+                            } catch (NumberFormatException ignore) {
+                                // Some other key; kept as it is
+                            }
+                        }
                         reminderCount++;
                     } catch (NumberFormatException e) {
                         // Show error for this specific reminder but continue loading others
@@ -220,76 +377,161 @@ public class ReminderManager {
     }
 
     /**
-     * Saves reminders to the properties file.
+     * Schedules a write of the cached reminders to the properties file. Called
+     * with the lock held; the reminders passed are the ones about to be cached.
      */
     private void saveRemindersToProperties(List<Reminder> reminders) {
-        Properties props = new Properties();
-        for (int i = 0; i < reminders.size(); i++) {
-            Reminder r = reminders.get(i);
-            String key = "reminder." + i;
-                        StringBuilder sb = new StringBuilder();
-                        sb.append(r.getChecklistName()).append('|').append(r.getYear()).append('|').append(r.getMonth()).append('|')
-                            .append(r.getDay()).append('|').append(r.getHour()).append('|').append(r.getMinute());
-                        if (r.getTaskId() != null) {
-                                sb.append('|').append(r.getTaskId());
-                        }
-                        String value = sb.toString();
-            props.setProperty(key, value);
+        if (writePending) return; // The pending write will see this change too
+        writePending = true;
+        scheduleWrite(ApplicationConfiguration.REMINDER_WRITE_DELAY_MS);
+    }
+
+    private void scheduleWrite(long delayMs) {
+        if (writer == null) {
+            writer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "reminder-writer");
+                t.setDaemon(true);
+                return t;
+            });
         }
+        writer.schedule(this::flush, delayMs, TimeUnit.MILLISECONDS);
+    }
 
-        try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(reminderFileName), StandardCharsets.UTF_8)) {
-            props.store(writer, "Daily Checklist Reminders");
-        } catch (IOException e) {
-            // Ignore errors
+    /**
+     * Writes pending reminder changes now, on the calling thread. Does nothing
+     * when there are none. A failed write leaves the changes pending and is
+     * retried with a doubling delay, up to
+     * {@link ApplicationConfiguration#REMINDER_WRITE_RETRY_MAX_MS}; the first
+     * failure in a row is reported to the user.
+     */
+    public void flush() {
+        synchronized (writeLock) {
+            Properties props;
+            synchronized (this) {
+                if (!writePending || cachedReminders == null) return;
+                writePending = false;
+                writing = true;
+                props = new Properties();
+                for (Reminder r : cachedReminders) props.setProperty(keyOf(r), format(r));
+            }
+            try {
+                TaskStaxHandler.writeAtomically(java.nio.file.Paths.get(reminderFileName), false, os -> {
+                    OutputStreamWriter out = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+                    props.store(out, "Daily Checklist Reminders");
+                    out.flush();
+                });
+                synchronized (this) {
+                    failedWrites = 0;
+                }
+            } catch (IOException e) {
+                java.util.logging.Logger.getLogger(ReminderManager.class.getName())
+                        .log(java.util.logging.Level.WARNING, "Failed to write reminders file: " + reminderFileName, e);
+                int failures;
+                synchronized (this) {
+                    failures = ++failedWrites;
+                    // A change made meanwhile has scheduled its own write, which takes this one in
+                    if (!writePending) {
+                        writePending = true;
+                        long delay = ApplicationConfiguration.REMINDER_WRITE_DELAY_MS << Math.min(failures, 16);
+                        scheduleWrite(Math.min(delay, ApplicationConfiguration.REMINDER_WRITE_RETRY_MAX_MS));
+                    }
+                }
+                Component parent = parentComponent;
+                if (failures == 1 && parent != null) {
+                    SwingUtilities.invokeLater(() -> ApplicationErrorHandler.showDataSaveError(parent, "reminders", e));
+                }
+            } finally {
+                synchronized (this) {
+                    writing = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether reminder changes are waiting to be written or being written, e.g.
+     * after a failed write.
+     */
+    synchronized boolean hasPendingWrite() {
+        return writePending || writing;
+    }
+
+    /**
+     * Writes pending changes and stops the writer thread.
+     */
+    public void close() {
+        flush();
+        synchronized (this) {
+            if (writer != null) writer.shutdownNow();
+            writer = null; // A later change starts a new one
         }
     }
 
+    private String keyOf(Reminder reminder) {
+        return keys.computeIfAbsent(reminder, r -> KEY_PREFIX + nextKey++);
+    }
+
+    private static String format(Reminder r) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(r.getChecklistName()).append('|').append(r.getYear()).append('|').append(r.getMonth()).append('|')
+            .append(r.getDay()).append('|').append(r.getHour()).append('|').append(r.getMinute());
+        if (r.getTaskId() != null) {
+            sb.append('|').append(r.getTaskId());
+        }
+        return sb.toString();
+    }
+
     /**
      * Adds a reminder.
      */
-    public void addReminder(Reminder reminder) {
-        List<Reminder> reminders = getReminders();
-        reminders.add(reminder);
-        saveRemindersToProperties(reminders);
-        cachedReminders = reminders;
-        remindersDirty = false;
+    public synchronized void addReminder(Reminder reminder) {
+        ensureLoaded();
+        cachedReminders.add(reminder);
+        index(reminder);
+        saveRemindersToProperties(cachedReminders);
     }
 
     /**
      * Removes a reminder.
      */
     public void removeReminder(Reminder reminder) {
-        List<Reminder> reminders = getReminders();
-        reminders.removeIf(r -> Objects.equals(r.getChecklistName(), reminder.getChecklistName()) &&
-                       r.getYear() == reminder.getYear() &&
-                       r.getMonth() == reminder.getMonth() &&
-                       r.getDay() == reminder.getDay() &&
-                       r.getHour() == reminder.getHour() &&
-                       r.getMinute() == reminder.getMinute() &&
-                       Objects.equals(r.getTaskId(), reminder.getTaskId()));
-        saveRemindersToProperties(reminders);
-        cachedReminders = reminders;
-        remindersDirty = false;
+        removeReminders(java.util.Collections.singletonList(reminder));
+    }
+
+    /**
+     * Removes the given reminders, with one write for all of them.
+     */
+    public synchronized void removeReminders(Collection<Reminder> reminders) {
+        if (reminders == null || reminders.isEmpty()) return;
+        ensureLoaded();
+        // Reminders are equal when all their fields are
+        Set<Reminder> targets = new HashSet<>(reminders);
+        boolean removed = cachedReminders.removeIf(r -> {
+            if (!targets.contains(r)) return false;
+            keys.remove(r);
+            return true;
+        });
+        if (!removed) return;
+        for (Reminder r : targets) unindex(r);
+        saveRemindersToProperties(cachedReminders);
     }
 
     /**
      * Gets reminders that are due within the next specified minutes.
-     * More efficient than checking all reminders by filtering upfront.
+     * Only the reminders between an hour ago and minutesAhead from now are looked at.
      */
-    public List<Reminder> getDueReminders(int minutesAhead, Set<String> openedChecklists) {
-        List<Reminder> allReminders = getReminders();
+    public synchronized List<Reminder> getDueReminders(int minutesAhead, Set<String> openedChecklists) {
+        ensureLoaded();
+        checklists.refreshIfChanged();
         List<Reminder> dueReminders = new ArrayList<>();
-        LocalDateTime now = LocalDateTime.now();
-
-        for (Reminder r : allReminders) {
-            LocalDateTime reminderTime = LocalDateTime.of(r.getYear(), r.getMonth(), r.getDay(), r.getHour(), r.getMinute());
-            // Show reminders that are:
-            // 1. Due within the next minutesAhead minutes, OR
-            // 2. Overdue but within the last hour (to avoid showing very old reminders)
-            boolean isUpcoming = reminderTime.isAfter(now) && !reminderTime.isAfter(now.plusMinutes(minutesAhead));
-            boolean isRecentlyOverdue = !reminderTime.isAfter(now) && reminderTime.isAfter(now.minusHours(1));
-
-            if (isUpcoming || isRecentlyOverdue) {
+        long now = Reminder.epochMinute(LocalDateTime.now());
+
+        // Show reminders that are:
+        // 1. Due within the next minutesAhead minutes, OR
+        // 2. Overdue but within the last hour (to avoid showing very old reminders)
+        for (Map.Entry<Long, List<Reminder>> e : byMinute.subMap(now - 60, false, now + minutesAhead, true).entrySet()) {
+            boolean isRecentlyOverdue = e.getKey() <= now;
+            for (Reminder r : e.getValue()) {
                 // Skip reminders for checklists that don't exist anymore
                 String checklistName = r.getChecklistName();
                 if (checklistName == null) continue;
@@ -310,46 +552,45 @@ public class ReminderManager {
     }
 
     /**
-     * Gets the next reminder time for unopened checklists.
+     * Gets the next reminder time for unopened checklists: the first one after
+     * now, in time order, that passes the filters.
      */
     public LocalDateTime getNextReminderTime(Set<String> openedChecklists) {
-        List<Reminder> allReminders = getReminders();
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime nextTime = null;
-
-        for (Reminder reminder : allReminders) {
-            // Skip reminders for checklists that don't exist anymore
-            String checklistName = reminder.getChecklistName();
-            if (checklistName == null || !checklistExists(checklistName)) {
-                continue;
-            }
+        return getNextReminderTime(openedChecklists, LocalDateTime.now());
+    }
 
-            // Ignore checklist-level reminders for built-in daily lists
-            if (reminder.getTaskId() == null && ("MORNING".equalsIgnoreCase(checklistName) || "EVENING".equalsIgnoreCase(checklistName))) {
-                continue;
-            }
+    /**
+     * Gets the time of the first reminder for unopened checklists in a later
+     * minute than the given time.
+     */
+    public synchronized LocalDateTime getNextReminderTime(Set<String> openedChecklists, LocalDateTime after) {
+        ensureLoaded();
+        checklists.refreshIfChanged();
+        long from = Reminder.epochMinute(after);
 
-            // Skip reminders for checklists that are already opened
-            if (openedChecklists != null && openedChecklists.contains(checklistName)) {
-                continue;
-            }
+        for (List<Reminder> atMinute : byMinute.tailMap(from, false).values()) {
+            for (Reminder reminder : atMinute) {
+                // Skip reminders for checklists that don't exist anymore
+                String checklistName = reminder.getChecklistName();
+                if (checklistName == null || !checklistExists(checklistName)) {
+                    continue;
+                }
+
+                // Ignore checklist-level reminders for built-in daily lists
+                if (reminder.getTaskId() == null && ("MORNING".equalsIgnoreCase(checklistName) || "EVENING".equalsIgnoreCase(checklistName))) {
+                    continue;
+                }
 
-            LocalDateTime reminderTime = LocalDateTime.of(
-                    reminder.getYear(),
-                    reminder.getMonth(),
-                    reminder.getDay(),
-                    reminder.getHour(),
-                    reminder.getMinute()
-            );
-
-            if (reminderTime.isAfter(now)) {
-                if (nextTime == null || reminderTime.isBefore(nextTime)) {
-                    nextTime = reminderTime;
+                // Skip reminders for checklists that are already opened
+                if (openedChecklists != null && openedChecklists.contains(checklistName)) {
+                    continue;
                 }
+
+                return LocalDateTime.of(reminder.getYear(), reminder.getMonth(), reminder.getDay(),
+                        reminder.getHour(), reminder.getMinute());
             }
         }
-
-        return nextTime;
+        return null;
     }
 
     /**
@@ -358,6 +599,7 @@ public class ReminderManager {
     public boolean hasReminders(String checklistName) {
         List<Reminder> reminders = getReminders();
         if (checklistName == null) return false;
+        checklists.refreshIfChanged();
         if (!checklistExists(checklistName)) return false;
         return reminders.stream()
                 .filter(reminder -> Objects.equals(reminder.getChecklistName(), checklistName))
@@ -371,32 +613,27 @@ public class ReminderManager {
     }
 
     /**
-     * Returns true if the given checklist name or id exists in the checklist-names properties
-     * or is a built-in daily checklist name (MORNING/EVENING).
+     * Returns true if the given checklist name or id is a custom checklist
+     * or a built-in daily checklist name (MORNING/EVENING). Answered from the
+     * in-memory checklist registry, without reading the names file; the queries
+     * check the file for changes once before looking at their reminders.
      */
     private boolean checklistExists(String checklistName) {
         if (checklistName == null) return false;
         // Built-in daily checklists
         if ("MORNING".equalsIgnoreCase(checklistName) || "EVENING".equalsIgnoreCase(checklistName)) return true;
-
-        Properties props = new Properties();
-        try (InputStreamReader reader = new InputStreamReader(new FileInputStream(ApplicationConfiguration.CHECKLIST_NAMES_FILE_PATH), java.nio.charset.StandardCharsets.UTF_8)) {
-            props.load(reader);
-            for (String key : props.stringPropertyNames()) {
-                String val = props.getProperty(key);
-                if (checklistName.equals(key) || checklistName.equals(val)) return true;
-            }
-        } catch (IOException e) {
-            // If file unreadable, assume no match
-        }
-        return false;
+        return checklists.exists(checklistName);
     }
 
     /**
      * Marks the reminder cache as dirty.
      */
     public void markDirty() {
-        remindersDirty = true;
+        // Changes not yet written would be lost to the reload
+        flush();
+        synchronized (this) {
+            remindersDirty = true;
+        }
     }
 
     /**
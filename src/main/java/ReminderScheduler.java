@@ -0,0 +1,176 @@
+/*
+ * Daily Checklist
+ * Copyright (C) 2025 Johan Andersson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the reminder check when the next reminder is due instead of polling.
+ *
+ * After each check one timer is armed for the next instant something can
+ * become due: the next reminder of an unopened checklist, less the
+ * {@link ApplicationConfiguration#REMINDER_LEAD_MINUTES lead time}, or the
+ * next reminder of any checklist, whichever comes first. Adding or removing
+ * a reminder re-arms it, and so does activating the main window. With no
+ * reminders ahead nothing wakes up, except the watchdog every
+ * {@link ApplicationConfiguration#REMINDER_WATCHDOG_MINUTES} minutes, which
+ * runs the check and re-arms. That catches what the armed timer cannot see
+ * coming: a reminder whose checklist was created later, or a change in the
+ * opened checklists.
+ *
+ * A timer thrown off because the wall clock was set or the machine woke from
+ * suspend is caught sooner: every
+ * {@link ApplicationConfiguration#REMINDER_CLOCK_CHECK_SECONDS} seconds the
+ * wall clock is compared with the timer's clock, which costs no reminder
+ * lookup, and the check runs and re-arms when they disagree.
+ *
+ * Checks and re-arming run on the scheduler's own thread, one at a time.
+ */
+final class ReminderScheduler implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(ReminderScheduler.class.getName());
+    // How far the wall clock may move from the timer's clock before the timer is re-armed
+    private static final long DRIFT_TOLERANCE_MS = 1000;
+
+    private final TaskManager taskManager;
+    private final Set<String> openedChecklists;
+    private final Runnable checkReminders;
+    private final ScheduledExecutorService executor;
+    private ScheduledFuture<?> timer; // scheduler thread only
+    private long armedWallMillis;
+    private long armedNanos;
+
+    /**
+     * @param checkReminders queues the due reminders; run on the scheduler thread
+     */
+    ReminderScheduler(TaskManager taskManager, Set<String> openedChecklists, Runnable checkReminders) {
+        this.taskManager = taskManager;
+        this.openedChecklists = openedChecklists;
+        this.checkReminders = checkReminders;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ReminderChecker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Runs the first check and re-arms on every reminder change from now on.
+     */
+    void start() {
+        taskManager.addReminderChangeListener(this::reschedule);
+        long watchdog = ApplicationConfiguration.REMINDER_WATCHDOG_MINUTES;
+        executor.scheduleWithFixedDelay(this::watch, watchdog, watchdog, TimeUnit.MINUTES);
+        long clockCheck = ApplicationConfiguration.REMINDER_CLOCK_CHECK_SECONDS;
+        executor.scheduleWithFixedDelay(this::checkClock, clockCheck, clockCheck, TimeUnit.SECONDS);
+        reschedule();
+    }
+
+    /**
+     * Checks for due reminders and re-arms the timer, soon, on the scheduler thread. Any thread.
+     */
+    void reschedule() {
+        try {
+            executor.execute(this::fire);
+        } catch (RejectedExecutionException e) {
+            // Shut down
+        }
+    }
+
+    private void fire() {
+        try {
+            checkReminders.run();
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Error in reminder task", e);
+        }
+        try {
+            arm();
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Could not schedule the next reminder check", e);
+        }
+    }
+
+    private void arm() {
+        if (timer != null) timer.cancel(false);
+        timer = null;
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDateTime now = LocalDateTime.now();
+        armedWallMillis = System.currentTimeMillis();
+        armedNanos = System.nanoTime();
+        LocalDateTime wake = nextWake(now);
+        if (wake == null) return;
+        // Through the zone, so a daylight saving change in between is accounted for
+        long delay = Math.max(0, Duration.between(now.atZone(zone), wake.atZone(zone)).toMillis());
+        timer = executor.schedule(this::fire, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The next instant a check could find a new due reminder, or null if there is none.
+     */
+    LocalDateTime nextWake(LocalDateTime now) {
+        int lead = ApplicationConfiguration.REMINDER_LEAD_MINUTES;
+        // Unopened checklists: the first reminder past the lead window comes into it
+        LocalDateTime upcoming = taskManager.getNextReminderTime(openedChecklists, now.plusMinutes(lead));
+        LocalDateTime wake = upcoming == null ? null : upcoming.minusMinutes(lead);
+        // Opened checklists are reminded of once the time has passed
+        LocalDateTime overdue = taskManager.getNextReminderTime(null, now);
+        if (overdue != null && (wake == null || overdue.isBefore(wake))) wake = overdue;
+        return wake;
+    }
+
+    void watch() {
+        clockDrift();
+        // Cheap with the reminder index; also re-checks state the timer was not armed for
+        fire();
+    }
+
+    /**
+     * Runs the check and re-arms when the wall clock moved away from the timer's
+     * clock since it was armed. Returns whether it did.
+     */
+    boolean checkClock() {
+        if (clockDrift() == 0) return false;
+        fire();
+        return true;
+    }
+
+    /**
+     * How far the wall clock moved against the timer's clock since arming, or 0
+     * within the tolerance.
+     */
+    private long clockDrift() {
+        long wallElapsed = System.currentTimeMillis() - armedWallMillis;
+        long timerElapsed = (System.nanoTime() - armedNanos) / 1_000_000;
+        long drift = wallElapsed - timerElapsed;
+        if (Math.abs(drift) <= DRIFT_TOLERANCE_MS) return 0;
+        MetricsCollector.record("Reminder timer re-armed after the clock moved " + drift + " ms");
+        return drift;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -22,13 +22,14 @@ public final class ReminderSelector {
     private ReminderSelector() {}
 
     public static Reminder selectReminderForType(TaskManager taskManager, String title) {
-        List<Reminder> reminders = taskManager.getReminders();
         // Do not allow checklist-level reminders for the built-in daily lists
         if (!isDailyChecklistTitle(title)) {
-            Reminder checklistLevel = findChecklistLevelReminder(reminders, title);
+            Reminder checklistLevel = findChecklistLevelReminder(taskManager.getRemindersForChecklistIgnoreCase(title));
             if (checklistLevel != null) return checklistLevel;
+            // Only the daily lists show task reminders here
+            return null;
         }
-        return findEarliestTaskReminderForType(taskManager, reminders, title);
+        return findEarliestTaskReminderForType(taskManager, taskManager.getReminders(), title);
     }
 
     private static boolean isDailyChecklistTitle(String title) {
@@ -36,9 +37,9 @@ public final class ReminderSelector {
         return title.equalsIgnoreCase("Morning") || title.equalsIgnoreCase("Evening");
     }
 
-    private static Reminder findChecklistLevelReminder(List<Reminder> reminders, String title) {
-        for (Reminder r : reminders) {
-            if (r.getTaskId() == null && title.equalsIgnoreCase(r.getChecklistName())) {
+    private static Reminder findChecklistLevelReminder(List<Reminder> ofChecklist) {
+        for (Reminder r : ofChecklist) {
+            if (r.getTaskId() == null) {
                 return r;
             }
         }
@@ -48,9 +49,8 @@ public final class ReminderSelector {
     private static Reminder findEarliestTaskReminderForType(TaskManager taskManager, List<Reminder> reminders, String title) {
         java.time.LocalDateTime best = null;
         Reminder display = null;
-        List<Task> allTasks = taskManager.getAllTasks();
         for (Reminder r : reminders) {
-            Task t = taskForReminder(r, allTasks);
+            Task t = r.getTaskId() == null ? null : taskManager.getTaskById(r.getTaskId());
             if (t == null) continue;
             if (!reminderMatchesType(t, title)) continue;
             java.time.LocalDateTime rt = reminderDateTime(r);
@@ -62,11 +62,6 @@ public final class ReminderSelector {
         return display;
     }
 
-    private static Task taskForReminder(Reminder r, List<Task> allTasks) {
-        if (r.getTaskId() == null) return null;
-        return allTasks.stream().filter(x -> r.getTaskId().equals(x.getId())).findFirst().orElse(null);
-    }
-
     private static boolean reminderMatchesType(Task t, String title) {
         return (title.equalsIgnoreCase("Morning") && t.getType() == TaskType.MORNING)
                 || (title.equalsIgnoreCase("Evening") && t.getType() == TaskType.EVENING);
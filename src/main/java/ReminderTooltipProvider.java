@@ -15,7 +15,6 @@
  * You should have received a copy of the GNU General Public License
  * along with this program. If not, see <https://www.gnu.org/licenses/>.
  */
-import java.util.Objects;
 
 public final class ReminderTooltipProvider {
     private ReminderTooltipProvider() {}
@@ -50,9 +49,7 @@ public final class ReminderTooltipProvider {
         if (relX >= infoStart && relX < noteAreaStart) {
             Reminder found = null;
             if (taskManager != null && t != null && t.getId() != null) {
-                for (Reminder r : taskManager.getReminders()) {
-                    if (Objects.equals(t.getId(), r.getTaskId())) { found = r; break; }
-                }
+                found = taskManager.getReminderForTask(t.getId());
             }
             if (found != null) {
                 String txt = String.format("Reminder: %04d-%02d-%02d %02d:%02d", found.getYear(), found.getMonth(), found.getDay(), found.getHour(), found.getMinute());
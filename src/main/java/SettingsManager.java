@@ -68,7 +68,8 @@ public class SettingsManager {
     public void save(boolean showWeekdayTasks) {
         ApplicationConfiguration.ensureDataDirectoryExists();
         settings.setProperty("showWeekdayTasks", String.valueOf(showWeekdayTasks));
-        settings.setProperty("lastDate", new SimpleDateFormat("yyyy-MM-dd").format(new Date()));
+        lastDate = new SimpleDateFormat("yyyy-MM-dd").format(new Date());
+        settings.setProperty("lastDate", lastDate);
         try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(settingsPath), StandardCharsets.UTF_8)) {
             settings.store(writer, null);
         } catch (IOException e) {
@@ -83,21 +84,15 @@ public class SettingsManager {
         return Boolean.parseBoolean(settings.getProperty("showWeekdayTasks", "false"));
     }
 
-    public void checkDateAndUpdate(TaskManager taskManager, Runnable updateTasks, boolean showWeekdayTasks) {
-        String currentDate = new SimpleDateFormat("yyyy-MM-dd").format(new Date());
-        if (!lastDate.isEmpty() && !currentDate.equals(lastDate)) {
-            // reset all tasks to undone
-            java.util.List<Task> allTasks = taskManager.getAllTasks();
-            for (Task task : allTasks) {
-                if (task.isDone()) {
-                    task.setDone(false);
-                    task.setDoneDate(null);
-                    taskManager.updateTask(task);
-                }
-            }
-            updateTasks.run();
-            lastDate = currentDate;
-            save(showWeekdayTasks);
+    /**
+     * The date the settings were last saved on, i.e. the last day the application
+     * ran, or null on the first run. See {@link DayRollover}.
+     */
+    public java.time.LocalDate getLastDate() {
+        try {
+            return lastDate == null || lastDate.isEmpty() ? null : java.time.LocalDate.parse(lastDate);
+        } catch (java.time.format.DateTimeParseException e) {
+            return null;
         }
     }
 }
\ No newline at end of file
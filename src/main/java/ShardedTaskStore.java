@@ -0,0 +1,320 @@
+/*
+ * Daily Checklist
+ * Copyright (C) 2025 Johan Andersson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Task storage split into one XML file per custom checklist plus one for the
+ * daily (morning / evening) lists, tied together by a small manifest.
+ *
+ * Shard files are never modified: a shard whose content changed is written to
+ * a new file named after the write's generation, and the manifest, written
+ * last with the same temp-file-and-atomic-move pattern, switches to it. A
+ * crash part way through a write therefore leaves the previous manifest and
+ * every file it names intact. Shards whose bytes did not change keep their
+ * file, so editing one checklist rewrites only that checklist's shard and the
+ * manifest. Files no manifest refers to any more are deleted after the switch.
+ *
+ * The manifest is the store's anchor file: it changes on every write, and the
+ * journal, done-state file and snapshot sidecars are bound to it.
+ */
+public class ShardedTaskStore implements TaskStore {
+    public static final String MANIFEST_FILE_NAME = "manifest.xml";
+    private static final String DAILY_SHARD = "daily";
+    private static final String CHECKLIST_SHARD_PREFIX = "checklist:";
+    private static final int MAX_NAME_CHARS = 40;
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    private final Path directory;
+    private final Path manifestPath;
+    private volatile DurabilityMode durabilityMode = DurabilityMode.parse(ApplicationConfiguration.DURABILITY_MODE);
+    // Manifest as last read or written; guarded by this
+    private Manifest manifest;
+
+    public ShardedTaskStore(String directory) {
+        this.directory = Paths.get(directory);
+        this.manifestPath = this.directory.resolve(MANIFEST_FILE_NAME);
+    }
+
+    private static final class Shard {
+        final String key;
+        final String file;
+        final int count;
+        final long length;
+        final long crc;
+
+        Shard(String key, String file, int count, long length, long crc) {
+            this.key = key;
+            this.file = file;
+            this.count = count;
+            this.length = length;
+            this.crc = crc;
+        }
+    }
+
+    private static final class Manifest {
+        static final Manifest EMPTY = new Manifest(0, Collections.emptyList());
+
+        final long generation;
+        final List<Shard> shards;
+
+        Manifest(long generation, List<Shard> shards) {
+            this.generation = generation;
+            this.shards = shards;
+        }
+    }
+
+    @Override
+    public String getFileName() {
+        return manifestPath.toString();
+    }
+
+    @Override
+    public void setDurabilityMode(DurabilityMode durabilityMode) {
+        this.durabilityMode = durabilityMode;
+    }
+
+    @Override
+    public void ensureFileExists() throws Exception {
+        Files.createDirectories(directory);
+        if (!Files.exists(manifestPath)) setAllTasks(new ArrayList<>());
+    }
+
+    /**
+     * Reads the shards named by the manifest, in parallel, and concatenates
+     * them in manifest order.
+     */
+    @Override
+    public synchronized List<Task> parseAllTasks() throws Exception {
+        if (!Files.exists(manifestPath)) return new ArrayList<>();
+        Manifest m = readManifest();
+        for (Shard s : m.shards) {
+            if (!Files.exists(directory.resolve(s.file))) {
+                throw new IOException("Shard " + s.file + " named by " + MANIFEST_FILE_NAME + " is missing");
+            }
+        }
+        List<List<Task>> parts;
+        try {
+            parts = m.shards.parallelStream().map(s -> {
+                try {
+                    return new TaskStaxHandler(directory.resolve(s.file).toString()).parseAllTasks();
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }).collect(Collectors.toList());
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+        List<Task> out = new ArrayList<>();
+        for (List<Task> part : parts) out.addAll(part);
+        manifest = m;
+        return out;
+    }
+
+    /**
+     * Reads the daily shard alone. It is written first, so its tasks are the
+     * leading tasks of {@link #parseAllTasks}.
+     */
+    @Override
+    public synchronized List<Task> parseDailyTasks(List<String> storedIds) throws Exception {
+        if (!Files.exists(manifestPath)) return new ArrayList<>();
+        Manifest m = readManifest();
+        manifest = m;
+        for (int i = 0; i < m.shards.size(); i++) {
+            if (DAILY_SHARD.equals(m.shards.get(i).key)) {
+                if (i != 0) return null;
+                List<Task> daily = new TaskStaxHandler(directory.resolve(m.shards.get(i).file).toString()).parseAllTasks();
+                for (Task t : daily) storedIds.add(t.getId());
+                return daily;
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Writes the shards whose content changed and then the manifest. Returns the
+     * CRC32 of the manifest.
+     */
+    @Override
+    public synchronized long setAllTasks(List<Task> tasks) throws Exception {
+        Files.createDirectories(directory);
+        Manifest previous = manifest;
+        if (previous == null) previous = Files.exists(manifestPath) ? readManifest() : Manifest.EMPTY;
+        Map<String, Shard> previousByKey = new HashMap<>();
+        for (Shard s : previous.shards) previousByKey.put(s.key, s);
+
+        long generation = previous.generation + 1;
+        boolean force = durabilityMode.forcesWrites();
+        List<Shard> shards = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        int rewritten = 0;
+        long bytes = 0;
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(64 * 1024);
+        for (Map.Entry<String, List<Task>> e : group(tasks).entrySet()) {
+            buf.reset();
+            TaskStaxHandler.writeDocument(buf, e.getValue());
+            byte[] content = buf.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            Shard old = previousByKey.get(e.getKey());
+            if (old != null && old.crc == crc.getValue() && old.length == content.length
+                    && Files.exists(directory.resolve(old.file))) {
+                shards.add(old);
+                names.add(old.file);
+                continue;
+            }
+            String file = shardFileName(e.getKey(), generation, names);
+            TaskStaxHandler.writeAtomically(directory.resolve(file), force, os -> os.write(content));
+            shards.add(new Shard(e.getKey(), file, e.getValue().size(), content.length, crc.getValue()));
+            rewritten++;
+            bytes += content.length;
+        }
+
+        Manifest next = new Manifest(generation, shards);
+        long crc = TaskStaxHandler.writeAtomically(manifestPath, force, os -> writeManifest(os, next));
+        manifest = next;
+        deleteUnreferenced(names);
+        MetricsCollector.record("Sharded store generation " + generation + ": rewrote " + rewritten + " of " + shards.size()
+                + " shards (" + bytes + " bytes)");
+        return crc;
+    }
+
+    /**
+     * Daily tasks first, then each checklist by id; tasks keep their relative
+     * order within a shard.
+     */
+    @Override
+    public List<Task> storageOrder(List<Task> tasks) {
+        List<Task> out = new ArrayList<>(tasks.size());
+        for (List<Task> shard : group(tasks).values()) out.addAll(shard);
+        return out;
+    }
+
+    private static Map<String, List<Task>> group(List<Task> tasks) {
+        List<Task> daily = new ArrayList<>();
+        Map<String, List<Task>> checklists = new TreeMap<>();
+        for (Task t : tasks) {
+            String checklistId = t.getChecklistId();
+            if (checklistId == null || checklistId.isEmpty()) daily.add(t);
+            else checklists.computeIfAbsent(CHECKLIST_SHARD_PREFIX + checklistId, k -> new ArrayList<>()).add(t);
+        }
+        Map<String, List<Task>> out = new LinkedHashMap<>();
+        if (!daily.isEmpty()) out.put(DAILY_SHARD, daily);
+        out.putAll(checklists);
+        return out;
+    }
+
+    /**
+     * A file name for a shard, recognisable from its key but safe on every file
+     * system, and unique among the names already taken by this write.
+     */
+    private static String shardFileName(String key, long generation, Set<String> taken) {
+        String base;
+        if (DAILY_SHARD.equals(key)) {
+            base = DAILY_SHARD;
+        } else {
+            String id = key.substring(CHECKLIST_SHARD_PREFIX.length());
+            String safe = id.replaceAll("[^A-Za-z0-9_-]", "_");
+            if (safe.length() > MAX_NAME_CHARS) safe = safe.substring(0, MAX_NAME_CHARS);
+            base = "checklist-" + safe + "-" + Integer.toHexString(id.hashCode());
+        }
+        String name = base + "-" + generation + ".xml";
+        for (int i = 2; !taken.add(name); i++) name = base + "-" + generation + "-" + i + ".xml";
+        return name;
+    }
+
+    private void deleteUnreferenced(Set<String> referenced) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path p : files) {
+                String name = p.getFileName().toString();
+                // The manifest and its sidecars (journal, done state, snapshot) stay
+                if (name.startsWith(MANIFEST_FILE_NAME) || referenced.contains(name)) continue;
+                if (name.endsWith(".xml") || name.contains(".xml.tmp.")) Files.deleteIfExists(p);
+            }
+        } catch (IOException e) {
+            // Stale shards only cost disk space; the next write tries again
+            MetricsCollector.record("Sharded store: could not remove old shards: " + e.getMessage());
+        }
+    }
+
+    private Manifest readManifest() throws IOException {
+        long generation = 0;
+        List<Shard> shards = new ArrayList<>();
+        try (InputStream is = Files.newInputStream(manifestPath)) {
+            XMLStreamReader r = INPUT_FACTORY.createXMLStreamReader(is, "UTF-8");
+            while (r.hasNext()) {
+                if (r.next() != XMLStreamConstants.START_ELEMENT) continue;
+                if ("manifest".equals(r.getLocalName())) {
+                    generation = Long.parseLong(r.getAttributeValue(null, "generation"));
+                } else if ("shard".equals(r.getLocalName())) {
+                    String file = r.getAttributeValue(null, "file");
+                    if (file == null || file.startsWith(".") || file.indexOf('/') >= 0 || file.indexOf('\\') >= 0) {
+                        throw new IOException("Invalid shard file name in " + MANIFEST_FILE_NAME + ": " + file);
+                    }
+                    shards.add(new Shard(r.getAttributeValue(null, "key"), file,
+                            Integer.parseInt(r.getAttributeValue(null, "count")),
+                            Long.parseLong(r.getAttributeValue(null, "length")),
+                            Long.parseLong(r.getAttributeValue(null, "crc"), 16)));
+                }
+            }
+            r.close();
+        } catch (XMLStreamException | RuntimeException e) {
+            throw new IOException("Invalid " + MANIFEST_FILE_NAME + ": " + e.getMessage(), e);
+        }
+        return new Manifest(generation, shards);
+    }
+
+    private static void writeManifest(OutputStream os, Manifest m) throws IOException {
+        StringBuilder sb = new StringBuilder(128 + m.shards.size() * 128);
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<manifest version=\"1\" generation=\"")
+                .append(m.generation).append("\">\n");
+        for (Shard s : m.shards) {
+            sb.append("  <shard key=\"");
+            TaskStaxHandler.escapeXmlToBuilder(s.key, sb);
+            sb.append("\" file=\"");
+            TaskStaxHandler.escapeXmlToBuilder(s.file, sb);
+            sb.append("\" count=\"").append(s.count).append("\" length=\"").append(s.length)
+                    .append("\" crc=\"").append(Long.toHexString(s.crc)).append("\"/>\n");
+        }
+        sb.append("</manifest>\n");
+        os.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
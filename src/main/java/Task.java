@@ -20,19 +20,47 @@ import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
 
+/**
+ * A task or subtask. Fields are kept compact since every task of every list is
+ * held in memory: the id as two longs when it is a UUID, the done date as an
+ * epoch day, type and weekday as byte codes, checklist and parent ids as shared
+ * (pooled) strings, and the subtask list only once one is needed.
+ */
 public class Task {
-    private String doneDate;
-    private String id;
+    /** Epoch day standing for "no done date". */
+    static final int NO_DATE = Integer.MIN_VALUE;
+    private static final TaskType[] TYPES = TaskType.values();
+    private static final byte NO_TYPE = -1;
+    // Weekday spellings seen so far, shared by every task; a task stores the index, 0 for none
+    private static final java.util.Map<String, Integer> WEEKDAY_CODES = new java.util.concurrent.ConcurrentHashMap<>();
+    private static volatile String[] weekdaySpellings = {null};
+    static {
+        for (java.time.DayOfWeek d : java.time.DayOfWeek.values()) {
+            String lower = d.name().toLowerCase(java.util.Locale.ROOT);
+            weekdayCode(Character.toUpperCase(lower.charAt(0)) + lower.substring(1));
+            weekdayCode(lower);
+        }
+    }
+
+    private int doneDay = NO_DATE;
+    private String doneDateText; // A done date read from file that is not yyyy-MM-dd, written back as it was
+    // A canonical (lowercase) UUID id is held as its two halves; any other id as text
+    private long idHigh;
+    private long idLow;
+    private boolean binaryId;
+    private String idText;
     private String name;
-    private TaskType type;
-    private String weekday;
+    private byte typeCode;
+    private byte weekdayCode;
     private boolean done;
     private String checklistId; // Changed from checklistName to checklistId
-    private String note; // Optional note for task/subtask (max 1000 words)
+    private String note; // Optional note for task/subtask (max 1000 words), while held in memory
+    private int noteLength; // Length of the note, also when its text is only in the note store
+    transient TaskNoteStore noteStore; // Where the text is read from when it is not held
 
     // Subtask support
     private String parentId; // null if not a subtask
-    private List<Task> subtasks = new ArrayList<>(); // Only one level of subtasks
+    private List<Task> subtasks; // Only one level of subtasks; allocated on first use
 
     // Transient, runtime-only caches to avoid repeated work during painting
     transient String cachedDisplayFullName;
@@ -40,20 +68,32 @@ public class Task {
     
     // Dirty flags for caching optimization
     transient boolean displayDirty = true;
-    
-    // Lazy date parsing cache
-    transient java.util.Date cachedParsedDoneDate;
 
     // Constructor when loading from file (ID provided)
     public Task(String id, String name, TaskType type, String weekday, boolean done, String doneDate, String checklistId, String parentId) {
-        this.id = id;
+        setId(id);
+        this.name = name;
+        this.typeCode = typeCode(type);
+        this.weekdayCode = weekdayCode(weekday);
+        this.done = done;
+        this.doneDay = parseDay(doneDate);
+        if (doneDay == NO_DATE && doneDate != null && !doneDate.isEmpty()) this.doneDateText = doneDate;
+        this.checklistId = shared(checklistId != null ? checklistId.trim() : null);
+        this.parentId = shared(parentId);
+    }
+
+    // Constructor for records whose UUID id is already in binary form (TaskArena)
+    Task(long idHigh, long idLow, String name, TaskType type, String weekday, boolean done, int doneDay, String checklistId, String parentId) {
+        this.idHigh = idHigh;
+        this.idLow = idLow;
+        this.binaryId = true;
         this.name = name;
-        this.type = type;
-        this.weekday = weekday;
+        this.typeCode = typeCode(type);
+        this.weekdayCode = weekdayCode(weekday);
         this.done = done;
-        this.doneDate = doneDate;
-        this.checklistId = checklistId != null ? checklistId.trim() : null;
-        this.parentId = parentId;
+        this.doneDay = doneDay;
+        this.checklistId = shared(checklistId);
+        this.parentId = shared(parentId);
     }
 
     // Constructor when creating a new task (ID generated)
@@ -63,14 +103,16 @@ public class Task {
     }
 
     public Task(String name, TaskType type, String weekday, String checklistId, String parentId) {
-        this.id = UUID.randomUUID().toString();
+        UUID uuid = UUID.randomUUID();
+        this.idHigh = uuid.getMostSignificantBits();
+        this.idLow = uuid.getLeastSignificantBits();
+        this.binaryId = true;
         this.name = name;
-        this.type = type;
-        this.weekday = weekday;
+        this.typeCode = typeCode(type);
+        this.weekdayCode = weekdayCode(weekday);
         this.done = false;
-        this.doneDate = null;
-        this.checklistId = checklistId != null ? checklistId.trim() : null;
-        this.parentId = parentId;
+        this.checklistId = shared(checklistId != null ? checklistId.trim() : null);
+        this.parentId = shared(parentId);
     }
 
 
@@ -90,10 +132,11 @@ public class Task {
     }
 
     public void setParentId(String parentId) {
-        this.parentId = parentId;
+        this.parentId = shared(parentId);
     }
 
     public List<Task> getSubtasks() {
+        if (subtasks == null) subtasks = new ArrayList<>();
         return subtasks;
     }
 
@@ -124,9 +167,35 @@ public class Task {
 
 
     // Getters and setters
+
+    /**
+     * The id as written to tasks.xml. A UUID id is formatted on each call; use
+     * {@link #hasId(String)} or {@link TaskIdMap} to match ids.
+     */
     public String getId() {
-        return id;
+        return binaryId ? formatId(idHigh, idLow) : idText;
     }
+
+    /**
+     * Whether this task has the given id, without formatting its own.
+     */
+    public boolean hasId(String id) {
+        if (!binaryId) return idText != null && idText.equals(id);
+        return isBinaryId(id) && idHigh(id) == idHigh && idLow(id) == idLow;
+    }
+
+    boolean hasBinaryId() {
+        return binaryId;
+    }
+
+    long idHigh() {
+        return idHigh;
+    }
+
+    long idLow() {
+        return idLow;
+    }
+
     public String getName() {
         return name;
     }
@@ -135,16 +204,16 @@ public class Task {
         this.displayDirty = true; // Mark dirty when name changes
     }
     public TaskType getType() {
-        return type;
+        return typeCode == NO_TYPE ? null : TYPES[typeCode];
     }
     public void setType(TaskType type) {
-        this.type = type;
+        this.typeCode = typeCode(type);
     }
     public String getWeekday() {
-        return weekday;
+        return weekdaySpellings[weekdayCode & 0xFF];
     }
     public void setWeekday(String weekday) {
-        this.weekday = weekday;
+        this.weekdayCode = weekdayCode(weekday);
     }
     public boolean isDone() {
         return done;
@@ -161,18 +230,19 @@ public class Task {
         if (obj == null || getClass() != obj.getClass())
             return false;
         Task other = (Task) obj;
-        return Objects.equals(id, other.id);
+        if (binaryId) return other.binaryId && idHigh == other.idHigh && idLow == other.idLow;
+        return !other.binaryId && Objects.equals(idText, other.idText);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id);
+        return binaryId ? Long.hashCode(idHigh ^ idLow) : Objects.hashCode(idText);
     }
 
     @Override
     public String toString() {
-        return "Task [id=" + id + ", name=" + name + ", type=" + type
-                + ", weekday=" + weekday + ", done=" + done + ", checklistId=" + checklistId + "]";
+        return "Task [id=" + getId() + ", name=" + name + ", type=" + getType()
+                + ", weekday=" + getWeekday() + ", done=" + done + ", checklistId=" + checklistId + "]";
     }
 
     public String getChecklistId() {
@@ -180,37 +250,98 @@ public class Task {
     }
 
     public void setChecklistId(String checklistId) {
-        this.checklistId = checklistId != null ? checklistId.trim() : null;
+        this.checklistId = shared(checklistId != null ? checklistId.trim() : null);
         this.displayDirty = true; // Mark dirty when checklist changes
     }
 
+    /**
+     * The done date on the format 2023-10-01, or null. A date read from file
+     * that cannot be parsed is returned as it was read, so that it survives
+     * the next write, but counts as no date everywhere else.
+     */
     public String getDoneDate() {
-        return doneDate;
+        if (doneDay == NO_DATE) return doneDateText;
+        return java.time.LocalDate.ofEpochDay(doneDay).toString();
+    }
+
+    /**
+     * The done date as read from file when it could not be parsed, else null.
+     */
+    String getUnparsedDoneDate() {
+        return doneDateText;
+    }
+
+    void setUnparsedDoneDate(String text) {
+        this.doneDay = NO_DATE;
+        this.doneDateText = text;
     }
 
     public void setDoneDate(Date doneDate) {
-        //set on the format 2023-10-01
-        if (doneDate != null) {
-            //set on the format 2023-10-01
-            this.doneDate = String.format("%tY-%<tm-%<td", doneDate);
-        } else {
-            this.doneDate = null;
-        }
-        // Invalidate cached parsed date
-        this.cachedParsedDoneDate = null;
+        // The calendar day in the local time zone
+        doneDateText = null;
+        doneDay = doneDate == null ? NO_DATE : Math.toIntExact(java.time.Instant.ofEpochMilli(doneDate.getTime())
+                .atZone(java.time.ZoneId.systemDefault()).toLocalDate().toEpochDay());
+    }
+
+    int getDoneEpochDay() {
+        return doneDay;
     }
 
+    void setDoneEpochDay(int day) {
+        if (day == doneDay) return;
+        this.doneDay = day;
+        this.doneDateText = null;
+    }
+
+    /**
+     * The note text: the one held by this task, else the one in the note store,
+     * which is read on demand.
+     */
     public String getNote() {
-        return note;
+        String held = note;
+        if (held != null || noteLength == 0 || noteStore == null) return held;
+        return noteStore.get(getId());
     }
 
     public void setNote(String note) {
         this.note = note;
+        this.noteLength = note == null ? 0 : note.length();
         this.displayDirty = true;
     }
 
     public boolean hasNote() {
-        return note != null && !note.trim().isEmpty();
+        String held = note;
+        return held != null ? !held.trim().isEmpty() : noteLength > 0;
+    }
+
+    public int getNoteLength() {
+        return noteLength;
+    }
+
+    /**
+     * The note text only if this task holds it (it was read inline or edited and
+     * not yet moved to the note store); never reads the store.
+     */
+    String getHeldNote() {
+        return note;
+    }
+
+    /**
+     * Marks the task's note as living in the note store with the given length.
+     */
+    void setStoredNote(int length, TaskNoteStore store) {
+        this.note = null;
+        this.noteLength = Math.max(0, length);
+        this.noteStore = store;
+        this.displayDirty = true;
+    }
+
+    /**
+     * Drops the held text once the store has it, unless it was edited meanwhile.
+     */
+    void releaseNote(String stored, TaskNoteStore store) {
+        this.noteStore = store;
+        if (note == stored) note = null;
     }
     
     // Cache management methods
@@ -227,19 +358,166 @@ public class Task {
     }
     
     /**
-     * Get the parsed done date, parsing lazily only when needed.
-     * Returns null if doneDate is null or cannot be parsed.
+     * The done date as the start of that day in the local time zone, or null.
      */
     public java.util.Date getParsedDoneDate() {
-        if (doneDate == null) return null;
-        if (cachedParsedDoneDate != null) return cachedParsedDoneDate;
-        
+        if (doneDay == NO_DATE) return null;
+        return Date.from(java.time.LocalDate.ofEpochDay(doneDay).atStartOfDay(java.time.ZoneId.systemDefault()).toInstant());
+    }
+
+    private void setId(String id) {
+        binaryId = isBinaryId(id);
+        if (binaryId) {
+            idHigh = idHigh(id);
+            idLow = idLow(id);
+            idText = null;
+        } else {
+            idText = id;
+        }
+    }
+
+    // Value of each lowercase hex digit, -1 for any other character below 128
+    private static final byte[] HEX_VALUE = new byte[128];
+    private static final byte[] HEX = "0123456789abcdef".getBytes(java.nio.charset.StandardCharsets.ISO_8859_1);
+    static {
+        java.util.Arrays.fill(HEX_VALUE, (byte) -1);
+        for (int i = 0; i < HEX.length; i++) HEX_VALUE[HEX[i]] = (byte) i;
+    }
+
+    /**
+     * Whether the id has the length and dashes of a UUID; the digits are not checked.
+     */
+    static boolean hasIdShape(String id) {
+        return id != null && id.length() == 36
+                && id.charAt(8) == '-' && id.charAt(13) == '-' && id.charAt(18) == '-' && id.charAt(23) == '-';
+    }
+
+    /**
+     * Whether the id is a UUID in the canonical lowercase form, which
+     * {@link #formatId} reproduces exactly.
+     */
+    static boolean isBinaryId(String id) {
+        return hasIdShape(id) && (hex(id, 0, 8) | hex(id, 9, 4) | hex(id, 14, 4) | hex(id, 19, 4) | hex(id, 24, 12)) >= 0;
+    }
+
+    /**
+     * The high half of an id of UUID shape; -1 when a digit is not lowercase hex
+     * (check {@link #isBinaryId} to tell that from an all-f half).
+     */
+    static long idHigh(String id) {
+        long a = hex(id, 0, 8);
+        long b = hex(id, 9, 4);
+        long c = hex(id, 14, 4);
+        return (a | b | c) < 0 ? -1 : a << 32 | b << 16 | c;
+    }
+
+    /**
+     * The low half of an id of UUID shape, -1 like {@link #idHigh}.
+     */
+    static long idLow(String id) {
+        long d = hex(id, 19, 4);
+        long e = hex(id, 24, 12);
+        return (d | e) < 0 ? -1 : d << 48 | e;
+    }
+
+    // Value of count (at most 15) hex digits, -1 if one is not a lowercase hex digit
+    private static long hex(String s, int from, int count) {
+        long v = 0;
+        int bad = 0;
+        for (int i = from, end = from + count; i < end; i++) {
+            char c = s.charAt(i);
+            int d = c < 128 ? HEX_VALUE[c] : -1;
+            bad |= d;
+            v = v << 4 | (d & 0xF);
+        }
+        return bad < 0 ? -1 : v;
+    }
+
+    static String formatId(long high, long low) {
+        byte[] out = new byte[36];
+        formatHalf(high, out, 17);
+        formatHalf(low, out, 35);
+        out[8] = out[13] = out[18] = out[23] = '-';
+        return new String(out, java.nio.charset.StandardCharsets.ISO_8859_1);
+    }
+
+    private static void formatHalf(long v, byte[] out, int last) {
+        for (int i = last, n = 0; n < 16; i--) {
+            if (i == 8 || i == 13 || i == 18 || i == 23) continue;
+            out[i] = HEX[(int) (v & 0xF)];
+            v >>>= 4;
+            n++;
+        }
+    }
+
+    private static byte typeCode(TaskType type) {
+        return type == null ? NO_TYPE : (byte) type.ordinal();
+    }
+
+    /**
+     * Code of a weekday spelling, registering spellings not seen before. The
+     * value domain is tiny; past 255 distinct spellings the rest read back as null.
+     */
+    private static byte weekdayCode(String weekday) {
+        if (weekday == null) return 0;
+        Integer code = WEEKDAY_CODES.get(weekday);
+        if (code == null) {
+            synchronized (WEEKDAY_CODES) {
+                code = WEEKDAY_CODES.get(weekday);
+                if (code == null) {
+                    String[] spellings = weekdaySpellings;
+                    if (spellings.length > 255) return 0;
+                    code = spellings.length;
+                    String[] grown = java.util.Arrays.copyOf(spellings, code + 1);
+                    grown[code] = weekday;
+                    weekdaySpellings = grown;
+                    WEEKDAY_CODES.put(weekday, code);
+                }
+            }
+        }
+        return (byte) (int) code;
+    }
+
+    /**
+     * Parses a yyyy-MM-dd done date into an epoch day; anything else (including
+     * an empty string) is no date.
+     */
+    private static int parseDay(String date) {
+        if (date == null || date.isEmpty()) return NO_DATE;
+        if (date.length() == 10 && date.charAt(4) == '-' && date.charAt(7) == '-') {
+            int year = digits(date, 0, 4);
+            int month = digits(date, 5, 7);
+            int day = digits(date, 8, 10);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                try {
+                    return Math.toIntExact(java.time.LocalDate.of(year, month, day).toEpochDay());
+                } catch (java.time.DateTimeException e) {
+                    return NO_DATE;
+                }
+            }
+        }
         try {
-            cachedParsedDoneDate = new java.text.SimpleDateFormat("yyyy-MM-dd").parse(doneDate);
-            return cachedParsedDoneDate;
-        } catch (java.text.ParseException e) {
-            return null;
+            return Math.toIntExact(java.time.LocalDate.parse(date.trim()).toEpochDay());
+        } catch (RuntimeException e) {
+            return NO_DATE;
         }
     }
+
+    private static int digits(String s, int from, int to) {
+        int v = 0;
+        for (int i = from; i < to; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    /**
+     * Checklist and parent ids repeat across many tasks; keep one instance of each.
+     */
+    private static String shared(String value) {
+        return TaskStringPool.shared(value);
+    }
 }
 
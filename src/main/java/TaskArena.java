@@ -0,0 +1,626 @@
+/*
+ * Daily Checklist
+ * Copyright (C) 2025 Johan Andersson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Task list kept outside the Java heap, for task sets too large to hold as
+ * Task objects.
+ *
+ * Each task is one binary record in a chain of segments: direct ByteBuffers,
+ * or a memory-mapped scratch file that the OS may page out. The heap holds only
+ * the record address of every list position, an id index of primitive arrays
+ * and a table of the few checklist ids and weekdays. A Task is materialised
+ * from its record when read, and a small LRU keeps the views of rows in use
+ * (painted, edited) so repeated reads return the same instance. Writing a task
+ * back appends a new record; space of replaced records is reclaimed by
+ * {@link #compact()} once it outweighs the live records.
+ *
+ * Record layout: [int body length][byte flags][byte type][short weekday]
+ * [int checklist][int done day][int note length][id][parent id][name][note]
+ * [unparsed done date], where ids are two longs when they are UUIDs and strings are [int length][UTF-8].
+ *
+ * Not thread-safe; confine to one thread or guard externally.
+ */
+final class TaskArena implements AutoCloseable {
+    enum Kind { DIRECT, MAPPED }
+
+    private static final int DONE = 1;
+    private static final int BINARY_ID = 2;
+    private static final int HAS_PARENT = 4;
+    private static final int BINARY_PARENT = 8;
+    private static final int HELD_NOTE = 16;
+    private static final int UNPARSED_DATE = 32;
+    private static final int FIXED_SIZE = 4 + 1 + 1 + 2 + 4 + 4 + 4;
+    private static final int NONE = -1;
+    private static final TaskType[] TYPES = TaskType.values();
+
+    private final Kind kind;
+    private final int segmentSize;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private Path file;
+    private FileChannel channel;
+    private long fileEnd;
+    private long usedBytes;
+    private long liveBytes;
+
+    // Record address per list position: segment index in the high int, offset in the low
+    private long[] addresses = new long[16];
+    private int size;
+    private final IdIndex index = new IdIndex();
+    private final Map<String, Long> textIds = new HashMap<>();
+
+    // Checklist ids and weekdays, stored in records by code
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringCodes = new HashMap<>();
+
+    private final Map<Long, Task> views;
+    private byte[] scratch = new byte[256];
+
+    private TaskArena(Kind kind, int segmentSize, int viewCacheEntries) throws IOException {
+        this.kind = kind;
+        this.segmentSize = segmentSize;
+        this.views = new LinkedHashMap<Long, Task>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Task> eldest) {
+                return size() > viewCacheEntries;
+            }
+        };
+        if (kind == Kind.MAPPED) openFile();
+    }
+
+    private void openFile() throws IOException {
+        ApplicationConfiguration.ensureDataDirectoryExists();
+        file = Files.createTempFile(Paths.get(ApplicationConfiguration.APPLICATION_DATA_DIR), "tasks-", ".arena");
+        file.toFile().deleteOnExit();
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        fileEnd = 0;
+    }
+
+    /**
+     * An empty arena of the configured kind (-Ddailychecklist.taskArena=direct|mapped).
+     */
+    static TaskArena create() throws IOException {
+        Kind kind = "mapped".equalsIgnoreCase(ApplicationConfiguration.TASK_ARENA_KIND) ? Kind.MAPPED : Kind.DIRECT;
+        return create(kind);
+    }
+
+    static TaskArena create(Kind kind) throws IOException {
+        return new TaskArena(kind, ApplicationConfiguration.TASK_ARENA_SEGMENT_BYTES, ApplicationConfiguration.TASK_ARENA_VIEW_CACHE_ENTRIES);
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Bytes of records written, live or superseded.
+     */
+    long usedBytes() {
+        return usedBytes;
+    }
+
+    long liveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * The task at the given position, materialised from its record unless a
+     * view of it is still in use.
+     */
+    Task get(int position) {
+        checkIndex(position, size);
+        return view(addresses[position]);
+    }
+
+    /**
+     * The task with the given id (one of them for duplicates), or null.
+     */
+    Task find(String id) {
+        long address = addressOf(id);
+        return address == NONE ? null : view(address);
+    }
+
+    boolean contains(String id) {
+        return addressOf(id) != NONE;
+    }
+
+    void add(Task task) {
+        add(size, task);
+    }
+
+    void addAll(Iterable<Task> tasks) {
+        for (Task t : tasks) add(size, t);
+    }
+
+    void add(int position, Task task) {
+        checkIndex(position, size + 1);
+        long address = write(task);
+        if (size == addresses.length) addresses = Arrays.copyOf(addresses, size * 2);
+        System.arraycopy(addresses, position, addresses, position + 1, size - position);
+        addresses[position] = address;
+        size++;
+        indexPut(task, address);
+    }
+
+    /**
+     * Writes the task back over the one at the given position and keeps it as
+     * the view of that row; returns the previous one. A view changed in place
+     * is only stored once it is set back.
+     */
+    Task set(int position, Task task) {
+        checkIndex(position, size);
+        long old = addresses[position];
+        Task previous = view(old);
+        retire(old, previous);
+        long address = write(task);
+        addresses[position] = address;
+        indexPut(task, address);
+        views.put(address, task);
+        return previous;
+    }
+
+    Task remove(int position) {
+        checkIndex(position, size);
+        long old = addresses[position];
+        Task previous = view(old);
+        retire(old, previous);
+        System.arraycopy(addresses, position + 1, addresses, position, size - position - 1);
+        size--;
+        return previous;
+    }
+
+    void clear() {
+        releaseSegments();
+        size = 0;
+        index.clear();
+        textIds.clear();
+        views.clear();
+        usedBytes = 0;
+        liveBytes = 0;
+    }
+
+    /**
+     * A List view backed by this arena; reads materialise tasks, writes append records.
+     */
+    List<Task> asList() {
+        return new ArenaList();
+    }
+
+    /**
+     * Copies the live records into fresh segments (and a fresh scratch file)
+     * once superseded ones outweigh them, returning whether it did. Records are
+     * copied as bytes; no task is materialised.
+     */
+    boolean compact() throws IOException {
+        long garbage = usedBytes - liveBytes;
+        if (garbage < segmentSize || garbage < liveBytes) return false;
+        long start = System.nanoTime();
+        List<ByteBuffer> oldSegments = new ArrayList<>(segments);
+        FileChannel oldChannel = channel;
+        Path oldFile = file;
+        segments.clear();
+        usedBytes = 0;
+        if (kind == Kind.MAPPED) openFile();
+        index.clear();
+        textIds.clear();
+        views.clear();
+        for (int i = 0; i < size; i++) {
+            ByteBuffer from = oldSegments.get((int) (addresses[i] >>> 32));
+            int p = (int) addresses[i];
+            int length = from.getInt(p);
+            if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+            from.get(p, scratch, 0, length);
+            long address = reserve(length);
+            segments.get((int) (address >>> 32)).put((int) address, scratch, 0, length);
+            addresses[i] = address;
+            indexRecord(address);
+        }
+        liveBytes = usedBytes;
+        for (ByteBuffer b : oldSegments) TaskXmlFastReader.unmap(b);
+        if (oldChannel != null) {
+            oldChannel.close();
+            Files.deleteIfExists(oldFile);
+        }
+        MetricsCollector.record("Task arena compacted to " + size + " records (" + usedBytes + " bytes) in "
+                + ((System.nanoTime() - start) / 1_000_000.0) + " ms");
+        return true;
+    }
+
+    @Override
+    public void close() {
+        clear();
+        if (channel != null) {
+            try {
+                channel.close();
+                Files.deleteIfExists(file);
+            } catch (IOException ignore) {
+                // The scratch file is also removed on exit
+            }
+        }
+    }
+
+    private void retire(long address, Task task) {
+        views.remove(address);
+        liveBytes -= recordLength(address);
+        // With duplicate ids the index follows the last one written while it lives
+        if (task.hasBinaryId()) {
+            if (index.get(task.idHigh(), task.idLow()) == address) index.remove(task.idHigh(), task.idLow());
+        } else if (task.getId() != null) {
+            textIds.remove(task.getId(), address);
+        }
+    }
+
+    private void indexPut(Task task, long address) {
+        if (task.hasBinaryId()) index.put(task.idHigh(), task.idLow(), address);
+        else if (task.getId() != null) textIds.put(task.getId(), address);
+    }
+
+    private void indexRecord(long address) {
+        ByteBuffer buf = segments.get((int) (address >>> 32));
+        int p = (int) address;
+        if ((buf.get(p + 4) & BINARY_ID) != 0) {
+            index.put(buf.getLong(p + FIXED_SIZE), buf.getLong(p + FIXED_SIZE + 8), address);
+        } else {
+            String id = readString(buf, p + FIXED_SIZE);
+            if (id != null) textIds.put(id, address);
+        }
+    }
+
+    private long addressOf(String id) {
+        if (Task.hasIdShape(id)) {
+            long high = Task.idHigh(id);
+            long low = Task.idLow(id);
+            if (TaskIdMap.parsed(id, high, low)) return index.get(high, low);
+        }
+        Long a = id == null ? null : textIds.get(id);
+        return a == null ? NONE : a;
+    }
+
+    // ---- records ----
+
+    private long write(Task task) {
+        byte[] name = utf8(task.getName());
+        String held = task.getHeldNote();
+        byte[] note = utf8(held);
+        byte[] id = task.hasBinaryId() ? null : utf8(task.getId());
+        String parentId = task.getParentId();
+        boolean binaryParent = Task.isBinaryId(parentId);
+        byte[] parent = parentId == null || binaryParent ? null : utf8(parentId);
+        byte[] unparsed = utf8(task.getUnparsedDoneDate());
+
+        int flags = (task.isDone() ? DONE : 0) | (task.hasBinaryId() ? BINARY_ID : 0)
+                | (parentId != null ? HAS_PARENT : 0) | (binaryParent ? BINARY_PARENT : 0) | (held != null ? HELD_NOTE : 0)
+                | (unparsed != null ? UNPARSED_DATE : 0);
+        int length = FIXED_SIZE + (id == null ? 16 : stringSize(id)) + (parentId == null ? 0 : parent == null ? 16 : stringSize(parent))
+                + stringSize(name) + (held != null ? stringSize(note) : 0) + (unparsed != null ? stringSize(unparsed) : 0);
+
+        long address = reserve(length);
+        ByteBuffer buf = segments.get((int) (address >>> 32));
+        int p = (int) address;
+        buf.putInt(p, length);
+        buf.put(p + 4, (byte) flags);
+        buf.put(p + 5, (byte) (task.getType() == null ? NONE : task.getType().ordinal()));
+        buf.putShort(p + 6, (short) code(task.getWeekday()));
+        buf.putInt(p + 8, code(task.getChecklistId()));
+        buf.putInt(p + 12, task.getDoneEpochDay());
+        buf.putInt(p + 16, held == null ? task.getNoteLength() : 0);
+        p += FIXED_SIZE;
+        if (id == null) {
+            buf.putLong(p, task.idHigh());
+            buf.putLong(p + 8, task.idLow());
+            p += 16;
+        } else {
+            p = putString(buf, p, id);
+        }
+        if (binaryParent) {
+            buf.putLong(p, Task.idHigh(parentId));
+            buf.putLong(p + 8, Task.idLow(parentId));
+            p += 16;
+        } else if (parent != null) {
+            p = putString(buf, p, parent);
+        }
+        p = putString(buf, p, name);
+        if (held != null) p = putString(buf, p, note);
+        if (unparsed != null) putString(buf, p, unparsed);
+        liveBytes += length;
+        return address;
+    }
+
+    private Task view(long address) {
+        Task cached = views.get(address);
+        if (cached != null) return cached;
+        Task task = read(address);
+        views.put(address, task);
+        return task;
+    }
+
+    private Task read(long address) {
+        ByteBuffer buf = segments.get((int) (address >>> 32));
+        int p = (int) address;
+        int flags = buf.get(p + 4);
+        int typeOrdinal = buf.get(p + 5);
+        String weekday = string(buf.getShort(p + 6));
+        String checklistId = string(buf.getInt(p + 8));
+        int doneDay = buf.getInt(p + 12);
+        int noteLength = buf.getInt(p + 16);
+        p += FIXED_SIZE;
+        long high = 0;
+        long low = 0;
+        String id = null;
+        if ((flags & BINARY_ID) != 0) {
+            high = buf.getLong(p);
+            low = buf.getLong(p + 8);
+            p += 16;
+        } else {
+            id = readString(buf, p);
+            p += stringSize(buf, p);
+        }
+        String parentId = null;
+        if ((flags & BINARY_PARENT) != 0) {
+            parentId = Task.formatId(buf.getLong(p), buf.getLong(p + 8));
+            p += 16;
+        } else if ((flags & HAS_PARENT) != 0) {
+            parentId = readString(buf, p);
+            p += stringSize(buf, p);
+        }
+        String name = readString(buf, p);
+        p += stringSize(buf, p);
+        TaskType type = typeOrdinal >= 0 && typeOrdinal < TYPES.length ? TYPES[typeOrdinal] : null;
+        boolean done = (flags & DONE) != 0;
+        Task task = (flags & BINARY_ID) != 0
+                ? new Task(high, low, name, type, weekday, done, doneDay, checklistId, parentId)
+                : new Task(id, name, type, weekday, done, null, checklistId, parentId);
+        task.setDoneEpochDay(doneDay);
+        if ((flags & HELD_NOTE) != 0) {
+            task.setNote(readString(buf, p));
+            p += stringSize(buf, p);
+        } else if (noteLength > 0) {
+            task.setStoredNote(noteLength, null);
+        }
+        if ((flags & UNPARSED_DATE) != 0) task.setUnparsedDoneDate(readString(buf, p));
+        return task;
+    }
+
+    private int recordLength(long address) {
+        return segments.get((int) (address >>> 32)).getInt((int) address);
+    }
+
+    /**
+     * Room for a record of the given length; a record never spans segments.
+     */
+    private long reserve(int length) {
+        ByteBuffer last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (last == null || last.capacity() - last.position() < length) {
+            last = allocate(Math.max(segmentSize, length));
+            segments.add(last);
+        }
+        int offset = last.position();
+        last.position(offset + length);
+        usedBytes += length;
+        return ((long) (segments.size() - 1) << 32) | offset;
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        if (kind == Kind.DIRECT) return ByteBuffer.allocateDirect(capacity);
+        try {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, fileEnd, capacity);
+            fileEnd += capacity;
+            return mapped;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not extend the task arena file", e);
+        }
+    }
+
+    private void releaseSegments() {
+        for (ByteBuffer b : segments) TaskXmlFastReader.unmap(b);
+        segments.clear();
+        if (channel != null) {
+            try {
+                channel.truncate(0);
+            } catch (IOException ignore) {
+                // Reused from the start either way
+            }
+            fileEnd = 0;
+        }
+    }
+
+    private int code(String value) {
+        if (value == null) return NONE;
+        Integer code = stringCodes.get(value);
+        if (code == null) {
+            code = strings.size();
+            strings.add(value);
+            stringCodes.put(value, code);
+        }
+        return code;
+    }
+
+    private String string(int code) {
+        return code < 0 ? null : strings.get(code);
+    }
+
+    private static byte[] utf8(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int stringSize(byte[] b) {
+        return 4 + (b == null ? 0 : b.length);
+    }
+
+    private static int stringSize(ByteBuffer buf, int p) {
+        return 4 + Math.max(0, buf.getInt(p));
+    }
+
+    private static int putString(ByteBuffer buf, int p, byte[] b) {
+        if (b == null) {
+            buf.putInt(p, NONE);
+            return p + 4;
+        }
+        buf.putInt(p, b.length);
+        buf.put(p + 4, b);
+        return p + 4 + b.length;
+    }
+
+    private String readString(ByteBuffer buf, int p) {
+        int len = buf.getInt(p);
+        if (len < 0) return null;
+        if (scratch.length < len) scratch = new byte[Math.max(len, scratch.length * 2)];
+        buf.get(p + 4, scratch, 0, len);
+        return new String(scratch, 0, len, StandardCharsets.UTF_8);
+    }
+
+    private static void checkIndex(int position, int bound) {
+        if (position < 0 || position >= bound) throw new IndexOutOfBoundsException("Index " + position + ", size " + bound);
+    }
+
+    private final class ArenaList extends AbstractList<Task> implements RandomAccess {
+        @Override
+        public Task get(int index) {
+            return TaskArena.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Task set(int index, Task task) {
+            return TaskArena.this.set(index, task);
+        }
+
+        @Override
+        public void add(int index, Task task) {
+            TaskArena.this.add(index, task);
+            modCount++;
+        }
+
+        @Override
+        public Task remove(int index) {
+            Task previous = TaskArena.this.remove(index);
+            modCount++;
+            return previous;
+        }
+
+        @Override
+        public void clear() {
+            TaskArena.this.clear();
+            modCount++;
+        }
+    }
+
+    /**
+     * Open-addressing map from the two halves of a UUID id to a record address,
+     * in primitive arrays (linear probing, backward-shift deletion).
+     */
+    private static final class IdIndex {
+        private long[] keys = new long[32];
+        private long[] values = new long[16];
+        private boolean[] used = new boolean[16];
+        private int count;
+
+        long get(long high, long low) {
+            int slot = find(high, low);
+            return slot < 0 ? NONE : values[slot];
+        }
+
+        void put(long high, long low, long value) {
+            int slot = find(high, low);
+            if (slot < 0) {
+                if ((count + 1) * 4L > used.length * 3L) grow();
+                slot = home(high, low);
+                while (used[slot]) slot = (slot + 1) & (used.length - 1);
+                used[slot] = true;
+                keys[2 * slot] = high;
+                keys[2 * slot + 1] = low;
+                count++;
+            }
+            values[slot] = value;
+        }
+
+        void remove(long high, long low) {
+            int slot = find(high, low);
+            if (slot < 0) return;
+            int mask = used.length - 1;
+            int gap = slot;
+            for (int next = (gap + 1) & mask; used[next]; next = (next + 1) & mask) {
+                int home = home(keys[2 * next], keys[2 * next + 1]);
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    keys[2 * gap] = keys[2 * next];
+                    keys[2 * gap + 1] = keys[2 * next + 1];
+                    values[gap] = values[next];
+                    gap = next;
+                }
+            }
+            used[gap] = false;
+            count--;
+        }
+
+        void clear() {
+            Arrays.fill(used, false);
+            count = 0;
+        }
+
+        private int find(long high, long low) {
+            int mask = used.length - 1;
+            for (int slot = home(high, low); used[slot]; slot = (slot + 1) & mask) {
+                if (keys[2 * slot] == high && keys[2 * slot + 1] == low) return slot;
+            }
+            return -1;
+        }
+
+        private int home(long high, long low) {
+            return (int) TaskIdMap.hash(high, low) & (used.length - 1);
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            values = new long[oldValues.length * 2];
+            used = new boolean[oldUsed.length * 2];
+            count = 0;
+            for (int i = 0; i < oldUsed.length; i++) {
+                if (oldUsed[i]) put(oldKeys[2 * i], oldKeys[2 * i + 1], oldValues[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Daily Checklist
+ * Copyright (C) 2025 Johan Andersson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Done flags of the tasks in tasks.xml, kept in their own fixed-width file so
+ * ticking a task off rewrites 8 bytes instead of the task.
+ *
+ * Slot i holds the done state of the i-th task of tasks.xml as last written in
+ * full; the header names that tasks.xml by length and modification time, and a
+ * file describing any other tasks.xml is ignored. Each record is a state byte
+ * (unset / not done / done), three padding bytes and the done date as an epoch
+ * day. Records are updated in place with positional writes.
+ *
+ * The file is authoritative for the done state of slotted tasks: it is applied
+ * on top of tasks.xml and the journal when loading. A change is only written
+ * here when nothing but done / doneDate differs from what was last persisted
+ * for the task; anything else goes to the journal, and the slot is refreshed
+ * alongside so the two never disagree.
+ */
+public class TaskDoneStateFile {
+    private static final int MAGIC = 0x44434431; // "DCD1"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 8;
+    private static final byte UNSET = 0;
+    private static final byte NOT_DONE = 1;
+    private static final byte DONE = 2;
+    private static final int NO_DATE = Task.NO_DATE;
+
+    private final Path path;
+    private FileChannel channel;
+    // Task id -> slot, for the tasks.xml the file currently describes
+    private final Map<String, Integer> slots = new HashMap<>();
+    // Definition fields of each slotted task as last persisted
+    private final Map<String, ColdFields> persisted = new HashMap<>();
+    // Slot records read at attach, applied by overlay
+    private ByteBuffer loadedRecords;
+    private String[] loadedIds;
+
+    public TaskDoneStateFile(String dataFileName) {
+        this.path = Paths.get(dataFileName + ApplicationConfiguration.DONE_STATE_FILE_SUFFIX);
+    }
+
+    /**
+     * Everything about a task except its done state.
+     */
+    private static final class ColdFields {
+        final String name;
+        final TaskType type;
+        final String weekday;
+        final String checklistId;
+        final String parentId;
+        final String note;
+        final int noteLength;
+
+        ColdFields(Task t) {
+            this.name = t.getName();
+            this.type = t.getType();
+            this.weekday = t.getWeekday();
+            this.checklistId = t.getChecklistId();
+            this.parentId = t.getParentId();
+            // Compared without reading notes that live in the note store
+            this.note = t.getHeldNote();
+            this.noteLength = t.getNoteLength();
+        }
+
+        boolean matches(Task t) {
+            return Objects.equals(name, t.getName()) && type == t.getType() && Objects.equals(weekday, t.getWeekday())
+                    && Objects.equals(checklistId, t.getChecklistId()) && Objects.equals(parentId, t.getParentId())
+                    && Objects.equals(note, t.getHeldNote()) && noteLength == t.getNoteLength();
+        }
+    }
+
+    /**
+     * Binds the file to the tasks of a freshly parsed tasks.xml, in file order.
+     * When the file describes that tasks.xml its records are kept for
+     * {@link #overlay}; otherwise it is rewritten from the given tasks.
+     */
+    public synchronized void attach(List<Task> base, long xmlLength, long xmlModified) throws IOException {
+        slots.clear();
+        persisted.clear();
+        loadedRecords = null;
+        loadedIds = null;
+        ensureChannel();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0);
+        header.flip();
+        boolean matches = header.remaining() == HEADER_SIZE && header.getInt() == MAGIC && header.getShort() == VERSION
+                && header.getLong() == xmlLength && header.getLong() == xmlModified && header.getInt() == base.size();
+        if (!matches) {
+            rewrite(base, xmlLength, xmlModified);
+            return;
+        }
+        ByteBuffer records = ByteBuffer.allocate(base.size() * RECORD_SIZE);
+        readFully(records, HEADER_SIZE);
+        records.flip();
+        loadedRecords = records;
+        loadedIds = new String[base.size()];
+        for (int i = 0; i < base.size(); i++) {
+            loadedIds[i] = base.get(i).getId();
+            slots.putIfAbsent(loadedIds[i], i);
+        }
+    }
+
+    /**
+     * Applies the records read by {@link #attach} to the fully loaded task list
+     * (tasks.xml plus journal) and remembers what was persisted for each task.
+     */
+    public synchronized void overlay(List<Task> loaded) {
+        Map<String, Task> byId = new HashMap<>(loaded.size() * 4 / 3 + 1);
+        for (Task t : loaded) byId.putIfAbsent(t.getId(), t);
+        int applied = 0;
+        if (loadedRecords != null) {
+            for (int i = 0; i < loadedIds.length && (i + 1) * RECORD_SIZE <= loadedRecords.limit(); i++) {
+                byte state = loadedRecords.get(i * RECORD_SIZE);
+                if (state == UNSET) continue;
+                Task t = byId.get(loadedIds[i]);
+                if (t == null || slots.get(t.getId()) != i) continue;
+                boolean done = state == DONE;
+                int day = loadedRecords.getInt(i * RECORD_SIZE + 4);
+                if (t.isDone() != done || t.getDoneEpochDay() != day) {
+                    t.setDone(done);
+                    t.setDoneEpochDay(day);
+                    applied++;
+                }
+            }
+        }
+        loadedRecords = null;
+        loadedIds = null;
+        for (String id : slots.keySet()) {
+            Task t = byId.get(id);
+            if (t != null) persisted.put(id, new ColdFields(t));
+        }
+        if (applied > 0) MetricsCollector.record("Applied " + applied + " done states from " + path.getFileName());
+    }
+
+    /**
+     * Read-only {@link #attach} plus {@link #overlay} for the first slots only:
+     * applies the records of {@code prefix}, the ids of the leading tasks of the
+     * base file in file order, to the matching tasks of {@code loaded}. Used to
+     * show part of the task list before all of it is read; nothing is bound or
+     * rewritten.
+     */
+    public synchronized void overlayPrefix(List<String> prefix, List<Task> loaded, long xmlLength, long xmlModified) throws IOException {
+        if (!Files.exists(path)) return;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && ch.read(header, header.position()) > 0) {}
+            header.flip();
+            if (header.remaining() != HEADER_SIZE || header.getInt() != MAGIC || header.getShort() != VERSION
+                    || header.getLong() != xmlLength || header.getLong() != xmlModified || header.getInt() < prefix.size()) {
+                return;
+            }
+            ByteBuffer records = ByteBuffer.allocate(prefix.size() * RECORD_SIZE);
+            while (records.hasRemaining() && ch.read(records, HEADER_SIZE + records.position()) > 0) {}
+            records.flip();
+            Map<String, Task> byId = new HashMap<>(loaded.size() * 4 / 3 + 1);
+            for (Task t : loaded) byId.putIfAbsent(t.getId(), t);
+            Map<String, Integer> first = new HashMap<>(prefix.size() * 4 / 3 + 1);
+            for (int i = 0; i < prefix.size() && (i + 1) * RECORD_SIZE <= records.limit(); i++) {
+                String id = prefix.get(i);
+                if (first.putIfAbsent(id, i) != null) continue;
+                byte state = records.get(i * RECORD_SIZE);
+                Task t = byId.get(id);
+                if (state == UNSET || t == null) continue;
+                int day = records.getInt(i * RECORD_SIZE + 4);
+                t.setDone(state == DONE);
+                t.setDoneEpochDay(day);
+            }
+        }
+    }
+
+    /**
+     * Writes the task's done state into its slot if that is the only thing that
+     * changed since it was last persisted. Returns false when the task has to go
+     * through the journal instead.
+     */
+    public synchronized boolean writeIfDoneOnly(Task task) throws IOException {
+        Integer slot = slots.get(task.getId());
+        if (slot == null) return false;
+        ColdFields last = persisted.get(task.getId());
+        if (last == null || !last.matches(task)) return false;
+        writeFully(encode(task), HEADER_SIZE + (long) slot * RECORD_SIZE);
+        return true;
+    }
+
+    /**
+     * Records that the given tasks were written to the journal: their slots get
+     * the same done state, and their definitions become the persisted baseline.
+     */
+    public synchronized void written(Collection<Task> tasks) throws IOException {
+        for (Task t : tasks) {
+            Integer slot = slots.get(t.getId());
+            if (slot == null) continue;
+            writeFully(encode(t), HEADER_SIZE + (long) slot * RECORD_SIZE);
+            persisted.put(t.getId(), new ColdFields(t));
+        }
+    }
+
+    /**
+     * Forgets removed tasks so a later task with the same id does not reuse the slot.
+     */
+    public synchronized void removed(Collection<String> ids) throws IOException {
+        for (String id : ids) {
+            Integer slot = slots.remove(id);
+            persisted.remove(id);
+            if (slot != null) writeFully(ByteBuffer.allocate(RECORD_SIZE), HEADER_SIZE + (long) slot * RECORD_SIZE);
+        }
+    }
+
+    /**
+     * Rebinds the file to a tasks.xml that was just written in full from the
+     * given tasks.
+     */
+    public synchronized void rebase(List<Task> written, long xmlLength, long xmlModified) throws IOException {
+        slots.clear();
+        persisted.clear();
+        ensureChannel();
+        rewrite(written, xmlLength, xmlModified);
+        for (Task t : written) {
+            if (slots.containsKey(t.getId())) persisted.put(t.getId(), new ColdFields(t));
+        }
+    }
+
+    public synchronized void force() throws IOException {
+        if (channel != null && channel.isOpen()) channel.force(false);
+    }
+
+    /**
+     * Drops the file after a failure, so records that may have fallen behind the
+     * journal are never applied. Until the next attach every write uses the journal.
+     */
+    public synchronized void discard() {
+        close();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignore) {}
+    }
+
+    public synchronized void close() {
+        if (channel != null) {
+            try { channel.close(); } catch (IOException ignore) {}
+            channel = null;
+        }
+        slots.clear();
+        persisted.clear();
+    }
+
+    private void rewrite(List<Task> tasks, long xmlLength, long xmlModified) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + tasks.size() * RECORD_SIZE);
+        buf.putInt(MAGIC);
+        buf.putShort(VERSION);
+        buf.putLong(xmlLength);
+        buf.putLong(xmlModified);
+        buf.putInt(tasks.size());
+        buf.position(HEADER_SIZE);
+        int i = 0;
+        for (Task t : tasks) {
+            buf.put(encode(t));
+            slots.putIfAbsent(t.getId(), i++);
+        }
+        buf.flip();
+        channel.truncate(0);
+        writeFully(buf, 0);
+    }
+
+    /**
+     * Encodes a task's done state.
+     */
+    private static ByteBuffer encode(Task t) {
+        int day = t.getDoneEpochDay();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.put(0, t.isDone() ? DONE : NOT_DONE);
+        record.putInt(4, day);
+        return record;
+    }
+
+    private void ensureChannel() throws IOException {
+        if (channel != null && channel.isOpen()) return;
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private void readFully(ByteBuffer buf, long position) throws IOException {
+        long pos = position;
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, pos);
+            if (n < 0) break;
+            pos += n;
+        }
+    }
+
+    private void writeFully(ByteBuffer buf, long position) throws IOException {
+        ensureChannel();
+        long pos = position;
+        while (buf.hasRemaining()) pos += channel.write(buf, pos);
+    }
+}
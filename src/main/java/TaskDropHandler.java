@@ -131,15 +131,15 @@ public final class TaskDropHandler {
 
     private static boolean persistUsingFallback(List<Task> toPersist, Task target, int insertOffset, TaskManager taskManager, Runnable updateAllPanels) {
         java.util.List<Task> all = new java.util.ArrayList<>(taskManager.getAllTasks());
-        for (Task t : toPersist) all.removeIf(x -> x.getId().equals(t.getId()));
+        for (Task t : toPersist) all.removeIf(x -> x.equals(t));
         int targetIdx = -1;
-        for (int i = 0; i < all.size(); i++) if (all.get(i).getId().equals(target.getId())) { targetIdx = i; break; }
+        for (int i = 0; i < all.size(); i++) if (all.get(i).equals(target)) { targetIdx = i; break; }
         int insertAt;
         if (targetIdx == -1) insertAt = all.size();
         else if (insertOffset >= 0) insertAt = Math.max(0, Math.min(all.size(), targetIdx + 1 + insertOffset));
         else {
             insertAt = targetIdx + 1;
-            while (insertAt < all.size() && target.getId().equals(all.get(insertAt).getParentId())) insertAt++;
+            while (insertAt < all.size() && target.hasId(all.get(insertAt).getParentId())) insertAt++;
         }
         DebugLog.d("persistUsingFallback: insertAt=%d toPersist=%s", insertAt, toPersist.toString());
         all.addAll(insertAt, toPersist);
@@ -172,7 +172,7 @@ public final class TaskDropHandler {
     }
 
     private static int findModelIndex(javax.swing.DefaultListModel<Task> model, String id) {
-        for (int i = 0; i < model.getSize(); i++) if (model.get(i).getId().equals(id)) return i;
+        for (int i = 0; i < model.getSize(); i++) if (model.get(i).hasId(id)) return i;
         return -1;
     }
 
@@ -185,7 +185,7 @@ public final class TaskDropHandler {
             return idx;
         }
         int idx = parentModelIndex + 1;
-        while (idx < model.getSize() && target.getId().equals(model.get(idx).getParentId())) idx++;
+        while (idx < model.getSize() && target.hasId(model.get(idx).getParentId())) idx++;
         return idx;
     }
 
@@ -193,7 +193,7 @@ public final class TaskDropHandler {
 
     private static boolean wouldCreateSelfParenting(TransferData transferData, Task target) {
         for (Task moved : transferData.tasks) {
-            if (moved.getId().equals(target.getId())) return true;
+            if (moved.equals(target)) return true;
         }
         return false;
     }
@@ -0,0 +1,236 @@
+/*
+ * Daily Checklist
+ * Copyright (C) 2025 Johan Andersson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+import java.util.HashMap;
+
+/**
+ * Map keyed by task id. UUID ids are held as their two 64-bit halves in an
+ * open-addressing table (linear probing, backward-shift deletion), so a lookup
+ * neither hashes nor compares 36-char strings and no entry objects are
+ * allocated. Ids that are not canonical UUIDs (hand-edited files, old data)
+ * go to a plain HashMap on the side.
+ *
+ * String keys are parsed on the fly without allocating; Task keys use the
+ * halves the task already holds. Null keys and null values are not stored.
+ * Not thread-safe.
+ */
+final class TaskIdMap<V> {
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] keys; // high and low half of the id in the slot, interleaved
+    private Object[] values; // null marks a free slot
+    private int count;
+    private HashMap<String, V> other;
+
+    TaskIdMap() {
+        this(0);
+    }
+
+    TaskIdMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    private TaskIdMap(TaskIdMap<V> source) {
+        this.keys = source.keys.clone();
+        this.values = source.values.clone();
+        this.count = source.count;
+        this.other = source.other == null ? null : new HashMap<>(source.other);
+    }
+
+    /**
+     * Spreads an id over the table; random UUIDs are well mixed already, but
+     * ids from other generators need not be.
+     */
+    static long hash(long high, long low) {
+        long h = (high ^ Long.rotateLeft(low, 32)) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * Whether an id of UUID shape parsed to the given halves is canonical; an
+     * all-f half reads like a bad digit, so only then is the id checked again.
+     */
+    static boolean parsed(String id, long high, long low) {
+        return (high != -1 && low != -1) || Task.isBinaryId(id);
+    }
+
+    V get(String id) {
+        if (Task.hasIdShape(id)) {
+            long high = Task.idHigh(id);
+            long low = Task.idLow(id);
+            if (parsed(id, high, low)) return get(high, low);
+        }
+        return id == null || other == null ? null : other.get(id);
+    }
+
+    V get(Task task) {
+        if (task.hasBinaryId()) return get(task.idHigh(), task.idLow());
+        String id = task.getId();
+        return id == null || other == null ? null : other.get(id);
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long high, long low) {
+        int slot = find(high, low);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    boolean containsKey(String id) {
+        return get(id) != null;
+    }
+
+    boolean containsKey(Task task) {
+        return get(task) != null;
+    }
+
+    /**
+     * Associates the value with the id, returning the previous value or null.
+     */
+    V put(String id, V value) {
+        if (id == null || value == null) return null;
+        if (!Task.isBinaryId(id)) return otherMap().put(id, value);
+        return put(Task.idHigh(id), Task.idLow(id), value);
+    }
+
+    V put(Task task, V value) {
+        if (task.hasBinaryId()) return value == null ? null : put(task.idHigh(), task.idLow(), value);
+        return put(task.getId(), value);
+    }
+
+    V putIfAbsent(Task task, V value) {
+        V existing = get(task);
+        return existing != null ? existing : put(task, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    V put(long high, long low, V value) {
+        int slot = find(high, low);
+        if (slot >= 0) {
+            V previous = (V) values[slot];
+            values[slot] = value;
+            return previous;
+        }
+        if ((count + 1) * 4L > values.length * 3L) allocate(values.length * 2);
+        slot = insertionSlot(high, low);
+        keys[2 * slot] = high;
+        keys[2 * slot + 1] = low;
+        values[slot] = value;
+        count++;
+        return null;
+    }
+
+    V remove(String id) {
+        if (id == null) return null;
+        if (!Task.isBinaryId(id)) return other == null ? null : other.remove(id);
+        return remove(Task.idHigh(id), Task.idLow(id));
+    }
+
+    V remove(Task task) {
+        if (task.hasBinaryId()) return remove(task.idHigh(), task.idLow());
+        return remove(task.getId());
+    }
+
+    @SuppressWarnings("unchecked")
+    V remove(long high, long low) {
+        int slot = find(high, low);
+        if (slot < 0) return null;
+        V previous = (V) values[slot];
+        deleteSlot(slot);
+        count--;
+        return previous;
+    }
+
+    int size() {
+        return count + (other == null ? 0 : other.size());
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * An independent copy; used by copy-on-write holders.
+     */
+    TaskIdMap<V> copy() {
+        return new TaskIdMap<>(this);
+    }
+
+    private int find(long high, long low) {
+        int mask = values.length - 1;
+        int slot = (int) hash(high, low) & mask;
+        while (values[slot] != null) {
+            if (keys[2 * slot] == high && keys[2 * slot + 1] == low) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int insertionSlot(long high, long low) {
+        int mask = values.length - 1;
+        int slot = (int) hash(high, low) & mask;
+        while (values[slot] != null) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * Frees a slot and shifts later members of its probe run back, so lookups
+     * never need tombstones.
+     */
+    private void deleteSlot(int slot) {
+        int mask = values.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (values[next] != null) {
+            int home = (int) hash(keys[2 * next], keys[2 * next + 1]) & mask;
+            // Move the entry into the gap unless its home lies cyclically in (gap, next]
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[2 * gap] = keys[2 * next];
+                keys[2 * gap + 1] = keys[2 * next + 1];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[gap] = null;
+    }
+
+    private void allocate(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity * 2];
+        values = new Object[capacity];
+        if (oldValues == null) return;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null) continue;
+            int slot = insertionSlot(oldKeys[2 * i], oldKeys[2 * i + 1]);
+            keys[2 * slot] = oldKeys[2 * i];
+            keys[2 * slot + 1] = oldKeys[2 * i + 1];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private static int capacityFor(int expectedSize) {
+        // Load factor 3/4, power of two
+        long needed = Math.max(MIN_CAPACITY, (expectedSize * 4L + 2) / 3 + 1);
+        return (int) Math.min(1 << 30, Long.highestOneBit(needed - 1) << 1);
+    }
+
+    private HashMap<String, V> otherMap() {
+        if (other == null) other = new HashMap<>();
+        return other;
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * Daily Checklist
+ * Copyright (C) 2025 Johan Andersson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal kept next to tasks.xml.
+ *
+ * Each coalesced flush appends small upsert/remove records instead of rewriting
+ * the whole XML document. On load the journal is replayed over the parsed XML,
+ * and once it grows past a size/age threshold the repository compacts it back
+ * into tasks.xml and truncates it.
+ *
+ * The header records the length and modification time of the tasks.xml the
+ * journal applies to. If tasks.xml was replaced behind our back (e.g. a user
+ * copied an older file into place) the journal no longer matches and is moved
+ * aside instead of being replayed over unrelated data.
+ */
+public class TaskJournal {
+    private static final int MAGIC = 0x44434A31; // "DCJ1"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 2 + 8 + 8 + 8;
+    private static final byte OP_UPSERT = 1;
+    private static final byte OP_REMOVE = 2;
+
+    private final Path dataPath;
+    private final Path journalPath;
+
+    private FileChannel channel;
+    private long validLength = -1;
+    private long createdMillis;
+    private int recordCount;
+
+    public TaskJournal(String dataFileName) {
+        this.dataPath = Paths.get(dataFileName);
+        this.journalPath = Paths.get(dataFileName + ApplicationConfiguration.JOURNAL_FILE_SUFFIX);
+    }
+
+    public Path getJournalPath() {
+        return journalPath;
+    }
+
+    /**
+     * Parses the base document with the given parser and replays the journal on
+     * top of it. Runs under the journal monitor so a concurrent compaction cannot
+     * swap tasks.xml between parsing and replay.
+     */
+    public synchronized List<Task> load(Callable<List<Task>> parser) throws Exception {
+        List<Task> base = parser.call();
+        // Always revalidate against the tasks.xml we just parsed
+        validLength = -1;
+        open();
+        if (recordCount == 0) return base;
+
+        long start = System.nanoTime();
+        Map<String, Task> merged = new LinkedHashMap<>(Math.max(16, base.size() * 4 / 3 + 1));
+        for (Task t : base) merged.putIfAbsent(t.getId(), t);
+        int applied = readRecords(merged);
+        MetricsCollector.record("Journal replayed " + applied + " records over " + base.size() + " tasks in "
+                + ((System.nanoTime() - start) / 1_000_000.0) + " ms");
+        return new ArrayList<>(merged.values());
+    }
+
+    /**
+     * Replays the journal over {@code base} without taking it over: nothing is
+     * moved aside, truncated or remembered, so a later {@link #load} sees the
+     * journal as it was. Used for a partial read ahead of the full load; returns
+     * null when the journal does not describe the current tasks.xml.
+     */
+    public synchronized List<Task> replay(List<Task> base) throws IOException {
+        if (!Files.exists(journalPath)) return base;
+        try (FileChannel ch = FileChannel.open(journalPath, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && ch.read(header, header.position()) > 0) {}
+            header.flip();
+            File dataFile = dataPath.toFile();
+            if (header.remaining() < HEADER_SIZE) return base;
+            if (header.getInt() != MAGIC || header.getShort() != VERSION
+                    || header.getLong() != dataFile.length() || header.getLong() != dataFile.lastModified()) {
+                return null;
+            }
+            Map<String, Task> merged = new LinkedHashMap<>(Math.max(16, base.size() * 4 / 3 + 1));
+            for (Task t : base) merged.putIfAbsent(t.getId(), t);
+            if (scanRecords(ch, merged)[1] == 0) return base;
+            return new ArrayList<>(merged.values());
+        }
+    }
+
+    /**
+     * Appends removals followed by upserts as one flush. Removals go first so a
+     * task that was removed and re-added within one coalescing window survives.
+     */
+    public synchronized void append(Collection<Task> upserts, Collection<String> removals) throws IOException {
+        if ((upserts == null || upserts.isEmpty()) && (removals == null || removals.isEmpty())) return;
+        open();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        DataOutputStream p = new DataOutputStream(payload);
+        int written = 0;
+        if (removals != null) {
+            for (String id : removals) {
+                payload.reset();
+                p.writeByte(OP_REMOVE);
+                writeString(p, id);
+                writeRecord(out, payload);
+                written++;
+            }
+        }
+        if (upserts != null) {
+            for (Task t : upserts) {
+                payload.reset();
+                p.writeByte(OP_UPSERT);
+                writeTask(p, t);
+                writeRecord(out, payload);
+                written++;
+            }
+        }
+        out.flush();
+        ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+        long pos = validLength;
+        while (buf.hasRemaining()) {
+            pos += channel.write(buf, pos);
+        }
+        validLength = pos;
+        if (recordCount == 0) createdMillis = System.currentTimeMillis();
+        recordCount += written;
+    }
+
+    /**
+     * Forces appended records to disk. One call covers every append before it,
+     * so callers batching several appends need only one.
+     */
+    public synchronized void force() throws IOException {
+        if (channel != null && channel.isOpen()) channel.force(false);
+    }
+
+    /**
+     * Runs the given full-document writer and truncates the journal so it is based
+     * on the freshly written tasks.xml. Both steps happen under the journal monitor.
+     */
+    public synchronized void compact(Callable<Void> fullWriter) throws Exception {
+        fullWriter.call();
+        reset();
+    }
+
+    /**
+     * Returns true when the journal has grown past the size threshold or its oldest
+     * record is older than the age threshold.
+     */
+    public synchronized boolean needsCompaction() {
+        if (validLength < 0 || recordCount == 0) return false;
+        if (validLength - HEADER_SIZE >= ApplicationConfiguration.JOURNAL_COMPACT_THRESHOLD_BYTES) return true;
+        return System.currentTimeMillis() - createdMillis >= ApplicationConfiguration.JOURNAL_COMPACT_MAX_AGE_MS;
+    }
+
+    public synchronized long size() {
+        return Math.max(0, validLength);
+    }
+
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    public synchronized void close() {
+        if (channel != null) {
+            try { channel.close(); } catch (IOException ignore) {}
+            channel = null;
+        }
+        validLength = -1;
+    }
+
+    /**
+     * Truncates the journal and writes a fresh header describing the current tasks.xml.
+     */
+    private void reset() throws IOException {
+        ensureChannel();
+        channel.truncate(0);
+        createdMillis = System.currentTimeMillis();
+        writeHeader();
+        validLength = HEADER_SIZE;
+        recordCount = 0;
+    }
+
+    /**
+     * Opens the journal (once per process), validating the header against the
+     * current tasks.xml and locating the end of the last intact record so torn
+     * writes from a crash are overwritten by the next append.
+     */
+    private void open() throws IOException {
+        if (validLength >= 0) return;
+        File journalFile = journalPath.toFile();
+        if (!journalFile.exists() || journalFile.length() < HEADER_SIZE) {
+            close();
+            reset();
+            return;
+        }
+        ensureChannel();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        boolean valid = header.remaining() == HEADER_SIZE && header.getInt() == MAGIC && header.getShort() == VERSION;
+        long baseLength = valid ? header.getLong() : -1;
+        long baseModified = valid ? header.getLong() : -1;
+        long created = valid ? header.getLong() : 0;
+        File dataFile = dataPath.toFile();
+        if (!valid || baseLength != dataFile.length() || baseModified != dataFile.lastModified()) {
+            moveAside();
+            reset();
+            return;
+        }
+        createdMillis = created;
+        readRecords(null);
+    }
+
+    /**
+     * Reads intact records from the journal. When {@code target} is non-null the
+     * records are applied to it. Updates {@link #validLength} and {@link #recordCount}
+     * and returns the number of records read.
+     */
+    private int readRecords(Map<String, Task> target) throws IOException {
+        long[] scan = scanRecords(channel, target);
+        if (scan[0] < channel.size()) {
+            MetricsCollector.record("Journal ignoring " + (channel.size() - scan[0]) + " trailing bytes of an incomplete record");
+        }
+        validLength = scan[0];
+        recordCount = (int) scan[1];
+        return recordCount;
+    }
+
+    /**
+     * Reads the intact records of a journal, applying them to {@code target}
+     * when non-null. Returns the end of the last intact record and the number
+     * of records.
+     */
+    private static long[] scanRecords(FileChannel channel, Map<String, Task> target) throws IOException {
+        long size = channel.size();
+        long pos = HEADER_SIZE;
+        int count = 0;
+        ByteBuffer lenBuf = ByteBuffer.allocate(8);
+        CRC32 crc = new CRC32();
+        while (pos + 8 <= size) {
+            lenBuf.clear();
+            channel.read(lenBuf, pos);
+            lenBuf.flip();
+            int len = lenBuf.getInt();
+            int expectedCrc = lenBuf.getInt();
+            if (len <= 0 || pos + 8 + len > size) break;
+            ByteBuffer payload = ByteBuffer.allocate(len);
+            channel.read(payload, pos + 8);
+            if (payload.hasRemaining()) break;
+            crc.reset();
+            crc.update(payload.array(), 0, len);
+            if ((int) crc.getValue() != expectedCrc) break;
+            if (target != null) applyRecord(payload.array(), target);
+            pos += 8 + len;
+            count++;
+        }
+        return new long[] {pos, count};
+    }
+
+    private static void applyRecord(byte[] payload, Map<String, Task> target) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        if (op == OP_REMOVE) {
+            target.remove(readString(in));
+        } else if (op == OP_UPSERT) {
+            Task t = readTask(in);
+            if (TaskXmlHandler.validateTask(t)) target.put(t.getId(), t);
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        File dataFile = dataPath.toFile();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.putLong(dataFile.length());
+        header.putLong(dataFile.lastModified());
+        header.putLong(createdMillis);
+        header.flip();
+        long pos = 0;
+        while (header.hasRemaining()) pos += channel.write(header, pos);
+    }
+
+    private void ensureChannel() throws IOException {
+        if (channel != null && channel.isOpen()) return;
+        Path parent = journalPath.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private void moveAside() {
+        close();
+        try {
+            Path stale = Paths.get(journalPath.toString() + ".stale");
+            Files.move(journalPath, stale, StandardCopyOption.REPLACE_EXISTING);
+            MetricsCollector.record("Journal did not match tasks.xml, moved aside to " + stale);
+        } catch (IOException e) {
+            java.util.logging.Logger.getLogger(TaskJournal.class.getName())
+                .log(java.util.logging.Level.WARNING, "Failed to move stale journal aside", e);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, ByteArrayOutputStream payload) throws IOException {
+        byte[] b = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(b, 0, b.length);
+        out.writeInt(b.length);
+        out.writeInt((int) crc.getValue());
+        out.write(b);
+    }
+
+    private static void writeTask(DataOutputStream out, Task t) throws IOException {
+        writeString(out, t.getId());
+        writeString(out, t.getName());
+        writeString(out, t.getType() == null ? null : t.getType().name());
+        writeString(out, t.getWeekday());
+        out.writeBoolean(t.isDone());
+        writeString(out, t.getDoneDate());
+        writeString(out, t.getChecklistId());
+        writeString(out, t.getParentId());
+        // A note in the note store is recorded by its length; the trailing length
+        // is absent from records written before notes moved out
+        writeString(out, t.getHeldNote());
+        out.writeInt(t.getNoteLength());
+    }
+
+    private static Task readTask(DataInputStream in) throws IOException {
+        String id = readString(in);
+        String name = readString(in);
+        String type = readString(in);
+        String weekday = readString(in);
+        boolean done = in.readBoolean();
+        String doneDate = readString(in);
+        String checklistId = readString(in);
+        String parentId = readString(in);
+        String note = readString(in);
+        int noteLength = in.available() >= 4 ? in.readInt() : 0;
+        TaskType taskType = TaskType.CUSTOM;
+        if (type != null) {
+            try { taskType = TaskType.valueOf(type); } catch (IllegalArgumentException ignore) {}
+        }
+        Task t = new Task(id, name, taskType, weekday, done, doneDate, checklistId, parentId);
+        if (note != null) t.setNote(note);
+        else if (noteLength > 0) t.setStoredNote(noteLength, null);
+        return t;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) return null;
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -15,9 +15,7 @@
  * You should have received a copy of the GNU General Public License
  * along with this program. If not, see <https://www.gnu.org/licenses/>.
  */
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Computes differences between two task lists.
@@ -25,8 +23,8 @@ import java.util.Map;
 public class TaskListDiff {
     private final List<Task> currentTasks;
     private final List<Task> backupTasks;
-    private final Map<String, Task> currentMap = new HashMap<>();
-    private final Map<String, Task> backupMap = new HashMap<>();
+    private final TaskIdMap<Task> currentMap;
+    private final TaskIdMap<Task> backupMap;
     private int added = 0;
     private int removed = 0;
     private int modified = 0;
@@ -36,11 +34,13 @@ public class TaskListDiff {
         this.backupTasks = backupTasks;
 
         // Build maps
+        currentMap = new TaskIdMap<>(currentTasks.size());
         for (Task task : currentTasks) {
-            currentMap.put(task.getId(), task);
+            currentMap.put(task, task);
         }
+        backupMap = new TaskIdMap<>(backupTasks.size());
         for (Task task : backupTasks) {
-            backupMap.put(task.getId(), task);
+            backupMap.put(task, task);
         }
 
         // Calculate differences
@@ -49,7 +49,7 @@ public class TaskListDiff {
 
     private void calculateDiff() {
         for (Task backupTask : backupTasks) {
-            Task currentTask = currentMap.get(backupTask.getId());
+            Task currentTask = currentMap.get(backupTask);
             if (currentTask == null) {
                 removed++;
             } else if (!tasksEqual(backupTask, currentTask)) {
@@ -58,7 +58,7 @@ public class TaskListDiff {
         }
 
         for (Task currentTask : currentTasks) {
-            if (!backupMap.containsKey(currentTask.getId())) {
+            if (!backupMap.containsKey(currentTask)) {
                 added++;
             }
         }
@@ -90,7 +90,7 @@ public class TaskListDiff {
         if (added > 0) {
             sb.append("ADDED TASKS:\n");
             for (Task task : currentTasks) {
-                if (!backupMap.containsKey(task.getId())) {
+                if (!backupMap.containsKey(task)) {
                     sb.append("+ ").append(taskToString(task)).append("\n");
                 }
             }
@@ -101,7 +101,7 @@ public class TaskListDiff {
         if (removed > 0) {
             sb.append("REMOVED TASKS:\n");
             for (Task task : backupTasks) {
-                if (!currentMap.containsKey(task.getId())) {
+                if (!currentMap.containsKey(task)) {
                     sb.append("- ").append(taskToString(task)).append("\n");
                 }
             }
@@ -112,7 +112,7 @@ public class TaskListDiff {
         if (modified > 0) {
             sb.append("MODIFIED TASKS:\n");
             for (Task backupTask : backupTasks) {
-                Task currentTask = currentMap.get(backupTask.getId());
+                Task currentTask = currentMap.get(backupTask);
                 if (currentTask != null && !tasksEqual(backupTask, currentTask)) {
                     sb.append("~ ").append(taskToString(backupTask)).append(" -> ").append(taskToString(currentTask)).append("\n");
                 }
@@ -174,7 +174,7 @@ public class TaskListMouseHandler extends MouseAdapter {
         int parentIndex = -1;
         for (int i = 0; i < listModel.getSize(); i++) {
             Task cand = listModel.get(i);
-            if (cand != null && cand.getId().equals(p.getId())) {
+            if (cand != null && cand.equals(p)) {
                 parentIndex = i;
                 break;
             }
@@ -190,7 +190,7 @@ public class TaskListMouseHandler extends MouseAdapter {
                 int insertIndex = parentIndex + 1;
                 while (insertIndex < listModel.getSize()) {
                     Task candidate = listModel.get(insertIndex);
-                    if (candidate.getParentId() == null || !candidate.getParentId().equals(p.getId())) {
+                    if (candidate.getParentId() == null || !p.hasId(candidate.getParentId())) {
                         break;
                     }
                     insertIndex++;
@@ -25,9 +25,14 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class TaskManager {
     private final TaskRepository repository;
     private final List<TaskChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<Runnable> reminderListeners = new CopyOnWriteArrayList<>();
     // Cache of subtasks grouped by parentId; rebuilt when tasks change to avoid repeated sorting
     private volatile java.util.Map<String, java.util.List<Task>> cachedSubtasksByParent = new java.util.concurrent.ConcurrentHashMap<>();
     private volatile boolean subtasksCacheValid = false;
+    // Repository snapshot version the subtasks cache was built from (-1 when not versioned)
+    private volatile long subtasksCacheVersion = -1;
+    // Cache version while it is built from the daily working set ahead of the full task list
+    private static final long WORKING_SET_VERSION = Long.MIN_VALUE;
     // Batch operation support to prevent race conditions during multi-task operations
     // Use an atomic counter so nested begin/end calls are safe.
     private final AtomicInteger batchCounter = new AtomicInteger(0);
@@ -93,13 +98,38 @@ public class TaskManager {
         return repository.getAllTasks();
     }
 
+    /**
+     * Tasks outside any custom checklist, i.e. what the daily lists show. Right
+     * after startup this may come from a partial read that leaves the custom
+     * checklists unloaded.
+     */
+    public List<Task> getDailyWorkingSet() {
+        if (repository instanceof XMLTaskRepository xmlRepo) {
+            return xmlRepo.getDailyWorkingSet();
+        }
+        List<Task> daily = new ArrayList<>();
+        for (Task task : repository.getAllTasks()) {
+            if (task.getChecklistId() == null || task.getChecklistId().isEmpty()) daily.add(task);
+        }
+        return daily;
+    }
+
+    /**
+     * Starts loading the full task list in the background, if it is not loaded yet.
+     */
+    public void prefetchAllTasks() {
+        if (repository instanceof XMLTaskRepository xmlRepo) {
+            xmlRepo.prefetchInBackground();
+        }
+    }
+
     public Task getTaskById(String id) {
         if (repository instanceof XMLTaskRepository xmlRepo) {
             return xmlRepo.getTaskById(id);
         }
         // Fallback: linear search
         for (Task task : getAllTasks()) {
-            if (task.getId().equals(id)) {
+            if (task.hasId(id)) {
                 return task;
             }
         }
@@ -296,11 +326,28 @@ public class TaskManager {
      * Returns a Reminder targeting the given taskId, or null if none.
      */
     public Reminder getReminderForTask(String taskId) {
-        if (taskId == null) return null;
-        for (Reminder r : getReminders()) {
-            if (taskId.equals(r.getTaskId())) return r;
-        }
-        return null;
+        return repository.getReminderForTask(taskId);
+    }
+
+    /**
+     * Returns the reminders of a checklist (by exact name) in time order.
+     */
+    public List<Reminder> getRemindersForChecklist(String checklistName) {
+        return repository.getRemindersForChecklist(checklistName);
+    }
+
+    /**
+     * Returns the reminders of a checklist whose name matches ignoring case, in time order.
+     */
+    public List<Reminder> getRemindersForChecklistIgnoreCase(String checklistName) {
+        return repository.getRemindersForChecklistIgnoreCase(checklistName);
+    }
+
+    /**
+     * Returns the reminder of a checklist (by exact name) closest in time to now, or null.
+     */
+    public Reminder getNearestReminderForChecklist(String checklistName) {
+        return repository.getNearestReminderForChecklist(checklistName, java.time.LocalDateTime.now());
     }
 
     /**
@@ -335,6 +382,24 @@ public class TaskManager {
         return repository.getNextReminderTime(openedChecklists);
     }
 
+    /**
+     * The next reminder time for unopened checklists in a later minute than the given time.
+     */
+    public java.time.LocalDateTime getNextReminderTime(java.util.Set<String> openedChecklists, java.time.LocalDateTime after) {
+        if (repository instanceof XMLTaskRepository xmlRepo) {
+            return xmlRepo.getNextReminderTime(openedChecklists, after);
+        }
+        // Fallback: linear search
+        java.time.LocalDateTime next = null;
+        for (Reminder r : getReminders()) {
+            if (r.getChecklistName() == null || (openedChecklists != null && openedChecklists.contains(r.getChecklistName()))) continue;
+            if (r.getTaskId() == null && ("MORNING".equalsIgnoreCase(r.getChecklistName()) || "EVENING".equalsIgnoreCase(r.getChecklistName()))) continue;
+            java.time.LocalDateTime time = java.time.LocalDateTime.of(r.getYear(), r.getMonth(), r.getDay(), r.getHour(), r.getMinute());
+            if (time.isAfter(after.withSecond(0).withNano(0)) && (next == null || time.isBefore(next))) next = time;
+        }
+        return next;
+    }
+
     public void setTasks(List<Task> tasks) {
         // Sanitize incoming task list: ensure headings reference a parent and only one heading per parent
         if (tasks != null) {
@@ -370,9 +435,21 @@ public class TaskManager {
      * Rebuild the subtasks-by-parent cache if it's invalid.
      */
     private synchronized void rebuildSubtasksCacheIfNeeded() {
-        if (subtasksCacheValid) return;
+        List<Task> tasks;
+        long version;
+        if (repository instanceof XMLTaskRepository xmlRepo && !xmlRepo.isFullyLoaded()) {
+            // Until the full list is read only the daily lists show, and their subtasks are in the working set
+            if (subtasksCacheValid && subtasksCacheVersion == WORKING_SET_VERSION) return;
+            tasks = xmlRepo.getDailyWorkingSet();
+            version = WORKING_SET_VERSION;
+        } else {
+            // A changed snapshot version also covers edits that bypassed this manager, e.g. external reloads
+            version = repository instanceof XMLTaskRepository xmlRepo ? xmlRepo.getSnapshotVersion() : -1;
+            if (subtasksCacheValid && version == subtasksCacheVersion) return;
+            tasks = getAllTasks();
+        }
         java.util.Map<String, java.util.List<Task>> map = new java.util.HashMap<>();
-        for (Task t : getAllTasks()) {
+        for (Task t : tasks) {
             // Treat HEADING entries as GUI-only and not as real subtasks when building subtask cache
             if (t.getType() == TaskType.HEADING) continue;
             String pid = t.getParentId();
@@ -381,10 +458,13 @@ public class TaskManager {
             }
         }
         // Preserve persisted ordering for subtasks (use global task order)
+        java.util.Map<String, java.util.List<Task>> rebuilt = new java.util.concurrent.ConcurrentHashMap<>();
         for (java.util.Map.Entry<String, java.util.List<Task>> e : map.entrySet()) {
             java.util.List<Task> list = e.getValue();
-            cachedSubtasksByParent.put(e.getKey(), java.util.Collections.unmodifiableList(list));
+            rebuilt.put(e.getKey(), java.util.Collections.unmodifiableList(list));
         }
+        cachedSubtasksByParent = rebuilt;
+        subtasksCacheVersion = version;
         subtasksCacheValid = true;
     }
 
@@ -404,14 +484,39 @@ public class TaskManager {
 
     public void addReminder(Reminder reminder) {
         repository.addReminder(reminder);
+        notifyReminderListeners();
         notifyListeners();
     }
 
     public void removeReminder(Reminder reminder) {
         repository.removeReminder(reminder);
+        notifyReminderListeners();
         notifyListeners();
     }
 
+    /**
+     * Removes the given reminders, notifying listeners once.
+     */
+    public void removeReminders(java.util.Collection<Reminder> reminders) {
+        if (reminders == null || reminders.isEmpty()) return;
+        repository.removeReminders(reminders);
+        notifyReminderListeners();
+        notifyListeners();
+    }
+
+    /**
+     * Adds a listener run (on the calling thread) whenever a reminder is added or removed.
+     */
+    public void addReminderChangeListener(Runnable l) { if (l != null) reminderListeners.add(l); }
+
+    private void notifyReminderListeners() {
+        for (Runnable l : reminderListeners) {
+            try {
+                l.run();
+            } catch (Exception ignore) {}
+        }
+    }
+
     public void addChecklist(Checklist checklist) {
         repository.addChecklist(checklist);
         notifyListeners();
@@ -236,7 +236,7 @@ public class TaskMoveHandler {
 
         List<Task> tasksToInsert = new ArrayList<>();
         for (Task movedTask : movedTasks) {
-            allTasks.removeIf(task -> task.getId().equals(movedTask.getId()));
+            allTasks.removeIf(task -> task.equals(movedTask));
             tasksToInsert.add(movedTask);
         }
 
@@ -0,0 +1,368 @@
+/*
+ * Daily Checklist
+ * Copyright (C) 2025 Johan Andersson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-writer queue for task repository mutations.
+ *
+ * Any thread may enqueue; one daemon thread drains the queue, applies each
+ * drained batch to the in-memory state in one step, and collects the affected
+ * ids. Those are handed to persistence once the batch window has elapsed, enough
+ * changes are pending, or a flush is requested. Every mutation carries two
+ * futures: {@code applied} (visible to readers) and {@code durable} (persisted).
+ *
+ * The window adapts to the write rate. A change arriving after a quiet period
+ * is handed off immediately. A change arriving within the base window of the
+ * previous one starts a busy streak: the window is the base window, doubled for
+ * every further busy batch, and never longer than the max latency.
+ */
+public final class TaskMutationPipeline {
+
+    public enum Kind { UPSERT, REMOVE, REPLACE_ALL, FLUSH }
+
+    /**
+     * One queued change. UPSERT carries tasks, REMOVE an id, REPLACE_ALL the new
+     * full list; FLUSH only forces pending changes to persistence.
+     */
+    public static final class Mutation {
+        final Kind kind;
+        final List<Task> tasks;
+        final String id;
+        final boolean reportErrors;
+        final CompletableFuture<Void> applied = new CompletableFuture<>();
+        final CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        private Mutation(Kind kind, List<Task> tasks, String id, boolean reportErrors) {
+            this.kind = kind;
+            this.tasks = tasks;
+            this.id = id;
+            this.reportErrors = reportErrors;
+        }
+
+        static Mutation upsert(List<Task> tasks, boolean reportErrors) {
+            return new Mutation(Kind.UPSERT, tasks, null, reportErrors);
+        }
+
+        static Mutation remove(String id) {
+            return new Mutation(Kind.REMOVE, Collections.emptyList(), id, false);
+        }
+
+        static Mutation replaceAll(List<Task> tasks) {
+            return new Mutation(Kind.REPLACE_ALL, tasks, null, true);
+        }
+
+        static Mutation flush() {
+            return new Mutation(Kind.FLUSH, Collections.emptyList(), null, false);
+        }
+
+        public CompletableFuture<Void> applied() {
+            return applied;
+        }
+
+        public CompletableFuture<Void> durable() {
+            return durable;
+        }
+    }
+
+    /**
+     * What the pipeline drives. Both methods are only called on the writer thread.
+     */
+    interface Target {
+        /** Applies the mutations, in order, to the in-memory state. */
+        void apply(List<Mutation> batch);
+
+        /**
+         * Persists the collected changes and returns a future that completes once
+         * they are durable. With {@code fullWrite} the whole current state is written.
+         */
+        CompletableFuture<Void> persist(boolean fullWrite, Set<String> upsertIds, Set<String> removalIds, boolean reportErrors);
+    }
+
+    private final Target target;
+    private final long baseWindowNanos;
+    private final long maxLatencyNanos;
+    private final int maxPending;
+    private final int maxDrain;
+    private final ConcurrentLinkedQueue<Mutation> queue = new ConcurrentLinkedQueue<>();
+    private final Thread writer;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean stopping = false;
+    // Hand every mutation to persistence on its own, without batching
+    private volatile boolean perMutation = false;
+
+    // Writer-thread state: changes applied but not yet handed to persistence
+    private final Set<String> pendingUpserts = new LinkedHashSet<>();
+    private final Set<String> pendingRemovals = new LinkedHashSet<>();
+    private final List<CompletableFuture<Void>> waiting = new ArrayList<>();
+    private boolean pendingFullWrite = false;
+    private boolean pendingReportErrors = false;
+    private boolean flushRequested = false;
+    private long firstPendingNanos = 0;
+    // Adaptive window state, writer thread only
+    private long windowNanos = 0;
+    private long lastArrivalNanos = 0;
+    private int busyStreak = 0;
+    private volatile long lastWindowMillis = 0;
+    private volatile int lastBatchSize = 0;
+    // Durability of the most recent hand-off; a flush with nothing pending waits for it
+    private CompletableFuture<Void> lastHandOff = CompletableFuture.completedFuture(null);
+
+    public TaskMutationPipeline(Target target, long baseWindowMillis, long maxLatencyMillis, int maxPending, int maxDrain) {
+        this.target = target;
+        this.baseWindowNanos = TimeUnit.MILLISECONDS.toNanos(baseWindowMillis);
+        this.maxLatencyNanos = Math.max(baseWindowNanos, TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis));
+        this.maxPending = maxPending;
+        this.maxDrain = maxDrain;
+        this.writer = new Thread(this::run, "task-mutation-writer");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Enqueues a mutation, starting the writer thread on first use. After
+     * shutdown both futures fail immediately.
+     */
+    Mutation submit(Mutation m) {
+        if (stopping) {
+            IllegalStateException e = new IllegalStateException("Task mutation pipeline is shut down");
+            m.durable.completeExceptionally(e);
+            m.applied.completeExceptionally(e);
+            return m;
+        }
+        queue.offer(m);
+        if (started.compareAndSet(false, true)) writer.start();
+        LockSupport.unpark(writer);
+        return m;
+    }
+
+    /**
+     * Forces everything applied so far to persistence; the future completes when durable.
+     */
+    public CompletableFuture<Void> flush() {
+        return submit(Mutation.flush()).durable;
+    }
+
+    public boolean isWriterThread() {
+        return Thread.currentThread() == writer;
+    }
+
+    /**
+     * When set, every mutation is applied and handed to persistence on its own
+     * instead of being batched with others.
+     */
+    public void setPerMutation(boolean perMutation) {
+        this.perMutation = perMutation;
+        LockSupport.unpark(writer);
+    }
+
+    /**
+     * The batch window used for the most recent hand-off to persistence.
+     */
+    public long getLastWindowMillis() {
+        return lastWindowMillis;
+    }
+
+    /**
+     * Number of mutations in the most recent hand-off to persistence.
+     */
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    /**
+     * Stops accepting mutations, lets the writer drain and hand off what is
+     * queued, and waits up to the given time for it to finish.
+     */
+    public void shutdown(long timeoutMillis) throws InterruptedException {
+        stopping = true;
+        LockSupport.unpark(writer);
+        if (writer.isAlive()) writer.join(timeoutMillis);
+        Mutation late;
+        while ((late = queue.poll()) != null) {
+            IllegalStateException e = new IllegalStateException("Task mutation pipeline is shut down");
+            late.durable.completeExceptionally(e);
+            late.applied.completeExceptionally(e);
+        }
+    }
+
+    private void run() {
+        List<Mutation> batch = new ArrayList<>();
+        while (true) {
+            try {
+                boolean single = perMutation;
+                int drainLimit = single ? 1 : maxDrain;
+                Mutation m;
+                while (batch.size() < drainLimit && (m = queue.poll()) != null) {
+                    batch.add(m);
+                }
+                if (!batch.isEmpty()) {
+                    applyBatch(batch);
+                    batch.clear();
+                }
+
+                long now = System.nanoTime();
+                boolean hasPending = hasPending();
+                if (flushRequested || (hasPending && (single || pendingUpserts.size() + pendingRemovals.size() >= maxPending
+                        || now - firstPendingNanos >= windowNanos))) {
+                    flushPending();
+                    hasPending = false;
+                }
+                if (!queue.isEmpty()) continue;
+                if (stopping) {
+                    if (hasPending) flushPending();
+                    return;
+                }
+                if (hasPending) {
+                    LockSupport.parkNanos(this, Math.max(1, windowNanos - (now - firstPendingNanos)));
+                } else {
+                    LockSupport.park(this);
+                }
+            } catch (Throwable t) {
+                // Never let the writer die: callers would wait for it forever
+                java.util.logging.Logger.getLogger(TaskMutationPipeline.class.getName())
+                    .log(java.util.logging.Level.SEVERE, "Task mutation writer error", t);
+                for (Mutation m : batch) {
+                    m.durable.completeExceptionally(t);
+                    m.applied.completeExceptionally(t);
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void applyBatch(List<Mutation> batch) {
+        long start = System.nanoTime();
+        try {
+            target.apply(batch);
+        } catch (RuntimeException e) {
+            // Isolate the failing mutation so the rest of the batch still applies
+            for (Mutation m : batch) {
+                try {
+                    target.apply(Collections.singletonList(m));
+                } catch (RuntimeException ex) {
+                    // durable first, so a caller woken by applied sees both failed
+                    m.durable.completeExceptionally(ex);
+                    m.applied.completeExceptionally(ex);
+                }
+            }
+        }
+        for (Mutation m : batch) {
+            if (m.applied.isCompletedExceptionally()) continue;
+            track(m);
+            m.applied.complete(null);
+        }
+        MetricsCollector.record("Applied " + batch.size() + " task mutations in " + ((System.nanoTime() - start) / 1_000_000.0) + " ms");
+    }
+
+    private void track(Mutation m) {
+        long now = System.nanoTime();
+        if (!hasPending()) {
+            firstPendingNanos = now;
+            if (m.kind != Kind.FLUSH) adaptWindow(now);
+        }
+        if (m.kind != Kind.FLUSH) lastArrivalNanos = now;
+        switch (m.kind) {
+            case UPSERT:
+                // A pending removal of the same id stays: removals replay first, so a
+                // re-added task ends up appended, as it is in memory
+                for (Task t : m.tasks) pendingUpserts.add(t.getId());
+                break;
+            case REMOVE:
+                pendingUpserts.remove(m.id);
+                pendingRemovals.add(m.id);
+                break;
+            case REPLACE_ALL:
+                // The full write covers every earlier change; restores are written right away
+                pendingUpserts.clear();
+                pendingRemovals.clear();
+                pendingFullWrite = true;
+                flushRequested = true;
+                break;
+            case FLUSH:
+                flushRequested = true;
+                break;
+        }
+        pendingReportErrors |= m.reportErrors;
+        waiting.add(m.durable);
+    }
+
+    /**
+     * Picks the window for a batch that starts now, from the gap since the
+     * previous change.
+     */
+    private void adaptWindow(long now) {
+        if (lastArrivalNanos == 0 || now - lastArrivalNanos >= baseWindowNanos) {
+            // Idle: nothing to wait for
+            busyStreak = 0;
+            windowNanos = 0;
+        } else {
+            busyStreak++;
+            windowNanos = Math.min(maxLatencyNanos, baseWindowNanos << Math.min(busyStreak - 1, 16));
+        }
+    }
+
+    private boolean hasPending() {
+        return !waiting.isEmpty();
+    }
+
+    private void flushPending() {
+        List<CompletableFuture<Void>> done = new ArrayList<>(waiting);
+        boolean fullWrite = pendingFullWrite;
+        Set<String> upserts = new LinkedHashSet<>(pendingUpserts);
+        Set<String> removals = new LinkedHashSet<>(pendingRemovals);
+        boolean reportErrors = pendingReportErrors;
+        waiting.clear();
+        pendingUpserts.clear();
+        pendingRemovals.clear();
+        pendingFullWrite = false;
+        pendingReportErrors = false;
+        flushRequested = false;
+
+        CompletableFuture<Void> persisted;
+        if (!fullWrite && upserts.isEmpty() && removals.isEmpty()) {
+            persisted = lastHandOff;
+        } else {
+            lastWindowMillis = TimeUnit.NANOSECONDS.toMillis(windowNanos);
+            lastBatchSize = done.size();
+            MetricsCollector.record("Handing off batch of " + done.size() + " mutations: " + upserts.size() + " upserts, "
+                    + removals.size() + " removals" + (fullWrite ? ", full write" : "") + "; window " + lastWindowMillis
+                    + " ms, held " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - firstPendingNanos) + " ms, busy streak " + busyStreak);
+            try {
+                persisted = target.persist(fullWrite, upserts, removals, reportErrors);
+            } catch (RuntimeException e) {
+                persisted = CompletableFuture.failedFuture(e);
+            }
+            // Its failure belongs to its own mutations, not to later flushes
+            lastHandOff = persisted.exceptionally(ex -> null);
+        }
+        persisted.whenComplete((v, ex) -> {
+            for (CompletableFuture<Void> f : done) {
+                if (ex == null) f.complete(null);
+                else f.completeExceptionally(ex);
+            }
+        });
+    }
+}
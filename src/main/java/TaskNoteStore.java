@@ -0,0 +1,334 @@
+/*
+ * Daily Checklist
+ * Copyright (C) 2025 Johan Andersson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Note texts of the tasks, kept out of tasks.xml so loading the task list does
+ * not parse or hold them. tasks.xml (and the journal and binary snapshot) only
+ * record a note's length; the text is read from here when a note is shown.
+ *
+ * The file is an append-only log of put / remove records keyed by task id. On
+ * open only the record headers and ids are read, into an index of where each
+ * live text starts; texts are read with a positional read when asked for, and
+ * the most recently used ones are kept in a small LRU cache. Records are
+ * appended before the task records that refer to them, so a crash can leave an
+ * unreferenced text but never a reference without one. Once most of the file
+ * is superseded records it is rewritten with the live ones only.
+ */
+public class TaskNoteStore {
+    private static final int MAGIC = 0x44434E31; // "DCN1"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 2;
+    // Record: payload length, CRC32 of the payload, then op, id length, id and text
+    private static final int RECORD_HEADER_SIZE = 4 + 4;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+
+    private final Path path;
+    private FileChannel channel;
+    private long validLength = -1;
+    // Live records: task id -> {payload offset, payload length, text offset}
+    private final Map<String, long[]> index = new HashMap<>();
+    private long liveBytes;
+    private final Map<String, String> cache;
+
+    public TaskNoteStore(String dataFileName) {
+        this.path = Paths.get(dataFileName + ApplicationConfiguration.NOTE_STORE_FILE_SUFFIX);
+        final int maxEntries = ApplicationConfiguration.NOTE_CACHE_MAX_ENTRIES;
+        this.cache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * The note text of the given task, or null when none is stored for it.
+     */
+    public synchronized String get(String id) {
+        String cached = cache.get(id);
+        if (cached != null) return cached;
+        try {
+            open();
+            long[] at = index.get(id);
+            if (at == null) return null;
+            ByteBuffer payload = ByteBuffer.allocate((int) at[1]);
+            while (payload.hasRemaining() && channel.read(payload, at[0] + payload.position()) > 0) {}
+            CRC32 crc = new CRC32();
+            crc.update(payload.array(), 0, payload.position());
+            ByteBuffer header = ByteBuffer.allocate(4);
+            channel.read(header, at[0] - 4);
+            if (payload.hasRemaining() || header.hasRemaining() || (int) crc.getValue() != header.getInt(0)) {
+                MetricsCollector.record("Note of task " + id + " is damaged in " + path.getFileName());
+                return null;
+            }
+            int textStart = (int) (at[2] - at[0]);
+            String text = new String(payload.array(), textStart, payload.capacity() - textStart, StandardCharsets.UTF_8);
+            cache.put(id, text);
+            return text;
+        } catch (IOException e) {
+            MetricsCollector.record("Failed to read note of task " + id + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public synchronized boolean contains(String id) {
+        try {
+            open();
+        } catch (IOException e) {
+            return false;
+        }
+        return index.containsKey(id);
+    }
+
+    /**
+     * Appends the texts of the given task ids as one write.
+     */
+    public synchronized void putAll(Map<String, String> notes) throws IOException {
+        if (notes.isEmpty()) return;
+        open();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        Map<String, long[]> written = new HashMap<>();
+        for (Map.Entry<String, String> e : notes.entrySet()) {
+            long payloadStart = validLength + bytes.size() + RECORD_HEADER_SIZE;
+            int textOffset = writeRecord(bytes, OP_PUT, e.getKey(), e.getValue());
+            long payloadLength = validLength + bytes.size() - payloadStart;
+            written.put(e.getKey(), new long[] {payloadStart, payloadLength, payloadStart + textOffset});
+        }
+        append(bytes);
+        for (Map.Entry<String, long[]> e : written.entrySet()) {
+            long[] old = index.put(e.getKey(), e.getValue());
+            if (old != null) liveBytes -= RECORD_HEADER_SIZE + old[1];
+            liveBytes += RECORD_HEADER_SIZE + e.getValue()[1];
+            cache.put(e.getKey(), notes.get(e.getKey()));
+        }
+    }
+
+    /**
+     * Appends removal records for the given task ids that have a stored text.
+     */
+    public synchronized void removeAll(Collection<String> ids) throws IOException {
+        open();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        for (String id : ids) {
+            if (index.containsKey(id)) writeRecord(bytes, OP_REMOVE, id, null);
+        }
+        if (bytes.size() == 0) return;
+        append(bytes);
+        for (String id : ids) {
+            long[] old = index.remove(id);
+            if (old != null) liveBytes -= RECORD_HEADER_SIZE + old[1];
+            cache.remove(id);
+        }
+    }
+
+    /**
+     * Forces appended records to disk.
+     */
+    public synchronized void force() throws IOException {
+        if (channel != null && channel.isOpen()) channel.force(false);
+    }
+
+    /**
+     * Drops the texts of tasks not in {@code keep}, and rewrites the file with
+     * the live records once superseded ones make up most of it. Only call with
+     * the ids of a complete, persisted task list.
+     */
+    public synchronized void retainOnly(Set<String> keep, boolean force) throws IOException {
+        open();
+        java.util.List<String> stale = new java.util.ArrayList<>();
+        for (String id : index.keySet()) {
+            if (!keep.contains(id)) stale.add(id);
+        }
+        removeAll(stale);
+        long garbage = validLength - HEADER_SIZE - liveBytes;
+        if (garbage < ApplicationConfiguration.NOTE_STORE_COMPACT_MIN_BYTES || garbage < liveBytes) return;
+        long start = System.nanoTime();
+        Map<String, long[]> rewritten = new HashMap<>(index.size() * 4 / 3 + 1);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) Math.min(Integer.MAX_VALUE - 8, liveBytes + HEADER_SIZE));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        for (Map.Entry<String, long[]> e : index.entrySet()) {
+            long[] at = e.getValue();
+            ByteBuffer record = ByteBuffer.allocate((int) (RECORD_HEADER_SIZE + at[1]));
+            while (record.hasRemaining() && channel.read(record, at[0] - RECORD_HEADER_SIZE + record.position()) > 0) {}
+            long payloadStart = bytes.size() + RECORD_HEADER_SIZE;
+            out.write(record.array(), 0, record.position());
+            rewritten.put(e.getKey(), new long[] {payloadStart, at[1], payloadStart + (at[2] - at[0])});
+        }
+        out.flush();
+        close();
+        TaskStaxHandler.writeAtomically(path, force, os -> bytes.writeTo(os));
+        index.clear();
+        index.putAll(rewritten);
+        validLength = bytes.size();
+        liveBytes = validLength - HEADER_SIZE;
+        ensureChannel();
+        MetricsCollector.record("Note store compacted to " + index.size() + " notes (" + validLength + " bytes) in "
+                + ((System.nanoTime() - start) / 1_000_000.0) + " ms");
+    }
+
+    public synchronized void close() {
+        if (channel != null) {
+            try { channel.close(); } catch (IOException ignore) {}
+            channel = null;
+        }
+        validLength = -1;
+    }
+
+    /**
+     * Builds the index from the record headers, reading ids but skipping texts.
+     * A torn record at the end is cut off so the next append overwrites it.
+     */
+    private void open() throws IOException {
+        if (validLength >= 0) return;
+        index.clear();
+        cache.clear();
+        liveBytes = 0;
+        ensureChannel();
+        if (channel.size() < HEADER_SIZE) {
+            writeHeader();
+            return;
+        }
+        long start = System.nanoTime();
+        long pos = HEADER_SIZE;
+        InputStream raw = Channels.newInputStream(channel.position(0));
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 16 * 1024));
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                moveAside();
+                ensureChannel();
+                writeHeader();
+                return;
+            }
+            long size = channel.size();
+            while (pos + RECORD_HEADER_SIZE < size) {
+                int len = in.readInt();
+                in.readInt(); // CRC, checked when the text is read
+                if (len < 3 || pos + RECORD_HEADER_SIZE + len > size) break;
+                byte op = in.readByte();
+                int idLength = in.readUnsignedShort();
+                if (3 + idLength > len) break;
+                byte[] id = new byte[idLength];
+                in.readFully(id);
+                in.skipNBytes(len - 3 - idLength);
+                long payloadStart = pos + RECORD_HEADER_SIZE;
+                String key = new String(id, StandardCharsets.UTF_8);
+                long[] old = op == OP_PUT ? index.put(key, new long[] {payloadStart, len, payloadStart + 3 + idLength}) : index.remove(key);
+                if (old != null) liveBytes -= RECORD_HEADER_SIZE + old[1];
+                if (op == OP_PUT) liveBytes += RECORD_HEADER_SIZE + len;
+                pos = payloadStart + len;
+            }
+        } catch (EOFException e) {
+            // Torn record; pos still marks the end of the last complete one
+        }
+        if (pos < channel.size()) {
+            MetricsCollector.record("Note store ignoring " + (channel.size() - pos) + " trailing bytes of an incomplete record");
+            channel.truncate(pos);
+        }
+        validLength = pos;
+        MetricsCollector.record("Indexed " + index.size() + " notes in " + path.getFileName() + " in "
+                + ((System.nanoTime() - start) / 1_000_000.0) + " ms");
+    }
+
+    private void moveAside() {
+        close();
+        try {
+            Path unknown = Paths.get(path.toString() + ".unknown");
+            Files.move(path, unknown, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            MetricsCollector.record("Note store has an unknown format, moved aside to " + unknown);
+        } catch (IOException e) {
+            java.util.logging.Logger.getLogger(TaskNoteStore.class.getName())
+                .log(java.util.logging.Level.WARNING, "Failed to move unknown note store aside", e);
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        channel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.flip();
+        long pos = 0;
+        while (header.hasRemaining()) pos += channel.write(header, pos);
+        validLength = HEADER_SIZE;
+    }
+
+    /**
+     * Writes one record and returns the offset of its text within the payload.
+     */
+    private static int writeRecord(ByteArrayOutputStream bytes, byte op, String id, String text) throws IOException {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        byte[] textBytes = text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(3 + idBytes.length + textBytes.length);
+        payload.put(op);
+        payload.putShort((short) idBytes.length);
+        payload.put(idBytes);
+        payload.put(textBytes);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), 0, payload.capacity());
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(payload.capacity());
+        out.writeInt((int) crc.getValue());
+        out.write(payload.array());
+        out.flush();
+        return 3 + idBytes.length;
+    }
+
+    private void append(ByteArrayOutputStream bytes) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+        long pos = validLength;
+        while (buf.hasRemaining()) pos += channel.write(buf, pos);
+        validLength = pos;
+    }
+
+    private void ensureChannel() throws IOException {
+        if (channel != null && channel.isOpen()) return;
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+}
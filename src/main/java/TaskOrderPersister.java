@@ -94,7 +94,7 @@ public final class TaskOrderPersister {
             Task modelTask = listModel.get(i);
             Task authoritative = null;
             for (Task ct : checklistTasks) {
-                if (ct.getId().equals(modelTask.getId())) {
+                if (ct.equals(modelTask)) {
                     authoritative = ct;
                     break;
                 }
@@ -46,8 +46,8 @@ public class TaskReorderHandler {
         tasks.sort((t1, t2) -> {
             int idx1 = -1, idx2 = -1;
             for (int i = 0; i < model.getSize(); i++) {
-                if (model.get(i).getId().equals(t1.getId())) idx1 = i;
-                if (model.get(i).getId().equals(t2.getId())) idx2 = i;
+                if (model.get(i).equals(t1)) idx1 = i;
+                if (model.get(i).equals(t2)) idx2 = i;
             }
             return Integer.compare(idx1, idx2);
         });
@@ -57,7 +57,7 @@ public class TaskReorderHandler {
         int count = 0;
         for (Task task : tasks) {
             for (int i = 0; i < model.getSize(); i++) {
-                if (model.get(i).getId().equals(task.getId())) {
+                if (model.get(i).equals(task)) {
                     if (i < dropIndex) count++;
                     break;
                 }
@@ -30,6 +30,13 @@ public interface TaskRepository {
     void addReminder(Reminder reminder);
     void removeReminder(Reminder reminder);
 
+    /**
+     * Removes the given reminders together.
+     */
+    default void removeReminders(java.util.Collection<Reminder> reminders) {
+        for (Reminder r : reminders) removeReminder(r);
+    }
+
     /**
      * Gets reminders that are due within the next specified minutes.
      */
@@ -41,6 +48,54 @@ public interface TaskRepository {
      */
     java.time.LocalDateTime getNextReminderTime(java.util.Set<String> openedChecklists);
 
+    /**
+     * Gets the reminder targeting the given task, or null.
+     */
+    default Reminder getReminderForTask(String taskId) {
+        if (taskId == null) return null;
+        for (Reminder r : getReminders()) {
+            if (taskId.equals(r.getTaskId())) return r;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the reminders of a checklist (by exact name) in time order.
+     */
+    default List<Reminder> getRemindersForChecklist(String checklistName) {
+        List<Reminder> found = new java.util.ArrayList<>();
+        for (Reminder r : getReminders()) {
+            if (checklistName != null && checklistName.equals(r.getChecklistName())) found.add(r);
+        }
+        found.sort(java.util.Comparator.comparingLong(Reminder::getEpochMinute));
+        return found;
+    }
+
+    /**
+     * Gets the reminders of a checklist whose name matches ignoring case, in time order.
+     */
+    default List<Reminder> getRemindersForChecklistIgnoreCase(String checklistName) {
+        List<Reminder> found = new java.util.ArrayList<>();
+        for (Reminder r : getReminders()) {
+            if (checklistName != null && checklistName.equalsIgnoreCase(r.getChecklistName())) found.add(r);
+        }
+        found.sort(java.util.Comparator.comparingLong(Reminder::getEpochMinute));
+        return found;
+    }
+
+    /**
+     * Gets the reminder of a checklist (by exact name) closest in time to the given time, or null.
+     */
+    default Reminder getNearestReminderForChecklist(String checklistName, java.time.LocalDateTime time) {
+        long minute = Reminder.epochMinute(time);
+        Reminder nearest = null;
+        for (Reminder r : getRemindersForChecklist(checklistName)) {
+            if (r.getEpochMinute() == Long.MIN_VALUE) continue;
+            if (nearest == null || Math.abs(r.getEpochMinute() - minute) <= Math.abs(nearest.getEpochMinute() - minute)) nearest = r;
+        }
+        return nearest;
+    }
+
     /**
      * Gets all custom checklists.
      */
@@ -0,0 +1,578 @@
+/*
+ * Daily Checklist
+ * Copyright (C) 2025 Johan Andersson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+/**
+ * Versioned view of the task list and its lookup indexes. The list and indexes
+ * are immutable; the Task objects in them are not.
+ *
+ * XMLTaskRepository publishes a new snapshot through a volatile field after each
+ * mutation, so readers never take a lock. A {@link Builder} derives the next
+ * snapshot from the current one and copies only the list chunks, id-map shards
+ * and groups it touches; everything else is shared with the previous version.
+ * The Task objects themselves are shared and stay mutable as before: callers
+ * edit a task in place and then submit it, so an older snapshot holding the
+ * same object sees a later setDone or rename. Which tasks a snapshot holds, in
+ * which order and under which id never changes.
+ */
+public final class TaskSnapshot {
+    static final TaskSnapshot EMPTY = new TaskSnapshot(0, TaskVector.EMPTY, IdMap.EMPTY, new HashMap<>(), new HashMap<>());
+
+    private final long version;
+    private final TaskVector tasks;
+    private final IdMap byId;
+    private final Map<TaskType, TaskVector> byType;
+    private final Map<String, TaskVector> byChecklist;
+
+    private TaskSnapshot(long version, TaskVector tasks, IdMap byId, Map<TaskType, TaskVector> byType, Map<String, TaskVector> byChecklist) {
+        this.version = version;
+        this.tasks = tasks;
+        this.byId = byId;
+        this.byType = byType;
+        this.byChecklist = byChecklist;
+    }
+
+    /**
+     * Builds a snapshot from scratch. For duplicate ids the id lookup keeps the
+     * first task; the list and groups keep every entry.
+     */
+    static TaskSnapshot of(List<Task> list, long version) {
+        IdMap.Builder ids = IdMap.EMPTY.toBuilder();
+        Map<TaskType, TaskVector.Builder> types = new HashMap<>();
+        Map<String, TaskVector.Builder> checklists = new HashMap<>();
+        for (Task t : list) {
+            if (ids.get(t) == null) ids.put(t);
+            types.computeIfAbsent(t.getType(), k -> TaskVector.EMPTY.toBuilder()).add(t);
+            String key = checklistKey(t);
+            if (key != null) checklists.computeIfAbsent(key, k -> TaskVector.EMPTY.toBuilder()).add(t);
+        }
+        return new TaskSnapshot(version, TaskVector.of(list), ids.build(), buildGroups(types), buildGroups(checklists));
+    }
+
+    /**
+     * The checklist a task is grouped under: only CUSTOM tasks belong to one.
+     */
+    static String checklistKey(Task task) {
+        return task.getType() == TaskType.CUSTOM ? task.getChecklistId() : null;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * All tasks in list order. The returned list is immutable and never changes.
+     */
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    public int size() {
+        return tasks.size();
+    }
+
+    public Task getTask(String id) {
+        return id == null ? null : byId.get(id);
+    }
+
+    /**
+     * The task filed under the given task's id (the first one for duplicates).
+     */
+    Task getTask(Task task) {
+        return byId.get(task);
+    }
+
+    /**
+     * Tasks of the given type in list order (immutable).
+     */
+    public List<Task> getTasksOfType(TaskType type) {
+        TaskVector v = byType.get(type);
+        return v == null ? TaskVector.EMPTY : v;
+    }
+
+    /**
+     * CUSTOM tasks of the given checklist in list order (immutable).
+     */
+    public List<Task> getTasksInChecklist(String checklistId) {
+        TaskVector v = byChecklist.get(checklistId);
+        return v == null ? TaskVector.EMPTY : v;
+    }
+
+    Map<TaskType, TaskVector> typeGroups() {
+        return byType;
+    }
+
+    Map<String, TaskVector> checklistGroups() {
+        return byChecklist;
+    }
+
+    int idCount() {
+        return byId.size();
+    }
+
+    Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    private static <K> Map<K, TaskVector> buildGroups(Map<K, TaskVector.Builder> builders) {
+        Map<K, TaskVector> out = new HashMap<>(builders.size() * 2);
+        for (Map.Entry<K, TaskVector.Builder> e : builders.entrySet()) {
+            out.put(e.getKey(), e.getValue().build());
+        }
+        return out;
+    }
+
+    /**
+     * Mutable working copy used by the single writer to derive the next snapshot.
+     * Not thread-safe; discard after {@link #build(long)}.
+     */
+    static final class Builder {
+        private final TaskVector.Builder tasks;
+        private final IdMap.Builder byId;
+        private final Map<TaskType, TaskVector> baseTypes;
+        private final Map<String, TaskVector> baseChecklists;
+        private final Map<TaskType, TaskVector.Builder> touchedTypes = new HashMap<>();
+        private final Map<String, TaskVector.Builder> touchedChecklists = new HashMap<>();
+
+        private Builder(TaskSnapshot base) {
+            this.tasks = base.tasks.toBuilder();
+            this.byId = base.byId.toBuilder();
+            this.baseTypes = base.byType;
+            this.baseChecklists = base.byChecklist;
+        }
+
+        TaskVector.Builder tasks() {
+            return tasks;
+        }
+
+        Task getById(String id) {
+            return byId.get(id);
+        }
+
+        void putId(Task task) {
+            byId.put(task);
+        }
+
+        void removeId(String id) {
+            byId.remove(id);
+        }
+
+        TaskVector.Builder typeGroup(TaskType type) {
+            return touchedTypes.computeIfAbsent(type, k -> {
+                TaskVector v = baseTypes.get(k);
+                return (v == null ? TaskVector.EMPTY : v).toBuilder();
+            });
+        }
+
+        TaskVector.Builder checklistGroup(String checklistId) {
+            return touchedChecklists.computeIfAbsent(checklistId, k -> {
+                TaskVector v = baseChecklists.get(k);
+                return (v == null ? TaskVector.EMPTY : v).toBuilder();
+            });
+        }
+
+        TaskSnapshot build(long version) {
+            return new TaskSnapshot(version, tasks.build(), byId.build(),
+                    mergeGroups(baseTypes, touchedTypes), mergeGroups(baseChecklists, touchedChecklists));
+        }
+
+        private static <K> Map<K, TaskVector> mergeGroups(Map<K, TaskVector> base, Map<K, TaskVector.Builder> touched) {
+            if (touched.isEmpty()) return base;
+            Map<K, TaskVector> out = new HashMap<>(base);
+            for (Map.Entry<K, TaskVector.Builder> e : touched.entrySet()) {
+                TaskVector v = e.getValue().build();
+                if (v.isEmpty()) out.remove(e.getKey());
+                else out.put(e.getKey(), v);
+            }
+            return out;
+        }
+    }
+
+    /**
+     * Immutable list stored as small chunks, so deriving a changed copy costs one
+     * chunk plus the chunk table instead of the whole list.
+     */
+    static final class TaskVector extends AbstractList<Task> implements RandomAccess {
+        static final int CHUNK = 64;
+        static final TaskVector EMPTY = new TaskVector(new Task[0][], new int[0], 0);
+
+        private final Task[][] chunks;
+        // ends[i] = number of tasks in chunks 0..i
+        private final int[] ends;
+        private final int size;
+
+        private TaskVector(Task[][] chunks, int[] ends, int size) {
+            this.chunks = chunks;
+            this.ends = ends;
+            this.size = size;
+        }
+
+        static TaskVector of(List<Task> list) {
+            int n = list.size();
+            int count = (n + CHUNK - 1) / CHUNK;
+            Task[][] chunks = new Task[count][];
+            int[] ends = new int[count];
+            Iterator<Task> it = list.iterator();
+            for (int c = 0; c < count; c++) {
+                int len = Math.min(CHUNK, n - c * CHUNK);
+                Task[] chunk = new Task[len];
+                for (int i = 0; i < len; i++) chunk[i] = it.next();
+                chunks[c] = chunk;
+                ends[c] = c * CHUNK + len;
+            }
+            return new TaskVector(chunks, ends, n);
+        }
+
+        @Override
+        public Task get(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            int c = locate(ends, chunks.length, index);
+            return chunks[c][c == 0 ? index : index - ends[c - 1]];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<Task> iterator() {
+            return new Iterator<Task>() {
+                private int chunk = 0;
+                private int offset = 0;
+
+                @Override
+                public boolean hasNext() {
+                    while (chunk < chunks.length && offset >= chunks[chunk].length) {
+                        chunk++;
+                        offset = 0;
+                    }
+                    return chunk < chunks.length;
+                }
+
+                @Override
+                public Task next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return chunks[chunk][offset++];
+                }
+            };
+        }
+
+        @Override
+        public void forEach(Consumer<? super Task> action) {
+            for (Task[] chunk : chunks) {
+                for (Task t : chunk) action.accept(t);
+            }
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            int base = 0;
+            for (Task[] chunk : chunks) {
+                for (int i = 0; i < chunk.length; i++) {
+                    if (o == null ? chunk[i] == null : o.equals(chunk[i])) return base + i;
+                }
+                base += chunk.length;
+            }
+            return -1;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return indexOf(o) >= 0;
+        }
+
+        @Override
+        public Object[] toArray() {
+            Object[] out = new Object[size];
+            int pos = 0;
+            for (Task[] chunk : chunks) {
+                System.arraycopy(chunk, 0, out, pos, chunk.length);
+                pos += chunk.length;
+            }
+            return out;
+        }
+
+        Builder toBuilder() {
+            return new Builder(this);
+        }
+
+        private static int locate(int[] ends, int count, int index) {
+            int lo = 0;
+            int hi = count - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (ends[mid] > index) hi = mid;
+                else lo = mid + 1;
+            }
+            return lo;
+        }
+
+        /**
+         * Copy-on-write editor for a TaskVector. Chunks are cloned the first time
+         * they are changed; untouched chunks stay shared with the source.
+         */
+        static final class Builder {
+            private Task[][] chunks;
+            private int[] ends;
+            private boolean[] owned;
+            private int count;
+            private int size;
+
+            private Builder(TaskVector base) {
+                int capacity = Math.max(4, base.chunks.length + 1);
+                this.chunks = Arrays.copyOf(base.chunks, capacity);
+                this.ends = Arrays.copyOf(base.ends, capacity);
+                this.owned = new boolean[capacity];
+                this.count = base.chunks.length;
+                this.size = base.size;
+            }
+
+            int size() {
+                return size;
+            }
+
+            Task get(int index) {
+                if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                int c = locate(ends, count, index);
+                return chunks[c][index - start(c)];
+            }
+
+            void set(int index, Task task) {
+                if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                int c = locate(ends, count, index);
+                if (!owned[c]) {
+                    chunks[c] = chunks[c].clone();
+                    owned[c] = true;
+                }
+                chunks[c][index - start(c)] = task;
+            }
+
+            void add(Task task) {
+                if (count > 0 && chunks[count - 1].length < CHUNK) {
+                    int c = count - 1;
+                    chunks[c] = Arrays.copyOf(chunks[c], chunks[c].length + 1);
+                    chunks[c][chunks[c].length - 1] = task;
+                    owned[c] = true;
+                    ends[c]++;
+                } else {
+                    insertChunk(count, new Task[] {task});
+                    ends[count - 1] = size + 1;
+                }
+                size++;
+            }
+
+            void add(int index, Task task) {
+                if (index < 0 || index > size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                if (index == size) {
+                    add(task);
+                    return;
+                }
+                int c = locate(ends, count, index);
+                Task[] old = chunks[c];
+                int off = index - start(c);
+                Task[] grown = new Task[old.length + 1];
+                System.arraycopy(old, 0, grown, 0, off);
+                grown[off] = task;
+                System.arraycopy(old, off, grown, off + 1, old.length - off);
+                if (grown.length > 2 * CHUNK) {
+                    int half = grown.length / 2;
+                    chunks[c] = Arrays.copyOf(grown, half);
+                    owned[c] = true;
+                    insertChunk(c + 1, Arrays.copyOfRange(grown, half, grown.length));
+                } else {
+                    chunks[c] = grown;
+                    owned[c] = true;
+                }
+                size++;
+                recomputeEnds(c);
+            }
+
+            Task remove(int index) {
+                if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                int c = locate(ends, count, index);
+                Task[] old = chunks[c];
+                int off = index - start(c);
+                Task removed = old[off];
+                if (old.length == 1) {
+                    System.arraycopy(chunks, c + 1, chunks, c, count - c - 1);
+                    System.arraycopy(owned, c + 1, owned, c, count - c - 1);
+                    count--;
+                    chunks[count] = null;
+                } else {
+                    Task[] shrunk = new Task[old.length - 1];
+                    System.arraycopy(old, 0, shrunk, 0, off);
+                    System.arraycopy(old, off + 1, shrunk, off, old.length - off - 1);
+                    chunks[c] = shrunk;
+                    owned[c] = true;
+                }
+                size--;
+                recomputeEnds(c);
+                return removed;
+            }
+
+            TaskVector build() {
+                // Later edits through this builder must not change the built vector
+                Arrays.fill(owned, false);
+                if (size == 0) return EMPTY;
+                return new TaskVector(Arrays.copyOf(chunks, count), Arrays.copyOf(ends, count), size);
+            }
+
+            private int start(int c) {
+                return c == 0 ? 0 : ends[c - 1];
+            }
+
+            private void insertChunk(int at, Task[] chunk) {
+                if (count == chunks.length) {
+                    int capacity = chunks.length * 2;
+                    chunks = Arrays.copyOf(chunks, capacity);
+                    ends = Arrays.copyOf(ends, capacity);
+                    owned = Arrays.copyOf(owned, capacity);
+                }
+                System.arraycopy(chunks, at, chunks, at + 1, count - at);
+                System.arraycopy(owned, at, owned, at + 1, count - at);
+                System.arraycopy(ends, at, ends, at + 1, count - at);
+                chunks[at] = chunk;
+                owned[at] = true;
+                count++;
+            }
+
+            private void recomputeEnds(int from) {
+                int end = from == 0 ? 0 : ends[from - 1];
+                for (int c = from; c < count; c++) {
+                    end += chunks[c].length;
+                    ends[c] = end;
+                }
+            }
+        }
+    }
+
+    /**
+     * Immutable id lookup split into shards, so a change copies one shard only.
+     * Each shard is a {@link TaskIdMap}, keyed by the binary form of the id.
+     */
+    static final class IdMap {
+        private static final int SHARDS = 64;
+        static final IdMap EMPTY = new IdMap(emptyShards(), 0);
+
+        private final TaskIdMap<Task>[] shards;
+        private final int size;
+
+        private IdMap(TaskIdMap<Task>[] shards, int size) {
+            this.shards = shards;
+            this.size = size;
+        }
+
+        private static TaskIdMap<Task>[] emptyShards() {
+            @SuppressWarnings({"unchecked", "rawtypes"}) // Generic arrays cannot be created directly
+            TaskIdMap<Task>[] shards = new TaskIdMap[SHARDS];
+            for (int i = 0; i < SHARDS; i++) shards[i] = new TaskIdMap<>();
+            return shards;
+        }
+
+        // The table inside a shard probes from the low bits of the hash; shards take the top ones
+        private static int shard(long high, long low) {
+            return (int) (TaskIdMap.hash(high, low) >>> 58);
+        }
+
+        private static int shard(String id) {
+            if (Task.isBinaryId(id)) return shard(Task.idHigh(id), Task.idLow(id));
+            int h = id.hashCode();
+            return (h ^ (h >>> 16)) & (SHARDS - 1);
+        }
+
+        private static int shard(Task task) {
+            return task.hasBinaryId() ? shard(task.idHigh(), task.idLow()) : shard(task.getId());
+        }
+
+        Task get(String id) {
+            if (Task.hasIdShape(id)) {
+                long high = Task.idHigh(id);
+                long low = Task.idLow(id);
+                if (TaskIdMap.parsed(id, high, low)) return shards[shard(high, low)].get(high, low);
+            }
+            return shards[shard(id)].get(id);
+        }
+
+        Task get(Task task) {
+            return shards[shard(task)].get(task);
+        }
+
+        int size() {
+            return size;
+        }
+
+        Builder toBuilder() {
+            return new Builder(this);
+        }
+
+        static final class Builder {
+            private final TaskIdMap<Task>[] shards;
+            private final boolean[] owned = new boolean[SHARDS];
+            private int size;
+
+            private Builder(IdMap base) {
+                this.shards = base.shards.clone();
+                this.size = base.size;
+            }
+
+            Task get(String id) {
+                return shards[shard(id)].get(id);
+            }
+
+            Task get(Task task) {
+                return shards[shard(task)].get(task);
+            }
+
+            void put(Task task) {
+                if (!task.hasBinaryId() && task.getId() == null) return;
+                int s = shard(task);
+                if (shards[s].get(task) == task) return;
+                if (own(s).put(task, task) == null) size++;
+            }
+
+            void remove(String id) {
+                int s = shard(id);
+                if (!shards[s].containsKey(id)) return;
+                own(s).remove(id);
+                size--;
+            }
+
+            IdMap build() {
+                Arrays.fill(owned, false);
+                return new IdMap(shards.clone(), size);
+            }
+
+            private TaskIdMap<Task> own(int s) {
+                if (!owned[s]) {
+                    shards[s] = shards[s].copy();
+                    owned[s] = true;
+                }
+                return shards[s];
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Daily Checklist
+ * Copyright (C) 2025 Johan Andersson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary copy of tasks.xml used for fast cold starts.
+ *
+ * Layout: a fixed header (magic, version, length, modification time and CRC32
+ * of the tasks.xml it mirrors, task count, CRC32 of the body) followed by a string
+ * table and one length-prefixed record per task. Repeated values (type,
+ * weekday, checklistId, parentId, doneDate) are stored once in the string table
+ * and referenced by index, so decoding allocates only ids, names and notes held
+ * inline; a note in the note store is recorded by its length.
+ *
+ * The snapshot is only trusted when its header matches the current tasks.xml,
+ * content included, and its checksum is intact; otherwise callers fall back to
+ * parsing XML. Hashing tasks.xml costs far less than parsing it, and it catches
+ * a same-size rewrite within the modification time granularity.
+ */
+public class TaskSnapshotFile {
+    private static final int MAGIC = 0x44435331; // "DCS1"
+    private static final short VERSION = 3;
+    private static final int HEADER_SIZE = 4 + 2 + 8 + 8 + 8 + 4 + 4;
+    private static final int NONE = -1;
+
+    private final Path dataPath;
+    private final Path snapshotPath;
+
+    public TaskSnapshotFile(String dataFileName) {
+        this.dataPath = Paths.get(dataFileName);
+        this.snapshotPath = Paths.get(dataFileName + ApplicationConfiguration.SNAPSHOT_FILE_SUFFIX);
+    }
+
+    /**
+     * Reads the snapshot if it describes the tasks.xml with the given length and
+     * modification time and the content tasks.xml has now. Returns null when it
+     * is missing, outdated or corrupt.
+     */
+    public List<Task> read(long xmlLength, long xmlModified) {
+        if (!Files.exists(snapshotPath)) return null;
+        long start = System.nanoTime();
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(snapshotPath));
+            if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC || buf.getShort() != VERSION) return null;
+            if (buf.getLong() != xmlLength || buf.getLong() != xmlModified) return null;
+            if (buf.getLong() != TaskStaxHandler.crc32Of(dataPath)) {
+                MetricsCollector.record("Binary snapshot describes other tasks.xml content, falling back to XML");
+                return null;
+            }
+            int count = buf.getInt();
+            int expectedCrc = buf.getInt();
+            CRC32 crc = new CRC32();
+            crc.update(buf.array(), HEADER_SIZE, buf.limit() - HEADER_SIZE);
+            if ((int) crc.getValue() != expectedCrc) {
+                MetricsCollector.record("Binary snapshot checksum mismatch, falling back to XML");
+                return null;
+            }
+
+            int tableSize = buf.getInt();
+            String[] table = new String[tableSize];
+            for (int i = 0; i < tableSize; i++) table[i] = readString(buf);
+            TaskType[] types = TaskType.values();
+
+            List<Task> out = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int recordLength = buf.getInt();
+                int next = buf.position() + recordLength;
+                String id = readString(buf);
+                String name = readString(buf);
+                int typeOrdinal = buf.get();
+                boolean done = buf.get() != 0;
+                String weekday = lookup(table, buf.getInt());
+                String checklistId = lookup(table, buf.getInt());
+                String parentId = lookup(table, buf.getInt());
+                String doneDate = lookup(table, buf.getInt());
+                String note = readString(buf);
+                int noteLength = buf.getInt();
+                TaskType type = typeOrdinal >= 0 && typeOrdinal < types.length ? types[typeOrdinal] : TaskType.CUSTOM;
+                Task t = new Task(id, name, type, weekday, done, doneDate, checklistId, parentId);
+                if (note != null) t.setNote(note);
+                else if (noteLength > 0) t.setStoredNote(noteLength, null);
+                out.add(t);
+                buf.position(next);
+            }
+            MetricsCollector.record("Loaded " + count + " tasks from binary snapshot in "
+                    + ((System.nanoTime() - start) / 1_000_000.0) + " ms");
+            return out;
+        } catch (IOException | RuntimeException e) {
+            MetricsCollector.record("Binary snapshot unreadable, falling back to XML: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the given tasks for the tasks.xml with the given length,
+     * modification time and content CRC32, via a temp file and atomic move.
+     */
+    public void write(List<Task> tasks, long xmlLength, long xmlModified, long xmlCrc) throws IOException {
+        long start = System.nanoTime();
+        Map<String, Integer> index = new HashMap<>();
+        List<String> table = new ArrayList<>();
+        ByteBuffer records = ByteBuffer.allocate(Math.max(4096, tasks.size() * 96));
+
+        for (Task t : tasks) {
+            byte[] id = utf8(t.getId());
+            byte[] name = utf8(t.getName());
+            String held = t.getHeldNote();
+            byte[] note = utf8(held == null || held.isEmpty() ? null : held);
+            int recordLength = stringSize(id) + stringSize(name) + 1 + 1 + 4 * 4 + stringSize(note) + 4;
+            records = ensureCapacity(records, 4 + recordLength);
+            records.putInt(recordLength);
+            putString(records, id);
+            putString(records, name);
+            records.put((byte) (t.getType() == null ? TaskType.CUSTOM.ordinal() : t.getType().ordinal()));
+            records.put((byte) (t.isDone() ? 1 : 0));
+            records.putInt(intern(t.getWeekday(), index, table));
+            records.putInt(intern(t.getChecklistId(), index, table));
+            records.putInt(intern(t.getParentId(), index, table));
+            records.putInt(intern(t.getDoneDate(), index, table));
+            putString(records, note);
+            records.putInt(held == null ? t.getNoteLength() : 0);
+        }
+
+        ByteBuffer strings = ByteBuffer.allocate(4 + table.size() * 48);
+        strings.putInt(table.size());
+        for (String value : table) {
+            byte[] b = utf8(value);
+            strings = ensureCapacity(strings, stringSize(b));
+            putString(strings, b);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(strings.array(), 0, strings.position());
+        crc.update(records.array(), 0, records.position());
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.putLong(xmlLength);
+        header.putLong(xmlModified);
+        header.putLong(xmlCrc);
+        header.putInt(tasks.size());
+        header.putInt((int) crc.getValue());
+
+        Path parent = snapshotPath.toAbsolutePath().getParent();
+        Path tmp = parent.resolve(snapshotPath.getFileName().toString() + ".tmp." + System.nanoTime());
+        try (OutputStream os = Files.newOutputStream(tmp)) {
+            os.write(header.array(), 0, HEADER_SIZE);
+            os.write(strings.array(), 0, strings.position());
+            os.write(records.array(), 0, records.position());
+        }
+        Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        MetricsCollector.record("Wrote binary snapshot of " + tasks.size() + " tasks (" + (HEADER_SIZE + strings.position() + records.position())
+                + " bytes) in " + ((System.nanoTime() - start) / 1_000_000.0) + " ms");
+    }
+
+    /**
+     * Removes the snapshot, e.g. when the XML it mirrors could not be written.
+     */
+    public void delete() {
+        try {
+            Files.deleteIfExists(snapshotPath);
+        } catch (IOException ignore) {}
+    }
+
+    private static int intern(String s, Map<String, Integer> index, List<String> table) {
+        if (s == null) return NONE;
+        Integer i = index.get(s);
+        if (i == null) {
+            i = table.size();
+            table.add(s);
+            index.put(s, i);
+        }
+        return i;
+    }
+
+    private static String lookup(String[] table, int i) {
+        return i == NONE ? null : table[i];
+    }
+
+    private static byte[] utf8(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int stringSize(byte[] b) {
+        return 4 + (b == null ? 0 : b.length);
+    }
+
+    private static void putString(ByteBuffer buf, byte[] b) {
+        if (b == null) {
+            buf.putInt(NONE);
+            return;
+        }
+        buf.putInt(b.length);
+        buf.put(b);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int len = buf.getInt();
+        if (len < 0) return null;
+        String s = new String(buf.array(), buf.position(), len, StandardCharsets.UTF_8);
+        buf.position(buf.position() + len);
+        return s;
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buf, int extra) {
+        if (buf.remaining() >= extra) return buf;
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + extra));
+        bigger.put(buf.array(), 0, buf.position());
+        return bigger;
+    }
+}
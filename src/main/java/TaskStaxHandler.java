@@ -19,7 +19,7 @@ import javax.xml.stream.XMLStreamReader;
  * Lightweight StAX-based handler for tasks XML. Uses streaming read/write
  * and writes via a temp file + atomic move for safety.
  */
-public class TaskStaxHandler {
+public class TaskStaxHandler implements TaskStore {
     private final String fileName;
     private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
     // Note: we avoid XMLOutputFactory / XMLStreamWriter for writes and do a manual
@@ -27,10 +27,53 @@ public class TaskStaxHandler {
     private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ISO_LOCAL_DATE;
     private static final ZoneId ZONE = ZoneId.systemDefault();
 
+    /**
+     * How tasks.xml is read. FAST scans the memory-mapped bytes with
+     * {@link TaskXmlFastReader} (in parallel chunks once the file is large) and
+     * falls back to STAX for non-canonical files. PARALLEL always splits the file.
+     */
+    public enum ParseMode { FAST, PARALLEL, STAX }
+
+    private volatile ParseMode parseMode = parseModeFromConfig();
+
+    private static ParseMode parseModeFromConfig() {
+        try {
+            return ParseMode.valueOf(ApplicationConfiguration.XML_PARSER.toUpperCase(java.util.Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ParseMode.FAST;
+        }
+    }
+
+    // Whether full writes are forced to disk before and after the atomic move
+    private volatile DurabilityMode durabilityMode = DurabilityMode.parse(ApplicationConfiguration.DURABILITY_MODE);
+
     public TaskStaxHandler(String fileName) {
         this.fileName = fileName;
     }
 
+    @Override
+    public String getFileName() {
+        return fileName;
+    }
+
+    public DurabilityMode getDurabilityMode() {
+        return durabilityMode;
+    }
+
+    @Override
+    public void setDurabilityMode(DurabilityMode durabilityMode) {
+        this.durabilityMode = durabilityMode;
+    }
+
+    public ParseMode getParseMode() {
+        return parseMode;
+    }
+
+    public void setParseMode(ParseMode parseMode) {
+        this.parseMode = parseMode;
+    }
+
+    @Override
     public void ensureFileExists() throws Exception {
         Path target = Paths.get(fileName);
         File parent = target.toAbsolutePath().getParent().toFile();
@@ -41,7 +84,42 @@ public class TaskStaxHandler {
         }
     }
 
+    @Override
     public List<Task> parseAllTasks() throws Exception {
+        return parseAllTasks(parseMode);
+    }
+
+    /**
+     * Parses tasks.xml with the given reader; used directly to benchmark the two paths.
+     */
+    public List<Task> parseAllTasks(ParseMode mode) throws Exception {
+        if (mode != ParseMode.STAX) {
+            try {
+                return TaskXmlFastReader.read(new File(fileName), mode == ParseMode.PARALLEL);
+            } catch (TaskXmlFastReader.NotCanonicalException e) {
+                MetricsCollector.record("tasks.xml not in canonical layout, using StAX: " + e.getMessage());
+            }
+        }
+        return parseAllTasksStax();
+    }
+
+    /**
+     * Reads the daily tasks with the fast reader, which skips over the tasks of
+     * custom checklists; null when the file needs the StAX parser, which would
+     * read it all anyway.
+     */
+    @Override
+    public List<Task> parseDailyTasks(List<String> storedIds) throws Exception {
+        if (parseMode == ParseMode.STAX) return null;
+        try {
+            return TaskXmlFastReader.readDaily(new File(fileName), storedIds);
+        } catch (TaskXmlFastReader.NotCanonicalException e) {
+            storedIds.clear();
+            return null;
+        }
+    }
+
+    private List<Task> parseAllTasksStax() throws Exception {
         List<Task> out = new ArrayList<>();
         File f = new File(fileName);
         if (!f.exists()) return out;
@@ -50,6 +128,7 @@ public class TaskStaxHandler {
             Task current = null;
             String currentElement = null;
             StringBuilder textAccumulator = new StringBuilder(); // Fix: accumulate text across multiple CHARACTERS events
+            TaskStringPool pool = new TaskStringPool();
             while (r.hasNext()) {
                 int ev = r.next();
                 if (ev == XMLStreamConstants.START_ELEMENT) {
@@ -77,17 +156,20 @@ public class TaskStaxHandler {
                         switch (currentElement) {
                             case "name": current.setName(txt); break;
                             case "type": try { current.setType(TaskType.valueOf(txt)); } catch (Exception ex) {} break;
-                            case "checklistId": current.setChecklistId(txt); break;
-                            case "parentId": current.setParentId(txt); break;
-                            case "weekday": current.setWeekday(txt); break;
+                            case "checklistId": current.setChecklistId(pool.intern(txt, TaskStringPool.CHECKLIST_ID)); break;
+                            case "parentId": current.setParentId(pool.intern(txt, TaskStringPool.PARENT_ID)); break;
+                            case "weekday": current.setWeekday(pool.intern(txt, TaskStringPool.WEEKDAY)); break;
                             case "done": current.setDone(Boolean.parseBoolean(txt)); break;
                             case "note": current.setNote(txt); break;
+                            case "noteLength": try { current.setStoredNote(Integer.parseInt(txt.trim()), null); } catch (NumberFormatException ex) {} break;
                             case "doneDate":
                                 if (txt != null && !txt.isEmpty()) {
                                     try {
                                         LocalDate ld = LocalDate.parse(txt, DATE_FMT);
                                         current.setDoneDate(java.util.Date.from(ld.atStartOfDay(ZONE).toInstant()));
-                                    } catch (Exception ignore) { }
+                                    } catch (Exception ex) {
+                                        current.setUnparsedDoneDate(txt);
+                                    }
                                 }
                                 break;
                         }
@@ -97,12 +179,18 @@ public class TaskStaxHandler {
                 }
             }
             r.close();
+            pool.report(f.getName());
         }
         return out;
     }
 
-    public void setAllTasks(List<Task> tasks) throws Exception {
-        KMLOutput(tasks);
+    /**
+     * Replaces the file with the given tasks and returns the CRC32 of the bytes
+     * written, so callers can later recognise the file as their own output.
+     */
+    @Override
+    public long setAllTasks(List<Task> tasks) throws Exception {
+        return KMLOutput(tasks);
     }
 
     public void updateTasks(List<Task> tasks) throws Exception {
@@ -122,7 +210,7 @@ public class TaskStaxHandler {
         }
         List<Task> current = parseAllTasks();
         // Check for duplicate IDs before adding
-        if (current.stream().anyMatch(t -> t.getId().equals(task.getId()))) {
+        if (current.stream().anyMatch(t -> t.equals(task))) {
             throw new IllegalArgumentException("Task with ID " + task.getId() + " already exists");
         }
         current.add(task);
@@ -134,7 +222,7 @@ public class TaskStaxHandler {
             throw new IllegalArgumentException("Invalid task or task ID: " + task);
         }
         List<Task> current = parseAllTasks();
-        boolean removed = current.removeIf(t -> t.getId().equals(task.getId()));
+        boolean removed = current.removeIf(t -> t.equals(task));
         if (!removed) {
             // Not an error - task might have already been removed by another operation
             System.out.println("Task " + task.getId() + " not found during removal (may already be deleted)");
@@ -142,66 +230,126 @@ public class TaskStaxHandler {
         KMLOutput(current);
     }
 
-    public void checkAndResetPastDoneDate(Task task, String today) throws java.text.ParseException {
-        if (task.isDone() && task.getDoneDate() != null && !task.getDoneDate().trim().isEmpty()) {
-            java.util.Date doneDate = task.getParsedDoneDate(); // Use lazy parsing
-            if (doneDate == null) return; // Skip if parsing failed
-            java.util.Date todayDate = new java.text.SimpleDateFormat("yyyy-MM-dd").parse(today);
-            if (doneDate.before(todayDate)) {
-                task.setDone(false);
-                task.setDoneDate(null);
-            }
-        }
+    private long KMLOutput(List<Task> tasks) throws Exception {
+        return writeAtomically(Paths.get(fileName), durabilityMode.forcesWrites(), os -> writeDocument(os, tasks));
     }
 
-    private void KMLOutput(List<Task> tasks) throws Exception {
-        Path target = Paths.get(fileName);
+    /**
+     * Writer of a file's content, for {@link #writeAtomically}.
+     */
+    @FunctionalInterface
+    interface Content {
+        void writeTo(OutputStream os) throws java.io.IOException;
+    }
+
+    /**
+     * Writes a file via a uniquely named temp file in the same directory and an
+     * atomic move, forcing the content and the rename to disk when asked.
+     * Returns the CRC32 of the bytes written.
+     */
+    static long writeAtomically(Path target, boolean force, Content content) throws java.io.IOException {
         Path parent = target.toAbsolutePath().getParent();
         if (parent == null) parent = Paths.get(".");
         // Use a unique temp file name to avoid collisions / locks on Windows
         String uniqueSuffix = java.lang.management.ManagementFactory.getRuntimeMXBean().getName().replaceAll("[^0-9a-zA-Z._-]", "_") + "." + System.nanoTime();
         Path tmp = parent.resolve(target.getFileName().toString() + ".tmp." + uniqueSuffix);
 
-        try (OutputStream fos = new FileOutputStream(tmp.toFile()); OutputStream os = new BufferedOutputStream(fos, 32 * 1024)) {
-            // write header
-            writeUtf8(os, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<tasks>\n");
-
-            StringBuilder sb = new StringBuilder(256);
-            for (Task t : tasks) {
-                sb.setLength(0);
-                sb.append("  <task id=\"");
-                escapeXmlToBuilder(t.getId(), sb);
-                sb.append("\">\n");
-
-                // name
-                sb.append("    <name>"); escapeXmlToBuilder(t.getName(), sb); sb.append("</name>\n");
-                // type
-                sb.append("    <type>"); sb.append(t.getType() == null ? "CUSTOM" : t.getType().name()); sb.append("</type>\n");
-                if (t.getChecklistId() != null) { sb.append("    <checklistId>"); escapeXmlToBuilder(t.getChecklistId(), sb); sb.append("</checklistId>\n"); }
-                if (t.getParentId() != null) { sb.append("    <parentId>"); escapeXmlToBuilder(t.getParentId(), sb); sb.append("</parentId>\n"); }
-                if (t.getWeekday() != null) { sb.append("    <weekday>"); escapeXmlToBuilder(t.getWeekday(), sb); sb.append("</weekday>\n"); }
-                sb.append("    <done>"); sb.append(t.isDone()); sb.append("</done>\n");
-                sb.append("    <doneDate>"); if (t.getDoneDate() != null) escapeXmlToBuilder(t.getDoneDate(), sb); sb.append("</doneDate>\n");
-                if (t.getNote() != null && !t.getNote().isEmpty()) { sb.append("    <note>"); escapeXmlToBuilder(t.getNote(), sb); sb.append("</note>\n"); }
-
-                sb.append("  </task>\n");
-                writeUtf8(os, sb.toString());
-            }
-
-            writeUtf8(os, "</tasks>\n");
+        java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+        FileOutputStream file = new FileOutputStream(tmp.toFile());
+        try (OutputStream fos = new java.util.zip.CheckedOutputStream(file, crc); OutputStream os = new BufferedOutputStream(fos, 32 * 1024)) {
+            content.writeTo(os);
             os.flush();
+            // The content must be on disk before the rename can make it visible
+            if (force) file.getChannel().force(true);
         }
 
         // Move into place atomically
         java.nio.file.Files.move(tmp, target, java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+        if (force) forceDirectory(parent);
+        return crc.getValue();
+    }
+
+    /**
+     * CRC32 of a file's content, the same value {@link #writeAtomically} returns
+     * for the bytes it wrote.
+     */
+    static long crc32Of(Path file) throws java.io.IOException {
+        java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+        try (java.nio.channels.FileChannel ch = java.nio.channels.FileChannel.open(file, java.nio.file.StandardOpenOption.READ)) {
+            java.nio.ByteBuffer buf = java.nio.ByteBuffer.allocateDirect(64 * 1024);
+            while (ch.read(buf) != -1) {
+                buf.flip();
+                crc.update(buf);
+                buf.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Writes a complete tasks document in the canonical layout the fast reader
+     * expects. A note the task holds is written inline; one that lives in the
+     * note store is recorded by its length only.
+     */
+    static void writeDocument(OutputStream os, List<Task> tasks) throws java.io.IOException {
+        writeDocument(os, tasks, false);
+    }
+
+    /**
+     * Writes the tasks to a file that stands on its own, with every note inline
+     * (read from the note store where needed), e.g. for backups.
+     */
+    public long exportAllTasks(List<Task> tasks) throws Exception {
+        return writeAtomically(Paths.get(fileName), durabilityMode.forcesWrites(), os -> writeDocument(os, tasks, true));
+    }
+
+    private static void writeDocument(OutputStream os, List<Task> tasks, boolean inlineNotes) throws java.io.IOException {
+        // write header
+        writeUtf8(os, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<tasks>\n");
+
+        StringBuilder sb = new StringBuilder(256);
+        for (Task t : tasks) {
+            sb.setLength(0);
+            sb.append("  <task id=\"");
+            escapeXmlToBuilder(t.getId(), sb);
+            sb.append("\">\n");
+
+            // name
+            sb.append("    <name>"); escapeXmlToBuilder(t.getName(), sb); sb.append("</name>\n");
+            // type
+            sb.append("    <type>"); sb.append(t.getType() == null ? "CUSTOM" : t.getType().name()); sb.append("</type>\n");
+            if (t.getChecklistId() != null) { sb.append("    <checklistId>"); escapeXmlToBuilder(t.getChecklistId(), sb); sb.append("</checklistId>\n"); }
+            if (t.getParentId() != null) { sb.append("    <parentId>"); escapeXmlToBuilder(t.getParentId(), sb); sb.append("</parentId>\n"); }
+            if (t.getWeekday() != null) { sb.append("    <weekday>"); escapeXmlToBuilder(t.getWeekday(), sb); sb.append("</weekday>\n"); }
+            sb.append("    <done>"); sb.append(t.isDone()); sb.append("</done>\n");
+            sb.append("    <doneDate>"); if (t.getDoneDate() != null) escapeXmlToBuilder(t.getDoneDate(), sb); sb.append("</doneDate>\n");
+            String note = inlineNotes ? t.getNote() : t.getHeldNote();
+            if (note != null && !note.isEmpty()) { sb.append("    <note>"); escapeXmlToBuilder(note, sb); sb.append("</note>\n"); }
+            else if (note == null && t.getNoteLength() > 0) { sb.append("    <noteLength>"); sb.append(t.getNoteLength()); sb.append("</noteLength>\n"); }
+
+            sb.append("  </task>\n");
+            writeUtf8(os, sb.toString());
+        }
+
+        writeUtf8(os, "</tasks>\n");
+    }
+
+    /**
+     * Makes a rename in the directory durable. Not every platform can open a
+     * directory for this (Windows cannot); there the rename is left to the OS.
+     */
+    private static void forceDirectory(Path dir) {
+        try (java.nio.channels.FileChannel ch = java.nio.channels.FileChannel.open(dir, java.nio.file.StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (java.io.IOException ignore) {}
     }
 
-    private void writeUtf8(OutputStream os, String s) throws java.io.IOException {
+    private static void writeUtf8(OutputStream os, String s) throws java.io.IOException {
         byte[] b = s.getBytes(java.nio.charset.StandardCharsets.UTF_8);
         os.write(b, 0, b.length);
     }
 
-    private void escapeXmlToBuilder(String s, StringBuilder sb) {
+    static void escapeXmlToBuilder(String s, StringBuilder sb) {
         if (s == null) return;
         for (int i = 0, n = s.length(); i < n; i++) {
             char c = s.charAt(i);
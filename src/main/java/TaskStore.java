@@ -0,0 +1,66 @@
+/*
+ * Daily Checklist
+ * Copyright (C) 2025 Johan Andersson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+import java.util.List;
+
+/**
+ * Where the full task list lives on disk. The journal, the done-state file and
+ * the binary snapshot are sidecars of the store's anchor file, and change
+ * detection watches that file: whenever the store's content changes, the
+ * anchor is rewritten.
+ */
+public interface TaskStore {
+
+    /**
+     * The file that stands for the whole store.
+     */
+    String getFileName();
+
+    void ensureFileExists() throws Exception;
+
+    /**
+     * Reads every task, in {@link #storageOrder storage order}.
+     */
+    List<Task> parseAllTasks() throws Exception;
+
+    /**
+     * Replaces the stored tasks and returns the CRC32 of the anchor file as
+     * written, so callers can later recognise it as their own output.
+     */
+    long setAllTasks(List<Task> tasks) throws Exception;
+
+    /**
+     * Reads only the tasks of the daily lists (those outside any custom
+     * checklist), in the order {@link #parseAllTasks} returns them, or null
+     * when that would take a full read. {@code storedIds} receives the ids of
+     * the tasks {@link #parseAllTasks} returns, in order, up to at least the
+     * last daily task.
+     */
+    default List<Task> parseDailyTasks(List<String> storedIds) throws Exception {
+        return null;
+    }
+
+    void setDurabilityMode(DurabilityMode durabilityMode);
+
+    /**
+     * The order in which {@link #parseAllTasks} returns the given tasks once
+     * they have been written.
+     */
+    default List<Task> storageOrder(List<Task> tasks) {
+        return tasks;
+    }
+}
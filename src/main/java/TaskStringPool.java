@@ -0,0 +1,167 @@
+/*
+ * Daily Checklist
+ * Copyright (C) 2025 Johan Andersson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interning of the task field values that repeat across a file: checklist and
+ * parent ids, weekdays and done dates.
+ *
+ * The repository-wide table ({@link #shared(String)}) keeps one instance of
+ * each value for every task in memory. A parse-scoped pool sits in front of
+ * it for one parser run: the byte scanner looks values up by their raw UTF-8
+ * bytes, so a repeated value costs neither a decode nor a String, and the
+ * pool counts how many values it saw and how many were distinct.
+ */
+final class TaskStringPool {
+    /** Field kinds counted separately in the parse metric. */
+    static final int CHECKLIST_ID = 0;
+    static final int PARENT_ID = 1;
+    static final int WEEKDAY = 2;
+    static final int DONE_DATE = 3;
+    private static final String[] FIELD_NAMES = {"checklistId", "parentId", "weekday", "doneDate"};
+
+    private static final Map<String, String> SHARED = new ConcurrentHashMap<>();
+
+    // Raw values of this parse, by byte content; slots fill until the table is full
+    private byte[][] keys = new byte[64][];
+    private String[] values = new String[64];
+    private int[] hashes = new int[64];
+    private int size;
+    private final Map<String, String> byText = new HashMap<>();
+    private final int[] total = new int[FIELD_NAMES.length];
+    private final int[] distinct = new int[FIELD_NAMES.length];
+
+    /**
+     * The repository-wide instance equal to the value. The table is cleared once
+     * it outgrows {@link ApplicationConfiguration#STRING_POOL_MAX_ENTRIES}
+     * (values of deleted checklists and parents pile up otherwise); values
+     * already handed out stay valid, they are only shared less until reloaded.
+     */
+    static String shared(String value) {
+        if (value == null) return null;
+        String existing = SHARED.get(value);
+        if (existing != null) return existing;
+        if (SHARED.size() >= ApplicationConfiguration.STRING_POOL_MAX_ENTRIES) SHARED.clear();
+        existing = SHARED.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    /**
+     * The shared value whose UTF-8 encoding is buf[start, end), or null when
+     * those bytes are not plain text (entity references, carriage returns) and
+     * need decoding first. Does not allocate when the value was seen before.
+     */
+    String intern(ByteBuffer buf, int start, int end, int field) {
+        int len = end - start;
+        int h = 1;
+        for (int i = start; i < end; i++) {
+            byte b = buf.get(i);
+            if (b == '&' || b == '\r') return null;
+            h = 31 * h + b;
+        }
+        total[field]++;
+        h ^= h >>> 16;
+        int mask = keys.length - 1;
+        int slot = h & mask;
+        for (byte[] key; (key = keys[slot]) != null; slot = (slot + 1) & mask) {
+            if (hashes[slot] == h && key.length == len && sameBytes(buf, start, key)) return values[slot];
+        }
+        byte[] key = new byte[len];
+        buf.get(start, key, 0, len);
+        String value = shared(new String(key, StandardCharsets.UTF_8));
+        distinct[field]++;
+        // Past the cap values are still shared, just no longer found by their bytes
+        if (size < ApplicationConfiguration.STRING_POOL_MAX_PARSE_ENTRIES) {
+            keys[slot] = key;
+            values[slot] = value;
+            hashes[slot] = h;
+            if (++size * 2 > keys.length) grow();
+        }
+        return value;
+    }
+
+    /**
+     * The shared instance of an already decoded value, counted for the given field.
+     */
+    String intern(String value, int field) {
+        if (value == null) return null;
+        total[field]++;
+        String pooled = byText.get(value);
+        if (pooled != null) return pooled;
+        distinct[field]++;
+        pooled = shared(value);
+        if (byText.size() < ApplicationConfiguration.STRING_POOL_MAX_PARSE_ENTRIES) byText.put(pooled, pooled);
+        return pooled;
+    }
+
+    /**
+     * Adds the counts of another pool, e.g. of a chunk parsed in parallel.
+     */
+    void addCounts(TaskStringPool other) {
+        for (int i = 0; i < total.length; i++) {
+            total[i] += other.total[i];
+            distinct[i] += other.distinct[i];
+        }
+    }
+
+    /**
+     * Records the distinct/total ratio per field for the parse of the given source.
+     */
+    void report(String source) {
+        int all = 0;
+        int unique = 0;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < total.length; i++) {
+            all += total[i];
+            unique += distinct[i];
+            if (total[i] > 0) sb.append(", ").append(FIELD_NAMES[i]).append(' ').append(distinct[i]).append('/').append(total[i]);
+        }
+        if (all == 0) return;
+        MetricsCollector.record("Interned field values of " + source + ": " + unique + " distinct of " + all
+                + String.format(" (%.2f%%)", 100.0 * unique / all) + sb + ", " + SHARED.size() + " shared");
+    }
+
+    private static boolean sameBytes(ByteBuffer buf, int start, byte[] key) {
+        for (int i = 0; i < key.length; i++) {
+            if (buf.get(start + i) != key[i]) return false;
+        }
+        return true;
+    }
+
+    private void grow() {
+        byte[][] oldKeys = keys;
+        String[] oldValues = values;
+        int[] oldHashes = hashes;
+        keys = new byte[oldKeys.length * 2][];
+        values = new String[keys.length];
+        hashes = new int[keys.length];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null) continue;
+            int slot = oldHashes[i] & mask;
+            while (keys[slot] != null) slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+            hashes[slot] = oldHashes[i];
+        }
+    }
+}
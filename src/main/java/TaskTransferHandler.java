@@ -387,7 +387,7 @@ public class TaskTransferHandler extends TransferHandler {
         int idx = parentIndex + 1;
         while (idx < size) {
             Task t = list.getModel().getElementAt(idx);
-            if (t != null && parent.getId().equals(t.getParentId())) {
+            if (t != null && parent.hasId(t.getParentId())) {
                 subtaskCount++;
                 idx++;
             } else {
@@ -76,11 +76,13 @@ public class TaskUpdater {
     private List<Task> buildDesiredList(List<Task> parents, java.util.Map<String, Task> headingByParent, TaskManager taskManager, boolean showAllWeekdaySpecificTasks, String currentWeekday) {
         List<Task> desired = new ArrayList<>();
         for (Task parent : parents) {
-            Task heading = headingByParent.get(parent.getId());
+            // Formatted on each call, so only once per parent
+            String parentId = parent.getId();
+            Task heading = headingByParent.get(parentId);
             if (heading != null) desired.add(heading);
             desired.add(parent);
             if (taskManager != null) {
-                java.util.List<Task> subs = taskManager.getSubtasksSorted(parent.getId());
+                java.util.List<Task> subs = taskManager.getSubtasksSorted(parentId);
                 if (subs != null && !subs.isEmpty()) {
                     for (Task s : subs) {
                         boolean showSub = s.getWeekday() == null || showAllWeekdaySpecificTasks || s.getWeekday().toLowerCase().equals(currentWeekday);
@@ -0,0 +1,644 @@
+/*
+ * Daily Checklist
+ * Copyright (C) 2025 Johan Andersson
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Byte-level reader for the tasks.xml layout written by {@link TaskStaxHandler}.
+ *
+ * The file is memory-mapped and scanned directly as UTF-8. Element names are
+ * compared as bytes and only the final field values are turned into Strings;
+ * entity references are decoded in place in a reusable scratch buffer. Anything
+ * outside the canonical layout (comments, CDATA, nested markup, extra attributes,
+ * a non UTF-8 declaration) raises {@link NotCanonicalException} so the caller can
+ * fall back to the StAX parser.
+ */
+public final class TaskXmlFastReader {
+    private static final byte[] XML_DECL = ascii("<?xml");
+    private static final byte[] DECL_END = ascii("?>");
+    private static final byte[] ROOT_OPEN = ascii("<tasks>");
+    private static final byte[] ROOT_CLOSE = ascii("</tasks>");
+    private static final byte[] TASK_OPEN = ascii("<task");
+    private static final byte[] TASK_CLOSE = ascii("</task>");
+    private static final byte[] ID_ATTR = ascii("id=\"");
+    private static final byte[] NAME = ascii("name");
+    private static final byte[] TYPE = ascii("type");
+    private static final byte[] CHECKLIST_ID = ascii("checklistId");
+    private static final byte[] PARENT_ID = ascii("parentId");
+    private static final byte[] WEEKDAY = ascii("weekday");
+    private static final byte[] DONE = ascii("done");
+    private static final byte[] DONE_DATE = ascii("doneDate");
+    private static final byte[] NOTE = ascii("note");
+    private static final byte[] NOTE_LENGTH = ascii("noteLength");
+    private static final TaskType[] TYPES = TaskType.values();
+    private static final byte[][] TYPE_NAMES = new byte[TYPES.length][];
+    static {
+        for (int i = 0; i < TYPES.length; i++) TYPE_NAMES[i] = ascii(TYPES[i].name());
+    }
+
+    /**
+     * Thrown when the file does not follow the layout this reader understands.
+     */
+    public static final class NotCanonicalException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        NotCanonicalException(String message, int position) {
+            super(message + " at byte " + position);
+        }
+    }
+
+    /**
+     * Outcome of one chunk of a parallel parse: its tasks, or why it needs StAX.
+     */
+    private static final class Chunk {
+        final List<Task> tasks;
+        final NotCanonicalException notCanonical;
+
+        Chunk(List<Task> tasks, NotCanonicalException notCanonical) {
+            this.tasks = tasks;
+            this.notCanonical = notCanonical;
+        }
+    }
+
+    private final ByteBuffer buf;
+    private byte[] scratch = new byte[256];
+    // Repeated values are looked up by their bytes instead of decoded each time
+    private final TaskStringPool pool = new TaskStringPool();
+
+    // Field values of the task being parsed; the Task is built once at </task>
+    private String name;
+    private TaskType type;
+    private String weekday;
+    private boolean done;
+    private String doneDate;
+    private java.util.Date parsedDoneDate;
+    private String checklistId;
+    private String parentId;
+    private String note;
+    private int noteLength;
+    // Set when reading the daily tasks only: name and note are decoded once the task is known to be one
+    private List<String> storedIds;
+    private int nameFrom;
+    private int nameTo;
+    private int noteFrom;
+    private int noteTo;
+
+    TaskXmlFastReader(ByteBuffer buf) {
+        this.buf = buf;
+    }
+
+    /**
+     * Memory-maps and parses the given file.
+     */
+    public static List<Task> read(File file) throws IOException, NotCanonicalException {
+        return read(file, false);
+    }
+
+    /**
+     * Memory-maps the given file and reads only the tasks outside any custom
+     * checklist. Records of custom checklist tasks are scanned but their text is
+     * not decoded and no Task is built for them. {@code storedIds} receives the id
+     * of every task {@link #read} would return, in file order, so side files kept
+     * per file position can be matched against the daily tasks.
+     */
+    public static List<Task> readDaily(File file, List<String> storedIds) throws IOException, NotCanonicalException {
+        if (!file.exists()) return new ArrayList<>();
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE) throw new NotCanonicalException("File too large to map", 0);
+            MappedByteBuffer mapped = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            try {
+                TaskXmlFastReader reader = new TaskXmlFastReader(mapped);
+                reader.storedIds = storedIds;
+                return reader.parseDocument();
+            } finally {
+                unmap(mapped);
+            }
+        }
+    }
+
+    /**
+     * Memory-maps and parses the given file. With {@code parallel} set the body is
+     * always split across the fork-join pool; otherwise that only happens above
+     * {@link ApplicationConfiguration#PARALLEL_PARSE_THRESHOLD_BYTES}.
+     */
+    public static List<Task> read(File file, boolean parallel) throws IOException, NotCanonicalException {
+        if (!file.exists()) return new ArrayList<>();
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE) throw new NotCanonicalException("File too large to map", 0);
+            MappedByteBuffer mapped = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            try {
+                TaskXmlFastReader reader = new TaskXmlFastReader(mapped);
+                int chunks = chunkCount(size, parallel);
+                List<Task> tasks = chunks > 1 ? reader.parseDocumentParallel(chunks) : reader.parseDocument();
+                reader.pool.report(file.getName());
+                return tasks;
+            } finally {
+                unmap(mapped);
+            }
+        }
+    }
+
+    private static int chunkCount(long size, boolean force) {
+        int cpus = ForkJoinPool.commonPool().getParallelism();
+        if (cpus < 2 || (!force && size < ApplicationConfiguration.PARALLEL_PARSE_THRESHOLD_BYTES)) return 1;
+        long bySize = size / ApplicationConfiguration.PARALLEL_PARSE_MIN_CHUNK_BYTES;
+        return (int) Math.max(force ? 2 : 1, Math.min(cpus, bySize));
+    }
+
+    /**
+     * Parses a whole document: optional BOM and XML declaration, then the
+     * {@code <tasks>} root and its {@code <task>} children.
+     */
+    List<Task> parseDocument() throws NotCanonicalException {
+        int[] body = rootBody();
+        List<Task> out = new ArrayList<>(Math.max(16, (body[1] - body[0]) / 200));
+        parseTasks(body[0], body[1], out);
+        return out;
+    }
+
+    /**
+     * Splits the root body at {@code <task} boundaries into the given number of
+     * chunks, parses them on the common fork-join pool and concatenates the
+     * results in file order, which TaskOrderPersister relies on.
+     */
+    List<Task> parseDocumentParallel(int chunks) throws NotCanonicalException {
+        return parseDocumentParallel(ForkJoinPool.commonPool(), chunks);
+    }
+
+    List<Task> parseDocumentParallel(ForkJoinPool forkJoinPool, int chunks) throws NotCanonicalException {
+        long start = System.nanoTime();
+        int[] body = rootBody();
+        int[] bounds = chunkBounds(body[0], body[1], chunks);
+        int n = bounds.length - 1;
+        List<ForkJoinTask<Chunk>> parts = new ArrayList<>(n);
+        List<TaskStringPool> pools = java.util.Collections.synchronizedList(new ArrayList<>(n));
+        for (int i = 0; i < n; i++) {
+            final int index = i;
+            final int from = bounds[i];
+            final int to = bounds[i + 1];
+            parts.add(forkJoinPool.submit(() -> {
+                long chunkStart = System.nanoTime();
+                List<Task> out = new ArrayList<>(Math.max(16, (to - from) / 200));
+                TaskXmlFastReader chunkReader = new TaskXmlFastReader(buf.duplicate());
+                try {
+                    chunkReader.parseTasks(from, to, out);
+                } catch (NotCanonicalException e) {
+                    // Returned, not thrown: join() may wrap a thrown exception more than once
+                    return new Chunk(null, e);
+                }
+                pools.add(chunkReader.pool);
+                MetricsCollector.record("Parsed tasks.xml chunk " + (index + 1) + "/" + n + " (" + (to - from) + " bytes, "
+                        + out.size() + " tasks) in " + ((System.nanoTime() - chunkStart) / 1_000_000.0) + " ms");
+                return new Chunk(out, null);
+            }));
+        }
+
+        // Join every chunk before returning, even on failure: the caller unmaps the buffer
+        List<List<Task>> results = new ArrayList<>(n);
+        NotCanonicalException notCanonical = null;
+        RuntimeException failure = null;
+        for (ForkJoinTask<Chunk> part : parts) {
+            try {
+                Chunk chunk = part.join();
+                if (chunk.notCanonical != null) {
+                    if (notCanonical == null) notCanonical = chunk.notCanonical;
+                } else {
+                    results.add(chunk.tasks);
+                }
+            } catch (RuntimeException e) {
+                if (failure == null) failure = e;
+            }
+        }
+        if (notCanonical != null) throw notCanonical;
+        if (failure != null) throw failure;
+
+        for (TaskStringPool p : pools) pool.addCounts(p);
+        int total = 0;
+        for (List<Task> r : results) total += r.size();
+        List<Task> out = new ArrayList<>(total);
+        for (List<Task> r : results) out.addAll(r);
+        MetricsCollector.record("Parallel parse of " + total + " tasks in " + n + " chunks took "
+                + ((System.nanoTime() - start) / 1_000_000.0) + " ms");
+        return out;
+    }
+
+    /**
+     * Picks chunk start offsets at {@code <task} tags. Raw '<' cannot occur in
+     * canonical text content, so every match is a real element start.
+     */
+    int[] chunkBounds(int from, int to, int chunks) {
+        int[] bounds = new int[chunks + 1];
+        int count = 0;
+        bounds[count++] = from;
+        long step = (long) (to - from) / chunks;
+        for (int i = 1; i < chunks; i++) {
+            int target = (int) Math.max(from + step * i, bounds[count - 1] + 1);
+            int at = nextTaskStart(target, to);
+            if (at < 0) break;
+            if (at > bounds[count - 1]) bounds[count++] = at;
+        }
+        bounds[count++] = to;
+        return java.util.Arrays.copyOf(bounds, count);
+    }
+
+    private int nextTaskStart(int pos, int to) {
+        while (true) {
+            int at = indexOf(TASK_OPEN, pos, to);
+            if (at < 0) return -1;
+            int after = at + TASK_OPEN.length;
+            if (after < to && (buf.get(after) == '>' || isWhitespace(buf.get(after)))) return at;
+            pos = at + 1;
+        }
+    }
+
+    /**
+     * Returns the byte range between {@code <tasks>} and {@code </tasks>}.
+     */
+    int[] rootBody() throws NotCanonicalException {
+        int limit = buf.limit();
+        int pos = 0;
+        if (limit >= 3 && (buf.get(0) & 0xFF) == 0xEF && (buf.get(1) & 0xFF) == 0xBB && (buf.get(2) & 0xFF) == 0xBF) pos = 3;
+        pos = skipWhitespace(pos, limit);
+        if (startsWith(pos, XML_DECL)) {
+            int declEnd = indexOf(DECL_END, pos, limit);
+            if (declEnd < 0) throw new NotCanonicalException("Unterminated XML declaration", pos);
+            String decl = new String(bytes(pos, declEnd), StandardCharsets.US_ASCII);
+            int enc = decl.indexOf("encoding");
+            if (enc >= 0 && !decl.substring(enc).matches("(?s)encoding\\s*=\\s*[\"'](?i:utf-8)[\"'].*")) {
+                throw new NotCanonicalException("Unsupported encoding declaration", pos);
+            }
+            pos = skipWhitespace(declEnd + DECL_END.length, limit);
+        }
+        if (!startsWith(pos, ROOT_OPEN)) throw new NotCanonicalException("Expected <tasks>", pos);
+        int start = pos + ROOT_OPEN.length;
+        int end = limit;
+        while (end > start && isWhitespace(buf.get(end - 1))) end--;
+        end -= ROOT_CLOSE.length;
+        if (end < start || !startsWith(end, ROOT_CLOSE)) throw new NotCanonicalException("Expected </tasks>", end);
+        return new int[] {start, end};
+    }
+
+    /**
+     * Parses consecutive {@code <task>} elements in [from, to) and appends the
+     * valid ones to {@code out} in file order.
+     */
+    void parseTasks(int from, int to, List<Task> out) throws NotCanonicalException {
+        int pos = skipWhitespace(from, to);
+        while (pos < to) {
+            if (!startsWith(pos, TASK_OPEN)) throw new NotCanonicalException("Expected <task", pos);
+            pos = parseTask(pos, to, out);
+            pos = skipWhitespace(pos, to);
+        }
+    }
+
+    private int parseTask(int pos, int to, List<Task> out) throws NotCanonicalException {
+        pos = skipWhitespace(pos + TASK_OPEN.length, to);
+        String id = null;
+        if (startsWith(pos, ID_ATTR)) {
+            int valueStart = pos + ID_ATTR.length;
+            int valueEnd = indexOf((byte) '"', valueStart, to);
+            if (valueEnd < 0) throw new NotCanonicalException("Unterminated id attribute", pos);
+            id = decode(valueStart, valueEnd);
+            pos = skipWhitespace(valueEnd + 1, to);
+        }
+        if (pos >= to || buf.get(pos) != '>') throw new NotCanonicalException("Unexpected task attributes", pos);
+        pos++;
+
+        resetFields();
+        while (true) {
+            pos = skipWhitespace(pos, to);
+            if (startsWith(pos, TASK_CLOSE)) {
+                if (storedIds != null) {
+                    if (checklistId != null && !checklistId.trim().isEmpty()) {
+                        // A custom checklist task: only whether it takes a position matters
+                        if (id != null && !id.trim().isEmpty() && !isBlank(nameFrom, nameTo)) storedIds.add(id);
+                        return pos + TASK_CLOSE.length;
+                    }
+                    name = decode(nameFrom, nameTo);
+                    if (noteFrom >= 0) note = decode(noteFrom, noteTo);
+                }
+                Task current = new Task(id, name, type, weekday, done, doneDate, checklistId, parentId);
+                if (note != null) current.setNote(note);
+                else if (noteLength > 0) current.setStoredNote(noteLength, null);
+                if (parsedDoneDate != null) current.setDoneDate(parsedDoneDate);
+                if (TaskXmlHandler.validateTask(current)) {
+                    out.add(current);
+                    if (storedIds != null) storedIds.add(current.getId());
+                }
+                return pos + TASK_CLOSE.length;
+            }
+            if (pos >= to || buf.get(pos) != '<') throw new NotCanonicalException("Expected element", pos);
+            int nameStart = pos + 1;
+            int nameEnd = nameStart;
+            while (nameEnd < to && isNameByte(buf.get(nameEnd))) nameEnd++;
+            if (nameEnd == nameStart || nameEnd >= to) throw new NotCanonicalException("Bad element name", pos);
+            int contentStart;
+            int contentEnd;
+            byte b = buf.get(nameEnd);
+            if (b == '/' && nameEnd + 1 < to && buf.get(nameEnd + 1) == '>') {
+                contentStart = contentEnd = nameEnd;
+                pos = nameEnd + 2;
+            } else if (b == '>') {
+                contentStart = nameEnd + 1;
+                contentEnd = indexOf((byte) '<', contentStart, to);
+                if (contentEnd < 0 || contentEnd + 2 >= to || buf.get(contentEnd + 1) != '/') {
+                    throw new NotCanonicalException("Nested markup", contentEnd);
+                }
+                int closeName = contentEnd + 2;
+                int len = nameEnd - nameStart;
+                if (closeName + len >= to || !regionEquals(closeName, nameStart, len) || buf.get(closeName + len) != '>') {
+                    throw new NotCanonicalException("Mismatched end tag", contentEnd);
+                }
+                pos = closeName + len + 1;
+            } else {
+                throw new NotCanonicalException("Unexpected element attributes", nameEnd);
+            }
+            applyField(nameStart, nameEnd, contentStart, contentEnd);
+        }
+    }
+
+    private void resetFields() {
+        name = "";
+        type = TaskType.CUSTOM;
+        weekday = null;
+        done = false;
+        doneDate = null;
+        parsedDoneDate = null;
+        checklistId = null;
+        parentId = null;
+        note = null;
+        noteLength = 0;
+        nameFrom = nameTo = 0;
+        noteFrom = noteTo = -1;
+    }
+
+    /**
+     * Mirrors the field handling of the StAX parser so both produce equal tasks.
+     */
+    private void applyField(int nameStart, int nameEnd, int start, int end) throws NotCanonicalException {
+        int len = nameEnd - nameStart;
+        if (nameEquals(nameStart, len, NAME)) {
+            if (storedIds != null) {
+                nameFrom = start;
+                nameTo = end;
+            } else {
+                name = decode(start, end);
+            }
+        } else if (nameEquals(nameStart, len, TYPE)) {
+            for (int i = 0; i < TYPE_NAMES.length; i++) {
+                if (end - start == TYPE_NAMES[i].length && startsWith(start, TYPE_NAMES[i])) {
+                    type = TYPES[i];
+                    break;
+                }
+            }
+        } else if (nameEquals(nameStart, len, CHECKLIST_ID)) {
+            checklistId = pooled(start, end, TaskStringPool.CHECKLIST_ID);
+        } else if (nameEquals(nameStart, len, PARENT_ID)) {
+            parentId = pooled(start, end, TaskStringPool.PARENT_ID);
+        } else if (nameEquals(nameStart, len, WEEKDAY)) {
+            weekday = pooled(start, end, TaskStringPool.WEEKDAY);
+        } else if (nameEquals(nameStart, len, DONE)) {
+            done = isTrue(start, end);
+        } else if (nameEquals(nameStart, len, DONE_DATE)) {
+            applyDoneDate(start, end);
+        } else if (nameEquals(nameStart, len, NOTE)) {
+            if (storedIds != null) {
+                noteFrom = start;
+                noteTo = end;
+            } else {
+                note = decode(start, end);
+            }
+        } else if (nameEquals(nameStart, len, NOTE_LENGTH)) {
+            int value = digits(start, end - start);
+            noteLength = end - start <= 9 ? Math.max(0, value) : 0;
+        }
+    }
+
+    private void applyDoneDate(int start, int end) throws NotCanonicalException {
+        doneDate = null;
+        parsedDoneDate = null;
+        if (end == start) return;
+        if (end - start == 10 && buf.get(start + 4) == '-' && buf.get(start + 7) == '-') {
+            int year = digits(start, 4);
+            int month = digits(start + 5, 2);
+            int day = digits(start + 8, 2);
+            // Already in the yyyy-MM-dd form Task stores; anything else, such as
+            // an impossible day, is left to the text handling below
+            if (year >= 1000 && month >= 1 && month <= 12 && day >= 1
+                    && day <= java.time.Month.of(month).length(java.time.Year.isLeap(year))) {
+                doneDate = pooled(start, end, TaskStringPool.DONE_DATE);
+                return;
+            }
+        }
+        String text = decode(start, end);
+        try {
+            LocalDate ld = LocalDate.parse(text, DateTimeFormatter.ISO_LOCAL_DATE);
+            parsedDoneDate = java.util.Date.from(ld.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        } catch (java.time.DateTimeException e) {
+            doneDate = text;
+        }
+    }
+
+    private int digits(int pos, int count) {
+        int v = 0;
+        for (int i = 0; i < count; i++) {
+            int d = buf.get(pos + i) - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    /**
+     * Whether [start, end) decodes to blank text, without decoding it unless it
+     * holds entity references.
+     */
+    private boolean isBlank(int start, int end) throws NotCanonicalException {
+        for (int i = start; i < end; i++) {
+            int b = buf.get(i) & 0xFF;
+            if (b == '&') return decode(start, end).trim().isEmpty();
+            if (b > ' ') return false;
+        }
+        return true;
+    }
+
+    private boolean isTrue(int start, int end) {
+        if (end - start != 4) return false;
+        return (buf.get(start) | 0x20) == 't' && (buf.get(start + 1) | 0x20) == 'r'
+                && (buf.get(start + 2) | 0x20) == 'u' && (buf.get(start + 3) | 0x20) == 'e';
+    }
+
+    /**
+     * The pooled value of a repeating field; decoded only when first seen or
+     * when it holds entity references.
+     */
+    private String pooled(int start, int end, int field) throws NotCanonicalException {
+        String value = pool.intern(buf, start, end, field);
+        return value != null ? value : pool.intern(decode(start, end), field);
+    }
+
+    /**
+     * Copies [start, end) into the scratch buffer and decodes it, resolving entity
+     * references and XML line-end normalization in place.
+     */
+    private String decode(int start, int end) throws NotCanonicalException {
+        int len = end - start;
+        if (len == 0) return "";
+        if (scratch.length < len) scratch = new byte[Math.max(len, scratch.length * 2)];
+        buf.get(start, scratch, 0, len);
+        int special = -1;
+        for (int i = 0; i < len; i++) {
+            byte b = scratch[i];
+            if (b == '&' || b == '\r') {
+                special = i;
+                break;
+            }
+        }
+        if (special < 0) return new String(scratch, 0, len, StandardCharsets.UTF_8);
+
+        int w = special;
+        int r = special;
+        while (r < len) {
+            byte b = scratch[r];
+            if (b == '\r') {
+                scratch[w++] = '\n';
+                r += (r + 1 < len && scratch[r + 1] == '\n') ? 2 : 1;
+            } else if (b == '&') {
+                int semi = r + 1;
+                while (semi < len && scratch[semi] != ';' && semi - r < 12) semi++;
+                if (semi >= len || scratch[semi] != ';') throw new NotCanonicalException("Bad entity", start + r);
+                w = writeEntity(r + 1, semi, w, start + r);
+                r = semi + 1;
+            } else {
+                scratch[w++] = b;
+                r++;
+            }
+        }
+        return new String(scratch, 0, w, StandardCharsets.UTF_8);
+    }
+
+    private int writeEntity(int from, int to, int w, int position) throws NotCanonicalException {
+        int len = to - from;
+        if (len == 3 && scratch[from] == 'a' && scratch[from + 1] == 'm' && scratch[from + 2] == 'p') { scratch[w] = '&'; return w + 1; }
+        if (len == 2 && scratch[from + 1] == 't' && (scratch[from] == 'l' || scratch[from] == 'g')) { scratch[w] = (byte) (scratch[from] == 'l' ? '<' : '>'); return w + 1; }
+        if (len == 4 && scratch[from] == 'q' && scratch[from + 1] == 'u' && scratch[from + 2] == 'o' && scratch[from + 3] == 't') { scratch[w] = '"'; return w + 1; }
+        if (len == 4 && scratch[from] == 'a' && scratch[from + 1] == 'p' && scratch[from + 2] == 'o' && scratch[from + 3] == 's') { scratch[w] = '\''; return w + 1; }
+        if (len >= 2 && scratch[from] == '#') {
+            int cp = 0;
+            boolean hex = scratch[from + 1] == 'x';
+            for (int i = from + (hex ? 2 : 1); i < to; i++) {
+                int d = Character.digit(scratch[i], hex ? 16 : 10);
+                if (d < 0) throw new NotCanonicalException("Bad character reference", position);
+                cp = cp * (hex ? 16 : 10) + d;
+            }
+            if (!Character.isValidCodePoint(cp)) throw new NotCanonicalException("Bad character reference", position);
+            // A reference is never shorter than its UTF-8 encoding, so this stays in place
+            byte[] enc = new String(Character.toChars(cp)).getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(enc, 0, scratch, w, enc.length);
+            return w + enc.length;
+        }
+        throw new NotCanonicalException("Unknown entity", position);
+    }
+
+    int skipWhitespace(int pos, int to) {
+        while (pos < to && isWhitespace(buf.get(pos))) pos++;
+        return pos;
+    }
+
+    int indexOf(byte[] pattern, int from, int to) {
+        for (int i = from; i + pattern.length <= to; i++) {
+            if (startsWith(i, pattern)) return i;
+        }
+        return -1;
+    }
+
+    int indexOf(byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf.get(i) == b) return i;
+        }
+        return -1;
+    }
+
+    boolean startsWith(int pos, byte[] pattern) {
+        if (pos < 0 || pos + pattern.length > buf.limit()) return false;
+        for (int i = 0; i < pattern.length; i++) {
+            if (buf.get(pos + i) != pattern[i]) return false;
+        }
+        return true;
+    }
+
+    private boolean nameEquals(int nameStart, int len, byte[] name) {
+        return len == name.length && startsWith(nameStart, name);
+    }
+
+    private boolean regionEquals(int a, int b, int len) {
+        for (int i = 0; i < len; i++) {
+            if (buf.get(a + i) != buf.get(b + i)) return false;
+        }
+        return true;
+    }
+
+    private byte[] bytes(int from, int to) {
+        byte[] b = new byte[to - from];
+        buf.get(from, b, 0, b.length);
+        return b;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static boolean isNameByte(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '_' || b == '-' || b == '.';
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Releases the mapping (or the memory of a direct buffer) right away instead
+     * of waiting for GC. On Windows a live mapping keeps tasks.xml locked, which
+     * would make the next atomic replace fail.
+     */
+    static void unmap(ByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            java.lang.reflect.Field f = unsafeClass.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            Object unsafe = f.get(null);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(unsafe, buffer);
+        } catch (ReflectiveOperationException | RuntimeException ignore) {
+            // Best effort: the mapping is released when the buffer is collected
+        }
+    }
+}
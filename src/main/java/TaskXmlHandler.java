@@ -257,6 +257,13 @@ public class TaskXmlHandler {
         // Use new constructor with parentId for backwards compatibility
         Task task = new Task(id, name, type, weekday, done, doneDate, checklistId, parentId);
         task.setNote(note);
+        // A note kept in the note store is only recorded by its length
+        NodeList noteLengthNodes = element.getElementsByTagName("noteLength");
+        if (note == null && noteLengthNodes.getLength() > 0) {
+            try {
+                task.setStoredNote(Integer.parseInt(noteLengthNodes.item(0).getTextContent().trim()), null);
+            } catch (NumberFormatException ignore) { }
+        }
         return task;
     }
 
@@ -539,7 +546,7 @@ public class TaskXmlHandler {
      */
     public static boolean validateTask(Task task) {
         if (task == null) return false;
-        if (task.getId() == null || task.getId().trim().isEmpty()) return false;
+        if (!task.hasBinaryId() && (task.getId() == null || task.getId().trim().isEmpty())) return false;
         if (task.getName() == null || task.getName().trim().isEmpty()) return false;
         if (task.getType() == null) return false;
         // Checklist ID can be null for daily tasks
@@ -17,8 +17,6 @@
  */
 import java.awt.Component;
 import java.io.File;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -27,31 +25,62 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class XMLTaskRepository implements TaskRepository {
-    private static String FILE_NAME = ApplicationConfiguration.APPLICATION_DATA_DIR + File.separator + ApplicationConfiguration.DATA_FILE_NAME;
-    private static String REMINDER_FILE_NAME = ApplicationConfiguration.APPLICATION_DATA_DIR + File.separator + ApplicationConfiguration.REMINDERS_FILE_NAME;
-    private static String CHECKLIST_NAMES_FILE_NAME = ApplicationConfiguration.APPLICATION_DATA_DIR + File.separator + ApplicationConfiguration.CHECKLIST_NAMES_FILE_NAME;
+    // Directory holding tasks.xml (or the shard directory) and the reminder and checklist files
+    private final String dataDirectory;
+    private final String storageLayout;
+    private final String fileName;
+    private final String reminderFileName;
+    private final String checklistNamesFileName;
 
     // Component managers
     private TaskStaxHandler taskXmlHandler;
+    // Where the task list is persisted: taskXmlHandler itself, or a ShardedTaskStore
+    private TaskStore taskStore;
+    // Anchor file of taskStore; the journal, done-state and snapshot sidecars belong to it
+    private String dataFileName;
+    private TaskJournal taskJournal;
+    private TaskSnapshotFile taskSnapshot;
+    // Null when the done-state side file is disabled
+    private TaskDoneStateFile doneState;
+    // Note texts; tasks only hold a note until it has been moved here
+    private TaskNoteStore noteStore;
+    // Tasks of the file past MemorySafetyManager.MAX_TASKS, kept off-heap and written
+    // back after the loaded ones; null when the file is within the limit
+    private volatile TaskArena overflow;
     private ReminderManager reminderManager;
     private ChecklistNameManager checklistNameManager;
 
     // Backup system
     private BackupManager backupManager;
 
-    // Task caching
-    private List<Task> cachedTasks = null;
-    private Map<String, Task> taskMap = null;
-    private Map<TaskType, List<Task>> tasksByType = null;
-    private Map<String, List<Task>> tasksByChecklist = null;
-    private boolean tasksCacheDirty = true;
-    private long lastModifiedTime = 0;
+    // Task caching: readers use the published snapshot without locking; writers
+    // derive the next snapshot under stateLock and publish it
+    private volatile TaskSnapshot snapshot = null;
+    // Daily lists read on their own before the full task list is hydrated; guarded by stateLock
+    private List<Task> workingSet = null;
+    private long snapshotVersion = 0;
+    // Writer-side position index, only touched while holding stateLock
+    private TaskIdMap<IndexEntry> taskIndex = null;
+    private boolean indexFallback = false;
+    // Set when an edit in the current mutation could not be applied incrementally
+    private boolean pendingRebuild = false;
+    private volatile boolean tasksCacheDirty = true;
+    private volatile long lastModifiedTime = 0;
+    // Generation of the last tasks.xml we wrote ourselves; a file that still matches
+    // it is already reflected in the cache and is not reparsed
+    private volatile WriteGeneration ownGeneration = null;
+    private volatile boolean ownWriteInProgress = false;
+    // Modification time of the tasks.xml whose content hash the maintenance thread is checking
+    private volatile long ownOutputCheckQueued = 0;
+    private final Object generationLock = new Object();
+    private final java.util.concurrent.atomic.AtomicLong externalReloads = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.atomic.AtomicLong suppressedReloads = new java.util.concurrent.atomic.AtomicLong();
     // Cache display computation state to avoid recomputing on reload
     private Map<String, Boolean> taskDisplayDirtyState = new HashMap<>();
     private Map<String, String> taskCachedDisplayFullName = new HashMap<>();
@@ -63,64 +92,40 @@ public class XMLTaskRepository implements TaskRepository {
         return t;
     });
 
-    // Coalescer for write debounce: collect frequent updates and flush them as a batch
-    private final java.util.concurrent.ConcurrentMap<String, Task> pendingWrites = new java.util.concurrent.ConcurrentHashMap<>();
-    // Track pending removals to avoid immediate per-delete reparse/write
-    private final java.util.Set<String> pendingRemovals = java.util.Collections.newSetFromMap(new java.util.concurrent.ConcurrentHashMap<>());
-    private final java.util.concurrent.ScheduledExecutorService coalesceScheduler = java.util.concurrent.Executors.newSingleThreadScheduledExecutor(r -> {
-        Thread t = new Thread(r, "xml-write-coalescer");
+    // Every mutation goes through this queue; its single writer thread applies
+    // them to the snapshot and hands batches of changed ids to the write executor
+    private final TaskMutationPipeline mutationPipeline = new TaskMutationPipeline(new PipelineTarget(),
+            ApplicationConfiguration.MUTATION_BATCH_WINDOW_MS, ApplicationConfiguration.MUTATION_BATCH_MAX_LATENCY_MS,
+            ApplicationConfiguration.MUTATION_BATCH_MAX_CHANGES,
+            ApplicationConfiguration.MUTATION_DRAIN_MAX);
+    private final java.util.concurrent.ScheduledExecutorService maintenanceScheduler = java.util.concurrent.Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "xml-maintenance");
         t.setDaemon(true);
         return t;
     });
-    private volatile java.util.concurrent.ScheduledFuture<?> coalesceFuture = null;
-    private final long COALESCE_DELAY_MS = 300; // short window to coalesce frequent updates
+    // Periodic check that compacts an aged journal even when no new writes arrive
+    private java.util.concurrent.ScheduledFuture<?> journalCompactionCheck = null;
 
-    // Read/write lock to allow concurrent readers but exclusive writers for cache access
-    private final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+    // How writes are forced to disk, and the submit-to-durable latency seen under each mode
+    private volatile DurabilityMode durabilityMode = DurabilityMode.parse(ApplicationConfiguration.DURABILITY_MODE);
+    private final Map<DurabilityMode, LatencyHistogram> commitLatency = newLatencyHistograms();
+    private final java.util.concurrent.atomic.AtomicLong journalForces = new java.util.concurrent.atomic.AtomicLong();
+
+    // Serializes the mutation writer with cache loading; readers never take it
+    private final ReentrantLock stateLock = new ReentrantLock();
 
     // Parent component for error dialogs
     private Component parentComponent;
 
-    // Lightweight retry/backoff: attempts before showing user-visible error
+    // Retry/backoff for failed writes: attempts before showing user-visible error
     private static final int PERSIST_MAX_ATTEMPTS = 3;
-    private static final long PERSIST_INITIAL_BACKOFF_MS = 200L;
+    private static final long PERSIST_INITIAL_BACKOFF_MS = 500L;
+    // Target key for everything that ends up in tasks.xml or its journal
+    private static final String TASKS_TARGET = "tasks";
 
-    /**
-     * Submit a persistence task to the write executor with simple retry/backoff semantics.
-     * On repeated failure the in-memory cache is marked dirty and a user-visible error is shown on the EDT when possible.
-     */
-    private void submitPersistWithRetry(Runnable persistOp, String context) {
-        writeExecutor.submit(() -> {
-            int attempts = 0;
-            long backoff = PERSIST_INITIAL_BACKOFF_MS;
-            while (true) {
-                try {
-                    persistOp.run();
-                    return;
-                } catch (Exception e) {
-                    attempts++;
-                    if (attempts >= PERSIST_MAX_ATTEMPTS) {
-                        rwLock.writeLock().lock();
-                        try { tasksCacheDirty = true; } finally { rwLock.writeLock().unlock(); }
-                        if (parentComponent != null) {
-                            final Exception ex = e instanceof Exception ? (Exception)e : new Exception(e);
-                            javax.swing.SwingUtilities.invokeLater(() -> ApplicationErrorHandler.showDataSaveError(parentComponent, context, ex));
-                        } else {
-                            System.err.println("Failed persisting " + context + ": " + e.getMessage());
-                        }
-                        return;
-                    }
-                    try {
-                        Thread.sleep(backoff);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        return;
-                    }
-                    backoff *= 2L;
-                }
-            }
-        });
-    }
+    // Failed writes wait on the maintenance timer, not on the persist worker
+    private final PersistRetryEngine persistEngine = new PersistRetryEngine(writeExecutor, maintenanceScheduler,
+            PERSIST_MAX_ATTEMPTS, PERSIST_INITIAL_BACKOFF_MS, this::persistGaveUp);
 
     /**
      * Sets the parent component for error dialogs.
@@ -132,141 +137,712 @@ public class XMLTaskRepository implements TaskRepository {
         }
     }
 
-    @FunctionalInterface
-    private interface PersistOperation {
-        void run() throws Exception;
+    /**
+     * Queues a write of tasks.xml or its journal. A failed attempt is retried on
+     * a timer as a full write of the newest snapshot, which also absorbs any
+     * newer task writes queued meanwhile. With {@code reportErrors} a final
+     * failure is shown to the user; otherwise it is only logged.
+     */
+    private CompletableFuture<Void> submitTasksPersist(String desc, boolean reportErrors, PersistRetryEngine.Operation op) {
+        return persistEngine.submit(TASKS_TARGET, desc, reportErrors, op, () -> this::persistCurrentSnapshot);
     }
 
     /**
-     * Submits a persistence operation to the single-threaded write executor with
-     * a small retry/backoff strategy and lightweight logging. If the operation
-     * fails repeatedly the repository cache is marked dirty and a user-visible
-     * error dialog is shown (if a parent component is configured).
+     * Writes the current snapshot as the new tasks.xml and clears the journal.
      */
-    private void submitWithRetries(String desc, PersistOperation op) {
-        writeExecutor.submit(() -> {
-            int attempts = 0;
-            long backoff = 500; // ms
-            while (true) {
-                try {
-                    long start = System.nanoTime();
-                    op.run();
-                    long dur = System.nanoTime() - start;
-                    MetricsCollector.record("Persist succeeded (" + desc + ") in " + (dur / 1_000_000.0) + " ms");
-                    return;
-                } catch (Exception e) {
-                    attempts++;
-                    MetricsCollector.record("Persist failed (" + desc + ") attempt " + attempts + ": " + e.getMessage());
-                    rwLock.writeLock().lock();
-                    try { tasksCacheDirty = true; } finally { rwLock.writeLock().unlock(); }
-                    if (attempts >= 3) {
-                        if (parentComponent != null) {
-                            final Exception ex = e;
-                            javax.swing.SwingUtilities.invokeLater(() -> ApplicationErrorHandler.showDataSaveError(parentComponent, desc, ex));
+    private void persistCurrentSnapshot() throws Exception {
+        TaskSnapshot snap = snapshot;
+        // Never write a partial or stale cache: that would drop tasks from disk
+        if (snap == null || tasksCacheDirty) {
+            throw new IllegalStateException("Task cache is not current, not writing it");
+        }
+        persistSetAllTasks(snap.getTasks());
+    }
+
+    /**
+     * A write failed every attempt: the in-memory state may no longer match the
+     * disk, so reload it on the next read and tell the user when asked to.
+     */
+    private void persistGaveUp(String desc, boolean reportErrors, Exception e) {
+        tasksCacheDirty = true;
+        if (reportErrors && parentComponent != null) {
+            javax.swing.SwingUtilities.invokeLater(() -> ApplicationErrorHandler.showDataSaveError(parentComponent, desc, e));
+        }
+    }
+
+    /**
+     * Connects the mutation pipeline to this repository. Both methods run on the
+     * pipeline's writer thread.
+     */
+    private final class PipelineTarget implements TaskMutationPipeline.Target {
+        @Override
+        public void apply(List<TaskMutationPipeline.Mutation> batch) {
+            applyMutations(batch);
+        }
+
+        @Override
+        public CompletableFuture<Void> persist(boolean fullWrite, Set<String> upsertIds, Set<String> removalIds, boolean reportErrors) {
+            return persistBatch(fullWrite, upsertIds, removalIds, reportErrors);
+        }
+    }
+
+    /**
+     * Applies a drained batch as few snapshot versions as possible: consecutive
+     * upserts and removals share one copy-on-write builder, a full replacement
+     * rebuilds from scratch.
+     */
+    private void applyMutations(List<TaskMutationPipeline.Mutation> batch) {
+        stateLock.lock();
+        try {
+            int i = 0;
+            while (i < batch.size()) {
+                TaskMutationPipeline.Mutation first = batch.get(i);
+                if (first.kind == TaskMutationPipeline.Kind.REPLACE_ALL) {
+                    // The new list replaces the tasks past the load limit too
+                    releaseOverflow();
+                    rebuildSnapshot(new ArrayList<>(first.tasks));
+                    i++;
+                    continue;
+                }
+                int end = i;
+                while (end < batch.size() && batch.get(end).kind != TaskMutationPipeline.Kind.REPLACE_ALL) end++;
+                List<TaskMutationPipeline.Mutation> run = batch.subList(i, end);
+                // applyMutation loads existing tasks first so a later compaction never writes a partial list
+                applyMutation(b -> {
+                    for (TaskMutationPipeline.Mutation m : run) {
+                        if (m.kind == TaskMutationPipeline.Kind.UPSERT) {
+                            for (Task t : m.tasks) upsertInCache(b, t);
+                        } else if (m.kind == TaskMutationPipeline.Kind.REMOVE) {
+                            removeFromCache(b, m.id);
                         }
-                        return;
                     }
-                    try {
-                        Thread.sleep(backoff);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        return;
-                    }
-                    backoff *= 2;
-                }
+                });
+                i = end;
             }
+            tasksCacheDirty = false;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    /**
+     * Hands a completed batch to the write executor: a full tasks.xml write after
+     * a replacement, otherwise one journal append of the changed tasks.
+     */
+    private CompletableFuture<Void> persistBatch(boolean fullWrite, Set<String> upsertIds, Set<String> removalIds, boolean reportErrors) {
+        TaskSnapshot snap = snapshot;
+        if (snap == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Task cache is not loaded"));
+        }
+        if (fullWrite) {
+            // The snapshot list is immutable, so later edits cannot leak in
+            List<Task> published = snap.getTasks();
+            return submitTasksPersist("setAllTasks", true, () -> persistSetAllTasks(published));
+        }
+        // Collect the changed tasks in list order so replay appends new tasks
+        // in the same order they have in memory. They are found through the id
+        // index and matched by identity, so no task's id is formatted.
+        List<Task> upserts = new ArrayList<>(upsertIds.size());
+        if (!upsertIds.isEmpty()) {
+            Set<Task> wanted = java.util.Collections.newSetFromMap(new java.util.IdentityHashMap<>());
+            for (String id : upsertIds) {
+                Task t = snap.getTask(id);
+                if (t != null) wanted.add(t);
+            }
+            for (Task t : snap.getTasks()) {
+                if (upserts.size() == wanted.size()) break;
+                if (wanted.contains(t)) upserts.add(t);
+            }
+        }
+        List<String> removals = new ArrayList<>(removalIds);
+        // Background edits stay quiet so transient failures do not interrupt the user
+        return submitTasksPersist(reportErrors ? "tasks-update" : "tasks-update-coalesced", reportErrors,
+                () -> persistJournal(upserts, removals));
+    }
+
+    /**
+     * Queues a mutation and waits until it is visible to readers, which takes
+     * microseconds and no I/O. The wait is bounded by
+     * {@link ApplicationConfiguration#MUTATION_APPLY_WAIT_MS} so the EDT never
+     * stalls behind a reload or compaction on the writer; past it the change
+     * becomes visible once the writer gets to it. The returned future completes
+     * once the change is durable.
+     */
+    private CompletableFuture<Void> enqueue(TaskMutationPipeline.Mutation mutation) {
+        LatencyHistogram latency = commitLatency.get(durabilityMode);
+        long submitted = System.nanoTime();
+        mutation.durable().thenRun(() -> latency.record(System.nanoTime() - submitted));
+        mutationPipeline.submit(mutation);
+        try {
+            mutation.applied().get(ApplicationConfiguration.MUTATION_APPLY_WAIT_MS, java.util.concurrent.TimeUnit.MILLISECONDS);
+        } catch (java.util.concurrent.TimeoutException e) {
+            MetricsCollector.record("Mutation not applied within " + ApplicationConfiguration.MUTATION_APPLY_WAIT_MS
+                    + " ms, writer busy; returning before it is visible");
+        } catch (java.util.concurrent.ExecutionException e) {
+            // Reported through the durable future, which has already failed too
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return mutation.durable();
+    }
+
+    public DurabilityMode getDurabilityMode() {
+        return durabilityMode;
+    }
+
+    /**
+     * Selects how task writes are forced to disk. RELAXED never fsyncs, STANDARD
+     * fsyncs once per batch handed to persistence (group commit), STRICT hands
+     * every mutation to persistence on its own and fsyncs it.
+     */
+    public void setDurabilityMode(DurabilityMode mode) {
+        durabilityMode = mode;
+        if (taskStore != null) taskStore.setDurabilityMode(mode);
+        mutationPipeline.setPerMutation(mode == DurabilityMode.STRICT);
+    }
+
+    /**
+     * Number of hand-offs whose journal append was forced to disk.
+     */
+    public long getJournalForceCount() {
+        return journalForces.get();
+    }
+
+    /**
+     * Submit-to-durable latency of mutations made under the given mode.
+     */
+    public LatencyHistogram getCommitLatency(DurabilityMode mode) {
+        return commitLatency.get(mode);
+    }
+
+    private static Map<DurabilityMode, LatencyHistogram> newLatencyHistograms() {
+        Map<DurabilityMode, LatencyHistogram> map = new java.util.EnumMap<>(DurabilityMode.class);
+        for (DurabilityMode mode : DurabilityMode.values()) map.put(mode, new LatencyHistogram());
+        return map;
+    }
+
+    private void reportCommitLatency() {
+        for (Map.Entry<DurabilityMode, LatencyHistogram> e : commitLatency.entrySet()) {
+            if (e.getValue().count() > 0) {
+                MetricsCollector.record("Commit latency (" + e.getKey() + "): " + e.getValue().summary());
+            }
+        }
+    }
+
+    /**
+     * Forces every change applied so far to disk. The future completes when
+     * they are durable.
+     */
+    public CompletableFuture<Void> flush() {
+        return mutationPipeline.flush();
+    }
+
+    // Persistence helpers
+    private void persistJournal(List<Task> upserts, java.util.Collection<String> removals) throws Exception {
+        long start = System.nanoTime();
+        List<Task> journalUpserts = upserts;
+        int doneOnly = 0;
+        if (doneState != null) {
+            // Pure done/doneDate flips of tasks in tasks.xml are written in place
+            journalUpserts = new ArrayList<>(upserts.size());
+            for (Task t : upserts) {
+                if (!doneState.writeIfDoneOnly(t)) journalUpserts.add(t);
+            }
+            doneOnly = upserts.size() - journalUpserts.size();
+        }
+        moveHeldNotes(journalUpserts);
+        taskJournal.append(journalUpserts, removals);
+        if (doneState != null) {
+            doneState.written(journalUpserts);
+            doneState.removed(removals);
+        }
+        // One force per hand-off: every mutation in the batch shares it
+        if (durabilityMode.forcesWrites()) {
+            taskJournal.force();
+            if (doneState != null) doneState.force();
+            journalForces.incrementAndGet();
+        }
+        MetricsCollector.record("Journal appended " + journalUpserts.size() + " upserts, " + removals.size() + " removals, "
+                + doneOnly + " done-state slots in " + ((System.nanoTime() - start) / 1_000_000.0) + " ms (journal "
+                + taskJournal.size() + " bytes)");
+        if (taskJournal.needsCompaction()) {
+            compactJournal();
+        }
+    }
+
+    private void persistSetAllTasks(List<Task> tasks) throws Exception {
+        taskJournal.compact(() -> {
+            File dataFile = new File(dataFileName);
+            // The sidecars describe the tasks in the order the store reads them back
+            List<Task> stored = taskStore.storageOrder(withOverflow(tasks));
+            moveHeldNotes(stored);
+            ownWriteInProgress = true;
+            long crc;
+            try {
+                crc = taskStore.setAllTasks(stored);
+                ownGeneration = new WriteGeneration(dataFile.lastModified(), dataFile.length(), crc, fileKeyOf(dataFile));
+            } finally {
+                ownWriteInProgress = false;
+            }
+            writeSnapshotQuietly(stored, dataFile.length(), dataFile.lastModified(), crc);
+            rebaseDoneState(stored, dataFile.length(), dataFile.lastModified());
+            dropUnreferencedNotes(stored);
+            return null;
         });
     }
 
     /**
-     * Like {@link #submitWithRetries} but quiet: never shows a user-visible error dialog.
-     * Intended for coalesced (debounced) background flushes where we prefer silent
-     * logging and marking the cache dirty instead of interrupting the user.
+     * Moves the tasks past the load limit into a fresh off-heap arena, replacing
+     * the previous one. Caller must hold stateLock. If no arena can be created
+     * they are dropped from memory as before, and from disk with the next full write.
      */
-    private void submitWithRetriesQuiet(String desc, PersistOperation op) {
-        writeExecutor.submit(() -> {
-            int attempts = 0;
-            long backoff = 500; // ms
-            while (true) {
-                try {
-                    op.run();
-                    return;
-                } catch (Exception e) {
-                    attempts++;
-                    java.util.logging.Logger.getLogger(XMLTaskRepository.class.getName())
-                        .log(java.util.logging.Level.WARNING, "Quiet persist failed (" + desc + ") attempt " + attempts, e);
-                    rwLock.writeLock().lock();
-                    try { tasksCacheDirty = true; } finally { rwLock.writeLock().unlock(); }
-                    if (attempts >= 3) {
-                        // Quiet: do not show dialogs. Just log and give up.
-                        java.util.logging.Logger.getLogger(XMLTaskRepository.class.getName())
-                            .log(java.util.logging.Level.SEVERE, "Giving up quiet persist (" + desc + ") after " + attempts + " attempts");
-                        return;
-                    }
-                    try {
-                        Thread.sleep(backoff);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        return;
-                    }
-                    backoff *= 2;
+    private void keepOverflow(List<Task> rest) {
+        releaseOverflow();
+        if (rest.isEmpty()) return;
+        long start = System.nanoTime();
+        try {
+            // Records then only carry note lengths; the texts stay in the note store
+            if (noteStore != null) moveHeldNotes(rest);
+            TaskArena arena = TaskArena.create();
+            arena.addAll(rest);
+            overflow = arena;
+            MetricsCollector.record("Kept " + rest.size() + " tasks past the limit of " + MemorySafetyManager.MAX_TASKS
+                    + " off-heap (" + arena.getKind() + ", " + arena.usedBytes() + " bytes) in "
+                    + ((System.nanoTime() - start) / 1_000_000.0) + " ms");
+        } catch (Exception | OutOfMemoryError e) {
+            MetricsCollector.record("Could not keep tasks past the limit off-heap, dropping " + rest.size() + ": " + e);
+        }
+    }
+
+    private void releaseOverflow() {
+        TaskArena arena = overflow;
+        overflow = null;
+        if (arena != null) {
+            // A full write still reading it fails and is retried with the current state
+            synchronized (arena) {
+                arena.close();
+            }
+        }
+    }
+
+    /**
+     * The given tasks followed by the ones kept past the load limit, which are
+     * materialised one at a time as the list is read.
+     */
+    private List<Task> withOverflow(List<Task> tasks) {
+        TaskArena arena = overflow;
+        if (arena == null) return tasks;
+        int extra;
+        synchronized (arena) {
+            extra = arena.size();
+        }
+        int total = tasks.size() + extra;
+        class WithOverflow extends java.util.AbstractList<Task> implements java.util.RandomAccess {
+            @Override
+            public Task get(int index) {
+                if (index < tasks.size()) return tasks.get(index);
+                Task t;
+                synchronized (arena) {
+                    t = arena.get(index - tasks.size());
                 }
+                bindNote(t);
+                return t;
             }
-        });
+
+            @Override
+            public int size() {
+                return total;
+            }
+        }
+        return new WithOverflow();
     }
 
-    private void scheduleCoalescedFlushIfNeeded() {
-        if (coalesceFuture != null && !coalesceFuture.isDone()) return;
-        coalesceFuture = coalesceScheduler.schedule(this::flushPendingWrites, COALESCE_DELAY_MS, java.util.concurrent.TimeUnit.MILLISECONDS);
+    /**
+     * Moves the note texts the given tasks hold into the note store, ahead of the
+     * journal or tasks.xml write that will refer to them by length, and lets the
+     * tasks drop them. Blank notes are left inline.
+     */
+    private void moveHeldNotes(List<Task> tasks) throws java.io.IOException {
+        if (!ApplicationConfiguration.NOTE_STORE_ENABLED) return;
+        Map<String, String> held = new java.util.LinkedHashMap<>();
+        List<Task> holders = new ArrayList<>();
+        for (Task t : tasks) {
+            String note = t.getHeldNote();
+            if (note == null || note.trim().isEmpty()) continue;
+            held.put(t.getId(), note);
+            holders.add(t);
+        }
+        if (held.isEmpty()) return;
+        noteStore.putAll(held);
+        // The texts must be durable before anything that refers to them
+        if (durabilityMode.forcesWrites()) noteStore.force();
+        for (Task t : holders) t.releaseNote(held.get(t.getId()), noteStore);
     }
 
-    private void flushPendingWrites() {
+    /**
+     * Forgets the stored texts no task in a complete, just written list refers to.
+     */
+    private void dropUnreferencedNotes(List<Task> tasks) {
+        Set<String> referenced = new HashSet<>();
+        for (Task t : tasks) {
+            if (t.getHeldNote() == null && t.getNoteLength() > 0) referenced.add(t.getId());
+        }
         try {
-            // If there is nothing to flush, return early
-            if (pendingWrites.isEmpty() && pendingRemovals.isEmpty()) return;
+            noteStore.retainOnly(referenced, durabilityMode.forcesWrites());
+        } catch (java.io.IOException e) {
+            MetricsCollector.record("Failed to compact note store: " + e.getMessage());
+        }
+    }
 
-            // Capture a stable snapshot of the authoritative cachedTasks under read lock
-            List<Task> snapshot;
-            rwLock.readLock().lock();
-            try {
-                if (cachedTasks == null) getCachedTasks();
-                snapshot = new ArrayList<>(cachedTasks);
-            } finally {
-                rwLock.readLock().unlock();
+    /**
+     * Points tasks whose note lives in the note store at it.
+     */
+    private void bindNotes(Iterable<Task> tasks) {
+        for (Task t : tasks) bindNote(t);
+    }
+
+    private void bindNote(Task t) {
+        if (t.noteStore == null && t.getNoteLength() > 0 && t.getHeldNote() == null) t.noteStore = noteStore;
+    }
+
+    /**
+     * Identifies a tasks.xml written by this repository: modification time, size,
+     * CRC32 of the content as it was written and the file key (inode) the
+     * atomic replace left behind, where the platform has one.
+     */
+    private static final class WriteGeneration {
+        final long modified;
+        final long length;
+        final long crc;
+        final Object fileKey;
+
+        WriteGeneration(long modified, long length, long crc, Object fileKey) {
+            this.modified = modified;
+            this.length = length;
+            this.crc = crc;
+            this.fileKey = fileKey;
+        }
+    }
+
+    /**
+     * Whether tasks.xml is still exactly the file this repository last wrote.
+     * Time and size are checked first, then the file key, which rules out a file
+     * replaced since; an edit in place keeps the key, so the content hash decides
+     * the rest. On the event dispatch thread that read is left to the maintenance
+     * thread and null is returned: the caller keeps its snapshot until the answer is in.
+     */
+    private Boolean isOwnOutput(File dataFile, long modified) {
+        WriteGeneration gen = ownGeneration;
+        if (gen == null || gen.modified != modified || gen.length != dataFile.length()) return false;
+        if (gen.fileKey != null && !gen.fileKey.equals(fileKeyOf(dataFile))) return false;
+        if (javax.swing.SwingUtilities.isEventDispatchThread()) {
+            if (ownOutputCheckQueued != modified) {
+                ownOutputCheckQueued = modified;
+                try {
+                    maintenanceScheduler.execute(() -> checkOwnOutput(dataFile, modified, gen));
+                } catch (java.util.concurrent.RejectedExecutionException e) {
+                    ownOutputCheckQueued = 0;
+                    return contentMatches(dataFile, gen);
+                }
             }
+            return null;
+        }
+        return contentMatches(dataFile, gen);
+    }
 
-            // Apply pending removals defensively (in case cachedTasks wasn't updated earlier)
-            if (!pendingRemovals.isEmpty()) {
-                snapshot.removeIf(t -> pendingRemovals.contains(t.getId()));
+    /**
+     * Settles a deferred own-output check on the maintenance thread.
+     */
+    private void checkOwnOutput(File dataFile, long modified, WriteGeneration gen) {
+        boolean own = contentMatches(dataFile, gen);
+        synchronized (generationLock) {
+            ownOutputCheckQueued = 0;
+            if (lastModifiedTime >= modified || dataFile.lastModified() != modified) return; // Decided or changed again
+            if (own) {
+                suppressedReloads.incrementAndGet();
+                MetricsCollector.record("tasks.xml changed by our own write, reload skipped");
+            } else {
+                tasksCacheDirty = true;
+                if (snapshot != null) {
+                    externalReloads.incrementAndGet();
+                    MetricsCollector.record("tasks.xml changed externally, reloading");
+                }
             }
+            lastModifiedTime = modified;
+        }
+    }
 
-            // Clear pending sets before persisting to avoid races with new updates
-            pendingWrites.clear();
-            pendingRemovals.clear();
+    private static boolean contentMatches(File dataFile, WriteGeneration gen) {
+        try {
+            return TaskStaxHandler.crc32Of(dataFile.toPath()) == gen.crc;
+        } catch (java.io.IOException e) {
+            return false;
+        }
+    }
 
-            // Use the quiet retry path for coalesced flushes to avoid showing a dialog
-            // for transient background write failures. Persist the full snapshot.
-            submitWithRetriesQuiet("tasks-update-coalesced", () -> persistSetAllTasks(snapshot));
-                } catch (Exception e) {
-            MetricsCollector.record("Failed to flush coalesced writes: " + e.getMessage());
+    private static Object fileKeyOf(File file) {
+        try {
+            return java.nio.file.Files.readAttributes(file.toPath(), java.nio.file.attribute.BasicFileAttributes.class).fileKey();
+        } catch (java.io.IOException e) {
+            return null;
         }
     }
 
-    // Persistence helpers
-    private void persistAdd(Task task) throws Exception {
-        taskXmlHandler.addTask(task);
+    /**
+     * Number of times tasks.xml was reloaded because it was changed outside this repository.
+     */
+    public long getExternalReloadCount() {
+        return externalReloads.get();
     }
 
-    private void persistUpdateTasks(List<Task> tasks) throws Exception {
-        taskXmlHandler.updateTasks(tasks);
+    /**
+     * Number of times a newer tasks.xml was recognised as our own write and not reloaded.
+     */
+    public long getSuppressedReloadCount() {
+        return suppressedReloads.get();
     }
 
-    private void persistRemove(Task task) throws Exception {
-        taskXmlHandler.removeTask(task);
+    /**
+     * Loads the tasks stored in tasks.xml, preferring the binary snapshot when it
+     * matches the file. After falling back to XML the snapshot is refreshed so the
+     * next start can use it.
+     */
+    private List<Task> parseBaseTasks() throws Exception {
+        File dataFile = new File(dataFileName);
+        long length = dataFile.length();
+        long modified = dataFile.lastModified();
+        if (ApplicationConfiguration.BINARY_SNAPSHOT_ENABLED) {
+            List<Task> fromSnapshot = taskSnapshot.read(length, modified);
+            if (fromSnapshot != null) {
+                attachDoneState(fromSnapshot, length, modified);
+                return fromSnapshot;
+            }
+        }
+        long start = System.nanoTime();
+        List<Task> parsed = taskStore.parseAllTasks();
+        MetricsCollector.record("Parsed " + parsed.size() + " tasks from XML in " + ((System.nanoTime() - start) / 1_000_000.0) + " ms");
+        // Only describe the file we actually parsed
+        if (dataFile.length() == length && dataFile.lastModified() == modified) {
+            if (ApplicationConfiguration.BINARY_SNAPSHOT_ENABLED) {
+                try {
+                    writeSnapshotQuietly(parsed, length, modified, TaskStaxHandler.crc32Of(dataFile.toPath()));
+                } catch (java.io.IOException e) {
+                    taskSnapshot.delete();
+                }
+            }
+            attachDoneState(parsed, length, modified);
+        } else if (doneState != null) {
+            doneState.discard();
+        }
+        return parsed;
     }
 
-    private void persistSetAllTasks(List<Task> tasks) throws Exception {
-        taskXmlHandler.setAllTasks(tasks);
+    /**
+     * Binds the done-state file to the tasks just read from tasks.xml (in file
+     * order), before the journal is replayed on top of them.
+     */
+    private void attachDoneState(List<Task> base, long xmlLength, long xmlModified) {
+        if (doneState == null) return;
+        try {
+            doneState.attach(base, xmlLength, xmlModified);
+        } catch (Exception e) {
+            doneState.discard();
+            MetricsCollector.record("Failed to read done-state file, using the journal only: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Points the done-state file at a tasks.xml just written from {@code tasks}.
+     * On failure the file is dropped; every done flip then goes to the journal.
+     */
+    private void rebaseDoneState(List<Task> tasks, long xmlLength, long xmlModified) {
+        if (doneState == null) return;
+        try {
+            doneState.rebase(tasks, xmlLength, xmlModified);
+        } catch (Exception e) {
+            doneState.discard();
+            MetricsCollector.record("Failed to rebase done-state file: " + e.getMessage());
+        }
+    }
+
+    private void writeSnapshotQuietly(List<Task> tasks, long xmlLength, long xmlModified, long xmlCrc) {
+        if (!ApplicationConfiguration.BINARY_SNAPSHOT_ENABLED) return;
+        try {
+            taskSnapshot.write(tasks, xmlLength, xmlModified, xmlCrc);
+        } catch (Exception e) {
+            // The snapshot is only an accelerator; make sure a stale one is not used
+            taskSnapshot.delete();
+            MetricsCollector.record("Failed to write binary snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Folds the journal back into tasks.xml by writing the current in-memory list.
+     * Must run on the write executor so it is ordered after every queued append.
+     */
+    private void compactJournal() throws Exception {
+        TaskSnapshot snap = snapshot;
+        // Never compact from a partial or stale cache: that would drop tasks from disk
+        if (snap == null || tasksCacheDirty) return;
+        // Snapshots are immutable, so the list can be written without copying
+        List<Task> tasks = snap.getTasks();
+        long start = System.nanoTime();
+        long journalBytes = taskJournal.size();
+        persistSetAllTasks(tasks);
+        MetricsCollector.record("Journal compacted (" + journalBytes + " bytes) into " + tasks.size() + " tasks in "
+                + ((System.nanoTime() - start) / 1_000_000.0) + " ms");
+    }
+
+    private void scheduleJournalCompactionCheck() {
+        if (journalCompactionCheck != null) return;
+        long interval = ApplicationConfiguration.JOURNAL_COMPACT_CHECK_INTERVAL_MS;
+        journalCompactionCheck = maintenanceScheduler.scheduleWithFixedDelay(() -> {
+            if (taskJournal != null && taskJournal.needsCompaction()) {
+                submitTasksPersist("journal-compaction", false, this::compactJournal);
+            }
+        }, interval, interval, java.util.concurrent.TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Compacts the journal into tasks.xml and writes the backup export from the
+     * result, waiting for both so a backup contains every change made so far.
+     */
+    private void compactJournalAndWait() {
+        try {
+            flush().get(10, java.util.concurrent.TimeUnit.SECONDS);
+            writeExecutor.submit(() -> {
+                compactJournal();
+                exportForBackup();
+                return null;
+            }).get(10, java.util.concurrent.TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            MetricsCollector.record("Journal compaction before backup failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the current tasks as a single tasks.xml with every note inline for
+     * backups, which always restore from that one file whatever storage layout
+     * made them.
+     */
+    private void exportForBackup() throws Exception {
+        TaskSnapshot snap = snapshot;
+        List<Task> tasks = snap != null ? snap.getTasks() : getCachedTasks();
+        File export = new File(backupExportFileName());
+        export.getParentFile().mkdirs();
+        new TaskStaxHandler(export.getPath()).exportAllTasks(withOverflow(tasks));
+    }
+
+    private String backupExportFileName() {
+        return dataDirectory + File.separator + ApplicationConfiguration.EXPORT_DIRECTORY_NAME
+                + File.separator + ApplicationConfiguration.DATA_FILE_NAME;
+    }
+
+    /**
+     * Moves the tasks into the configured storage layout when they are still in
+     * the other one: tasks.xml into shards, or the shards back into tasks.xml.
+     * The complete state (base file, journal, done-state file and note texts)
+     * is carried over, and the old files are kept under a ".migrated" name. If
+     * the migration fails the old layout stays in use for this session.
+     *
+     * Both layouts are present only when a migration was interrupted after the
+     * new layout had been written in full; then the old one is retired now.
+     * Should the old one have changed since (it was in use again), it is the
+     * newer state and is migrated once more.
+     */
+    private void migrateStorageLayout() {
+        TaskStore from = taskStore != taskXmlHandler ? taskXmlHandler : new ShardedTaskStore(shardDirectory());
+        File source = new File(from.getFileName());
+        if (!source.exists()) return;
+        File target = new File(dataFileName);
+        long start = System.nanoTime();
+        try {
+            if (target.exists() && lastChanged(from.getFileName()) <= lastChanged(dataFileName)) {
+                retireStore(from.getFileName());
+                MetricsCollector.record("Retired " + source.getName() + " left by an interrupted storage layout migration");
+                return;
+            }
+            List<Task> tasks = loadStoredState(from);
+            taskStore.setAllTasks(taskStore.storageOrder(tasks));
+            // A journal or done-state file of an earlier target describes an older file
+            for (String suffix : new String[] {ApplicationConfiguration.JOURNAL_FILE_SUFFIX, ApplicationConfiguration.DONE_STATE_FILE_SUFFIX,
+                    ApplicationConfiguration.SNAPSHOT_FILE_SUFFIX}) {
+                java.nio.file.Files.deleteIfExists(java.nio.file.Paths.get(dataFileName + suffix));
+            }
+            retireStore(from.getFileName());
+            MetricsCollector.record("Migrated " + tasks.size() + " tasks from " + source.getName() + " to "
+                    + target.getName() + " in " + ((System.nanoTime() - start) / 1_000_000.0) + " ms");
+        } catch (Exception e) {
+            java.util.logging.Logger.getLogger(XMLTaskRepository.class.getName()).log(java.util.logging.Level.SEVERE,
+                    "Storage layout migration failed, keeping " + from.getFileName(), e);
+            taskStore = from;
+            dataFileName = from.getFileName();
+        }
+    }
+
+    /**
+     * When a store last changed: its anchor file or the journal and done-state
+     * file appended to between full writes.
+     */
+    private static long lastChanged(String anchor) {
+        long modified = new File(anchor).lastModified();
+        modified = Math.max(modified, new File(anchor + ApplicationConfiguration.JOURNAL_FILE_SUFFIX).lastModified());
+        return Math.max(modified, new File(anchor + ApplicationConfiguration.DONE_STATE_FILE_SUFFIX).lastModified());
+    }
+
+    /**
+     * Reads everything a store holds: its base file, then the journal, the
+     * done-state file and the note texts that belong to it.
+     */
+    private static List<Task> loadStoredState(TaskStore store) throws Exception {
+        String anchor = store.getFileName();
+        File anchorFile = new File(anchor);
+        TaskJournal journal = new TaskJournal(anchor);
+        TaskDoneStateFile done = ApplicationConfiguration.DONE_STATE_FILE_ENABLED ? new TaskDoneStateFile(anchor) : null;
+        TaskNoteStore notes = new TaskNoteStore(anchor);
+        try {
+            long length = anchorFile.length();
+            long modified = anchorFile.lastModified();
+            List<Task> tasks = journal.load(() -> {
+                List<Task> base = store.parseAllTasks();
+                if (done != null) done.attach(base, length, modified);
+                return base;
+            });
+            if (done != null) done.overlay(tasks);
+            // The notes move inline with the tasks; the new layout stores them again on its next full write
+            for (Task t : tasks) {
+                if (t.getHeldNote() == null && t.getNoteLength() > 0) {
+                    String note = notes.get(t.getId());
+                    if (note != null) t.setNote(note);
+                }
+            }
+            return tasks;
+        } finally {
+            journal.close();
+            if (done != null) done.close();
+            notes.close();
+        }
+    }
+
+    /**
+     * Renames a store's anchor file and its note texts out of the way and
+     * deletes its other sidecars, which only describe that file.
+     */
+    private static void retireStore(String anchor) throws java.io.IOException {
+        java.nio.file.Path path = java.nio.file.Paths.get(anchor);
+        java.nio.file.Files.move(path, java.nio.file.Paths.get(anchor + ApplicationConfiguration.MIGRATED_FILE_SUFFIX),
+                java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        java.nio.file.Path notes = java.nio.file.Paths.get(anchor + ApplicationConfiguration.NOTE_STORE_FILE_SUFFIX);
+        if (java.nio.file.Files.exists(notes)) {
+            java.nio.file.Files.move(notes, java.nio.file.Paths.get(notes + ApplicationConfiguration.MIGRATED_FILE_SUFFIX),
+                    java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        }
+        for (String suffix : new String[] {ApplicationConfiguration.JOURNAL_FILE_SUFFIX, ApplicationConfiguration.DONE_STATE_FILE_SUFFIX,
+                ApplicationConfiguration.SNAPSHOT_FILE_SUFFIX}) {
+            java.nio.file.Files.deleteIfExists(java.nio.file.Paths.get(anchor + suffix));
+        }
     }
 
     /**
@@ -284,20 +860,63 @@ public class XMLTaskRepository implements TaskRepository {
      * @param parentComponent Parent component for error dialogs, or null to disable dialogs
      */
     public XMLTaskRepository(Component parentComponent) {
+        this(parentComponent, ApplicationConfiguration.APPLICATION_DATA_DIR, ApplicationConfiguration.STORAGE_LAYOUT);
+    }
+
+    /**
+     * Creates an initialized repository keeping its files in the given directory
+     * instead of the application data directory, in the given storage layout
+     * ("single" or "sharded"). Used by tests.
+     */
+    XMLTaskRepository(String dataDirectory, String storageLayout) {
+        this(null, dataDirectory, storageLayout);
+        initialize();
+    }
+
+    private XMLTaskRepository(Component parentComponent, String dataDirectory, String storageLayout) {
         this.parentComponent = parentComponent;
+        this.dataDirectory = dataDirectory;
+        this.storageLayout = storageLayout;
+        this.fileName = dataDirectory + File.separator + ApplicationConfiguration.DATA_FILE_NAME;
+        this.reminderFileName = dataDirectory + File.separator + ApplicationConfiguration.REMINDERS_FILE_NAME;
+        this.checklistNamesFileName = dataDirectory + File.separator + ApplicationConfiguration.CHECKLIST_NAMES_FILE_NAME;
+        this.dataFileName = fileName;
+    }
+
+    private String shardDirectory() {
+        return dataDirectory + File.separator + ApplicationConfiguration.SHARD_DIRECTORY_NAME;
     }
 
     @Override
     public void initialize() {
         // Initialize component managers
-        taskXmlHandler = new TaskStaxHandler(FILE_NAME);
-        reminderManager = new ReminderManager(REMINDER_FILE_NAME, FILE_NAME);
+        taskXmlHandler = new TaskStaxHandler(fileName);
+        taskStore = "sharded".equalsIgnoreCase(storageLayout.trim()) ? new ShardedTaskStore(shardDirectory()) : taskXmlHandler;
+        dataFileName = taskStore.getFileName();
+        migrateStorageLayout();
+        taskJournal = new TaskJournal(dataFileName);
+        taskSnapshot = new TaskSnapshotFile(dataFileName);
+        if (ApplicationConfiguration.DONE_STATE_FILE_ENABLED) {
+            doneState = new TaskDoneStateFile(dataFileName);
+        }
+        noteStore = new TaskNoteStore(dataFileName);
+        setDurabilityMode(durabilityMode);
+        scheduleJournalCompactionCheck();
+        long reportInterval = ApplicationConfiguration.COMMIT_LATENCY_REPORT_INTERVAL_MS;
+        maintenanceScheduler.scheduleWithFixedDelay(this::reportCommitLatency, reportInterval, reportInterval,
+                java.util.concurrent.TimeUnit.MILLISECONDS);
+        checklistNameManager = new ChecklistNameManager(checklistNamesFileName);
+        reminderManager = new ReminderManager(reminderFileName, fileName, checklistNameManager);
         reminderManager.setParentComponent(parentComponent);
-        checklistNameManager = new ChecklistNameManager(CHECKLIST_NAMES_FILE_NAME);
 
         // Initialize backup system (but don't start threads yet)
-        String[] dataFiles = {FILE_NAME, REMINDER_FILE_NAME, CHECKLIST_NAMES_FILE_NAME, ApplicationConfiguration.SETTINGS_FILE_PATH};
+        String[] dataFiles = {backupExportFileName(), reminderFileName, checklistNamesFileName, ApplicationConfiguration.SETTINGS_FILE_PATH};
         backupManager = new BackupManager(ApplicationConfiguration.BACKUP_DIRECTORY, ApplicationConfiguration.MAX_BACKUP_FILES, ApplicationConfiguration.BACKUP_INTERVAL_MILLIS, dataFiles, parentComponent);
+        // tasks.xml holds neither the journal nor the note texts, so backups copy a self-contained export
+        backupManager.setBeforeBackup(() -> {
+            compactJournalAndWait();
+            reminderManager.flush();
+        });
         backupManager.initialize();
     }
 
@@ -306,12 +925,12 @@ public class XMLTaskRepository implements TaskRepository {
      * This is called lazily when first accessing data.
      */
     private void ensureDataFileExists() {
-        File file = new File(FILE_NAME);
+        File file = new File(dataFileName);
         if (!file.exists()) {
             try {
                 // Ensure parent data directory exists and create an empty tasks document safely
-                ApplicationConfiguration.ensureDataDirectoryExists();
-                taskXmlHandler.ensureFileExists();
+                new File(dataDirectory).mkdirs();
+                taskStore.ensureFileExists();
             } catch (Exception e) {
                 // Show user-friendly error dialog and re-throw as runtime exception
                 if (parentComponent != null) {
@@ -324,21 +943,90 @@ public class XMLTaskRepository implements TaskRepository {
 
     @Override
     public List<Task> getDailyTasks() {
-        List<Task> tasks = getCachedTasks();
-        String today = new SimpleDateFormat("yyyy-MM-dd").format(new java.util.Date(System.currentTimeMillis()));
+        // Done flags of past days are reset by DayRollover when the date changes, not here
+        return new ArrayList<>(getCachedTasks());
+    }
 
-        List<Task> dailyTasks = new ArrayList<>();
-        for (Task task : tasks) {
-            try {
-                taskXmlHandler.checkAndResetPastDoneDate(task, today);
-            } catch (ParseException e) {
-                // Log the error but continue processing other tasks
-                System.err.println("Failed to parse date for task " + task.getId() + ": " + e.getMessage());
-            }
-            dailyTasks.add(task);
+    /**
+     * The tasks of the daily lists: every task outside a custom checklist.
+     *
+     * Until the full task list has been hydrated this reads only what the daily
+     * lists need (the daily shard of the sharded layout, or the daily records of
+     * tasks.xml, with the journal and done states applied read-only), and leaves
+     * the custom checklists to their first access or {@link #prefetchInBackground}.
+     * The early result is read-only; every mutation works on the full list.
+     */
+    public List<Task> getDailyWorkingSet() {
+        if (snapshot == null) {
+            List<Task> early = loadWorkingSet();
+            if (early != null) return early;
         }
+        return dailyTasksOf(getCachedTasks());
+    }
 
-        return dailyTasks;
+    private List<Task> loadWorkingSet() {
+        stateLock.lock();
+        try {
+            if (snapshot != null) return null;
+            if (workingSet != null) return workingSet;
+            ensureDataFileExists();
+            File dataFile = new File(dataFileName);
+            long length = dataFile.length();
+            long modified = dataFile.lastModified();
+            long start = System.nanoTime();
+            List<String> storedIds = new ArrayList<>();
+            List<Task> base = taskStore.parseDailyTasks(storedIds);
+            if (base == null) return null;
+            List<Task> replayed = taskJournal.replay(base);
+            if (replayed == null) return null;
+            List<Task> daily = dailyTasksOf(replayed);
+            bindNotes(daily);
+            if (doneState != null) doneState.overlayPrefix(storedIds, daily, length, modified);
+            workingSet = java.util.Collections.unmodifiableList(daily);
+            MetricsCollector.record("Loaded daily working set of " + daily.size() + " tasks in "
+                    + ((System.nanoTime() - start) / 1_000_000.0) + " ms, custom checklists deferred");
+            return workingSet;
+        } catch (Exception e) {
+            MetricsCollector.record("Daily working set unavailable, loading all tasks: " + e.getMessage());
+            return null;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    /**
+     * Whether the full task list has been read, as opposed to at most the
+     * daily working set.
+     */
+    public boolean isFullyLoaded() {
+        return snapshot != null;
+    }
+
+    private static List<Task> dailyTasksOf(List<Task> tasks) {
+        List<Task> daily = new ArrayList<>();
+        for (Task t : tasks) {
+            if (t.getChecklistId() == null || t.getChecklistId().isEmpty()) daily.add(t);
+        }
+        return daily;
+    }
+
+    /**
+     * Hydrates the full task list on the maintenance thread after a short delay,
+     * so custom checklists, search and reminder lookups find it loaded. Meant to
+     * be called once the UI has shown the daily lists.
+     */
+    public void prefetchInBackground() {
+        if (snapshot != null) return;
+        try {
+            maintenanceScheduler.schedule(() -> {
+                if (snapshot != null) return;
+                long start = System.nanoTime();
+                getCachedTasks();
+                MetricsCollector.record("Prefetched all tasks in " + ((System.nanoTime() - start) / 1_000_000.0) + " ms");
+            }, ApplicationConfiguration.HYDRATION_PREFETCH_DELAY_MS, java.util.concurrent.TimeUnit.MILLISECONDS);
+        } catch (java.util.concurrent.RejectedExecutionException ignore) {
+            // Shutting down
+        }
     }
 
     /**
@@ -346,116 +1034,142 @@ public class XMLTaskRepository implements TaskRepository {
      * Applies memory safety checks.
      */
     private List<Task> getCachedTasks() {
+        return currentSnapshot().getTasks();
+    }
+
+    /**
+     * Returns the current snapshot, (re)loading it first when tasks.xml changed
+     * externally. Without a pending reload this never blocks.
+     */
+    private TaskSnapshot currentSnapshot() {
         // Check if file has been modified externally
-        java.io.File dataFile = new java.io.File(FILE_NAME);
+        java.io.File dataFile = new java.io.File(dataFileName);
         long currentModified = dataFile.lastModified();
-        if (currentModified > lastModifiedTime) {
-            tasksCacheDirty = true;
-            lastModifiedTime = currentModified;
+        // While our own write is being moved into place, decide on the next read instead
+        if (currentModified > lastModifiedTime && !ownWriteInProgress) {
+            synchronized (generationLock) {
+                if (currentModified > lastModifiedTime) {
+                    Boolean own = isOwnOutput(dataFile, currentModified);
+                    if (own == null) {
+                        // Being checked on the maintenance thread; the current snapshot stays meanwhile
+                    } else if (own) {
+                        suppressedReloads.incrementAndGet();
+                        MetricsCollector.record("tasks.xml changed by our own write, reload skipped");
+                        lastModifiedTime = currentModified;
+                    } else {
+                        tasksCacheDirty = true;
+                        if (snapshot != null) {
+                            externalReloads.incrementAndGet();
+                            MetricsCollector.record("tasks.xml changed externally, reloading");
+                        }
+                        lastModifiedTime = currentModified;
+                    }
+                }
+            }
         }
 
-        // Use read-lock for the fast path, escalate to write-lock when cache needs loading
-        rwLock.readLock().lock();
-        try {
-            if (!tasksCacheDirty && cachedTasks != null) {
-                return java.util.Collections.unmodifiableList(cachedTasks);
-            }
-        } finally {
-            rwLock.readLock().unlock();
+        // Fast path: the published snapshot, no lock
+        TaskSnapshot snap = snapshot;
+        if (!tasksCacheDirty && snap != null) {
+            return snap;
         }
 
-        // Need to (re)load the cache under write lock
-        rwLock.writeLock().lock();
+        // Need to (re)load the cache; writers wait for this
+        stateLock.lock();
         try {
-            if (!tasksCacheDirty && cachedTasks != null) {
-                return java.util.Collections.unmodifiableList(cachedTasks);
+            snap = snapshot;
+            if (!tasksCacheDirty && snap != null) {
+                return snap;
             }
             ensureDataFileExists();
+            // The file may have just been created; base the change check on what we parse
+            currentModified = dataFile.lastModified();
             try {
-                cachedTasks = taskXmlHandler.parseAllTasks();
+                List<Task> loaded = taskJournal.load(this::parseBaseTasks);
+                // Done flags ticked since the last full write live in the side file
+                if (doneState != null) doneState.overlay(loaded);
                 // Memory safety check
-                if (MemorySafetyManager.checkTaskLimit(cachedTasks.size())) {
-                    cachedTasks = cachedTasks.subList(0, Math.min(MemorySafetyManager.MAX_TASKS, cachedTasks.size()));
+                if (MemorySafetyManager.checkTaskLimit(loaded.size())) {
+                    keepOverflow(loaded.subList(MemorySafetyManager.MAX_TASKS, loaded.size()));
+                    loaded = loaded.subList(0, MemorySafetyManager.MAX_TASKS);
+                } else {
+                    keepOverflow(java.util.Collections.emptyList());
                 }
-                rebuildMapsFromCachedTasks();
+                rebuildSnapshot(loaded);
                 tasksCacheDirty = false;
                 lastModifiedTime = currentModified;
+                workingSet = null;
             } catch (Exception e) {
                 if (parentComponent != null) {
                     ApplicationErrorHandler.showDataLoadError(parentComponent, "cached tasks", e);
                 }
-                cachedTasks = new ArrayList<>();
-                taskMap = new HashMap<>();
-                tasksByType = new HashMap<>();
-                tasksByChecklist = new HashMap<>();
+                rebuildSnapshot(new ArrayList<>());
             }
-            return java.util.Collections.unmodifiableList(cachedTasks);
+            return snapshot;
         } finally {
-            rwLock.writeLock().unlock();
-        }
-    }
-
-    /**
-     * Rebuilds the lookup maps from the current cachedTasks list. Caller must hold write lock.
-     */
-    private void rebuildMapsFromCachedTasks() {
-        // Build maps using parallel streams for efficiency
-        // Defensively handle duplicate task IDs in the source list by keeping
-        // the first seen instance. This prevents IllegalStateException when
-        // parsing corrupted or duplicated backup/restore payloads.
-        taskMap = cachedTasks.parallelStream().collect(
-            java.util.stream.Collectors.toMap(
-                Task::getId,
-                java.util.function.Function.identity(),
-                (existing, replacement) -> existing
-            )
-        );
-        tasksByType = cachedTasks.parallelStream().collect(java.util.stream.Collectors.groupingBy(Task::getType));
-        tasksByChecklist = cachedTasks.parallelStream()
-            .filter(task -> task.getType() == TaskType.CUSTOM && task.getChecklistId() != null)
-            .collect(java.util.stream.Collectors.groupingBy(Task::getChecklistId));
-
-        // Restore display computation state
-        for (Task task : cachedTasks) {
-            String taskId = task.getId();
-            Boolean wasDirty = taskDisplayDirtyState.get(taskId);
-            if (wasDirty != null && !wasDirty) {
-                // Task was previously computed, restore its state
-                task.markDisplayClean();
-                String cachedName = taskCachedDisplayFullName.get(taskId);
-                if (cachedName != null) {
-                    task.cachedDisplayFullName = cachedName;
-                }
-                int[] cachedWidths = taskCachedCumulativeCharWidths.get(taskId);
-                if (cachedWidths != null) {
-                    task.cachedCumulativeCharWidthsMain = cachedWidths;
-                }
-            }
+            stateLock.unlock();
         }
     }
 
     /**
-     * Incrementally adds a single task to the lookup maps. Caller must hold write lock.
-     * This avoids O(n) iteration when adding to large lists.
+     * The current task snapshot, whose list and indexes are immutable (the tasks
+     * in it are not). Its version changes with every mutation or reload, so UI
+     * caches can compare versions instead of contents.
      */
-    private void addTaskToMaps(Task task) {
-        // If maps don't exist yet, just rebuild them all
-        if (taskMap == null || tasksByType == null || tasksByChecklist == null) {
-            rebuildMapsFromCachedTasks();
-            return;
+    public TaskSnapshot getSnapshot() {
+        return currentSnapshot();
+    }
+
+    public long getSnapshotVersion() {
+        return currentSnapshot().getVersion();
+    }
+
+    /**
+     * Position of a task in the list and the type / checklist keys it is
+     * currently filed under, so a task mutated in place can still be found in
+     * its old groups.
+     */
+    private static final class IndexEntry {
+        int position;
+        TaskType type;
+        String checklistId;
+
+        IndexEntry(int position, TaskType type, String checklistId) {
+            this.position = position;
+            this.type = type;
+            this.checklistId = checklistId;
         }
-        
-        // Incrementally add to maps
-        taskMap.put(task.getId(), task);
-        tasksByType.computeIfAbsent(task.getType(), k -> new ArrayList<>()).add(task);
-        if (task.getType() == TaskType.CUSTOM && task.getChecklistId() != null) {
-            tasksByChecklist.computeIfAbsent(task.getChecklistId(), k -> new ArrayList<>()).add(task);
+    }
+
+    /**
+     * Publishes a snapshot built from scratch from the given list and rebuilds the
+     * writer-side position index. Caller must hold stateLock.
+     */
+    private void rebuildSnapshot(List<Task> tasks) {
+        TaskSnapshot next = TaskSnapshot.of(tasks, ++snapshotVersion);
+        TaskIdMap<IndexEntry> index = new TaskIdMap<>(tasks.size());
+        boolean duplicates = false;
+        int i = 0;
+        for (Task task : next.getTasks()) {
+            if (index.putIfAbsent(task, new IndexEntry(i, task.getType(), TaskSnapshot.checklistKey(task))) != null) {
+                duplicates = true;
+            }
+            restoreDisplayState(task);
+            bindNote(task);
+            i++;
         }
-        
-        // Restore display computation state if we have it cached
+        taskIndex = index;
+        // Positions are ambiguous with duplicate ids; mutate via full rebuilds until the list is clean
+        indexFallback = duplicates;
+        pendingRebuild = false;
+        snapshot = next;
+    }
+
+    private void restoreDisplayState(Task task) {
         String taskId = task.getId();
         Boolean wasDirty = taskDisplayDirtyState.get(taskId);
         if (wasDirty != null && !wasDirty) {
+            // Task was previously computed, restore its state
             task.markDisplayClean();
             String cachedName = taskCachedDisplayFullName.get(taskId);
             if (cachedName != null) {
@@ -468,22 +1182,185 @@ public class XMLTaskRepository implements TaskRepository {
         }
     }
 
-    @Override
-    public List<Task> getAllTasks() {
-        List<Task> tasks = getCachedTasks();
-        String today = new SimpleDateFormat("yyyy-MM-dd").format(new java.util.Date(System.currentTimeMillis()));
+    /**
+     * Applies the edits to a copy-on-write builder of the current snapshot and
+     * publishes the result as the next version. Caller must hold stateLock.
+     */
+    private void applyMutation(java.util.function.Consumer<TaskSnapshot.Builder> edits) {
+        TaskSnapshot.Builder builder = currentSnapshot().toBuilder();
+        try {
+            edits.accept(builder);
+        } catch (RuntimeException e) {
+            // The position index may be half-updated; realign it with what readers see
+            rebuildSnapshot(snapshot.getTasks());
+            throw e;
+        }
+        if (pendingRebuild) {
+            rebuildSnapshot(builder.tasks().build());
+        } else {
+            snapshot = builder.build(++snapshotVersion);
+        }
+        selfCheckIndexes();
+    }
 
-        // Check and reset past done dates
-        for (Task task : tasks) {
-            try {
-                taskXmlHandler.checkAndResetPastDoneDate(task, today);
-            } catch (ParseException e) {
-                // Log the error but continue processing other tasks
-                System.err.println("Failed to parse date for task " + task.getId() + ": " + e.getMessage());
+    /**
+     * Replaces the task with the same id, or appends it, keeping every lookup
+     * index in step without a full rebuild.
+     */
+    private void upsertInCache(TaskSnapshot.Builder b, Task task) {
+        bindNote(task);
+        TaskSnapshot.TaskVector.Builder list = b.tasks();
+        IndexEntry entry = taskIndex.get(task);
+        // Tasks without a type cannot be filed by the incremental path; rebuild for them
+        if (indexFallback || pendingRebuild || task.getType() == null || (entry != null && entry.type == null)) {
+            boolean replaced = false;
+            for (int i = 0; i < list.size(); i++) {
+                if (list.get(i).equals(task)) {
+                    list.set(i, task);
+                    replaced = true;
+                    break;
+                }
             }
+            if (!replaced) list.add(task);
+            pendingRebuild = true;
+            return;
         }
 
-        return tasks;
+        TaskType type = task.getType();
+        String key = TaskSnapshot.checklistKey(task);
+        if (entry == null) {
+            // Appending keeps every group in list order
+            taskIndex.put(task, new IndexEntry(list.size(), type, key));
+            list.add(task);
+            b.putId(task);
+            b.typeGroup(type).add(task);
+            if (key != null) b.checklistGroup(key).add(task);
+        } else {
+            list.set(entry.position, task);
+            b.putId(task);
+            regroup(b::typeGroup, entry.type, type, entry.position, task);
+            regroup(b::checklistGroup, entry.checklistId, key, entry.position, task);
+            entry.type = type;
+            entry.checklistId = key;
+        }
+        restoreDisplayState(task);
+    }
+
+    /**
+     * Removes the task with the given id from the list and every lookup index.
+     */
+    private void removeFromCache(TaskSnapshot.Builder b, String id) {
+        TaskSnapshot.TaskVector.Builder list = b.tasks();
+        IndexEntry entry = taskIndex.get(id);
+        if (indexFallback || pendingRebuild || (entry != null && entry.type == null)) {
+            for (int i = list.size() - 1; i >= 0; i--) {
+                if (list.get(i).hasId(id)) list.remove(i);
+            }
+            pendingRebuild = true;
+            return;
+        }
+        if (entry == null) return;
+        // Take it out of its groups while positions are still valid
+        regroup(b::typeGroup, entry.type, null, entry.position, null);
+        regroup(b::checklistGroup, entry.checklistId, null, entry.position, null);
+        list.remove(entry.position);
+        taskIndex.remove(id);
+        b.removeId(id);
+        for (int i = entry.position; i < list.size(); i++) {
+            taskIndex.get(list.get(i)).position = i;
+        }
+    }
+
+    /**
+     * Moves the task at the given list position from group {@code oldKey} to
+     * group {@code newKey} (either may be null for "no group"), keeping groups in
+     * list order. A null task only removes it.
+     */
+    private <K> void regroup(java.util.function.Function<K, TaskSnapshot.TaskVector.Builder> groups, K oldKey, K newKey, int position, Task task) {
+        boolean sameGroup = task != null && Objects.equals(oldKey, newKey);
+        if (oldKey != null) {
+            TaskSnapshot.TaskVector.Builder group = groups.apply(oldKey);
+            int at = findInGroup(group, position);
+            if (at >= 0) {
+                if (sameGroup) {
+                    group.set(at, task);
+                    return;
+                }
+                group.remove(at);
+            }
+        }
+        if (task != null && newKey != null) {
+            TaskSnapshot.TaskVector.Builder group = groups.apply(newKey);
+            int at = findInGroup(group, position);
+            group.add(at >= 0 ? at : -at - 1, task);
+        }
+    }
+
+    /**
+     * Binary search of a group (sorted by list position) for the given position.
+     * Returns the index, or {@code -(insertion point) - 1} when absent.
+     */
+    private int findInGroup(TaskSnapshot.TaskVector.Builder group, int position) {
+        int lo = 0;
+        int hi = group.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int p = taskIndex.get(group.get(mid)).position;
+            if (p < position) lo = mid + 1;
+            else if (p > position) hi = mid - 1;
+            else return mid;
+        }
+        return -lo - 1;
+    }
+
+    private void selfCheckIndexes() {
+        if (ApplicationConfiguration.INDEX_SELF_CHECK && !verifyIndexes()) {
+            java.util.logging.Logger.getLogger(XMLTaskRepository.class.getName())
+                .log(java.util.logging.Level.SEVERE, "Incremental task indexes diverged at snapshot " + snapshotVersion + ", rebuilding");
+            rebuildSnapshot(snapshot.getTasks());
+        }
+    }
+
+    /**
+     * Compares the incrementally maintained snapshot and position index with a
+     * full rebuild. Enabled after every mutation with -Ddailychecklist.indexSelfCheck=true.
+     */
+    boolean verifyIndexes() {
+        stateLock.lock();
+        try {
+            TaskSnapshot snap = snapshot;
+            if (snap == null || indexFallback) return true;
+            List<Task> tasks = snap.getTasks();
+            if (snap.idCount() != tasks.size() || taskIndex.size() != tasks.size()) return false;
+            int i = 0;
+            for (Task task : tasks) {
+                IndexEntry entry = taskIndex.get(task);
+                if (snap.getTask(task) != task || entry == null || entry.position != i) return false;
+                if (entry.type != task.getType() || !Objects.equals(entry.checklistId, TaskSnapshot.checklistKey(task))) return false;
+                i++;
+            }
+            TaskSnapshot expected = TaskSnapshot.of(tasks, snap.getVersion());
+            return sameGroups(expected.typeGroups(), snap.typeGroups()) && sameGroups(expected.checklistGroups(), snap.checklistGroups());
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    private static <K> boolean sameGroups(Map<K, ? extends List<Task>> expected, Map<K, ? extends List<Task>> actual) {
+        if (expected.size() != actual.size()) return false;
+        for (Map.Entry<K, ? extends List<Task>> e : expected.entrySet()) {
+            List<Task> other = actual.get(e.getKey());
+            if (other == null || other.size() != e.getValue().size()) return false;
+            for (int i = 0; i < other.size(); i++) {
+                if (other.get(i) != e.getValue().get(i)) return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public List<Task> getAllTasks() {
+        return getCachedTasks();
     }
 
     /**
@@ -492,33 +1369,26 @@ public class XMLTaskRepository implements TaskRepository {
      * For other task types, checklist parameter is ignored.
      */
     public List<Task> getTasks(TaskType type, Checklist checklist) {
-        // Ensure cache is loaded
-        getCachedTasks();
-        
-        rwLock.readLock().lock();
-        try {
-            List<Task> tasksOfType = tasksByType.get(type);
-            if (tasksOfType == null) {
-                return new ArrayList<>();
-            }
-            
-            if (type != TaskType.CUSTOM || checklist == null) {
-                // Return all tasks of this type
-                return new ArrayList<>(tasksOfType);
-            } else {
-                // For CUSTOM tasks, filter by checklist ID
-                String checklistId = checklist.getId();
-                List<Task> filtered = new ArrayList<>();
-                for (Task task : tasksOfType) {
-                    if (Objects.equals(checklistId, task.getChecklistId())) {
-                        filtered.add(task);
-                    }
-                }
-                return filtered;
+        // Ensure cache is loaded; the snapshot is immutable so no lock is needed
+        TaskSnapshot snap = currentSnapshot();
+        List<Task> tasksOfType = snap.getTasksOfType(type);
+
+        if (type != TaskType.CUSTOM || checklist == null) {
+            // Return all tasks of this type
+            return new ArrayList<>(tasksOfType);
+        }
+        String checklistId = checklist.getId();
+        if (checklistId != null) {
+            // CUSTOM tasks are pre-grouped by checklist ID
+            return new ArrayList<>(snap.getTasksInChecklist(checklistId));
+        }
+        List<Task> filtered = new ArrayList<>();
+        for (Task task : tasksOfType) {
+            if (task.getChecklistId() == null) {
+                filtered.add(task);
             }
-        } finally {
-            rwLock.readLock().unlock();
         }
+        return filtered;
     }
 
     /**
@@ -526,55 +1396,33 @@ public class XMLTaskRepository implements TaskRepository {
      * Returns null if not found.
      */
     public Task getTaskById(String id) {
-        getCachedTasks(); // Ensure cache is loaded
-        return taskMap.get(id);
+        return currentSnapshot().getTask(id); // Loads the cache if needed
     }
 
     @Override
-    public synchronized void addTask(Task task) {
+    public void addTask(Task task) {
         // Validate task before saving
         if (!TaskXmlHandler.validateTask(task)) {
             System.err.println("Invalid task data, skipping save: " + task);
             return;
         }
+        // An existing id is replaced rather than duplicated; persisted with the next batch
+        enqueue(TaskMutationPipeline.Mutation.upsert(java.util.Collections.singletonList(task), false));
+    }
 
-        // Update in-memory cache first and persist asynchronously
-        rwLock.writeLock().lock();
-        try {
-            if (cachedTasks == null) cachedTasks = new ArrayList<>();
-            // Avoid adding duplicate task ids into the in-memory cache. If a task
-            // with the same id already exists treat this as an update/replace so
-            // we don't produce duplicate entries that later surface in the UI.
-            boolean replaced = false;
-            for (int i = 0; i < cachedTasks.size(); i++) {
-                Task existing = cachedTasks.get(i);
-                if (existing != null && existing.getId().equals(task.getId())) {
-                    cachedTasks.set(i, task);
-                    replaced = true;
-                    break;
-                }
-            }
-            if (!replaced) {
-                cachedTasks.add(task);
-                // Use incremental update instead of full rebuild for better performance
-                addTaskToMaps(task);
-            } else {
-                // If we replaced an existing entry, rebuild the maps so derived
-                // lookup structures stay consistent.
-                rebuildMapsFromCachedTasks();
-            }
-            tasksCacheDirty = false;
-        } finally {
-            rwLock.writeLock().unlock();
+    /**
+     * Adds a task and returns a future that completes once it is on disk. The
+     * task is visible to readers when this method returns.
+     */
+    public CompletableFuture<Void> submitAddTask(Task task) {
+        if (!TaskXmlHandler.validateTask(task)) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid task data: " + task));
         }
-
-        // Coalesce add: schedule batched flush so many additions are written once
-        pendingWrites.put(task.getId(), task);
-        scheduleCoalescedFlushIfNeeded();
+        return enqueue(TaskMutationPipeline.Mutation.upsert(java.util.Collections.singletonList(task), false));
     }
 
     @Override
-    public synchronized void updateTask(Task task) {
+    public void updateTask(Task task) {
         // Validate task before saving
         if (!TaskXmlHandler.validateTask(task)) {
             System.err.println("Invalid task data, skipping save: " + task);
@@ -582,194 +1430,68 @@ public class XMLTaskRepository implements TaskRepository {
         }
 
         System.out.println("[TRACE] XMLTaskRepository.updateTask start id=" + task.getId() + ", thread=" + Thread.currentThread().getName());
-        // Update in-memory cache immediately
-        rwLock.writeLock().lock();
-        try {
-            if (cachedTasks == null) getCachedTasks();
-            boolean replaced = false;
-            for (int i = 0; i < cachedTasks.size(); i++) {
-                if (cachedTasks.get(i).getId().equals(task.getId())) {
-                    cachedTasks.set(i, task);
-                    replaced = true;
-                    break;
-                }
-            }
-            if (!replaced) cachedTasks.add(task);
-            rebuildMapsFromCachedTasks();
-            tasksCacheDirty = false;
-        } finally {
-            rwLock.writeLock().unlock();
-        }
-
-        // Add to coalesced pending writes and schedule a batched flush
-        pendingWrites.put(task.getId(), task);
-        scheduleCoalescedFlushIfNeeded();
+        submitUpdateTask(task);
         System.out.println("[TRACE] XMLTaskRepository.updateTask scheduled coalesced persist id=" + task.getId());
     }
 
+    /**
+     * Updates a task and returns a future that completes once it is on disk.
+     */
+    public CompletableFuture<Void> submitUpdateTask(Task task) {
+        return enqueue(TaskMutationPipeline.Mutation.upsert(java.util.Collections.singletonList(task), false));
+    }
+
     /**
      * Updates a task without showing error dialogs (for UI state management).
      * Returns true if successful, false if failed.
      */
-    public synchronized boolean updateTaskQuiet(Task task) {
-        // Update in-memory first and persist asynchronously
-        try {
-            System.out.println("[TRACE] XMLTaskRepository.updateTaskQuiet scheduling id=" + task.getId() + ", thread=" + Thread.currentThread().getName());
-            rwLock.writeLock().lock();
-            try {
-                if (cachedTasks == null) getCachedTasks();
-                boolean replaced = false;
-                for (int i = 0; i < cachedTasks.size(); i++) {
-                    if (cachedTasks.get(i).getId().equals(task.getId())) {
-                        cachedTasks.set(i, task);
-                        replaced = true;
-                        break;
-                    }
-                }
-                if (!replaced) cachedTasks.add(task);
-                rebuildMapsFromCachedTasks();
-                tasksCacheDirty = false;
-            } finally {
-                rwLock.writeLock().unlock();
-            }
-
-            // Coalesce quiet updates as well (batched flush will persist them)
-            pendingWrites.put(task.getId(), task);
-            scheduleCoalescedFlushIfNeeded();
-            return true;
-        } catch (Exception e) {
-            System.out.println("[TRACE] XMLTaskRepository.updateTaskQuiet failed scheduling id=" + task.getId() + ", err=" + e.getMessage());
+    public boolean updateTaskQuiet(Task task) {
+        System.out.println("[TRACE] XMLTaskRepository.updateTaskQuiet scheduling id=" + task.getId() + ", thread=" + Thread.currentThread().getName());
+        CompletableFuture<Void> durable = submitUpdateTask(task);
+        if (durable.isCompletedExceptionally()) {
+            System.out.println("[TRACE] XMLTaskRepository.updateTaskQuiet failed scheduling id=" + task.getId());
             return false;
         }
+        return true;
     }
 
     /**
      * Atomically update multiple tasks and write once.
      */
-    public synchronized void updateTasks(List<Task> tasks) {
+    public void updateTasks(List<Task> tasks) {
         if (tasks == null || tasks.isEmpty()) return;
-        try {
-            // Update in-memory cache first under write lock
-            rwLock.writeLock().lock();
-            try {
-                if (cachedTasks == null) getCachedTasks();
-                // Replace or add each task - use taskMap for O(1) lookup when available
-                for (Task t : tasks) {
-                    if (taskMap != null) {
-                        // Use map for fast lookup
-                        Task existing = taskMap.get(t.getId());
-                        if (existing != null) {
-                            // Update in cachedTasks list
-                            for (int i = 0; i < cachedTasks.size(); i++) {
-                                if (cachedTasks.get(i).getId().equals(t.getId())) {
-                                    cachedTasks.set(i, t);
-                                    break;
-                                }
-                            }
-                        } else {
-                            cachedTasks.add(t);
-                        }
-                    } else {
-                        // Fallback to linear search
-                        boolean found = false;
-                        for (int i = 0; i < cachedTasks.size(); i++) {
-                            if (cachedTasks.get(i).getId().equals(t.getId())) {
-                                cachedTasks.set(i, t);
-                                found = true;
-                                break;
-                            }
-                        }
-                        if (!found) cachedTasks.add(t);
-                    }
-                }
-                rebuildMapsFromCachedTasks();
-                tasksCacheDirty = false;
-            } finally {
-                rwLock.writeLock().unlock();
-            }
+        long start = System.nanoTime();
+        submitUpdateTasks(tasks, true).thenRun(() -> MetricsCollector.record("updateTasks wrote " + tasks.size() + " tasks in "
+                + ((System.nanoTime() - start) / 1_000_000.0) + " ms"));
+    }
 
-            // Persist asynchronously (with retries/backoff)
-            submitWithRetries("tasks-update", () -> {
-                long start = System.nanoTime();
-                persistUpdateTasks(tasks);
-                long dur = System.nanoTime() - start;
-                MetricsCollector.record("updateTasks wrote " + tasks.size() + " tasks in " + (dur / 1_000_000.0) + " ms");
-            });
-        } catch (Exception e) {
-            if (parentComponent != null) {
-                ApplicationErrorHandler.showDataSaveError(parentComponent, "tasks", e);
-            }
-        }
+    /**
+     * Updates several tasks as one snapshot version and returns a future that
+     * completes once all of them are on disk. With {@code reportErrors} a
+     * persistent write failure is shown to the user.
+     */
+    public CompletableFuture<Void> submitUpdateTasks(List<Task> tasks, boolean reportErrors) {
+        if (tasks == null || tasks.isEmpty()) return CompletableFuture.completedFuture(null);
+        return enqueue(TaskMutationPipeline.Mutation.upsert(new ArrayList<>(tasks), reportErrors));
     }
 
     /**
      * Quiet variant of updateTasks for background persistence.
      */
-    public synchronized boolean updateTasksQuiet(List<Task> tasks) {
-        // Update in-memory first and persist asynchronously
-        try {
-            rwLock.writeLock().lock();
-            try {
-                if (cachedTasks == null) getCachedTasks();
-                for (Task t : tasks) {
-                    if (taskMap != null) {
-                        // Use map for fast lookup
-                        Task existing = taskMap.get(t.getId());
-                        if (existing != null) {
-                            // Update in cachedTasks list
-                            for (int i = 0; i < cachedTasks.size(); i++) {
-                                if (cachedTasks.get(i).getId().equals(t.getId())) {
-                                    cachedTasks.set(i, t);
-                                    break;
-                                }
-                            }
-                        } else {
-                            cachedTasks.add(t);
-                        }
-                    } else {
-                        // Fallback to linear search
-                        boolean found = false;
-                        for (int i = 0; i < cachedTasks.size(); i++) {
-                            if (cachedTasks.get(i).getId().equals(t.getId())) {
-                                cachedTasks.set(i, t);
-                                found = true;
-                                break;
-                            }
-                        }
-                        if (!found) cachedTasks.add(t);
-                    }
-                }
-                rebuildMapsFromCachedTasks();
-                tasksCacheDirty = false;
-            } finally {
-                rwLock.writeLock().unlock();
-            }
-
-            submitWithRetries("tasks-update-quiet", () -> persistUpdateTasks(tasks));
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+    public boolean updateTasksQuiet(List<Task> tasks) {
+        return !submitUpdateTasks(tasks, false).isCompletedExceptionally();
     }
 
     @Override
-    public synchronized void removeTask(Task task) {
-        // Remove from in-memory cache then persist asynchronously
-        rwLock.writeLock().lock();
-        try {
-            if (cachedTasks == null) getCachedTasks();
-            cachedTasks.removeIf(t -> t.getId().equals(task.getId()));
-            rebuildMapsFromCachedTasks();
-            tasksCacheDirty = false;
-        } finally {
-            rwLock.writeLock().unlock();
-        }
+    public void removeTask(Task task) {
+        submitRemoveTask(task);
+    }
 
-        // Schedule removal in the coalescer (avoid immediate I/O)
-        pendingRemovals.add(task.getId());
-        // Ensure any pending write entry for this id is removed
-        pendingWrites.remove(task.getId());
-        scheduleCoalescedFlushIfNeeded();
+    /**
+     * Removes a task and returns a future that completes once the removal is on disk.
+     */
+    public CompletableFuture<Void> submitRemoveTask(Task task) {
+        return enqueue(TaskMutationPipeline.Mutation.remove(task.getId()));
     }
 
     @Override
@@ -783,13 +1505,23 @@ public class XMLTaskRepository implements TaskRepository {
         return false;
     }
 
+    /**
+     * Replaces every task and returns a future that completes once tasks.xml
+     * has been rewritten. Unlike {@link #setTasks} this does not normalize
+     * checklist ids or touch the checklist registry.
+     */
+    public CompletableFuture<Void> submitSetTasks(List<Task> tasks) {
+        if (tasks == null) return CompletableFuture.failedFuture(new IllegalArgumentException("tasks must not be null"));
+        return enqueue(TaskMutationPipeline.Mutation.replaceAll(new ArrayList<>(tasks)));
+    }
+
     @Override
-    public synchronized void setTasks(List<Task> tasks) {
+    public void setTasks(List<Task> tasks) {
         try {
             // Log incoming restore payload for debugging (append mode)
             java.util.logging.Logger _log = java.util.logging.Logger.getLogger(XMLTaskRepository.class.getName());
             try {
-                File logFile = new File(ApplicationConfiguration.APPLICATION_DATA_DIR, "restore-debug.log");
+                File logFile = new File(dataDirectory, "restore-debug.log");
                 if (logFile.getParentFile() != null) logFile.getParentFile().mkdirs();
                 try (java.io.PrintWriter pw = new java.io.PrintWriter(new java.io.FileWriter(logFile, true))) {
                     pw.println("=== restore setTasks at " + new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new java.util.Date()));
@@ -828,20 +1560,9 @@ public class XMLTaskRepository implements TaskRepository {
                     }
                 }
             }
-            // Persist asynchronously on the write executor to avoid blocking
-            // the calling thread and to serialize disk writes with other
-            // coalesced background flushes (prevents file-in-use collisions).
-            submitWithRetries("setAllTasks", () -> persistSetAllTasks(tasks));
-
-            // Update in-memory representation immediately
-            rwLock.writeLock().lock();
-            try {
-                cachedTasks = new ArrayList<>(tasks);
-                rebuildMapsFromCachedTasks();
-                tasksCacheDirty = false;
-            } finally {
-                rwLock.writeLock().unlock();
-            }
+            // Visible immediately; the full rewrite is handed to the write executor
+            // right away, ordered after every earlier change
+            submitSetTasks(tasks);
 
             // After setting tasks, rebuild the checklist names registry from the new tasks
             rebuildChecklistNamesRegistry(tasks);
@@ -932,6 +1653,11 @@ public class XMLTaskRepository implements TaskRepository {
         reminderManager.removeReminder(reminder);
     }
 
+    @Override
+    public void removeReminders(java.util.Collection<Reminder> reminders) {
+        reminderManager.removeReminders(reminders);
+    }
+
     @Override
     public List<Reminder> getDueReminders(int minutesAhead, Set<String> openedChecklists) {
         return reminderManager.getDueReminders(minutesAhead, openedChecklists);
@@ -942,6 +1668,33 @@ public class XMLTaskRepository implements TaskRepository {
         return reminderManager.getNextReminderTime(openedChecklists);
     }
 
+    @Override
+    public Reminder getReminderForTask(String taskId) {
+        return reminderManager.getReminderForTask(taskId);
+    }
+
+    @Override
+    public List<Reminder> getRemindersForChecklist(String checklistName) {
+        return reminderManager.getRemindersForChecklist(checklistName);
+    }
+
+    @Override
+    public List<Reminder> getRemindersForChecklistIgnoreCase(String checklistName) {
+        return reminderManager.getRemindersForChecklistIgnoreCase(checklistName);
+    }
+
+    @Override
+    public Reminder getNearestReminderForChecklist(String checklistName, LocalDateTime time) {
+        return reminderManager.getNearestReminderForChecklist(checklistName, time);
+    }
+
+    /**
+     * Gets the next reminder time for unopened checklists in a later minute than the given time.
+     */
+    public LocalDateTime getNextReminderTime(Set<String> openedChecklists, LocalDateTime after) {
+        return reminderManager.getNextReminderTime(openedChecklists, after);
+    }
+
     @Override
     public Set<Checklist> getChecklists() {
         return checklistNameManager.getChecklists();
@@ -978,16 +1731,40 @@ public class XMLTaskRepository implements TaskRepository {
     public void shutdown() {
         shutdownBackupSystem();
         
+        // Hand queued mutations to the write executor before stopping it
+        try {
+            mutationPipeline.shutdown(2000);
+            // Do not leave failed writes waiting for a timer that will never fire
+            persistEngine.retryPendingNow();
+            writeExecutor.shutdown();
+            writeExecutor.awaitTermination(2, java.util.concurrent.TimeUnit.SECONDS);
+            reportCommitLatency();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ignore) {}
+        // Reminder changes still waiting for their write
+        reminderManager.close();
+
         // Clear cache to free memory
-        cachedTasks = null;
+        snapshot = null;
         tasksCacheDirty = true;
         // Shutdown executor
         try {
             writeExecutor.shutdownNow();
         } catch (Exception ignore) {}
         try {
-            coalesceScheduler.shutdownNow();
+            maintenanceScheduler.shutdownNow();
         } catch (Exception ignore) {}
+        if (taskJournal != null) {
+            taskJournal.close();
+        }
+        if (doneState != null) {
+            doneState.close();
+        }
+        if (noteStore != null) {
+            noteStore.close();
+        }
+        releaseOverflow();
     }
 
     @Override
@@ -0,0 +1,82 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Test class for DayRollover - unticking tasks done on past days
+ */
+public class DayRolloverTest {
+
+    private TaskManager taskManager;
+    private DayRollover rollover;
+
+    @Before
+    public void setUp() {
+        taskManager = new TaskManager(new XMLTaskRepository());
+        rollover = new DayRollover(taskManager, null, null);
+    }
+
+    @After
+    public void tearDown() {
+        rollover.close();
+    }
+
+    @Test
+    public void testRollOverUnticksTasksOfPastDays() {
+        long today = LocalDate.now().toEpochDay();
+        Task yesterday = new Task("Done yesterday", TaskType.MORNING, null, null, null);
+        yesterday.setDone(true);
+        yesterday.setDoneDate(java.sql.Date.valueOf(LocalDate.ofEpochDay(today - 1)));
+        Task current = new Task("Done today", TaskType.EVENING, null, null, null);
+        current.setDone(true);
+        current.setDoneDate(new Date());
+        taskManager.addTask(yesterday);
+        taskManager.addTask(current);
+
+        // The default repository is shared with other tests, so other stale tasks may be counted too
+        assertTrue(rollover.rollOver(today - 1, today) >= 1);
+        assertFalse(taskManager.getTaskById(yesterday.getId()).isDone());
+        assertNull(taskManager.getTaskById(yesterday.getId()).getDoneDate());
+        assertTrue(taskManager.getTaskById(current.getId()).isDone());
+    }
+
+    @Test
+    public void testTickWithoutDateCountsFromTheDayRolledOverFrom() {
+        long today = LocalDate.now().toEpochDay();
+        assertTrue(DayRollover.isStale(Task.NO_DATE, today - 1, today));
+        assertFalse("Nothing to roll over from on the first check", DayRollover.isStale(Task.NO_DATE, Long.MIN_VALUE, today));
+        assertFalse(DayRollover.isStale((int) today, today - 1, today));
+    }
+
+    @Test
+    public void testStartOnTheDayOfTheLastSessionLeavesTheTasksUnread() throws Exception {
+        File dir = Files.createTempDirectory("rollover-test").toFile();
+        Clock clock = Clock.fixed(java.time.Instant.now(), ZoneId.systemDefault());
+        LocalDate today = LocalDate.now(clock);
+        XMLTaskRepository repo = new XMLTaskRepository(dir.getAbsolutePath(), "single");
+        try {
+            DayRollover sameDay = new DayRollover(new TaskManager(repo), today, null, clock);
+            sameDay.check();
+            sameDay.close();
+            assertFalse("Nothing can be stale, so the daily lists may show from the working set", repo.isFullyLoaded());
+
+            DayRollover nextDay = new DayRollover(new TaskManager(repo), today.minusDays(1), null, clock);
+            nextDay.check();
+            for (int i = 0; i < 100 && !repo.isFullyLoaded(); i++) Thread.sleep(50);
+            nextDay.close();
+            assertTrue("A new day loads every task to untick the stale ones", repo.isFullyLoaded());
+        } finally {
+            repo.shutdown();
+            File[] files = dir.listFiles();
+            if (files != null) for (File f : files) f.delete();
+            dir.delete();
+        }
+    }
+}
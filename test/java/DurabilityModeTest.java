@@ -0,0 +1,84 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Test class for DurabilityMode - how the selected mode decides when task writes are forced
+ * Note: Uses a temporary directory so the user's data files are never touched
+ */
+public class DurabilityModeTest {
+
+    private File dir;
+    private XMLTaskRepository repo;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("durability-test").toFile();
+        repo = new XMLTaskRepository(dir.getAbsolutePath(), "single");
+        repo.submitSetTasks(Arrays.asList(new Task("Existing", TaskType.MORNING, null, null, null))).get();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        repo.flush().get();
+        repo.shutdown();
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testParseIsCaseInsensitiveAndFallsBackToStandard() {
+        assertEquals(DurabilityMode.STRICT, DurabilityMode.parse(" strict "));
+        assertEquals(DurabilityMode.RELAXED, DurabilityMode.parse("Relaxed"));
+        assertEquals(DurabilityMode.STANDARD, DurabilityMode.parse("fast"));
+        assertEquals(DurabilityMode.STANDARD, DurabilityMode.parse(null));
+        assertFalse(DurabilityMode.RELAXED.forcesWrites());
+        assertTrue(DurabilityMode.STANDARD.forcesWrites());
+        assertTrue(DurabilityMode.STRICT.forcesWrites());
+    }
+
+    @Test
+    public void testRelaxedNeverForcesTheJournal() throws Exception {
+        repo.setDurabilityMode(DurabilityMode.RELAXED);
+        addAndWait(3);
+        assertEquals(0, repo.getJournalForceCount());
+    }
+
+    @Test
+    public void testStandardForcesOncePerHandOff() throws Exception {
+        repo.setDurabilityMode(DurabilityMode.STANDARD);
+        addAndWait(3);
+        long forces = repo.getJournalForceCount();
+        assertTrue("Forced at least once, at most once per mutation: " + forces, forces >= 1 && forces <= 3);
+    }
+
+    @Test
+    public void testStrictHandsOffAndForcesEveryMutation() throws Exception {
+        repo.setDurabilityMode(DurabilityMode.STRICT);
+        assertEquals(DurabilityMode.STRICT, repo.getDurabilityMode());
+        addAndWait(3);
+        assertEquals("One forced journal append per mutation", 3, repo.getJournalForceCount());
+    }
+
+    private void addAndWait(int count) throws Exception {
+        List<CompletableFuture<Void>> durable = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            durable.add(repo.submitAddTask(new Task("Added " + i, TaskType.MORNING, null, null, null)));
+        }
+        for (CompletableFuture<Void> f : durable) {
+            f.get(10, TimeUnit.SECONDS);
+        }
+    }
+}
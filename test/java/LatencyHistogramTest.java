@@ -0,0 +1,57 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for LatencyHistogram - percentiles from the power-of-two buckets
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEmptyHistogramReportsZero() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.count());
+        assertEquals(0, h.percentileMicros(0.5));
+        assertEquals(0, h.percentileMicros(0.99));
+    }
+
+    @Test
+    public void testSmallLatenciesAreExact() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int micros = 1; micros <= 4; micros++) {
+            h.record(micros * 1000L);
+        }
+        assertEquals(4, h.count());
+        assertEquals(2, h.percentileMicros(0.5));
+        assertEquals(4, h.percentileMicros(1.0));
+    }
+
+    @Test
+    public void testPercentilesAreWithinTheBucketResolution() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int micros = 1; micros <= 1000; micros++) {
+            h.record(micros * 1000L);
+        }
+        assertWithin(500, h.percentileMicros(0.50));
+        assertWithin(950, h.percentileMicros(0.95));
+        assertWithin(990, h.percentileMicros(0.99));
+        assertEquals("Never above the largest sample", 1000, h.percentileMicros(1.0));
+        assertTrue(h.summary().startsWith("n=1000 "));
+    }
+
+    @Test
+    public void testOutlierOnlyShowsInTheTail() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            h.record(100_000L);
+        }
+        h.record(2_000_000_000L);
+        assertWithin(100, h.percentileMicros(0.50));
+        assertWithin(100, h.percentileMicros(0.99));
+        assertEquals(2_000_000, h.percentileMicros(1.0));
+    }
+
+    /** Not below the true value and at most one bucket (1/8) above it. */
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("Expected about " + expected + " but was " + actual, actual >= expected && actual <= expected + expected / 8);
+    }
+}
@@ -0,0 +1,121 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Test class for PersistRetryEngine - retries with backoff, merging per target and giving up
+ * Note: Uses a temporary directory so the user's data files are never touched
+ */
+public class PersistRetryEngineTest {
+
+    private ExecutorService writer;
+    private ScheduledExecutorService timer;
+    private final List<String> ran = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> gaveUp = Collections.synchronizedList(new ArrayList<>());
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        writer = Executors.newSingleThreadExecutor();
+        timer = Executors.newSingleThreadScheduledExecutor();
+        dir = Files.createTempDirectory("persist-retry-test").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        timer.shutdownNow();
+        writer.shutdownNow();
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testWritesToATargetWithAPendingRetryAreMerged() throws Exception {
+        PersistRetryEngine engine = new PersistRetryEngine(writer, timer, 3, 300, (desc, report, e) -> gaveUp.add(desc));
+        AtomicInteger failures = new AtomicInteger(1);
+        CompletableFuture<Void> first = engine.submit("tasks", "first", false, () -> {
+            ran.add("first");
+            if (failures.getAndDecrement() > 0) throw new IOException("disk busy");
+        }, () -> () -> ran.add("latest"));
+        CompletableFuture<Void> second = engine.submit("tasks", "second", false, () -> ran.add("second"), () -> () -> ran.add("latest"));
+        CompletableFuture<Void> other = engine.submit("notes", "other", false, () -> ran.add("other"), () -> () -> ran.add("latest"));
+
+        other.get(5, TimeUnit.SECONDS);
+        assertFalse("Other targets are not held up by the retry", first.isDone());
+        assertFalse("Merged into the pending retry", second.isDone());
+
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals("The retry writes the newest state once, the merged write never runs on its own",
+                Arrays.asList("first", "other", "latest"), ran);
+        assertTrue(gaveUp.isEmpty());
+    }
+
+    @Test
+    public void testLastFailedAttemptCallsTheHandlerAndFailsTheFuture() throws Exception {
+        PersistRetryEngine engine = new PersistRetryEngine(writer, timer, 2, 10, (desc, report, e) -> gaveUp.add(desc + " " + report));
+        IOException cause = new IOException("disk full");
+        CompletableFuture<Void> write = engine.submit("tasks", "full write", true, () -> {
+            ran.add("attempt");
+            throw cause;
+        }, null);
+        try {
+            write.get(5, TimeUnit.SECONDS);
+            fail("The write never succeeded");
+        } catch (ExecutionException expected) {
+            assertSame(cause, expected.getCause());
+        }
+        assertEquals(Arrays.asList("attempt", "attempt"), ran);
+        assertEquals(Arrays.asList("full write true"), gaveUp);
+    }
+
+    @Test
+    public void testRepositoryReloadsFromDiskAfterGivingUp() throws Exception {
+        Task kept = new Task("Kept", TaskType.MORNING, null, null, null);
+        Task lost = new Task("Never saved", TaskType.MORNING, null, null, null);
+        XMLTaskRepository repo = new XMLTaskRepository(dir.getAbsolutePath(), "single");
+        repo.submitSetTasks(Arrays.asList(kept)).get();
+        File dataFile = new File(dir, ApplicationConfiguration.DATA_FILE_NAME);
+        byte[] saved = Files.readAllBytes(dataFile.toPath());
+        long modified = dataFile.lastModified();
+
+        // A non-empty directory in place of tasks.xml makes every replace fail
+        assertTrue(dataFile.delete());
+        assertTrue(new File(dataFile, "blocker").mkdirs());
+        assertTrue(dataFile.setLastModified(modified));
+        try {
+            repo.submitSetTasks(Arrays.asList(kept, lost)).get(10, TimeUnit.SECONDS);
+            fail("tasks.xml could not be replaced");
+        } catch (ExecutionException expected) {
+            // Given up after the last retry
+        }
+
+        // Put the old file back unchanged: only the give-up can trigger the reload
+        assertTrue(new File(dataFile, "blocker").delete());
+        assertTrue(dataFile.delete());
+        Files.write(dataFile.toPath(), saved);
+        assertTrue(dataFile.setLastModified(modified));
+        assertEquals(Arrays.asList(kept), repo.getAllTasks());
+        assertNull(repo.getTaskById(lost.getId()));
+        repo.shutdown();
+    }
+}
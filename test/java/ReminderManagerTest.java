@@ -0,0 +1,201 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Test class for ReminderManager - reminder storage and its indexed queries
+ * Note: Uses a temporary directory so the user's reminder file is never touched
+ */
+public class ReminderManagerTest {
+
+    private File dir;
+    private ChecklistNameManager checklists;
+    private ReminderManager manager;
+    private LocalDateTime now;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("reminder-test").toFile();
+        checklists = new ChecklistNameManager(new File(dir, "checklist-names.properties").getAbsolutePath());
+        manager = newManager();
+        now = LocalDateTime.now().withSecond(0).withNano(0);
+    }
+
+    @After
+    public void tearDown() {
+        manager.close();
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void testDueRemindersCoverTheLastHourAndTheLookAhead() {
+        Reminder overdue = reminderAt(now.minusMinutes(30), "task-1");
+        Reminder tooOld = reminderAt(now.minusMinutes(61), "task-2");
+        Reminder soon = reminderAt(now.plusMinutes(3), "task-3");
+        Reminder later = reminderAt(now.plusMinutes(90), "task-4");
+        manager.addReminder(later);
+        manager.addReminder(soon);
+        manager.addReminder(overdue);
+        manager.addReminder(tooOld);
+
+        List<Reminder> due = manager.getDueReminders(5, null);
+        assertEquals(2, due.size());
+        assertTrue(due.contains(overdue));
+        assertTrue(due.contains(soon));
+    }
+
+    @Test
+    public void testNextReminderTimeFollowsRemovals() {
+        Reminder overdue = reminderAt(now.minusMinutes(30), "task-1");
+        Reminder soon = reminderAt(now.plusMinutes(3), "task-3");
+        Reminder later = reminderAt(now.plusMinutes(90), "task-4");
+        manager.addReminder(later);
+        manager.addReminder(soon);
+        manager.addReminder(overdue);
+        assertEquals(now.plusMinutes(3), manager.getNextReminderTime(null));
+
+        manager.removeReminder(soon);
+        assertEquals(now.plusMinutes(90), manager.getNextReminderTime(null));
+        assertEquals(2, manager.getReminders().size());
+    }
+
+    @Test
+    public void testCustomChecklistRemindersFollowTheChecklistRegistry() {
+        LocalDateTime t = now.plusMinutes(2);
+        Reminder custom = new Reminder("Groceries", t.getYear(), t.getMonthValue(), t.getDayOfMonth(), t.getHour(), t.getMinute(), null);
+        manager.addReminder(custom);
+        assertFalse("No such checklist yet", manager.getDueReminders(5, null).contains(custom));
+
+        checklists.addChecklist(new Checklist("Groceries", "groceries-id"));
+        assertTrue(manager.getDueReminders(5, null).contains(custom));
+    }
+
+    @Test
+    public void testChecklistsAddedOutsideTheAppAreSeen() throws Exception {
+        LocalDateTime t = now.plusMinutes(2);
+        Reminder custom = new Reminder("Groceries", t.getYear(), t.getMonthValue(), t.getDayOfMonth(), t.getHour(), t.getMinute(), null);
+        manager.addReminder(custom);
+        assertFalse(manager.getDueReminders(5, null).contains(custom));
+
+        // Another instance (or a hand edit) adds the checklist to the file
+        File names = new File(dir, "checklist-names.properties");
+        Files.write(names.toPath(), "groceries-id=Groceries\n".getBytes("UTF-8"));
+        names.setLastModified(System.currentTimeMillis() + 2000);
+        assertTrue(manager.getDueReminders(5, null).contains(custom));
+    }
+
+    @Test
+    public void testRemindersAreLookedUpByTask() {
+        Reminder overdue = reminderAt(now.minusMinutes(30), "task-1");
+        Reminder later = reminderAt(now.plusMinutes(90), "task-4");
+        manager.addReminder(later);
+        manager.addReminder(overdue);
+
+        assertEquals(later, manager.getReminderForTask("task-4"));
+        assertNull(manager.getReminderForTask("task-3"));
+        manager.removeReminder(later);
+        assertNull(manager.getReminderForTask("task-4"));
+    }
+
+    @Test
+    public void testRemindersOfAChecklistComeInTimeOrder() {
+        Reminder overdue = reminderAt(now.minusMinutes(30), "task-1");
+        Reminder tooOld = reminderAt(now.minusMinutes(61), "task-2");
+        Reminder later = reminderAt(now.plusMinutes(90), "task-4");
+        manager.addReminder(later);
+        manager.addReminder(overdue);
+        manager.addReminder(tooOld);
+
+        assertEquals(Arrays.asList(tooOld, overdue, later), manager.getRemindersForChecklist("MORNING"));
+        assertEquals(overdue, manager.getNearestReminderForChecklist("MORNING", now));
+        assertEquals(later, manager.getNearestReminderForChecklist("MORNING", now.plusMinutes(80)));
+        assertNull(manager.getNearestReminderForChecklist("EVENING", now));
+    }
+
+    @Test
+    public void testChecklistRemindersCanBeFoundIgnoringCase() {
+        LocalDateTime t = now.plusMinutes(10);
+        Reminder lower = new Reminder("groceries", t.getYear(), t.getMonthValue(), t.getDayOfMonth(), t.getHour(), t.getMinute(), null);
+        LocalDateTime u = now.plusMinutes(5);
+        Reminder upper = new Reminder("Groceries", u.getYear(), u.getMonthValue(), u.getDayOfMonth(), u.getHour(), u.getMinute(), null);
+        manager.addReminder(lower);
+        manager.addReminder(upper);
+
+        assertEquals(Arrays.asList(lower), manager.getRemindersForChecklist("groceries"));
+        assertEquals(Arrays.asList(upper, lower), manager.getRemindersForChecklistIgnoreCase("GROCERIES"));
+        assertTrue(manager.getRemindersForChecklistIgnoreCase("Bakery").isEmpty());
+    }
+
+    @Test
+    public void testBulkRemovalKeepsKeysOfOtherReminders() throws Exception {
+        List<Reminder> added = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            added.add(reminderAt(now.plusMinutes(i), "task-" + i));
+            manager.addReminder(added.get(i));
+        }
+        manager.flush();
+        Properties before = readReminderFile();
+
+        manager.removeReminders(Arrays.asList(added.get(0), added.get(2), added.get(3)));
+        manager.flush();
+        Properties after = readReminderFile();
+        assertEquals(2, after.size());
+        for (String key : after.stringPropertyNames()) assertEquals(before.getProperty(key), after.getProperty(key));
+
+        ReminderManager reread = newManager();
+        assertEquals(new HashSet<>(Arrays.asList(added.get(1), added.get(4))), new HashSet<>(reread.getReminders()));
+        reread.close();
+    }
+
+    @Test
+    public void testFailedWriteIsKeptAndRetried() throws Exception {
+        // A non-empty directory in the file's place makes the atomic replace fail
+        File blocker = new File(dir, "reminders.properties");
+        assertTrue(blocker.mkdir());
+        File inside = new File(blocker, "x");
+        assertTrue(inside.createNewFile());
+        Reminder reminder = reminderAt(now.plusMinutes(10), "task-1");
+        manager.addReminder(reminder);
+        manager.flush();
+        assertTrue("The change must stay pending after a failed write", manager.hasPendingWrite());
+
+        inside.delete();
+        blocker.delete();
+        // The retry fires on its own after the backoff
+        long deadline = System.currentTimeMillis() + 5000;
+        while (manager.hasPendingWrite() && System.currentTimeMillis() < deadline) Thread.sleep(20);
+        assertFalse(manager.hasPendingWrite());
+        ReminderManager reread = newManager();
+        assertEquals(Arrays.asList(reminder), reread.getReminders());
+        reread.close();
+    }
+
+    private Properties readReminderFile() throws Exception {
+        Properties props = new Properties();
+        try (Reader in = Files.newBufferedReader(new File(dir, "reminders.properties").toPath())) {
+            props.load(in);
+        }
+        return props;
+    }
+
+    private ReminderManager newManager() {
+        return new ReminderManager(new File(dir, "reminders.properties").getAbsolutePath(),
+                new File(dir, "tasks.xml").getAbsolutePath(), checklists);
+    }
+
+    private static Reminder reminderAt(LocalDateTime t, String taskId) {
+        return new Reminder("MORNING", t.getYear(), t.getMonthValue(), t.getDayOfMonth(), t.getHour(), t.getMinute(), taskId);
+    }
+}
@@ -0,0 +1,57 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test class for ReminderScheduler - arming the reminder check for the next due reminder
+ */
+public class ReminderSchedulerTest {
+
+    private TaskManager taskManager;
+    private ReminderScheduler scheduler;
+    private Reminder reminder;
+    private final AtomicInteger checks = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        taskManager = new TaskManager(new XMLTaskRepository());
+        scheduler = new ReminderScheduler(taskManager, new HashSet<>(), checks::incrementAndGet);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.close();
+        if (reminder != null) taskManager.removeReminder(reminder);
+    }
+
+    @Test
+    public void testWakesWhenTheNextReminderComesDue() {
+        LocalDateTime now = LocalDateTime.now().withSecond(0).withNano(0);
+        LocalDateTime at = now.plusMinutes(20);
+        reminder = new Reminder("MORNING", at.getYear(), at.getMonthValue(), at.getDayOfMonth(), at.getHour(), at.getMinute(), "task-wake");
+        taskManager.addReminder(reminder);
+
+        LocalDateTime wake = scheduler.nextWake(now);
+        assertNotNull(wake);
+        assertFalse("Wakes for the reminder no later than its lead time", wake.isAfter(at.minusMinutes(ApplicationConfiguration.REMINDER_LEAD_MINUTES)));
+        assertTrue(wake.isAfter(now));
+    }
+
+    @Test
+    public void testWatchdogChecksEvenWithoutClockDrift() {
+        scheduler.watch();
+        scheduler.watch();
+        assertEquals("Every watchdog period runs the check", 2, checks.get());
+    }
+
+    @Test
+    public void testClockCheckLeavesAnUndisturbedTimerAlone() {
+        scheduler.watch();
+        assertFalse("The clocks agree since the watchdog re-armed", scheduler.checkClock());
+        assertEquals("Only the watchdog ran the check", 1, checks.get());
+    }
+}
@@ -0,0 +1,105 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Test class for ShardedTaskStore - one XML file per checklist tied together by a manifest
+ * Note: Uses a temporary directory so the user's data files are never touched
+ */
+public class ShardedTaskStoreTest {
+
+    private File dir;
+    private ShardedTaskStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("sharded-test").toFile();
+        store = new ShardedTaskStore(dir.getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void testTasksRoundTripInStorageOrder() throws Exception {
+        Task morning = new Task("Morning", TaskType.MORNING, null, null, null);
+        Task work = new Task("Work", TaskType.CUSTOM, null, "list-b", null);
+        Task home = new Task("Home", TaskType.CUSTOM, null, "list-a", null);
+        Task sub = new Task("Sub", TaskType.CUSTOM, null, "list-a", home.getId());
+        List<Task> tasks = Arrays.asList(work, morning, home, sub);
+        store.setAllTasks(store.storageOrder(tasks));
+
+        List<Task> loaded = new ShardedTaskStore(dir.getAbsolutePath()).parseAllTasks();
+        assertEquals(store.storageOrder(tasks), loaded);
+        assertEquals("Daily tasks lead", morning, loaded.get(0));
+        assertEquals(home.getId(), loaded.get(2).getParentId());
+        List<String> storedIds = new ArrayList<>();
+        assertEquals(Arrays.asList(morning), new ShardedTaskStore(dir.getAbsolutePath()).parseDailyTasks(storedIds));
+        assertEquals(Arrays.asList(morning.getId()), storedIds);
+    }
+
+    @Test
+    public void testOnlyChangedShardsAreRewritten() throws Exception {
+        Task morning = new Task("Morning", TaskType.MORNING, null, null, null);
+        Task home = new Task("Home", TaskType.CUSTOM, null, "list-a", null);
+        Task work = new Task("Work", TaskType.CUSTOM, null, "list-b", null);
+        store.setAllTasks(store.storageOrder(Arrays.asList(morning, home, work)));
+        Set<String> before = shardFiles();
+        assertEquals(3, before.size());
+
+        work.setName("Work renamed");
+        store.setAllTasks(store.storageOrder(Arrays.asList(morning, home, work)));
+        Set<String> after = shardFiles();
+        assertEquals(3, after.size());
+        Set<String> kept = new HashSet<>(before);
+        kept.retainAll(after);
+        assertEquals("The unchanged daily and list-a shards keep their files", 2, kept.size());
+        assertEquals("Work renamed", new ShardedTaskStore(dir.getAbsolutePath()).parseAllTasks().get(2).getName());
+    }
+
+    @Test
+    public void testWriteInterruptedBeforeTheManifestKeepsThePreviousState() throws Exception {
+        Task morning = new Task("Morning", TaskType.MORNING, null, null, null);
+        Task home = new Task("Home", TaskType.CUSTOM, null, "list-a", null);
+        store.setAllTasks(store.storageOrder(Arrays.asList(morning, home)));
+
+        // A crash after writing a new shard and part of another, but before the manifest switched
+        Files.write(new File(dir, "checklist-list-a-new-99.xml").toPath(), "<tasks></tasks>".getBytes("UTF-8"));
+        Files.write(new File(dir, "daily-99.xml.tmp.1").toPath(), "<tas".getBytes("UTF-8"));
+
+        ShardedTaskStore reopened = new ShardedTaskStore(dir.getAbsolutePath());
+        assertEquals(Arrays.asList(morning, home), reopened.parseAllTasks());
+        reopened.setAllTasks(reopened.storageOrder(Arrays.asList(morning, home)));
+        assertFalse("Files no manifest names are removed by the next write", new File(dir, "checklist-list-a-new-99.xml").exists());
+        assertFalse(new File(dir, "daily-99.xml.tmp.1").exists());
+        assertEquals(Arrays.asList(morning, home), new ShardedTaskStore(dir.getAbsolutePath()).parseAllTasks());
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void testMissingShardIsAnError() throws Exception {
+        Task home = new Task("Home", TaskType.CUSTOM, null, "list-a", null);
+        store.setAllTasks(Arrays.asList(home));
+        for (String name : shardFiles()) new File(dir, name).delete();
+        new ShardedTaskStore(dir.getAbsolutePath()).parseAllTasks();
+    }
+
+    private Set<String> shardFiles() {
+        Set<String> names = new HashSet<>();
+        for (String name : new ArrayList<>(Arrays.asList(dir.list()))) {
+            if (name.endsWith(".xml") && !name.equals(ShardedTaskStore.MANIFEST_FILE_NAME)) names.add(name);
+        }
+        return names;
+    }
+}
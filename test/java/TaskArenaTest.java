@@ -0,0 +1,70 @@
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for TaskArena
+ */
+public class TaskArenaTest {
+
+    private TaskArena arena;
+
+    @After
+    public void tearDown() {
+        if (arena != null) arena.close();
+    }
+
+    @Test
+    public void testRecordsRoundTrip() throws Exception {
+        arena = TaskArena.create(TaskArena.Kind.DIRECT);
+        Task parent = new Task("Parent", TaskType.CUSTOM, null, "checklist-1", null);
+        parent.setDone(true);
+        Task child = new Task("Child åäö", TaskType.CUSTOM, null, "checklist-1", parent.getId());
+        child.setNote("A note");
+        Task legacy = new Task("legacy-id", "Legacy", TaskType.MORNING, "MONDAY", true, "01/10/2023", null, "not-a-uuid");
+        arena.add(parent);
+        arena.add(child);
+        arena.add(legacy);
+
+        assertEquals(3, arena.size());
+        Task readParent = arena.get(0);
+        assertNotSame("Tasks should be read back from their records", parent, readParent);
+        assertEquals(parent.getId(), readParent.getId());
+        assertEquals("Parent", readParent.getName());
+        assertEquals(TaskType.CUSTOM, readParent.getType());
+        assertEquals("checklist-1", readParent.getChecklistId());
+        assertTrue(readParent.isDone());
+        assertEquals(parent.getDoneDate(), readParent.getDoneDate());
+
+        Task readChild = arena.get(1);
+        assertEquals("Child åäö", readChild.getName());
+        assertEquals(parent.getId(), readChild.getParentId());
+        assertEquals("A note", readChild.getNote());
+
+        Task readLegacy = arena.find("legacy-id");
+        assertNotNull(readLegacy);
+        assertEquals("MONDAY", readLegacy.getWeekday());
+        assertEquals("not-a-uuid", readLegacy.getParentId());
+        assertEquals("An unparsed done date is kept", "01/10/2023", readLegacy.getDoneDate());
+    }
+
+    @Test
+    public void testSetAndRemoveKeepIndexCurrent() throws Exception {
+        arena = TaskArena.create(TaskArena.Kind.MAPPED);
+        Task first = new Task("First", TaskType.MORNING, null, null, null);
+        Task second = new Task("Second", TaskType.EVENING, null, null, null);
+        arena.add(first);
+        arena.add(second);
+
+        Task edited = arena.get(0);
+        edited.setName("First, renamed");
+        arena.set(0, edited);
+        assertEquals("First, renamed", arena.find(first.getId()).getName());
+
+        assertEquals(second, arena.remove(1));
+        assertFalse(arena.contains(second.getId()));
+        assertTrue(arena.contains(first.getId()));
+        assertEquals(1, arena.asList().size());
+        assertTrue("Superseded records should not count as live", arena.liveBytes() < arena.usedBytes());
+    }
+}
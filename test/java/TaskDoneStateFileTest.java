@@ -0,0 +1,147 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Test class for TaskDoneStateFile - the fixed-width done flags of the tasks in tasks.xml
+ * Note: Uses a temporary directory so the user's data files are never touched
+ */
+public class TaskDoneStateFileTest {
+
+    private File dir;
+    private String dataFile;
+    private Task a;
+    private Task b;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("done-state-test").toFile();
+        dataFile = new File(dir, ApplicationConfiguration.DATA_FILE_NAME).getAbsolutePath();
+        a = new Task("A", TaskType.MORNING, null, null, null);
+        b = new Task("B", TaskType.EVENING, null, null, null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testDoneFlipIsWrittenInItsSlotAndOverlaidOnLoad() throws Exception {
+        TaskDoneStateFile file = new TaskDoneStateFile(dataFile);
+        file.attach(Arrays.asList(a, b), 100, 1000);
+        file.overlay(Arrays.asList(a, b));
+        File onDisk = new File(dataFile + ApplicationConfiguration.DONE_STATE_FILE_SUFFIX);
+        long length = onDisk.length();
+
+        b.setDone(true);
+        b.setDoneDate(new Date());
+        assertTrue("Only the done state changed", file.writeIfDoneOnly(b));
+        assertEquals("The slot is rewritten in place", length, onDisk.length());
+        file.close();
+
+        Task loadedA = copy(a);
+        Task loadedB = copy(b);
+        loadedB.setDone(false);
+        loadedB.setDoneDate(null);
+        TaskDoneStateFile reopened = new TaskDoneStateFile(dataFile);
+        reopened.attach(Arrays.asList(loadedA, loadedB), 100, 1000);
+        reopened.overlay(Arrays.asList(loadedA, loadedB));
+        assertTrue("The slot wins over tasks.xml", loadedB.isDone());
+        assertEquals(b.getDoneDate(), loadedB.getDoneDate());
+        assertFalse(loadedA.isDone());
+
+        loadedA.setName("A renamed");
+        loadedA.setDone(true);
+        assertFalse("Other changes go through the journal", reopened.writeIfDoneOnly(loadedA));
+        reopened.written(Collections.singletonList(loadedA));
+        loadedA.setDone(false);
+        assertTrue("The journal write is the new baseline", reopened.writeIfDoneOnly(loadedA));
+        reopened.close();
+    }
+
+    @Test
+    public void testFileForAnotherTasksXmlIsIgnored() throws Exception {
+        TaskDoneStateFile file = new TaskDoneStateFile(dataFile);
+        file.attach(Arrays.asList(a, b), 100, 1000);
+        file.overlay(Arrays.asList(a, b));
+        a.setDone(true);
+        assertTrue(file.writeIfDoneOnly(a));
+        file.close();
+
+        Task loadedA = copy(a);
+        loadedA.setDone(false);
+        TaskDoneStateFile reopened = new TaskDoneStateFile(dataFile);
+        reopened.attach(Arrays.asList(loadedA, copy(b)), 100, 2000);
+        reopened.overlay(Arrays.asList(loadedA));
+        assertFalse("Records of a replaced tasks.xml are not applied", loadedA.isDone());
+        reopened.close();
+    }
+
+    @Test
+    public void testRebaseFollowsTheNewFileOrder() throws Exception {
+        TaskDoneStateFile file = new TaskDoneStateFile(dataFile);
+        file.attach(Arrays.asList(a, b), 100, 1000);
+        file.overlay(Arrays.asList(a, b));
+        b.setDone(true);
+        assertTrue(file.writeIfDoneOnly(b));
+
+        // A compaction writes tasks.xml again, now with a new task first
+        Task c = new Task("C", TaskType.MORNING, null, null, null);
+        List<Task> written = Arrays.asList(c, b, a);
+        file.rebase(written, 150, 3000);
+        a.setDone(true);
+        assertTrue("Slots of the new file are bound", file.writeIfDoneOnly(a));
+        file.close();
+
+        List<Task> loaded = Arrays.asList(copy(c), copy(b), copy(a));
+        for (Task t : loaded) t.setDone(false);
+        TaskDoneStateFile reopened = new TaskDoneStateFile(dataFile);
+        reopened.attach(loaded, 150, 3000);
+        reopened.overlay(loaded);
+        assertFalse(loaded.get(0).isDone());
+        assertTrue(loaded.get(1).isDone());
+        assertTrue(loaded.get(2).isDone());
+        reopened.close();
+    }
+
+    @Test
+    public void testDoneFlipSurvivesAFullRewrite() throws Exception {
+        XMLTaskRepository repo = new XMLTaskRepository(dir.getAbsolutePath(), "single");
+        repo.submitSetTasks(Arrays.asList(a, b)).get();
+        Task ticked = repo.getTaskById(a.getId());
+        ticked.setDone(true);
+        ticked.setDoneDate(new Date());
+        repo.updateTask(ticked);
+        repo.flush().get();
+        assertFalse("The flip went to its slot, not the journal",
+                new String(Files.readAllBytes(new File(dataFile + ApplicationConfiguration.JOURNAL_FILE_SUFFIX).toPath()), "UTF-8").contains(a.getId()));
+
+        repo.submitSetTasks(repo.getAllTasks()).get();
+        repo.flush().get();
+        repo.shutdown();
+        assertTrue("tasks.xml now holds the done state", new String(Files.readAllBytes(new File(dataFile).toPath()), "UTF-8").contains("<done>true</done>"));
+
+        repo = new XMLTaskRepository(dir.getAbsolutePath(), "single");
+        assertTrue(repo.getTaskById(a.getId()).isDone());
+        assertEquals(ticked.getDoneDate(), repo.getTaskById(a.getId()).getDoneDate());
+        assertFalse(repo.getTaskById(b.getId()).isDone());
+        repo.shutdown();
+    }
+
+    private static Task copy(Task t) {
+        return new Task(t.getId(), t.getName(), t.getType(), t.getWeekday(), t.isDone(), t.getDoneDate(), t.getChecklistId(), t.getParentId());
+    }
+}
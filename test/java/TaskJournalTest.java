@@ -0,0 +1,140 @@
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test class for TaskJournal - the append-only sidecar to tasks.xml
+ * Note: Uses a temporary directory so the user's data file is never touched
+ */
+public class TaskJournalTest {
+
+    private File dir;
+    private String dataFile;
+    private TaskStaxHandler handler;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("journal-test").toFile();
+        dataFile = new File(dir, "tasks.xml").getAbsolutePath();
+        handler = new TaskStaxHandler(dataFile);
+        handler.ensureFileExists();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void testReplayAppliesUpsertsAndRemovalsInOrder() throws Exception {
+        Task a = new Task("A", TaskType.MORNING, null, null, null);
+        Task b = new Task("B", TaskType.EVENING, null, null, null);
+        handler.setAllTasks(Arrays.asList(a, b));
+
+        TaskJournal journal = new TaskJournal(dataFile);
+        journal.load(handler::parseAllTasks);
+        Task c = new Task("C", TaskType.CUSTOM, null, "list-1", null);
+        a.setName("A renamed");
+        journal.append(Arrays.asList(a, c), Collections.singletonList(b.getId()));
+        journal.close();
+
+        List<Task> loaded = new TaskJournal(dataFile).load(handler::parseAllTasks);
+        assertEquals("Removed task should be gone and new task appended", 2, loaded.size());
+        assertEquals("Existing task keeps its position", a.getId(), loaded.get(0).getId());
+        assertEquals("Upsert should replace task fields", "A renamed", loaded.get(0).getName());
+        assertEquals("New task should be appended last", c.getId(), loaded.get(1).getId());
+        assertEquals("Checklist id should round-trip", "list-1", loaded.get(1).getChecklistId());
+    }
+
+    @Test
+    public void testCompactionFoldsJournalIntoXml() throws Exception {
+        TaskJournal journal = new TaskJournal(dataFile);
+        journal.load(handler::parseAllTasks);
+        Task a = new Task("A", TaskType.MORNING, null, null, null);
+        journal.append(Collections.singletonList(a), Collections.emptyList());
+        assertEquals(1, journal.getRecordCount());
+
+        List<Task> all = new ArrayList<>(journal.load(handler::parseAllTasks));
+        journal.compact(() -> { handler.setAllTasks(all); return null; });
+        assertEquals("Compaction should truncate the journal", 0, journal.getRecordCount());
+        assertEquals("tasks.xml should contain the compacted task", 1, handler.parseAllTasks().size());
+        assertEquals(1, new TaskJournal(dataFile).load(handler::parseAllTasks).size());
+    }
+
+    @Test
+    public void testTornTailIsIgnored() throws Exception {
+        TaskJournal journal = new TaskJournal(dataFile);
+        journal.load(handler::parseAllTasks);
+        Task a = new Task("A", TaskType.MORNING, null, null, null);
+        journal.append(Collections.singletonList(a), Collections.emptyList());
+        journal.close();
+
+        // Simulate a crash in the middle of the next append
+        try (RandomAccessFile raf = new RandomAccessFile(dataFile + ApplicationConfiguration.JOURNAL_FILE_SUFFIX, "rw")) {
+            raf.seek(raf.length());
+            raf.writeInt(500);
+            raf.writeInt(42);
+            raf.write(new byte[10]);
+        }
+
+        TaskJournal reopened = new TaskJournal(dataFile);
+        List<Task> loaded = reopened.load(handler::parseAllTasks);
+        assertEquals("Intact record should replay", 1, loaded.size());
+
+        Task b = new Task("B", TaskType.MORNING, null, null, null);
+        reopened.append(Collections.singletonList(b), Collections.emptyList());
+        reopened.close();
+        assertEquals("Append after a torn tail should remain readable", 2, new TaskJournal(dataFile).load(handler::parseAllTasks).size());
+    }
+
+    @Test
+    public void testJournalForReplacedXmlIsNotReplayed() throws Exception {
+        TaskJournal journal = new TaskJournal(dataFile);
+        journal.load(handler::parseAllTasks);
+        journal.append(Collections.singletonList(new Task("A", TaskType.MORNING, null, null, null)), Collections.emptyList());
+        journal.close();
+
+        // Replace tasks.xml behind the journal's back
+        Thread.sleep(20);
+        handler.setAllTasks(Arrays.asList(new Task("X", TaskType.MORNING, null, null, null), new Task("Y", TaskType.MORNING, null, null, null)));
+
+        List<Task> loaded = new TaskJournal(dataFile).load(handler::parseAllTasks);
+        assertEquals("Journal for a different tasks.xml must not be applied", 2, loaded.size());
+        assertTrue("Stale journal should be kept aside", new File(dataFile + ApplicationConfiguration.JOURNAL_FILE_SUFFIX + ".stale").exists());
+    }
+
+    @Test
+    public void testReadOnlyReplayLeavesTheJournalAlone() throws Exception {
+        Task a = new Task("A", TaskType.MORNING, null, null, null);
+        handler.setAllTasks(Arrays.asList(a));
+        TaskJournal journal = new TaskJournal(dataFile);
+        journal.load(handler::parseAllTasks);
+        Task b = new Task("B", TaskType.EVENING, null, null, null);
+        journal.append(Collections.singletonList(b), Collections.emptyList());
+        File journalFile = new File(dataFile + ApplicationConfiguration.JOURNAL_FILE_SUFFIX);
+        byte[] before = Files.readAllBytes(journalFile.toPath());
+
+        List<Task> replayed = new TaskJournal(dataFile).replay(handler.parseAllTasks());
+        assertEquals(Arrays.asList(a, b), replayed);
+        assertArrayEquals(before, Files.readAllBytes(journalFile.toPath()));
+        assertEquals("The owner's state is untouched", 1, journal.getRecordCount());
+
+        // A journal for another tasks.xml is not applied, and not moved aside either
+        Thread.sleep(20);
+        handler.setAllTasks(Arrays.asList(a));
+        assertNull(new TaskJournal(dataFile).replay(handler.parseAllTasks()));
+        assertTrue(journalFile.exists());
+        assertFalse(new File(journalFile + ".stale").exists());
+        journal.close();
+    }
+}
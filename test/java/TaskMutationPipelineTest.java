@@ -0,0 +1,193 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test class for TaskMutationPipeline - the single-writer queue in front of the task repository
+ */
+public class TaskMutationPipelineTest {
+
+    /**
+     * Records what the pipeline drives; the first apply can be held back so
+     * later mutations queue up behind it.
+     */
+    private static final class RecordingTarget implements TaskMutationPipeline.Target {
+        final List<String> applied = Collections.synchronizedList(new ArrayList<>());
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        final List<List<String>> persistedUpserts = Collections.synchronizedList(new ArrayList<>());
+        final List<List<String>> persistedRemovals = Collections.synchronizedList(new ArrayList<>());
+        final List<Long> windows = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch firstApplyEntered = new CountDownLatch(1);
+        final CountDownLatch releaseFirstApply = new CountDownLatch(1);
+        volatile boolean holdFirstApply;
+        volatile CompletableFuture<Void> persistResult;
+        TaskMutationPipeline pipeline;
+
+        @Override
+        public void apply(List<TaskMutationPipeline.Mutation> batch) {
+            if (holdFirstApply && firstApplyEntered.getCount() > 0) {
+                firstApplyEntered.countDown();
+                try {
+                    releaseFirstApply.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            batchSizes.add(batch.size());
+            for (TaskMutationPipeline.Mutation m : batch) {
+                if (m.kind == TaskMutationPipeline.Kind.UPSERT) {
+                    for (Task t : m.tasks) applied.add("upsert " + t.getName());
+                } else if (m.kind == TaskMutationPipeline.Kind.REMOVE) {
+                    applied.add("remove " + m.id);
+                }
+            }
+        }
+
+        @Override
+        public CompletableFuture<Void> persist(boolean fullWrite, Set<String> upsertIds, Set<String> removalIds, boolean reportErrors) {
+            persistedUpserts.add(new ArrayList<>(upsertIds));
+            persistedRemovals.add(new ArrayList<>(removalIds));
+            windows.add(pipeline.getLastWindowMillis());
+            CompletableFuture<Void> result = persistResult;
+            return result != null ? result : CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private RecordingTarget target;
+    private TaskMutationPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        target = new RecordingTarget();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        target.releaseFirstApply.countDown();
+        if (pipeline != null) pipeline.shutdown(2000);
+    }
+
+    @Test
+    public void testQueuedMutationsApplyInOrderAsOneBatch() throws Exception {
+        start(10_000, 10_000, 100);
+        target.holdFirstApply = true;
+        Task a = task("A");
+        Task b = task("B");
+        Task c = task("C");
+        pipeline.submit(TaskMutationPipeline.Mutation.upsert(Arrays.asList(a), false));
+        assertTrue(target.firstApplyEntered.await(5, TimeUnit.SECONDS));
+        pipeline.submit(TaskMutationPipeline.Mutation.upsert(Arrays.asList(b), false));
+        pipeline.submit(TaskMutationPipeline.Mutation.upsert(Arrays.asList(c), false));
+        pipeline.submit(TaskMutationPipeline.Mutation.remove(b.getId()));
+        TaskMutationPipeline.Mutation last = pipeline.submit(TaskMutationPipeline.Mutation.upsert(Arrays.asList(a), false));
+        // The busy window is long, so only the flush hands the second batch off
+        CompletableFuture<Void> flushed = pipeline.flush();
+        target.releaseFirstApply.countDown();
+        flushed.get(5, TimeUnit.SECONDS);
+
+        assertTrue(last.durable().isDone());
+        assertEquals(Arrays.asList("upsert A", "upsert B", "upsert C", "remove " + b.getId(), "upsert A"), target.applied);
+        assertEquals("Everything queued behind the first is drained at once", Arrays.asList(1, 5), target.batchSizes);
+        assertEquals(5, pipeline.getLastBatchSize());
+        List<String> upserts = target.persistedUpserts.get(target.persistedUpserts.size() - 1);
+        assertEquals("A removed task is only a removal", Arrays.asList(c.getId(), a.getId()), upserts);
+        assertEquals(Arrays.asList(b.getId()), target.persistedRemovals.get(target.persistedRemovals.size() - 1));
+    }
+
+    @Test
+    public void testAppliedCompletesBeforeDurable() throws Exception {
+        start(0, 0, 100);
+        CompletableFuture<Void> disk = new CompletableFuture<>();
+        target.persistResult = disk;
+        TaskMutationPipeline.Mutation m = pipeline.submit(TaskMutationPipeline.Mutation.upsert(Arrays.asList(task("A")), false));
+        m.applied().get(5, TimeUnit.SECONDS);
+        Thread.sleep(50);
+        assertFalse("Not durable until persistence says so", m.durable().isDone());
+        disk.complete(null);
+        m.durable().get(5, TimeUnit.SECONDS);
+
+        CompletableFuture<Void> failing = new CompletableFuture<>();
+        target.persistResult = failing;
+        TaskMutationPipeline.Mutation n = pipeline.submit(TaskMutationPipeline.Mutation.upsert(Arrays.asList(task("B")), false));
+        n.applied().get(5, TimeUnit.SECONDS);
+        failing.completeExceptionally(new java.io.IOException("disk full"));
+        try {
+            n.durable().get(5, TimeUnit.SECONDS);
+            fail("A failed write fails the durable future");
+        } catch (java.util.concurrent.ExecutionException expected) {
+            assertFalse(n.applied().isCompletedExceptionally());
+        }
+    }
+
+    @Test
+    public void testFlushWaitsForAnEarlierHandOff() throws Exception {
+        start(0, 0, 100);
+        CompletableFuture<Void> disk = new CompletableFuture<>();
+        target.persistResult = disk;
+        TaskMutationPipeline.Mutation m = pipeline.submit(TaskMutationPipeline.Mutation.upsert(Arrays.asList(task("A")), false));
+        m.applied().get(5, TimeUnit.SECONDS);
+        CompletableFuture<Void> flushed = pipeline.flush();
+        Thread.sleep(50);
+        assertFalse("Nothing new to hand off, but the last batch is still being written", flushed.isDone());
+        disk.complete(null);
+        flushed.get(5, TimeUnit.SECONDS);
+        assertEquals("The flush added no write of its own", 1, target.persistedUpserts.size());
+    }
+
+    @Test
+    public void testWindowDoublesWhileBusyAndResetsWhenIdle() throws Exception {
+        // One pending change is enough to hand off, so every change is its own batch
+        start(1000, 3000, 1);
+        for (int i = 0; i < 4; i++) {
+            pipeline.submit(TaskMutationPipeline.Mutation.upsert(Arrays.asList(task("T" + i)), false)).durable().get(5, TimeUnit.SECONDS);
+        }
+        assertEquals("Idle, then the base window doubling up to the max latency", Arrays.asList(0L, 1000L, 2000L, 3000L), target.windows);
+
+        pipeline.shutdown(2000);
+        target.windows.clear();
+        start(50, 3000, 1);
+        pipeline.submit(TaskMutationPipeline.Mutation.upsert(Arrays.asList(task("X")), false)).durable().get(5, TimeUnit.SECONDS);
+        pipeline.submit(TaskMutationPipeline.Mutation.upsert(Arrays.asList(task("Y")), false)).durable().get(5, TimeUnit.SECONDS);
+        Thread.sleep(120);
+        pipeline.submit(TaskMutationPipeline.Mutation.upsert(Arrays.asList(task("Z")), false)).durable().get(5, TimeUnit.SECONDS);
+        assertEquals("A quiet period resets the window", Arrays.asList(0L, 50L, 0L), target.windows);
+    }
+
+    @Test
+    public void testPerMutationHandsEachMutationOffAlone() throws Exception {
+        start(10_000, 10_000, 100);
+        pipeline.setPerMutation(true);
+        target.holdFirstApply = true;
+        Task a = task("A");
+        pipeline.submit(TaskMutationPipeline.Mutation.upsert(Arrays.asList(a), false));
+        assertTrue(target.firstApplyEntered.await(5, TimeUnit.SECONDS));
+        Task b = task("B");
+        Task c = task("C");
+        pipeline.submit(TaskMutationPipeline.Mutation.upsert(Arrays.asList(b), false));
+        TaskMutationPipeline.Mutation last = pipeline.submit(TaskMutationPipeline.Mutation.upsert(Arrays.asList(c), false));
+        target.releaseFirstApply.countDown();
+        last.durable().get(5, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList(1, 1, 1), target.batchSizes);
+        assertEquals(Arrays.asList(Arrays.asList(a.getId()), Arrays.asList(b.getId()), Arrays.asList(c.getId())), target.persistedUpserts);
+        assertEquals(1, pipeline.getLastBatchSize());
+    }
+
+    private void start(long baseWindowMillis, long maxLatencyMillis, int maxPending) {
+        pipeline = new TaskMutationPipeline(target, baseWindowMillis, maxLatencyMillis, maxPending, 100);
+        target.pipeline = pipeline;
+    }
+
+    private static Task task(String name) {
+        return new Task(name, TaskType.MORNING, null, null, null);
+    }
+}
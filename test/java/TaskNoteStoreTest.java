@@ -0,0 +1,104 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Test class for TaskNoteStore - the append-only log of note texts next to tasks.xml
+ * Note: Uses a temporary directory so the user's data files are never touched
+ */
+public class TaskNoteStoreTest {
+
+    private File dir;
+    private String dataFile;
+    private TaskNoteStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("note-store-test").toFile();
+        dataFile = new File(dir, "tasks.xml").getAbsolutePath();
+        store = new TaskNoteStore(dataFile);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void testNotesSurviveAReopen() throws Exception {
+        Map<String, String> notes = new LinkedHashMap<>();
+        notes.put("a", "First note åäö");
+        notes.put("b", "Second note");
+        store.putAll(notes);
+        store.putAll(Collections.singletonMap("a", "First note, edited"));
+        store.removeAll(Arrays.asList("b"));
+        store.close();
+
+        TaskNoteStore reopened = new TaskNoteStore(dataFile);
+        assertEquals("The last put wins", "First note, edited", reopened.get("a"));
+        assertFalse(reopened.contains("b"));
+        assertNull(reopened.get("b"));
+        reopened.close();
+    }
+
+    @Test
+    public void testTornRecordIsCutOff() throws Exception {
+        store.putAll(Collections.singletonMap("a", "Kept"));
+        store.close();
+        try (RandomAccessFile raf = new RandomAccessFile(store.getPath().toFile(), "rw")) {
+            raf.seek(raf.length());
+            raf.writeInt(400);
+            raf.writeInt(7);
+            raf.write(new byte[5]);
+        }
+
+        TaskNoteStore reopened = new TaskNoteStore(dataFile);
+        assertEquals("Kept", reopened.get("a"));
+        reopened.putAll(Collections.singletonMap("b", "Written over the torn tail"));
+        reopened.close();
+        TaskNoteStore again = new TaskNoteStore(dataFile);
+        assertEquals("Kept", again.get("a"));
+        assertEquals("Written over the torn tail", again.get("b"));
+        again.close();
+    }
+
+    @Test
+    public void testRetainOnlyKeepsReferencedNotesThroughACompaction() throws Exception {
+        String big = String.join("", Collections.nCopies((int) ApplicationConfiguration.NOTE_STORE_COMPACT_MIN_BYTES / 10, "0123456789"));
+        Map<String, String> notes = new LinkedHashMap<>();
+        notes.put("kept", "Short and referenced");
+        notes.put("dropped", big);
+        store.putAll(notes);
+        store.putAll(Collections.singletonMap("replaced", big));
+        store.putAll(Collections.singletonMap("replaced", "Small now"));
+        long before = Files.size(store.getPath());
+
+        store.retainOnly(new HashSet<>(Arrays.asList("kept", "replaced")), false);
+        assertTrue("Superseded records are rewritten away", Files.size(store.getPath()) < before / 4);
+        assertEquals("Short and referenced", store.get("kept"));
+        assertEquals("Small now", store.get("replaced"));
+        assertFalse(store.contains("dropped"));
+
+        // Appends after the rewrite land behind the compacted records
+        store.putAll(Collections.singletonMap("new", "After compaction"));
+        store.close();
+        TaskNoteStore reopened = new TaskNoteStore(dataFile);
+        assertEquals("Short and referenced", reopened.get("kept"));
+        assertEquals("Small now", reopened.get("replaced"));
+        assertEquals("After compaction", reopened.get("new"));
+        assertNull(reopened.get("dropped"));
+        reopened.close();
+    }
+}
@@ -0,0 +1,159 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Test class for TaskSnapshotFile - the binary copy of tasks.xml read at startup
+ * Note: Uses a temporary directory so the user's data files are never touched
+ */
+public class TaskSnapshotFileTest {
+
+    private File dir;
+    private File dataFile;
+    private TaskSnapshotFile snapshotFile;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("snapshot-file-test").toFile();
+        dataFile = new File(dir, ApplicationConfiguration.DATA_FILE_NAME);
+        snapshotFile = new TaskSnapshotFile(dataFile.getAbsolutePath());
+        Files.write(dataFile.toPath(), "<tasks/>".getBytes("UTF-8"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testEveryFieldSurvivesARoundTrip() throws Exception {
+        Task parent = new Task("parent-id", "Pack åäö", TaskType.CUSTOM, null, true, "2024-03-01", "trip-id", null);
+        parent.setNote("Inline note");
+        Task child = new Task("child-id", "Passport", TaskType.CUSTOM, null, false, null, "trip-id", "parent-id");
+        child.setStoredNote(42, null);
+        Task weekly = new Task("weekly-id", "Bins", TaskType.EVENING, "tuesday", true, "01/10/2023", null, null);
+        List<Task> tasks = Arrays.asList(parent, child, weekly);
+        writeSnapshot(tasks);
+
+        List<Task> read = snapshotFile.read(dataFile.length(), dataFile.lastModified());
+        assertNotNull(read);
+        assertEquals(tasks.size(), read.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            Task expected = tasks.get(i);
+            Task actual = read.get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getType(), actual.getType());
+            assertEquals(expected.getWeekday(), actual.getWeekday());
+            assertEquals(expected.isDone(), actual.isDone());
+            assertEquals(expected.getDoneDate(), actual.getDoneDate());
+            assertEquals(expected.getChecklistId(), actual.getChecklistId());
+            assertEquals(expected.getParentId(), actual.getParentId());
+            assertEquals(expected.getNoteLength(), actual.getNoteLength());
+        }
+        assertEquals("Inline note", read.get(0).getNote());
+        assertEquals("A note in the note store keeps only its length", 42, read.get(1).getNoteLength());
+        assertEquals("01/10/2023", read.get(2).getDoneDate());
+    }
+
+    @Test
+    public void testSnapshotOfAnotherTasksXmlIsNotUsed() throws Exception {
+        writeSnapshot(Arrays.asList(new Task("A", TaskType.MORNING, null)));
+        long length = dataFile.length();
+        long modified = dataFile.lastModified();
+        assertNull("Different length", snapshotFile.read(length + 1, modified));
+        assertNull("Different modification time", snapshotFile.read(length, modified + 1));
+        assertNotNull(snapshotFile.read(length, modified));
+
+        // Rewritten with the same size within the modification time granularity
+        Files.write(dataFile.toPath(), "<TASKS/>".getBytes("UTF-8"));
+        assertTrue(dataFile.setLastModified(modified));
+        assertEquals(length, dataFile.length());
+        assertNull("Different content", snapshotFile.read(length, modified));
+    }
+
+    @Test
+    public void testCorruptSnapshotIsNotUsed() throws Exception {
+        writeSnapshot(Arrays.asList(new Task("A", TaskType.MORNING, null)));
+        flipLastByte();
+        assertNull(snapshotFile.read(dataFile.length(), dataFile.lastModified()));
+    }
+
+    @Test
+    public void testRepositoryFallsBackToXmlForAStaleSnapshot() throws Exception {
+        Task task = writeTasksXml();
+        // Describes an older tasks.xml
+        snapshotFile.write(Arrays.asList(new Task("Stale", TaskType.MORNING, null)), dataFile.length(), dataFile.lastModified() - 1000,
+                TaskStaxHandler.crc32Of(dataFile.toPath()));
+        assertReadFromXml(task);
+    }
+
+    @Test
+    public void testRepositoryFallsBackToXmlForACorruptSnapshot() throws Exception {
+        Task task = writeTasksXml();
+        // Matches tasks.xml, but the checksum no longer does
+        writeSnapshot(Arrays.asList(new Task("Corrupt", TaskType.MORNING, null)));
+        flipLastByte();
+        assertReadFromXml(task);
+    }
+
+    @Test
+    public void testRepositoryReadsASameSizeEditWithTheSameTime() throws Exception {
+        Task task = writeTasksXml();
+        long modified = dataFile.lastModified();
+        String xml = new String(Files.readAllBytes(dataFile.toPath()), "UTF-8");
+        Files.write(dataFile.toPath(), xml.replace("From XML", "From XMX").getBytes("UTF-8"));
+        assertTrue(dataFile.setLastModified(modified));
+
+        XMLTaskRepository repo = new XMLTaskRepository(dir.getAbsolutePath(), "single");
+        assertEquals("The snapshot of the old content is not used", "From XMX", repo.getTaskById(task.getId()).getName());
+        repo.shutdown();
+    }
+
+    private void writeSnapshot(List<Task> tasks) throws Exception {
+        snapshotFile.write(tasks, dataFile.length(), dataFile.lastModified(), TaskStaxHandler.crc32Of(dataFile.toPath()));
+    }
+
+    private Task writeTasksXml() throws Exception {
+        Task task = new Task("From XML", TaskType.MORNING, null);
+        XMLTaskRepository repo = new XMLTaskRepository(dir.getAbsolutePath(), "single");
+        repo.submitSetTasks(Arrays.asList(task)).get();
+        repo.flush().get();
+        repo.shutdown();
+        return task;
+    }
+
+    private void assertReadFromXml(Task task) throws Exception {
+        XMLTaskRepository repo = new XMLTaskRepository(dir.getAbsolutePath(), "single");
+        List<Task> loaded = repo.getAllTasks();
+        assertEquals(1, loaded.size());
+        assertEquals("From XML", loaded.get(0).getName());
+        assertEquals(task.getId(), loaded.get(0).getId());
+        repo.shutdown();
+
+        List<Task> refreshed = snapshotFile.read(dataFile.length(), dataFile.lastModified());
+        assertNotNull("The snapshot is rewritten from the parsed XML", refreshed);
+        assertEquals("From XML", refreshed.get(0).getName());
+    }
+
+    private void flipLastByte() throws Exception {
+        File f = new File(dataFile + ApplicationConfiguration.SNAPSHOT_FILE_SUFFIX);
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            raf.seek(raf.length() - 1);
+            int b = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(b ^ 0xFF);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test class for TaskSnapshot - the copy-on-write task list and id lookup the
+ * repository publishes to readers
+ */
+public class TaskSnapshotTest {
+
+    private List<Task> original;
+    private TaskSnapshot snapshot;
+
+    @Before
+    public void setUp() {
+        // Several chunks of the task vector and most id-map shards in use
+        original = new ArrayList<>();
+        for (int i = 0; i < 5 * TaskSnapshot.TaskVector.CHUNK; i++) {
+            original.add(new Task("Task " + i, i % 2 == 0 ? TaskType.MORNING : TaskType.EVENING, null));
+        }
+        original.add(new Task("custom-id", "Old style id", TaskType.CUSTOM, null, false, null, "groceries", null));
+        snapshot = TaskSnapshot.of(original, 1);
+    }
+
+    @Test
+    public void testOldTaskListIsUnchangedByEdits() {
+        List<Task> before = new ArrayList<>(original);
+        TaskSnapshot.Builder builder = snapshot.toBuilder();
+        TaskSnapshot.TaskVector.Builder tasks = builder.tasks();
+        tasks.set(3, new Task("Replaced", TaskType.MORNING, null));
+        tasks.remove(TaskSnapshot.TaskVector.CHUNK + 1);
+        tasks.add(new Task("Appended", TaskType.EVENING, null));
+        // Enough inserts into one chunk to split it
+        for (int i = 0; i < 2 * TaskSnapshot.TaskVector.CHUNK + 1; i++) {
+            tasks.add(10, new Task("Inserted " + i, TaskType.MORNING, null));
+        }
+        TaskSnapshot next = builder.build(2);
+
+        assertEquals("One removed, one appended and the inserts", before.size() + 2 * TaskSnapshot.TaskVector.CHUNK + 1, next.size());
+        assertEquals("Replaced", next.getTasks().get(3).getName());
+        assertEquals("Appended", next.getTasks().get(next.size() - 1).getName());
+        assertVectorIs(before, snapshot.getTasks());
+        assertEquals(1, snapshot.getVersion());
+    }
+
+    @Test
+    public void testBuiltVectorIsUnchangedByLaterEditsOfTheSameBuilder() {
+        TaskSnapshot.TaskVector base = TaskSnapshot.TaskVector.of(original);
+        TaskSnapshot.TaskVector.Builder tasks = base.toBuilder();
+        tasks.set(0, new Task("First edit", TaskType.MORNING, null));
+        TaskSnapshot.TaskVector built = tasks.build();
+        List<Task> expected = new ArrayList<>(built);
+
+        tasks.set(0, new Task("Second edit", TaskType.MORNING, null));
+        tasks.remove(1);
+        tasks.add(5, new Task("Inserted", TaskType.MORNING, null));
+        tasks.add(new Task("Appended", TaskType.MORNING, null));
+        assertVectorIs(expected, built);
+        assertVectorIs(original, base);
+    }
+
+    @Test
+    public void testOldIdLookupIsUnchangedByEdits() {
+        Task removed = original.get(7);
+        Task renamed = original.get(8);
+        Task custom = original.get(original.size() - 1);
+        Task replacement = new Task(renamed.getId(), "Renamed", renamed.getType(), null, false, null, null, null);
+        Task added = new Task("Added", TaskType.MORNING, null);
+        Task addedCustom = new Task("other-custom-id", "Also old style", TaskType.CUSTOM, null, false, null, "groceries", null);
+
+        TaskSnapshot.Builder builder = snapshot.toBuilder();
+        builder.removeId(removed.getId());
+        builder.removeId(custom.getId());
+        builder.putId(replacement);
+        builder.putId(added);
+        builder.putId(addedCustom);
+        TaskSnapshot next = builder.build(2);
+
+        assertNull(next.getTask(removed.getId()));
+        assertNull(next.getTask(custom.getId()));
+        assertSame(added, next.getTask(added.getId()));
+        assertSame(addedCustom, next.getTask(addedCustom.getId()));
+        assertEquals("Two removed, two added", original.size(), next.idCount());
+
+        assertEquals(original.size(), snapshot.idCount());
+        assertSame(removed, snapshot.getTask(removed.getId()));
+        assertSame(custom, snapshot.getTask(custom.getId()));
+        assertSame(renamed, snapshot.getTask(renamed.getId()));
+        assertNull(snapshot.getTask(added.getId()));
+        assertNull(snapshot.getTask(addedCustom.getId()));
+        for (Task t : original) {
+            assertSame(t, snapshot.getTask(t.getId()));
+        }
+    }
+
+    @Test
+    public void testOldGroupsAreUnchangedByEdits() {
+        List<Task> morning = new ArrayList<>(snapshot.getTasksOfType(TaskType.MORNING));
+        List<Task> groceries = new ArrayList<>(snapshot.getTasksInChecklist("groceries"));
+        TaskSnapshot.Builder builder = snapshot.toBuilder();
+        builder.typeGroup(TaskType.MORNING).remove(0);
+        builder.typeGroup(TaskType.MORNING).add(new Task("New morning", TaskType.MORNING, null));
+        builder.checklistGroup("groceries").remove(0);
+        TaskSnapshot next = builder.build(2);
+
+        assertEquals(morning.size(), next.getTasksOfType(TaskType.MORNING).size());
+        assertTrue(next.getTasksInChecklist("groceries").isEmpty());
+        assertVectorIs(morning, snapshot.getTasksOfType(TaskType.MORNING));
+        assertVectorIs(groceries, snapshot.getTasksInChecklist("groceries"));
+    }
+
+    private static void assertVectorIs(List<Task> expected, List<Task> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame("Task at " + i, expected.get(i), actual.get(i));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test class for TaskStringPool - interning of repeated task field values while parsing
+ * Note: Uses a temporary directory so the user's data file is never touched
+ */
+public class TaskStringPoolTest {
+
+    private File dir;
+    private String dataFile;
+    private TaskStaxHandler handler;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("string-pool-test").toFile();
+        dataFile = new File(dir, "tasks.xml").getAbsolutePath();
+        handler = new TaskStaxHandler(dataFile);
+        handler.ensureFileExists();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void testRepeatedFieldValuesShareOneInstance() throws Exception {
+        Task a = new Task("A", TaskType.CUSTOM, "Monday", "list & co", null);
+        Task b = new Task("B", TaskType.CUSTOM, "Monday", "list & co", a.getId());
+        Task c = new Task("C", TaskType.CUSTOM, null, "list-2", a.getId());
+        handler.setAllTasks(Arrays.asList(a, b, c));
+
+        for (TaskStaxHandler.ParseMode mode : TaskStaxHandler.ParseMode.values()) {
+            List<Task> loaded = handler.parseAllTasks(mode);
+            assertEquals(3, loaded.size());
+            assertEquals("list & co", loaded.get(0).getChecklistId());
+            assertSame(mode + ": checklist id", loaded.get(0).getChecklistId(), loaded.get(1).getChecklistId());
+            assertSame(mode + ": parent id", loaded.get(1).getParentId(), loaded.get(2).getParentId());
+            assertEquals(a.getId(), loaded.get(2).getParentId());
+        }
+    }
+}
@@ -91,4 +91,63 @@ public class TaskTest {
         assertTrue("Parent should have subtasks", parentTask.hasSubtasks());
         assertEquals("Parent should have 2 subtasks", 2, parentTask.getSubtasks().size());
     }
+
+    @Test
+    public void testTaskIdRoundTrip() {
+        String uuid = java.util.UUID.randomUUID().toString();
+        Task loaded = new Task(uuid, "Loaded", TaskType.MORNING, null, false, null);
+        assertEquals("UUID id should read back unchanged", uuid, loaded.getId());
+        assertTrue("Task should match its own id", loaded.hasId(uuid));
+        assertEquals("Generated id should be a canonical UUID", task.getId(), java.util.UUID.fromString(task.getId()).toString());
+
+        // Ids that are not lowercase UUIDs are kept verbatim
+        String upper = uuid.toUpperCase();
+        assertEquals(upper, new Task(upper, "Upper", TaskType.MORNING, null, false, null).getId());
+        assertEquals("task-1", new Task("task-1", "Plain", TaskType.MORNING, null, false, null).getId());
+        assertFalse(loaded.hasId(upper));
+        assertNotEquals(loaded, new Task(upper, "Upper", TaskType.MORNING, null, false, null));
+        assertEquals(loaded, new Task(uuid, "Copy", TaskType.EVENING, null, true, null));
+        assertEquals(loaded.hashCode(), new Task(uuid, "Copy", TaskType.EVENING, null, true, null).hashCode());
+    }
+
+    @Test
+    public void testTaskIdMapMatchesHashMap() {
+        java.util.Random random = new java.util.Random(17);
+        TaskIdMap<Task> map = new TaskIdMap<>();
+        java.util.Map<String, Task> expected = new java.util.HashMap<>();
+        java.util.List<Task> tasks = new java.util.ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String id = i % 10 == 0 ? "plain-" + i : new java.util.UUID(random.nextInt(64), random.nextLong()).toString();
+            tasks.add(new Task(id, "T" + i, TaskType.MORNING, null, false, null));
+        }
+        for (int step = 0; step < 20000; step++) {
+            Task t = tasks.get(random.nextInt(tasks.size()));
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(t.getId()), map.remove(t.getId()));
+            } else {
+                assertEquals(expected.put(t.getId(), t), map.put(t, t));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (Task t : tasks) {
+            assertSame(expected.get(t.getId()), map.get(t.getId()));
+            assertSame(expected.get(t.getId()), map.get(t));
+        }
+    }
+
+    @Test
+    public void testUnparsableDoneDateIsKeptAsText() {
+        Task t = new Task("id-1", "Legacy", TaskType.MORNING, null, true, "1 Oct 2023", null, null);
+        assertEquals("The text is written back as it was read", "1 Oct 2023", t.getDoneDate());
+        assertNull("It is no date otherwise", t.getParsedDoneDate());
+        assertEquals(Task.NO_DATE, t.getDoneEpochDay());
+
+        t.setDoneEpochDay(Task.NO_DATE);
+        assertEquals("1 Oct 2023", t.getDoneDate());
+        t.setDoneDate(null);
+        assertNull("A new done date replaces the text", t.getDoneDate());
+
+        assertEquals("2023-10-01", new Task("id-2", "ISO", TaskType.MORNING, null, true, "2023-10-01", null, null).getDoneDate());
+        assertNull(new Task("id-3", "Empty", TaskType.MORNING, null, false, "", null, null).getDoneDate());
+    }
 }
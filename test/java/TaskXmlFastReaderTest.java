@@ -0,0 +1,140 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Test class for TaskXmlFastReader - the memory-mapped byte scanner for tasks.xml and its chunked parallel parse
+ * Note: Uses a temporary directory so the user's data file is never touched
+ */
+public class TaskXmlFastReaderTest {
+
+    private File dir;
+    private String dataFile;
+    private TaskStaxHandler handler;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("fast-reader-test").toFile();
+        dataFile = new File(dir, "tasks.xml").getAbsolutePath();
+        handler = new TaskStaxHandler(dataFile);
+        handler.ensureFileExists();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void testFastReaderMatchesStax() throws Exception {
+        Task a = new Task("Fish & <chips> \"quoted\" 'x' \u00e5\u00e4\u00f6 \ud83d\ude00", TaskType.MORNING, "monday", null, null);
+        a.setDone(true);
+        a.setDoneDate(new Date());
+        a.setNote("line one\r\nline two\ttab");
+        Task b = new Task("Child", TaskType.CUSTOM, null, "list & co", a.getId());
+        handler.setAllTasks(Arrays.asList(a, b));
+
+        List<Task> fast = handler.parseAllTasks(TaskStaxHandler.ParseMode.FAST);
+        List<Task> parallel = handler.parseAllTasks(TaskStaxHandler.ParseMode.PARALLEL);
+        List<Task> stax = handler.parseAllTasks(TaskStaxHandler.ParseMode.STAX);
+        assertEquals(2, fast.size());
+        assertEquals(stax.size(), fast.size());
+        assertEquals("Chunked parse must keep file order", fast, parallel);
+        for (int i = 0; i < stax.size(); i++) {
+            Task s = stax.get(i);
+            Task f = fast.get(i);
+            assertEquals(s.getId(), f.getId());
+            assertEquals(s.getName(), f.getName());
+            assertEquals(s.getType(), f.getType());
+            assertEquals(s.getWeekday(), f.getWeekday());
+            assertEquals(s.isDone(), f.isDone());
+            assertEquals(s.getDoneDate(), f.getDoneDate());
+            assertEquals(s.getChecklistId(), f.getChecklistId());
+            assertEquals(s.getParentId(), f.getParentId());
+            assertEquals(s.getNote(), f.getNote());
+        }
+
+        // Markup the fast reader does not handle must still load through the StAX fallback
+        String xml = new String(Files.readAllBytes(new File(dataFile).toPath()), "UTF-8");
+        Files.write(new File(dataFile).toPath(), xml.replace("<tasks>", "<tasks><!-- edited by hand -->").getBytes("UTF-8"));
+        assertEquals(2, handler.parseAllTasks(TaskStaxHandler.ParseMode.FAST).size());
+    }
+
+    @Test
+    public void testUnparsableDoneDateSurvivesAWrite() throws Exception {
+        Task legacy = new Task(java.util.UUID.randomUUID().toString(), "Legacy", TaskType.MORNING, null, true, "1 Oct 2023", null, null);
+        handler.setAllTasks(Arrays.asList(legacy));
+        Task read = handler.parseAllTasks(TaskStaxHandler.ParseMode.FAST).get(0);
+        assertEquals("1 Oct 2023", read.getDoneDate());
+        handler.setAllTasks(Arrays.asList(read));
+        for (TaskStaxHandler.ParseMode mode : TaskStaxHandler.ParseMode.values()) {
+            assertEquals(mode.name(), "1 Oct 2023", handler.parseAllTasks(mode).get(0).getDoneDate());
+        }
+    }
+
+    @Test
+    public void testImpossibleIsoDoneDateReadsLikeStax() throws Exception {
+        Task impossible = new Task(java.util.UUID.randomUUID().toString(), "Impossible", TaskType.MORNING, null, true, "2023-02-30", null, null);
+        Task leapDay = new Task(java.util.UUID.randomUUID().toString(), "Leap day", TaskType.MORNING, null, true, "2024-02-29", null, null);
+        handler.setAllTasks(Arrays.asList(impossible, leapDay));
+        List<Task> stax = handler.parseAllTasks(TaskStaxHandler.ParseMode.STAX);
+        for (TaskStaxHandler.ParseMode mode : TaskStaxHandler.ParseMode.values()) {
+            List<Task> read = handler.parseAllTasks(mode);
+            assertEquals(mode.name(), stax.get(0).getDoneDate(), read.get(0).getDoneDate());
+            assertEquals(mode.name(), "2024-02-29", read.get(1).getDoneDate());
+        }
+    }
+
+    @Test
+    public void testDailyReadSkipsCustomChecklistTasks() throws Exception {
+        Task morning = new Task("Stretch", TaskType.MORNING, "monday", null, null);
+        morning.setNote("Slowly");
+        Task custom = new Task("Milk & bread", TaskType.CUSTOM, null, "groceries", null);
+        custom.setNote("A long note that is never decoded");
+        Task unnamed = new Task("  ", TaskType.CUSTOM, null, "groceries", null);
+        Task sub = new Task("Neck", TaskType.MORNING, null, null, morning.getId());
+        Task evening = new Task("Read", TaskType.EVENING, null, "", null);
+        handler.setAllTasks(Arrays.asList(morning, custom, unnamed, sub, evening));
+
+        List<String> storedIds = new java.util.ArrayList<>();
+        List<Task> daily = TaskXmlFastReader.readDaily(new File(dataFile), storedIds);
+        assertEquals(Arrays.asList(morning, sub, evening), daily);
+        assertEquals("Slowly", daily.get(0).getNote());
+        assertEquals("Neck", daily.get(1).getName());
+        List<String> allIds = new java.util.ArrayList<>();
+        for (Task t : handler.parseAllTasks(TaskStaxHandler.ParseMode.STAX)) allIds.add(t.getId());
+        assertEquals("Every task a full read returns takes its position", allIds, storedIds);
+        assertEquals(4, storedIds.size());
+    }
+
+    @Test
+    public void testNonCanonicalLaterChunkFallsBackOnAMultiThreadPool() throws Exception {
+        List<Task> tasks = new java.util.ArrayList<>();
+        for (int i = 0; i < 200; i++) tasks.add(new Task("Task " + i, TaskType.MORNING, null, null, null));
+        handler.setAllTasks(tasks);
+        String xml = new String(Files.readAllBytes(new File(dataFile).toPath()), "UTF-8");
+        int at = xml.lastIndexOf("<task ", xml.lastIndexOf("<task ") - 1);
+        xml = xml.substring(0, at) + "<!-- edited by hand -->" + xml.substring(at);
+        Files.write(new File(dataFile).toPath(), xml.getBytes("UTF-8"));
+
+        java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(4);
+        try {
+            TaskXmlFastReader reader = new TaskXmlFastReader(java.nio.ByteBuffer.wrap(xml.getBytes("UTF-8")));
+            reader.parseDocumentParallel(pool, 4);
+            fail("A comment is not in the canonical layout");
+        } catch (TaskXmlFastReader.NotCanonicalException expected) {
+            // The chunk's own exception, however the pool wrapped it
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals("StAX reads what the fast reader cannot", tasks, handler.parseAllTasks(TaskStaxHandler.ParseMode.PARALLEL));
+    }
+}
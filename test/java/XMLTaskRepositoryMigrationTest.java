@@ -0,0 +1,153 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Test class for the storage layout migration of XMLTaskRepository - moving the
+ * tasks between tasks.xml and the sharded layout
+ * Note: Uses a temporary directory so the user's data files are never touched
+ */
+public class XMLTaskRepositoryMigrationTest {
+
+    private File dir;
+    private File single;
+    private File manifest;
+    private Task morning;
+    private Task groceries;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("migration-test").toFile();
+        single = new File(dir, ApplicationConfiguration.DATA_FILE_NAME);
+        manifest = new File(new File(dir, ApplicationConfiguration.SHARD_DIRECTORY_NAME), ShardedTaskStore.MANIFEST_FILE_NAME);
+        morning = new Task("Stretch", TaskType.MORNING, null, null, null);
+        groceries = new Task("Milk", TaskType.CUSTOM, null, "groceries-id", null);
+        groceries.setNote("Oat milk if there is none");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testTasksMigrateToShardsAndBack() throws Exception {
+        XMLTaskRepository repo = open("single");
+        repo.addTask(morning);
+        repo.addTask(groceries);
+        morning.setDone(true);
+        repo.updateTask(morning);
+        close(repo);
+
+        repo = open("sharded");
+        assertState(repo, true, "Milk");
+        assertTrue(manifest.exists());
+        assertFalse("tasks.xml is retired", single.exists());
+        assertTrue(new File(dir, single.getName() + ApplicationConfiguration.MIGRATED_FILE_SUFFIX).exists());
+        assertFalse("Its journal describes the retired file", new File(single + ApplicationConfiguration.JOURNAL_FILE_SUFFIX).exists());
+        Task renamed = repo.getTaskById(groceries.getId());
+        renamed.setName("Bread");
+        repo.updateTask(renamed);
+        close(repo);
+
+        repo = open("single");
+        assertState(repo, true, "Bread");
+        assertTrue(single.exists());
+        assertFalse("The manifest is retired", manifest.exists());
+        close(repo);
+    }
+
+    @Test
+    public void testMigrationInterruptedBeforeTheManifestRunsAgain() throws Exception {
+        XMLTaskRepository repo = open("single");
+        repo.addTask(morning);
+        repo.addTask(groceries);
+        close(repo);
+
+        // Shards of a migration that crashed before its manifest was written
+        File shards = manifest.getParentFile();
+        assertTrue(shards.mkdirs());
+        Files.write(new File(shards, "daily-1.xml.tmp.42").toPath(), "<tasks></tasks>".getBytes("UTF-8"));
+
+        repo = open("sharded");
+        assertState(repo, false, "Milk");
+        assertFalse(single.exists());
+        assertFalse("Files of the crashed attempt are removed", new File(shards, "daily-1.xml.tmp.42").exists());
+        close(repo);
+    }
+
+    @Test
+    public void testMigrationInterruptedBeforeTheRetireIsFinished() throws Exception {
+        XMLTaskRepository repo = open("single");
+        repo.addTask(morning);
+        repo.addTask(groceries);
+        close(repo);
+        repo = open("sharded");
+        Task renamed = repo.getTaskById(groceries.getId());
+        renamed.setName("Bread");
+        repo.updateTask(renamed);
+        close(repo);
+
+        // The crash came after the manifest was written but before tasks.xml was retired
+        File retired = new File(dir, single.getName() + ApplicationConfiguration.MIGRATED_FILE_SUFFIX);
+        assertTrue(retired.renameTo(single));
+        assertTrue(single.setLastModified(manifest.lastModified() - 10_000));
+
+        repo = open("sharded");
+        assertState(repo, false, "Bread");
+        assertFalse("The old layout is retired now", single.exists());
+        close(repo);
+    }
+
+    @Test
+    public void testOldLayoutChangedAfterAnInterruptedRetireIsMigratedAgain() throws Exception {
+        XMLTaskRepository repo = open("sharded");
+        repo.addTask(morning);
+        repo.addTask(groceries);
+        close(repo);
+        repo = open("single");
+        close(repo);
+
+        // The manifest was never retired, and tasks.xml was used and changed after that
+        File retired = new File(manifest + ApplicationConfiguration.MIGRATED_FILE_SUFFIX);
+        assertTrue(retired.renameTo(manifest));
+        assertTrue(manifest.setLastModified(System.currentTimeMillis() - 20_000));
+        repo = open("single");
+        Task renamed = repo.getTaskById(groceries.getId());
+        renamed.setName("Bread");
+        repo.updateTask(renamed);
+        close(repo);
+
+        repo = open("sharded");
+        assertState(repo, false, "Bread");
+        close(repo);
+    }
+
+    private void assertState(XMLTaskRepository repo, boolean morningDone, String groceriesName) {
+        List<Task> tasks = repo.getAllTasks();
+        assertEquals(2, tasks.size());
+        assertEquals(morningDone, repo.getTaskById(morning.getId()).isDone());
+        Task g = repo.getTaskById(groceries.getId());
+        assertEquals(groceriesName, g.getName());
+        assertEquals("groceries-id", g.getChecklistId());
+        assertEquals("Oat milk if there is none", g.getNote());
+    }
+
+    private XMLTaskRepository open(String layout) {
+        return new XMLTaskRepository(dir.getAbsolutePath(), layout);
+    }
+
+    private static void close(XMLTaskRepository repo) throws Exception {
+        repo.flush().get();
+        repo.shutdown();
+    }
+}
@@ -0,0 +1,94 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Test class for how XMLTaskRepository keeps note texts in the note store -
+ * through the journal, full writes, reloads and compaction
+ * Note: Uses a temporary directory so the user's data files are never touched
+ */
+public class XMLTaskRepositoryNoteTest {
+
+    private File dir;
+    private File dataFile;
+    private File noteFile;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("note-test").toFile();
+        dataFile = new File(dir, ApplicationConfiguration.DATA_FILE_NAME);
+        noteFile = new File(dataFile + ApplicationConfiguration.NOTE_STORE_FILE_SUFFIX);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testNoteTravelsThroughJournalFullWriteReloadAndCompaction() throws Exception {
+        Task kept = new Task("Call the bank", TaskType.MORNING, null, null, null);
+        kept.setNote("Ask about the loan");
+        Task removed = new Task("Old errand", TaskType.EVENING, null, null, null);
+        removed.setNote("Never mind");
+        XMLTaskRepository repo = open();
+        repo.addTask(kept);
+        repo.addTask(removed);
+        close(repo);
+        assertFalse("Note texts stay out of tasks.xml", read(dataFile).contains("Ask about the loan"));
+        assertFalse(read(new File(dataFile + ApplicationConfiguration.JOURNAL_FILE_SUFFIX)).contains("Ask about the loan"));
+
+        // Journal replay: the record carries the length, the text comes from the store
+        repo = open();
+        assertEquals("Ask about the loan", repo.getTaskById(kept.getId()).getNote());
+        String big = String.join("", Collections.nCopies((int) ApplicationConfiguration.NOTE_STORE_COMPACT_MIN_BYTES / 10, "0123456789"));
+        Task edited = repo.getTaskById(kept.getId());
+        edited.setNote(big);
+        repo.updateTask(edited);
+        repo.flush().get();
+        edited.setNote("Ask about the mortgage");
+        repo.updateTask(edited);
+        repo.removeTask(repo.getTaskById(removed.getId()));
+        repo.flush().get();
+        long beforeFullWrite = noteFile.length();
+
+        // A full write drops the texts nothing refers to and compacts the superseded ones away
+        repo.submitSetTasks(repo.getAllTasks()).get();
+        assertTrue(noteFile.length() < beforeFullWrite / 4);
+        assertFalse(read(dataFile).contains("Ask about the mortgage"));
+        close(repo);
+
+        TaskNoteStore store = new TaskNoteStore(dataFile.getAbsolutePath());
+        assertFalse("The removed task's note is gone", store.contains(removed.getId()));
+        assertEquals("Ask about the mortgage", store.get(kept.getId()));
+        store.close();
+
+        // Reload from the full write
+        repo = open();
+        assertEquals("Ask about the mortgage", repo.getTaskById(kept.getId()).getNote());
+        assertNull(repo.getTaskById(removed.getId()));
+        close(repo);
+    }
+
+    private XMLTaskRepository open() {
+        return new XMLTaskRepository(dir.getAbsolutePath(), "single");
+    }
+
+    private static void close(XMLTaskRepository repo) throws Exception {
+        repo.flush().get();
+        repo.shutdown();
+    }
+
+    private static String read(File f) throws Exception {
+        return new String(Files.readAllBytes(f.toPath()), "UTF-8");
+    }
+}
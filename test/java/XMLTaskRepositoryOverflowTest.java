@@ -0,0 +1,62 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Test class for the tasks XMLTaskRepository keeps past the load limit
+ * Note: Uses a temporary directory so the user's data files are never touched
+ */
+public class XMLTaskRepositoryOverflowTest {
+
+    private File dir;
+    private List<Task> stored;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("overflow-test").toFile();
+        stored = new ArrayList<>(MemorySafetyManager.MAX_TASKS + 2);
+        for (int i = 0; i < MemorySafetyManager.MAX_TASKS + 2; i++) {
+            stored.add(new Task("Task " + i, TaskType.MORNING, null, null, null));
+        }
+        new TaskStaxHandler(new File(dir, ApplicationConfiguration.DATA_FILE_NAME).getAbsolutePath()).setAllTasks(stored);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testRestoreReplacesTheTasksPastTheLimit() throws Exception {
+        XMLTaskRepository repo = open();
+        assertEquals(MemorySafetyManager.MAX_TASKS, repo.getAllTasks().size());
+        Task fromBackup = new Task("From the backup", TaskType.EVENING, null, null, null);
+        // The backup also has one of the tasks that were past the limit
+        Task pastLimit = stored.get(stored.size() - 1);
+        repo.submitSetTasks(Arrays.asList(fromBackup, pastLimit)).get();
+        repo.flush().get();
+        repo.shutdown();
+
+        assertEquals(Arrays.asList(fromBackup, pastLimit), readBack());
+    }
+
+    private XMLTaskRepository open() {
+        return new XMLTaskRepository(dir.getAbsolutePath(), "single");
+    }
+
+    private List<Task> readBack() throws Exception {
+        return new TaskStaxHandler(new File(dir, ApplicationConfiguration.DATA_FILE_NAME).getAbsolutePath())
+                .parseAllTasks(TaskStaxHandler.ParseMode.STAX);
+    }
+}
@@ -0,0 +1,76 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Test class for how XMLTaskRepository tells its own tasks.xml writes from external edits
+ * Note: Uses a temporary directory so the user's data files are never touched
+ */
+public class XMLTaskRepositoryReloadTest {
+
+    private File dir;
+    private File dataFile;
+    private Task task;
+    private XMLTaskRepository repo;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("reload-test").toFile();
+        dataFile = new File(dir, ApplicationConfiguration.DATA_FILE_NAME);
+        task = new Task("Before", TaskType.MORNING, null, null, null);
+        new TaskStaxHandler(dataFile.getAbsolutePath()).setAllTasks(Arrays.asList(task));
+        // Well in the past, so any later write has a newer modification time
+        assertTrue(dataFile.setLastModified(System.currentTimeMillis() - 60_000));
+        repo = new XMLTaskRepository(dir.getAbsolutePath(), "single");
+        assertEquals(1, repo.getAllTasks().size());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        repo.flush().get();
+        repo.shutdown();
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testOwnWriteIsNotReloaded() throws Exception {
+        long external = repo.getExternalReloadCount();
+        long suppressed = repo.getSuppressedReloadCount();
+        Task added = new Task("Added", TaskType.MORNING, null, null, null);
+        repo.submitSetTasks(Arrays.asList(task, added)).get();
+        repo.flush().get();
+
+        assertEquals(2, repo.getAllTasks().size());
+        assertEquals("The newer tasks.xml is our own write", suppressed + 1, repo.getSuppressedReloadCount());
+        assertEquals(external, repo.getExternalReloadCount());
+    }
+
+    @Test
+    public void testSameSizeEditInPlaceIsReloaded() throws Exception {
+        // Durable once written; nothing reads tasks.xml again before the edit
+        repo.submitSetTasks(Arrays.asList(task, new Task("Added", TaskType.MORNING, null, null, null))).get();
+        long modified = dataFile.lastModified();
+        long length = dataFile.length();
+        long external = repo.getExternalReloadCount();
+        long suppressed = repo.getSuppressedReloadCount();
+
+        // Same file, size and modification time as our write; only the content differs
+        String xml = new String(Files.readAllBytes(dataFile.toPath()), "UTF-8");
+        Files.write(dataFile.toPath(), xml.replace(">Before<", ">Edited<").getBytes("UTF-8"));
+        assertTrue(dataFile.setLastModified(modified));
+        assertEquals(length, dataFile.length());
+
+        assertEquals("Edited", repo.getTaskById(task.getId()).getName());
+        assertEquals(external + 1, repo.getExternalReloadCount());
+        assertEquals(suppressed, repo.getSuppressedReloadCount());
+    }
+}
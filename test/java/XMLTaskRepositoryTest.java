@@ -125,4 +125,29 @@ public class XMLTaskRepositoryTest {
         // Verify all can be retrieved
         assertNotNull("Parent should be retrievable", repository.getTaskById(parent.getId()));
     }
+
+    @Test
+    public void testIncrementalIndexesMatchFullRebuild() {
+        Task a = new Task("Index A", TaskType.CUSTOM, null, "index-list-1", null);
+        Task b = new Task("Index B", TaskType.CUSTOM, null, "index-list-1", null);
+        Task c = new Task("Index C", TaskType.MORNING, null, null, null);
+        repository.addTask(a);
+        repository.addTask(b);
+        repository.addTask(c);
+
+        // Move a task between checklists and types, mutating it in place as the UI does
+        a.setChecklistId("index-list-2");
+        repository.updateTask(a);
+        c.setType(TaskType.EVENING);
+        repository.updateTaskQuiet(c);
+        repository.removeTask(b);
+        repository.updateTasks(java.util.Arrays.asList(new Task("Index D", TaskType.MORNING, null, null, null), a));
+
+        assertTrue("Incremental indexes should equal a full rebuild", repository.verifyIndexes());
+        assertNull("Removed task should be gone", repository.getTaskById(b.getId()));
+        assertTrue("Retyped task should be listed under its new type",
+            repository.getTasks(TaskType.EVENING, null).contains(c));
+        assertFalse("Retyped task should leave its old type",
+            repository.getTasks(TaskType.MORNING, null).contains(c));
+    }
 }
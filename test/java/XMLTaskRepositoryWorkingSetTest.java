@@ -0,0 +1,132 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Test class for the daily working set of XMLTaskRepository - the daily lists
+ * read ahead of the custom checklists at startup
+ * Note: Uses a temporary directory so the user's data files are never touched
+ */
+public class XMLTaskRepositoryWorkingSetTest {
+
+    private File dir;
+    private Task morning;
+    private Task groceries;
+    private Task zeta;
+    private Task alpha;
+    private Task evening;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("working-set-test").toFile();
+        morning = new Task("Stretch", TaskType.MORNING, null, null, null);
+        groceries = new Task("Milk", TaskType.CUSTOM, null, "groceries-id", null);
+        zeta = new Task("Zeta", TaskType.MORNING, null, null, morning.getId());
+        alpha = new Task("Alpha", TaskType.MORNING, null, null, morning.getId());
+        evening = new Task("Read", TaskType.EVENING, null, null, null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testSingleFileWorkingSetSkipsCustomChecklists() throws Exception {
+        checkWorkingSet("single");
+    }
+
+    @Test
+    public void testShardedWorkingSetReadsTheDailyShard() throws Exception {
+        checkWorkingSet("sharded");
+    }
+
+    @Test
+    public void testWorkingSetLeavesTheJournalForTheFullLoad() throws Exception {
+        writeTasks("single");
+        File journal = new File(new File(dir, ApplicationConfiguration.DATA_FILE_NAME) + ApplicationConfiguration.JOURNAL_FILE_SUFFIX);
+        byte[] before = Files.readAllBytes(journal.toPath());
+
+        XMLTaskRepository repo = open("single");
+        repo.getDailyWorkingSet();
+        assertArrayEquals(before, Files.readAllBytes(journal.toPath()));
+        assertFalse(new File(journal + ".stale").exists());
+        assertEquals("Read later", repo.getTaskById(evening.getId()).getName());
+        assertEquals(6, repo.getAllTasks().size());
+        close(repo);
+    }
+
+    @Test
+    public void testDailySubtasksKeepTheirOrderBeforeTheFullLoad() throws Exception {
+        writeTasks("single");
+        XMLTaskRepository repo = open("single");
+        TaskManager manager = new TaskManager(repo);
+        assertEquals(Arrays.asList(zeta, alpha), manager.getSubtasksSorted(morning.getId()));
+        assertFalse("Subtasks of daily tasks come from the working set", repo.isFullyLoaded());
+        assertEquals(Arrays.asList(zeta, alpha), manager.getSubtasksSorted(morning.getId()));
+        repo.getAllTasks();
+        assertEquals(Arrays.asList(zeta, alpha), manager.getSubtasksSorted(morning.getId()));
+        close(repo);
+    }
+
+    private void checkWorkingSet(String layout) throws Exception {
+        Task added = writeTasks(layout);
+        XMLTaskRepository repo = open(layout);
+        List<Task> daily = repo.getDailyWorkingSet();
+        assertFalse("Custom checklists are left for later", repo.isFullyLoaded());
+        assertEquals(Arrays.asList(morning, zeta, alpha, evening, added), daily);
+        assertTrue("The done state comes from the done state file", daily.get(0).isDone());
+        assertEquals("Journal records are applied", "Read later", daily.get(3).getName());
+        assertEquals("Do it now", daily.get(2).getNote());
+
+        // The full load agrees with what was shown
+        List<Task> all = repo.getAllTasks();
+        assertTrue(repo.isFullyLoaded());
+        assertEquals(6, all.size());
+        assertTrue(repo.getTaskById(morning.getId()).isDone());
+        assertEquals("Milk", repo.getTaskById(groceries.getId()).getName());
+        close(repo);
+    }
+
+    /**
+     * Writes the tasks in full, then ticks one off, renames one and adds one,
+     * which go to the done state file and the journal.
+     */
+    private Task writeTasks(String layout) throws Exception {
+        alpha.setNote("Do it now");
+        XMLTaskRepository repo = open(layout);
+        repo.submitSetTasks(Arrays.asList(morning, groceries, zeta, alpha, evening)).get();
+        close(repo);
+
+        repo = open(layout);
+        Task ticked = repo.getTaskById(morning.getId());
+        ticked.setDone(true);
+        repo.updateTask(ticked);
+        Task renamed = repo.getTaskById(evening.getId());
+        renamed.setName("Read later");
+        repo.updateTask(renamed);
+        Task added = new Task("Water the plants", TaskType.EVENING, null, null, null);
+        repo.addTask(added);
+        close(repo);
+        return added;
+    }
+
+    private XMLTaskRepository open(String layout) {
+        return new XMLTaskRepository(dir.getAbsolutePath(), layout);
+    }
+
+    private static void close(XMLTaskRepository repo) throws Exception {
+        repo.flush().get();
+        repo.shutdown();
+    }
+}